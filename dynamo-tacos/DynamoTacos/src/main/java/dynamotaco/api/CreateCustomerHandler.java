@@ -5,26 +5,75 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
 import dynamotaco.models.Customer;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.CustomerRepository;
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * POST /customer. The profile is written with one conditional PutItem; an existing email is a 400.
+ *
+ * Clients may send an {@code Idempotency-Key} header. A retry with the same key then gets the
+ * original 201 back (marked with {@code Idempotent-Replayed: true}) instead of the 400. Keys this
+ * container has already answered are replayed without calling DynamoDB at all, and so is the 400
+ * for an email this container's customer cache already knows, when no key is sent.
+ */
 public class CreateCustomerHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private final DynamoDbClient dynamoDb = DynamoDbClient.create();
-    private static final String TABLE_NAME = System.getenv("TABLE_NAME");
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private final CustomerRepository customers;
+    private final Map<String, String> answeredKeys;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+    private static final int IDEMPOTENCY_CACHE_SIZE = Config.getInt("IDEMPOTENCY_CACHE_SIZE", "idempotency.cacheSize", 10_000);
+
+    public CreateCustomerHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public CreateCustomerHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public CreateCustomerHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, CustomerRepository.newCache());
+    }
+
+    public CreateCustomerHandler(DynamoDbAsyncClient dynamoDb, CustomerCache customerCache) {
+        this.customers = new CustomerRepository(dynamoDb, TABLE_NAME, customerCache);
+        this.answeredKeys = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > IDEMPOTENCY_CACHE_SIZE;
+            }
+        });
+    }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("CreateCustomer", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
         try {
             // Parse the request body to get the Customer object
+            long mark = Metrics.start();
             Customer customer = MAPPER.readValue(request.getBody(), Customer.class);
+            Metrics.phase(Phase.DESERIALIZE, mark);
 
             context.getLogger().log("Raw input: " + customer.toString());
 
@@ -35,25 +84,31 @@ public class CreateCustomerHandler implements RequestHandler<APIGatewayProxyRequ
 //            context.getLogger().log("Customer phone number: " + customer.getPhoneNumber());
 
             String email = customer.getEmail();
-            String partitionKey = "CUSTOMER#" + email;
-
-            // Check if the customer already exists
-            if (customerExists(partitionKey)) {
+            String idempotencyKey = header(request, IDEMPOTENCY_KEY_HEADER);
+            if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
                 return new APIGatewayProxyResponseEvent()
                         .withStatusCode(400)
-                        .withBody("Customer with email " + email + " already exists.");
+                        .withBody(IDEMPOTENCY_KEY_HEADER + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+            }
+            if (idempotencyKey != null && email != null && email.equals(answeredKeys.get(idempotencyKey))) {
+                return created(email, true);
+            }
+            // With a key the write has to run, it may be a retry of the create that cached the profile
+            if (idempotencyKey == null && email != null
+                    && customers.cache().get(email).status() == CustomerCache.Status.PRESENT) {
+                return alreadyExists(email);
             }
 
-            // Create a new customer record
-            createCustomerRecord(partitionKey, customer, context);
-            return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(201)
-                    .withHeaders(Map.of(
-                            "Access-Control-Allow-Headers", "*",
-                            "Access-Control-Allow-Origin", "*",
-                            "Access-Control-Allow-Methods", "*"
-                    ))
-                    .withBody("Customer with email " + email + " created successfully.");
+            // Create the customer record unless one already exists for this email
+            CustomerRepository.CreateOutcome outcome = Futures.join(customers.create(customer, idempotencyKey));
+            if (outcome == CustomerRepository.CreateOutcome.ALREADY_EXISTS) {
+                return alreadyExists(email);
+            }
+
+            if (idempotencyKey != null) {
+                answeredKeys.put(idempotencyKey, email);
+            }
+            return created(email, outcome == CustomerRepository.CreateOutcome.REPLAYED);
         } catch (Exception e) {
             context.getLogger().log("Error creating customer: " + e.getMessage());
             return new APIGatewayProxyResponseEvent()
@@ -62,33 +117,39 @@ public class CreateCustomerHandler implements RequestHandler<APIGatewayProxyRequ
         }
     }
 
-    private boolean customerExists(String partitionKey) {
-        Map<String, AttributeValue> key = new HashMap<>();
-        key.put("PK", AttributeValue.builder().s(partitionKey).build());
-        key.put("SK", AttributeValue.builder().s("PROFILE").build());
+    public CustomerCache getCustomerCache() {
+        return customers.cache();
+    }
 
-        GetItemRequest request = GetItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .key(key)
-                .build();
+    private static APIGatewayProxyResponseEvent alreadyExists(String email) {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("Customer with email " + email + " already exists.");
+    }
 
-        return dynamoDb.getItem(request).hasItem();
+    private static APIGatewayProxyResponseEvent created(String email, boolean replayed) {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(201)
+                .withHeaders(Map.of(
+                        "Access-Control-Allow-Headers", "*",
+                        "Access-Control-Allow-Origin", "*",
+                        "Access-Control-Allow-Methods", "*",
+                        "Access-Control-Expose-Headers", REPLAYED_HEADER,
+                        REPLAYED_HEADER, String.valueOf(replayed)
+                ))
+                .withBody("Customer with email " + email + " created successfully.");
     }
 
-    private void createCustomerRecord(String partitionKey, Customer customer, Context context) {
-        Map<String, AttributeValue> item = new HashMap<>();
-        item.put("PK", AttributeValue.builder().s(partitionKey).build());
-        item.put("SK", AttributeValue.builder().s("PROFILE").build());
-        item.put("FirstName", AttributeValue.builder().s(customer.getFirstName()).build());
-        item.put("LastName", AttributeValue.builder().s(customer.getLastName()).build());
-        item.put("Email", AttributeValue.builder().s(customer.getEmail()).build());
-        item.put("PhoneNumber", AttributeValue.builder().s(customer.getPhoneNumber()).build());
-
-        PutItemRequest putRequest = PutItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .item(item)
-                .build();
-        context.getLogger().log("Item contents: " + item.toString());
-        dynamoDb.putItem(putRequest);
+    // API Gateway passes headers through with the client's casing
+    private static String header(APIGatewayProxyRequestEvent request, String name) {
+        if (request.getHeaders() == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
     }
 }
@@ -4,39 +4,77 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
 import dynamotaco.models.Order;
-import dynamotaco.models.SideItem;
-import dynamotaco.models.Topping;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.pricing.PricingException;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.MenuRepository;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.IdGenerator;
+import dynamotaco.util.OrderDates;
+import dynamotaco.util.OrderRequestParser;
 import org.apache.commons.collections4.CollectionUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * POST /order. The body goes through {@link OrderRequestParser}, which prices the lines and builds
+ * their attribute values in one pass; {@link #buildOrderItem} does the same for callers that already
+ * hold an {@link Order}.
+ */
 public class CreateOrderHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private final DynamoDbClient dynamoDb = DynamoDbClient.create();
-    private static final String TABLE_NAME = System.getenv("TABLE_NAME");
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final OrderRepository orders;
+    private final PricingEngine pricing;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+
+    public CreateOrderHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public CreateOrderHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public CreateOrderHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, PricingEngine.fromMenuCache(MenuHandler.menuCache(new MenuRepository(dynamoDb, TABLE_NAME))));
+    }
+
+    public CreateOrderHandler(DynamoDbAsyncClient dynamoDb, PricingEngine pricing) {
+        this.orders = new OrderRepository(dynamoDb, TABLE_NAME);
+        this.pricing = pricing;
+    }
+
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("CreateOrder", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
         try {
-            Order order = MAPPER.readValue(request.getBody(), Order.class);
-            context.getLogger().log("Raw input: " + order.toString());
-            String customerId = order.getCustomerId();
-            String orderId = Optional.ofNullable(order.getId())
-                    .orElse(UUID.randomUUID().toString());
-            String partitionKey = "CUSTOMER#" + customerId;
-            String sortKey = "ORDER#" + orderId;
-
-            order.setId(orderId);
-            createOrderRecord(partitionKey, sortKey, order);
+            long mark = Metrics.start();
+            OrderRequestParser.ParsedOrder order;
+            try {
+                order = OrderRequestParser.parse(request.getBody(), pricing.index());
+            } catch (PricingException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
+            Metrics.phase(Phase.DESERIALIZE, mark);
+            String orderId = order.orderId();
+            context.getLogger().log("Creating order " + orderId);
+            Map<String, AttributeValue> item = order.item(Keys.customer(order.customerId()), Keys.order(orderId));
+            Futures.join(orders.save(item));
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(201)
                     .withHeaders(Map.of(
@@ -55,30 +93,27 @@ public class CreateOrderHandler implements RequestHandler<APIGatewayProxyRequest
         }
     }
 
-    private void createOrderRecord(String partitionKey, String sortKey, Order order) {
+    /**
+     * The order item with a total priced by {@link PricingEngine#price}.
+     */
+    public static Map<String, AttributeValue> buildOrderItem(String partitionKey, String sortKey, Order order, long totalCents) {
+        double totalPrice = PricingEngine.toDollars(totalCents);
         Map<String, AttributeValue> orderItem = new HashMap<>();
-        var currentTimeStamp = ZonedDateTime.now(ZoneOffset.UTC).toString();
+        var currentTimeStamp = OrderDates.now();
         orderItem.put("PK", AttributeValue.builder().s(partitionKey).build());
         orderItem.put("SK", AttributeValue.builder().s(sortKey).build());
         orderItem.put("OrderDate", AttributeValue.builder().s(currentTimeStamp).build());
-        var totalPrice = calculateTotalPrice(order);
         orderItem.put("TotalPrice", AttributeValue.builder().n(String.valueOf(totalPrice)).build());
         orderItem.put("Status", AttributeValue.builder().s(order.getStatus().toString()).build());
         addItemsToOrder(orderItem, order);
-
-        PutItemRequest orderPutRequest = PutItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .item(orderItem)
-                .build();
-        dynamoDb.putItem(orderPutRequest);
-
+        return orderItem;
     }
 
-    private void addItemsToOrder(Map<String, AttributeValue> orderItem, Order order) {
+    private static void addItemsToOrder(Map<String, AttributeValue> orderItem, Order order) {
         if(CollectionUtils.isNotEmpty(order.getTacos())) {
             List<Map<String, AttributeValue>> tacos = order.getTacos().stream().map(taco -> {
                 Map<String, AttributeValue> tacoMap = new HashMap<>();
-                tacoMap.put("TacoId", AttributeValue.builder().s(UUID.randomUUID().toString()).build());
+                tacoMap.put("TacoId", AttributeValue.builder().s(IdGenerator.configured().next()).build());
                 tacoMap.put("MenuItemId", AttributeValue.builder().s(taco.getMenuItemId()).build());
                 tacoMap.put("Name", AttributeValue.builder().s(taco.getName()).build());
                 tacoMap.put("Price", AttributeValue.builder().n(String.valueOf(taco.getPrice())).build());
@@ -86,7 +121,7 @@ public class CreateOrderHandler implements RequestHandler<APIGatewayProxyRequest
                 if (taco.getToppings() != null) {
                     List<Map<String, AttributeValue>> toppings = taco.getToppings().stream().map(topping -> {
                         Map<String, AttributeValue> toppingMap = new HashMap<>();
-                        toppingMap.put("ToppingId", AttributeValue.builder().s(UUID.randomUUID().toString()).build());
+                        toppingMap.put("ToppingId", AttributeValue.builder().s(IdGenerator.configured().next()).build());
                         toppingMap.put("Name", AttributeValue.builder().s(topping.getName()).build());
                         toppingMap.put("Price", AttributeValue.builder().n(String.valueOf(topping.getPrice())).build());
                         return toppingMap;
@@ -101,28 +136,16 @@ public class CreateOrderHandler implements RequestHandler<APIGatewayProxyRequest
         if(CollectionUtils.isNotEmpty(order.getSideItems())) {
             List<Map<String, AttributeValue>> sideItems = order.getSideItems().stream().map(sideItem -> {
                 Map<String, AttributeValue> sideItemMap = new HashMap<>();
-                sideItemMap.put("SideItemId", AttributeValue.builder().s(UUID.randomUUID().toString()).build());
+                sideItemMap.put("SideItemId", AttributeValue.builder().s(IdGenerator.configured().next()).build());
                 sideItemMap.put("Name", AttributeValue.builder().s(sideItem.getName()).build());
                 sideItemMap.put("Price", AttributeValue.builder().n(String.valueOf(sideItem.getPrice())).build());
+                if (sideItem.getQuantity() > 0) {
+                    sideItemMap.put("Quantity", AttributeValue.builder().n(String.valueOf(sideItem.getQuantity())).build());
+                }
                 return sideItemMap;
             }).toList();;
             orderItem.put("SideItems", AttributeValue.builder().l(sideItems.stream().map(AttributeValue::fromM).collect(Collectors.toList())).build());
         }
 
     }
-
-    private double calculateTotalPrice(Order order) {
-        return Stream.ofNullable(order.getTacos())
-                .flatMapToDouble(tacos -> tacos.stream()
-                        .mapToDouble(taco -> taco.getPrice() +
-                                Stream.ofNullable(taco.getToppings())
-                                        .flatMap(toppings -> toppings.stream())
-                                        .mapToDouble(Topping::getPrice)
-                                        .sum()))
-                .sum() +
-                Stream.ofNullable(order.getSideItems())
-                        .flatMap(sideItems -> sideItems.stream())
-                        .mapToDouble(SideItem::getPrice)
-                        .sum();
-    }
 }
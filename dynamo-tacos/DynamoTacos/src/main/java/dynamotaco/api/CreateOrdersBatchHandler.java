@@ -0,0 +1,140 @@
+package dynamotaco.api;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.models.BatchOrderResult;
+import dynamotaco.models.Order;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.pricing.PricingException;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.MenuRepository;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.IdGenerator;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.*;
+
+/**
+ * POST /orders/batch with a JSON array of orders. Orders are priced and stored exactly like
+ * {@link CreateOrderHandler} does, but written through BatchWriteItem; the response lists the
+ * outcome of every order in request order.
+ */
+public class CreateOrdersBatchHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    private static final int MAX_ORDERS = 500;
+
+    private final OrderRepository orderRepository;
+    private final PricingEngine pricing;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+    private static final int CONCURRENCY = Config.getInt("BATCH_WRITE_CONCURRENCY", "batch.write.concurrency", 8);
+    private static final TypeReference<List<Order>> ORDER_LIST = new TypeReference<>() {
+    };
+
+    public CreateOrdersBatchHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public CreateOrdersBatchHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public CreateOrdersBatchHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, PricingEngine.fromMenuCache(MenuHandler.menuCache(new MenuRepository(dynamoDb, TABLE_NAME))));
+    }
+
+    public CreateOrdersBatchHandler(DynamoDbAsyncClient dynamoDb, PricingEngine pricing) {
+        this.orderRepository = new OrderRepository(dynamoDb, TABLE_NAME, CONCURRENCY);
+        this.pricing = pricing;
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("CreateOrdersBatch", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        try {
+            long mark = Metrics.start();
+            List<Order> orders = MAPPER.readValue(request.getBody(), ORDER_LIST);
+            Metrics.phase(Phase.DESERIALIZE, mark);
+            if (orders == null || orders.isEmpty() || orders.size() > MAX_ORDERS) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody("Expected between 1 and " + MAX_ORDERS + " orders");
+            }
+            context.getLogger().log("Creating batch of " + orders.size() + " orders");
+
+            BatchOrderResult[] results = new BatchOrderResult[orders.size()];
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            Map<String, Integer> positions = new HashMap<>();
+
+            for (int i = 0; i < orders.size(); i++) {
+                Order order = orders.get(i);
+                String orderId = Optional.ofNullable(order.getId())
+                        .orElseGet(IdGenerator.configured()::next);
+                if (order.getCustomerId() == null || order.getStatus() == null) {
+                    results[i] = new BatchOrderResult(i, orderId, false, "Missing customerId or status");
+                    continue;
+                }
+                long totalCents;
+                try {
+                    totalCents = pricing.price(order);
+                } catch (PricingException e) {
+                    results[i] = new BatchOrderResult(i, orderId, false, e.getMessage());
+                    continue;
+                }
+                String partitionKey = Keys.customer(order.getCustomerId());
+                String sortKey = Keys.order(orderId);
+                // BatchWriteItem rejects the whole call if it contains the same key twice
+                if (positions.putIfAbsent(partitionKey + "|" + sortKey, i) != null) {
+                    results[i] = new BatchOrderResult(i, orderId, false, "Duplicate order id in batch");
+                    continue;
+                }
+
+                order.setId(orderId);
+                mark = Metrics.start();
+                items.add(CreateOrderHandler.buildOrderItem(partitionKey, sortKey, order, totalCents));
+                Metrics.phase(Phase.MAPPING, mark);
+                results[i] = new BatchOrderResult(i, orderId, true, null);
+            }
+
+            // Unprocessed requests come back as new objects, so match them up by key
+            for (Map<String, AttributeValue> item : Futures.join(orderRepository.saveAll(items))) {
+                BatchOrderResult result = results[positions.get(item.get("PK").s() + "|" + item.get("SK").s())];
+                result.setCreated(false);
+                result.setError("Not processed after retries");
+            }
+
+            boolean allCreated = Arrays.stream(results).allMatch(BatchOrderResult::isCreated);
+            mark = Metrics.start();
+            String body = MAPPER.writeValueAsString(results);
+            Metrics.phase(Phase.SERIALIZE, mark);
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(allCreated ? 201 : 207)
+                    .withHeaders(Map.of(
+                            "Access-Control-Allow-Headers", "*",
+                            "Access-Control-Allow-Origin", "*",
+                            "Access-Control-Allow-Methods", "*"
+                    ))
+                    .withBody(body);
+        } catch (Exception e) {
+            context.getLogger().log("Error creating order batch: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(500)
+                    .withBody("Error creating orders");
+        }
+    }
+}
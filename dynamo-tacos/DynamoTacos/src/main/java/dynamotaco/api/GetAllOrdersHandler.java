@@ -4,31 +4,82 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dynamotaco.models.*;
-import dynamotaco.util.TacoUtil;
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.CustomerRepository;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.KeyCursor;
+import dynamotaco.util.OrderJsonCodec;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
-import java.time.ZonedDateTime;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * GET /orders?email=...[&limit=n][&cursor=...][&view=summary][&sort=newest]
+ *
+ * Without {@code limit} every page is followed so the full history is returned. With {@code limit}
+ * a single page is returned and, when more orders exist, the token for the next page is sent in the
+ * {@code X-Next-Cursor} header. The body is a JSON array of orders either way, written page by page
+ * straight from the query response while the next page is already being fetched.
+ *
+ * Orders come in order id order, which for generated ids is creation order; {@code sort=newest}
+ * reverses it, so {@code sort=newest&limit=n} reads just the n most recent orders.
+ *
+ * An email without a profile and without orders is a 404; the customer cache remembers such emails
+ * for a while so repeated requests for them only query their orders, not their profile.
+ */
 public class GetAllOrdersHandler  implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private final DynamoDbClient dynamoDb = DynamoDbClient.create();
-    private static final String TABLE_NAME = System.getenv("TABLE_NAME");
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-    private Context loggingContext;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_LIMIT = 100;
+
+    private final OrderRepository orders;
+    private final CustomerRepository customers;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    public GetAllOrdersHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public GetAllOrdersHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public GetAllOrdersHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, CustomerRepository.newCache());
+    }
+
+    public GetAllOrdersHandler(DynamoDbAsyncClient dynamoDb, CustomerCache customerCache) {
+        this.orders = new OrderRepository(dynamoDb, TABLE_NAME);
+        this.customers = new CustomerRepository(dynamoDb, TABLE_NAME, customerCache);
+    }
 
+    private record Written(int orders, String nextCursor) {
+    }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("GetAllOrders", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
         try {
-            loggingContext = context;
-            loggingContext.getLogger().log("Retrieving orders");
-            Map<String, String> queryParams = request.getQueryStringParameters();
+            context.getLogger().log("Retrieving orders");
+            Map<String, String> queryParams = Optional.ofNullable(request.getQueryStringParameters()).orElse(Map.of());
             String email = queryParams.get("email");
 
             if (email == null) {
@@ -37,16 +88,51 @@ public class GetAllOrdersHandler  implements RequestHandler<APIGatewayProxyReque
                         .withBody("Missing email");
             }
 
-            List<Order> orders = getAllOrders(email);
+            Integer limit;
+            Map<String, AttributeValue> startKey;
+            boolean newestFirst;
+            try {
+                limit = parseLimit(queryParams.get("limit"));
+                newestFirst = parseNewestFirst(queryParams.get("sort"));
+                startKey = queryParams.get("cursor") == null ? null
+                        : KeyCursor.decode(queryParams.get("cursor"), Keys.PK, Keys.customer(email));
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
+            boolean summary = "summary".equals(queryParams.get("view"));
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Written written = writeOrders(email, limit, startKey, summary, newestFirst, body, context);
+            if (written.orders() == 0 && startKey == null) {
+                CustomerCache.Lookup customer = customers.cache().get(email);
+                if (customer.status() == CustomerCache.Status.ABSENT
+                        || customer.status() == CustomerCache.Status.MISS && !customerExists(email, context)) {
+                    return customerNotFound();
+                }
+            }
+
+            Map<String, String> headers = new HashMap<>(Map.of(
+                    "Access-Control-Allow-Headers", "*",
+                    "Access-Control-Allow-Origin", "*",
+                    "Access-Control-Allow-Methods", "*",
+                    "Access-Control-Expose-Headers", NEXT_CURSOR_HEADER
+            ));
+            if (written.nextCursor() != null) {
+                headers.put(NEXT_CURSOR_HEADER, written.nextCursor());
+            }
 
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(200)
-                    .withHeaders(Map.of(
-                            "Access-Control-Allow-Headers", "*",
-                            "Access-Control-Allow-Origin", "*",
-                            "Access-Control-Allow-Methods", "*"
-                    ))
-                    .withBody(MAPPER.writeValueAsString(orders));
+                    .withHeaders(headers)
+                    .withBody(body.toString(StandardCharsets.UTF_8));
+        } catch (ProvisionedThroughputExceededException | RequestLimitExceededException e) {
+            context.getLogger().log("Throttled retrieving orders: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(503)
+                    .withHeaders(Map.of("Retry-After", "1"))
+                    .withBody("Too many requests, try again shortly");
         } catch (Exception e) {
             context.getLogger().log("Error retrieving ordesr: " + e.getMessage());
             return new APIGatewayProxyResponseEvent()
@@ -56,27 +142,81 @@ public class GetAllOrdersHandler  implements RequestHandler<APIGatewayProxyReque
 
     }
 
-    private List<Order> getAllOrders(String email) {
-        loggingContext.getLogger().log("Retrieving orders for email: " + email);
-        QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(TABLE_NAME)
-                .keyConditionExpression("PK = :pk AND begins_with(SK, :skPrefix)")
-                .expressionAttributeValues(Map.of(
-                        ":pk", AttributeValue.builder().s("CUSTOMER#" + email).build(),
-                        ":skPrefix", AttributeValue.builder().s("ORDER#").build()
-                ))
-                .build();
-
-        QueryResponse response = dynamoDb.query(queryRequest);
+    public CustomerCache getCustomerCache() {
+        return customers.cache();
+    }
 
-        List<Order> orders = response.items().stream()
-                .map(TacoUtil::mapToOrder)
-                .collect(Collectors.toList());
+    private Written writeOrders(String email, Integer limit, Map<String, AttributeValue> startKey, boolean summary,
+                                boolean newestFirst, ByteArrayOutputStream out, Context context) throws IOException {
+        context.getLogger().log("Retrieving orders for customer: " + email);
+        Map<String, AttributeValue> lastEvaluatedKey;
+        int written = 0;
+        CompletableFuture<OrderRepository.Page> next = orders.findByCustomer(email, limit, startKey, summary, newestFirst);
+
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            do {
+                OrderRepository.Page page = Futures.join(next);
+                lastEvaluatedKey = page.lastEvaluatedKey();
+                // Ask for the following page before writing this one so the round trip overlaps the serialization
+                next = limit == null && page.hasMore()
+                        ? orders.findByCustomer(email, null, lastEvaluatedKey, summary, newestFirst)
+                        : null;
+                long mark = Metrics.start();
+                for (Map<String, AttributeValue> item : page.items()) {
+                    if (summary) {
+                        OrderJsonCodec.writeSummary(generator, item);
+                    } else {
+                        OrderJsonCodec.writeOrder(generator, item);
+                    }
+                }
+                Metrics.phase(Phase.SERIALIZE, mark);
+                written += page.items().size();
+            } while (next != null);
+            generator.writeEndArray();
+        }
 
+        return new Written(written, KeyCursor.encode(lastEvaluatedKey));
+    }
 
-        return orders;
+    // A failed profile lookup falls back to the empty list
+    private boolean customerExists(String email, Context context) {
+        try {
+            return Futures.join(customers.load(email)).isPresent();
+        } catch (RuntimeException e) {
+            context.getLogger().log("Error looking up customer: " + e.getMessage());
+            return true;
+        }
     }
 
+    private static APIGatewayProxyResponseEvent customerNotFound() {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(404)
+                .withBody("Customer not found");
+    }
 
+    private static boolean parseNewestFirst(String sort) {
+        if (sort == null || sort.equals("oldest")) {
+            return false;
+        }
+        if (sort.equals("newest")) {
+            return true;
+        }
+        throw new IllegalArgumentException("sort must be newest or oldest");
+    }
 
+    private static Integer parseLimit(String limit) {
+        if (limit == null) {
+            return null;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value < 1 || value > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+    }
 }
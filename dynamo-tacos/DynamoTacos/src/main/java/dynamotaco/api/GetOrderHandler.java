@@ -1,6 +1,15 @@
 package dynamotaco.api;
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
 import dynamotaco.models.*;
-import dynamotaco.util.TacoUtil;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.CustomerRepository;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.OrderJsonCodec;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
@@ -15,14 +24,47 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 
+/**
+ * GET /order?email=...&orderId=...[&fields=status,totalPrice]
+ *
+ * {@code fields} picks which {@link OrderField}s to return. Only their attributes are read, and the
+ * JSON has only those fields, so polling for status does not read and write every taco and topping.
+ *
+ * When an order is not found the profile is looked up (and cached) to tell an unknown customer
+ * from an unknown order; an email the customer cache knows to have no profile skips that read. The
+ * order is always read first, since another container may have placed it after the email was
+ * cached as absent.
+ */
 public class GetOrderHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private final DynamoDbClient dynamoDb = DynamoDbClient.create();
-    private static final String TABLE_NAME = System.getenv("TABLE_NAME");
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final OrderRepository orders;
+    private final CustomerRepository customers;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    public GetOrderHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public GetOrderHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public GetOrderHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, CustomerRepository.newCache());
+    }
+
+    public GetOrderHandler(DynamoDbAsyncClient dynamoDb, CustomerCache customerCache) {
+        this.orders = new OrderRepository(dynamoDb, TABLE_NAME);
+        this.customers = new CustomerRepository(dynamoDb, TABLE_NAME, customerCache);
+    }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("GetOrder", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
         try {
             Map<String, String> queryParams = request.getQueryStringParameters();
             String email = queryParams.get("email");
@@ -34,28 +76,31 @@ public class GetOrderHandler implements RequestHandler<APIGatewayProxyRequestEve
                         .withBody("Missing email or orderId");
             }
 
-            String partitionKey = "CUSTOMER#" + email;
-            String sortKey = "ORDER#" + orderId;
-
-            Map<String, AttributeValue> key = new HashMap<>();
-            key.put("PK", AttributeValue.builder().s(partitionKey).build());
-            key.put("SK", AttributeValue.builder().s(sortKey).build());
-
-            GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .key(key)
-                .build();
+            Set<OrderField> fields;
+            try {
+                fields = OrderField.parse(queryParams.get("fields"));
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
 
-            GetItemResponse response = dynamoDb.getItem(getItemRequest);
+            Optional<Map<String, AttributeValue>> found = Futures.join(orders.find(email, orderId, fields));
 
-            if (!response.hasItem()) {
+            if (found.isEmpty()) {
+                CustomerCache.Lookup customer = customers.cache().get(email);
+                if (customer.status() == CustomerCache.Status.ABSENT
+                        || customer.status() == CustomerCache.Status.MISS && !customerExists(email, context)) {
+                    return customerNotFound();
+                }
                 return new APIGatewayProxyResponseEvent()
                     .withStatusCode(404)
                     .withBody("Order not found");
             }
 
-            Map<String, AttributeValue> item = response.item();
-            Order order = TacoUtil.mapToOrder(item);
+            long mark = Metrics.start();
+            String body = OrderJsonCodec.writeOrder(found.get(), fields);
+            Metrics.phase(Phase.SERIALIZE, mark);
 
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(200)
@@ -64,8 +109,14 @@ public class GetOrderHandler implements RequestHandler<APIGatewayProxyRequestEve
                     "Access-Control-Allow-Origin", "*",
                     "Access-Control-Allow-Methods", "*"
                 ))
-                .withBody(MAPPER.writeValueAsString(order));
+                .withBody(body);
 
+        } catch (ProvisionedThroughputExceededException | RequestLimitExceededException e) {
+            context.getLogger().log("Throttled retrieving order: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(503)
+                .withHeaders(Map.of("Retry-After", "1"))
+                .withBody("Too many requests, try again shortly");
         } catch (Exception e) {
             context.getLogger().log("Error retrieving order: " + e.getMessage());
             return new APIGatewayProxyResponseEvent()
@@ -73,4 +124,24 @@ public class GetOrderHandler implements RequestHandler<APIGatewayProxyRequestEve
                 .withBody("Error retrieving order");
         }
     }
+
+    public CustomerCache getCustomerCache() {
+        return customers.cache();
+    }
+
+    // A failed profile lookup only costs the more specific message
+    private boolean customerExists(String email, Context context) {
+        try {
+            return Futures.join(customers.load(email)).isPresent();
+        } catch (RuntimeException e) {
+            context.getLogger().log("Error looking up customer: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private static APIGatewayProxyResponseEvent customerNotFound() {
+        return new APIGatewayProxyResponseEvent()
+            .withStatusCode(404)
+            .withBody("Customer not found");
+    }
 }
\ No newline at end of file
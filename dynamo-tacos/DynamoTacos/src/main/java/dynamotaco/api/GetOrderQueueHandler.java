@@ -0,0 +1,165 @@
+package dynamotaco.api;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.KeyCursor;
+import dynamotaco.util.OrderDates;
+import dynamotaco.util.OrderJsonCodec;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * GET /orders/queue[?status=RECEIVED][&from=...][&to=...][&limit=n][&cursor=...]
+ *
+ * The kitchen display's view of the orders in one status, oldest first, read from the status index
+ * rather than from each customer's partition. {@code from} and {@code to} are ISO-8601 instants
+ * bounding the order date, both inclusive; they are compared in the fixed-width {@link OrderDates}
+ * form the dates are stored in, whatever offset or precision the client sent. One page is returned per call; the token for the next one is sent in the
+ * {@code X-Next-Cursor} header.
+ */
+public class GetOrderQueueHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    private static final int DEFAULT_LIMIT = 25;
+    private static final int MAX_LIMIT = 100;
+
+    private final OrderRepository orders;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    public GetOrderQueueHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public GetOrderQueueHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public GetOrderQueueHandler(DynamoDbAsyncClient dynamoDb) {
+        this(new OrderRepository(dynamoDb, TABLE_NAME));
+    }
+
+    public GetOrderQueueHandler(OrderRepository orders) {
+        this.orders = orders;
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("GetOrderQueue", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        try {
+            Map<String, String> queryParams = Optional.ofNullable(request.getQueryStringParameters()).orElse(Map.of());
+
+            OrderStatus status;
+            String from;
+            String to;
+            int limit;
+            Map<String, AttributeValue> startKey;
+            try {
+                status = parseStatus(queryParams.getOrDefault("status", OrderStatus.RECEIVED.toString()));
+                Instant fromInstant = parseInstant("from", queryParams.get("from"));
+                Instant toInstant = parseInstant("to", queryParams.get("to"));
+                if (fromInstant != null && toInstant != null && fromInstant.isAfter(toInstant)) {
+                    throw new IllegalArgumentException("from must not be after to");
+                }
+                from = fromInstant == null ? null : OrderDates.lowerBound(queryParams.get("from"));
+                to = toInstant == null ? null : OrderDates.upperBound(queryParams.get("to"));
+                limit = parseLimit(queryParams.get("limit"));
+                startKey = queryParams.get("cursor") == null ? null
+                        : KeyCursor.decode(queryParams.get("cursor"), "Status", status.toString());
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
+
+            OrderRepository.Page page = Futures.join(orders.findByStatus(status, from, to, limit, startKey));
+
+            long mark = Metrics.start();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (JsonGenerator generator = MAPPER.getFactory().createGenerator(body)) {
+                generator.writeStartArray();
+                for (Map<String, AttributeValue> item : page.items()) {
+                    OrderJsonCodec.writeQueueEntry(generator, item);
+                }
+                generator.writeEndArray();
+            }
+            Metrics.phase(Phase.SERIALIZE, mark);
+
+            Map<String, String> headers = new HashMap<>(Map.of(
+                    "Access-Control-Allow-Headers", "*",
+                    "Access-Control-Allow-Origin", "*",
+                    "Access-Control-Allow-Methods", "*",
+                    "Access-Control-Expose-Headers", GetAllOrdersHandler.NEXT_CURSOR_HEADER
+            ));
+            String nextCursor = KeyCursor.encode(page.lastEvaluatedKey());
+            if (nextCursor != null) {
+                headers.put(GetAllOrdersHandler.NEXT_CURSOR_HEADER, nextCursor);
+            }
+
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(200)
+                    .withHeaders(headers)
+                    .withBody(body.toString(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            context.getLogger().log("Error retrieving order queue: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(500)
+                    .withBody("Error retrieving order queue");
+        }
+    }
+
+    private static OrderStatus parseStatus(String status) {
+        try {
+            return OrderStatus.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown status " + status);
+        }
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return OrderDates.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 instant such as 2024-10-28T12:00:00Z");
+        }
+    }
+
+    private static int parseLimit(String limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value < 1 || value > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+    }
+}
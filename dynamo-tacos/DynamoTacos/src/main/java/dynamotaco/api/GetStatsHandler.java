@@ -0,0 +1,177 @@
+package dynamotaco.api;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.StatsRepository;
+import dynamotaco.stats.Granularity;
+import dynamotaco.stats.Rollup;
+import dynamotaco.stats.SalesDimension;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * GET /stats?window=MINUTE|HOUR|DAY[&start=...] or GET /stats?last=n
+ *
+ * Sales totals served from the rollups the stream consumer persists. {@code window} reads the
+ * tumbling window containing {@code start} (an ISO-8601 UTC instant, now by default) with a single
+ * Query. {@code last} is a sliding window over the last {@code n} minutes, up to an hour, summed
+ * from their minute rollups, which are queried in parallel. Revenue is in dollars.
+ */
+public class GetStatsHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    private static final int MAX_SLIDING_MINUTES = 60;
+
+    private final StatsRepository stats;
+    private final LongSupplier clock;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    public GetStatsHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public GetStatsHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public GetStatsHandler(DynamoDbAsyncClient dynamoDb) {
+        this(new StatsRepository(dynamoDb, TABLE_NAME), System::currentTimeMillis);
+    }
+
+    public GetStatsHandler(StatsRepository stats, LongSupplier clock) {
+        this.stats = stats;
+        this.clock = clock;
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("GetStats", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        try {
+            Map<String, String> queryParams = Optional.ofNullable(request.getQueryStringParameters()).orElse(Map.of());
+
+            Granularity granularity;
+            long start;
+            int windows;
+            try {
+                if (queryParams.containsKey("last")) {
+                    if (queryParams.containsKey("window") || queryParams.containsKey("start")) {
+                        throw new IllegalArgumentException("last cannot be combined with window or start");
+                    }
+                    granularity = Granularity.MINUTE;
+                    windows = parseLast(queryParams.get("last"));
+                    start = granularity.windowStart(clock.getAsLong()) - (windows - 1) * granularity.millis();
+                } else {
+                    granularity = Granularity.parse(queryParams.getOrDefault("window", "HOUR"));
+                    windows = 1;
+                    start = granularity.windowStart(parseStart(queryParams.get("start")));
+                }
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
+
+            List<CompletableFuture<List<Rollup>>> reads = new ArrayList<>(windows);
+            for (int i = 0; i < windows; i++) {
+                reads.add(stats.find(granularity, start + i * granularity.millis()));
+            }
+            Map<SalesDimension, Map<String, long[]>> totals = new EnumMap<>(SalesDimension.class);
+            for (CompletableFuture<List<Rollup>> read : reads) {
+                for (Rollup rollup : Futures.join(read)) {
+                    long[] total = totals.computeIfAbsent(rollup.dimension(), d -> new TreeMap<>())
+                            .computeIfAbsent(rollup.name(), n -> new long[2]);
+                    total[0] += rollup.count();
+                    total[1] += rollup.revenueCents();
+                }
+            }
+
+            long mark = Metrics.start();
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("start", Instant.ofEpochMilli(start).toString());
+            body.put("end", Instant.ofEpochMilli(start + windows * granularity.millis()).toString());
+            body.put("orders", total(totals.getOrDefault(SalesDimension.ORDERS, Map.of()).get("")));
+            body.put("statuses", named(totals.get(SalesDimension.STATUS)));
+            body.put("tacos", named(totals.get(SalesDimension.TACO)));
+            body.put("toppings", named(totals.get(SalesDimension.TOPPING)));
+            body.put("sides", named(totals.get(SalesDimension.SIDE)));
+            String json = MAPPER.writeValueAsString(body);
+            Metrics.phase(Phase.SERIALIZE, mark);
+
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(200)
+                    .withHeaders(Map.of(
+                            "Access-Control-Allow-Headers", "*",
+                            "Access-Control-Allow-Origin", "*",
+                            "Access-Control-Allow-Methods", "*"
+                    ))
+                    .withBody(json);
+        } catch (Exception e) {
+            context.getLogger().log("Error retrieving sales stats: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(500)
+                    .withBody("Error retrieving sales stats");
+        }
+    }
+
+    private static Map<String, Object> named(Map<String, long[]> totals) {
+        Map<String, Object> named = new LinkedHashMap<>();
+        if (totals != null) {
+            totals.forEach((name, total) -> named.put(name, total(total)));
+        }
+        return named;
+    }
+
+    private static Map<String, Object> total(long[] total) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("count", total == null ? 0 : total[0]);
+        json.put("revenue", PricingEngine.toDollars(total == null ? 0 : total[1]));
+        return json;
+    }
+
+    private long parseStart(String start) {
+        if (start == null) {
+            return clock.getAsLong();
+        }
+        try {
+            return Instant.parse(start).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("start must be an ISO-8601 instant such as 2024-10-28T12:00:00Z");
+        }
+    }
+
+    private static int parseLast(String last) {
+        try {
+            int minutes = Integer.parseInt(last);
+            if (minutes < 1 || minutes > MAX_SLIDING_MINUTES) {
+                throw new IllegalArgumentException("last must be between 1 and " + MAX_SLIDING_MINUTES);
+            }
+            return minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("last must be a number of minutes");
+        }
+    }
+}
@@ -4,52 +4,66 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
-import dynamotaco.models.FoodItemType;
+import dynamotaco.cache.MenuCache;
+import dynamotaco.metrics.Metrics;
 import dynamotaco.models.MenuItem;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.MenuRepository;
+import dynamotaco.util.Config;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
-import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class MenuHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private final DynamoDbClient dynamoDb = DynamoDbClient.create();
-    private static final String TABLE_NAME = System.getenv("TABLE_NAME");
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final String MENU_PARTITION = MenuRepository.MENU_PARTITION;
+    public static final String VERSION_SORT_KEY = MenuRepository.VERSION_SORT_KEY;
 
-    @Override
-    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
-        try {
-            // Query DynamoDB for items with PK = "MENU"
-            Map<String, AttributeValue> expressionValues = new HashMap<>();
-            expressionValues.put(":menuPartition", AttributeValue.builder().s("MENU").build());
+    private final MenuRepository menu;
+    private final MenuCache menuCache;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+    private static final long CACHE_TTL_SECONDS = Config.getLong("MENU_CACHE_TTL_SECONDS", "menu.cache.ttlSeconds", 300);
+    private static final long CACHE_STALE_SECONDS = Config.getLong("MENU_CACHE_STALE_SECONDS", "menu.cache.staleSeconds", 3600);
 
-            QueryRequest queryRequest = QueryRequest.builder()
-                    .tableName(TABLE_NAME)
-                    .keyConditionExpression("PK = :menuPartition")
-                    .expressionAttributeValues(expressionValues)
-                    .build();
+    public MenuHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
 
-            QueryResponse queryResponse = dynamoDb.query(queryRequest);
-            List<Map<String, AttributeValue>> items = queryResponse.items();
+    public MenuHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public MenuHandler(DynamoDbAsyncClient dynamoDb) {
+        this.menu = new MenuRepository(dynamoDb, TABLE_NAME);
+        this.menuCache = menuCache(menu);
+    }
+
+    /**
+     * A menu cache with this deployment's TTL and stale window, for handlers that need menu data.
+     */
+    static MenuCache menuCache(MenuRepository menu) {
+        return new MenuCache(menu.cacheLoader(), MAPPER, CACHE_TTL_SECONDS, CACHE_STALE_SECONDS);
+    }
 
-            // Convert DynamoDB items to MenuItem objects
-            List<MenuItem> menuItems = items.stream()
-                    .map(MenuHandler::convertToMenuItem)
-                    .collect(Collectors.toList());
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("Menu", request, context, this::handle);
+    }
 
-            String jsonResponse = MAPPER.writeValueAsString(menuItems);
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        try {
+            MenuCache.Result result = menuCache.lookup();
 
-            // Return response with JSON payload
+            // Return response with the pre-serialized JSON payload
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(200)
-                    .withBody(jsonResponse);
+                    .withHeaders(Map.of("X-Menu-Cache", result.outcome().toString()))
+                    .withBody(result.snapshot().json());
         } catch (Exception e) {
             context.getLogger().log("Error fetching menu items: " + e.getMessage());
             return new APIGatewayProxyResponseEvent()
@@ -58,19 +72,12 @@ public class MenuHandler implements RequestHandler<APIGatewayProxyRequestEvent,
         }
     }
 
-    // Helper method to convert DynamoDB item to MenuItem object
-    private static MenuItem convertToMenuItem(Map<String, AttributeValue> item) {
-        MenuItem menuItem = new MenuItem();
-        menuItem.setId(item.get("id").s());
-        menuItem.setName(item.get("name").s());
-        menuItem.setPrice(Double.parseDouble(item.get("price").n()));
-        menuItem.setDescription(item.get("description") != null ? item.get("description").s() : null);
-
-        // Parse FoodItemType from string, default to null if not set
-        if (item.containsKey("foodItemType")) {
-            menuItem.setFoodItemType(FoodItemType.valueOf(item.get("foodItemType").s()));
-        }
+    public MenuCache getMenuCache() {
+        return menuCache;
+    }
 
-        return menuItem;
+    // Helper method to convert DynamoDB item to MenuItem object
+    public static MenuItem convertToMenuItem(Map<String, AttributeValue> item) {
+        return MenuRepository.toMenuItem(item);
     }
 }
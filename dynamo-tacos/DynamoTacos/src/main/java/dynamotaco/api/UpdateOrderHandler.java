@@ -5,23 +5,76 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.models.OrderField;
 import dynamotaco.models.UpdateOrderRequest;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.stream.OrderStatusBroadcaster;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.OrderJsonCodec;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * PUT /order[?fields=status] with {@code {"email", "orderId", "status", "expectedStatus"}}.
+ *
+ * Without {@code fields} nothing is read back and the answer is {@code "success"}. With it, the
+ * answer is the order with those header {@link OrderField}s, read back with the smallest
+ * ReturnValues that covers them: {@code UPDATED_NEW} for id, customerId and status, {@code ALL_NEW}
+ * once the client asks for anything the update does not change.
+ */
 public class UpdateOrderHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private final DynamoDbClient dynamoDb = DynamoDbClient.create();
-    private static final String TABLE_NAME = System.getenv("TABLE_NAME");
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // UPDATED_NEW returns the new status; the key comes from the request
+    private static final Set<OrderField> UPDATED_FIELDS = EnumSet.of(OrderField.ID, OrderField.CUSTOMER_ID, OrderField.STATUS);
+
+    private final OrderRepository orders;
+    private final OrderStatusBroadcaster broadcaster;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    public UpdateOrderHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public UpdateOrderHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public UpdateOrderHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, new OrderStatusBroadcaster());
+    }
+
+    /**
+     * @param broadcaster told about every status this handler sets, for {@link WaitOrderStatusHandler}s
+     *                    in the same process
+     */
+    public UpdateOrderHandler(DynamoDbAsyncClient dynamoDb, OrderStatusBroadcaster broadcaster) {
+        this.orders = new OrderRepository(dynamoDb, TABLE_NAME);
+        this.broadcaster = broadcaster;
+    }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("UpdateOrder", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
         try {
+            long mark = Metrics.start();
             UpdateOrderRequest updateRequest = MAPPER.readValue(request.getBody(), UpdateOrderRequest.class);
+            Metrics.phase(Phase.DESERIALIZE, mark);
 
             if (updateRequest.getEmail() == null || updateRequest.getOrderId() == null || updateRequest.getStatus() == null) {
                 return new APIGatewayProxyResponseEvent()
@@ -30,30 +83,47 @@ public class UpdateOrderHandler implements RequestHandler<APIGatewayProxyRequest
             }
 
 
-            String partitionKey = "CUSTOMER#" + updateRequest.getEmail();
-            String sortKey = "ORDER#" + updateRequest.getOrderId();
+            Set<OrderField> fields;
+            try {
+                fields = returnedFields(request.getQueryStringParameters());
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
+
+            OrderRepository.Transition transition;
+            try {
+                transition = new OrderRepository.Transition(updateRequest.getEmail(), updateRequest.getOrderId(),
+                        updateRequest.getExpectedStatus(), updateRequest.getStatus());
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(409)
+                        .withBody(e.getMessage());
+            }
 
-            UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
-                    .tableName(TABLE_NAME)
-                    .key(Map.of(
-                            "PK", AttributeValue.builder().s(partitionKey).build(),
-                            "SK", AttributeValue.builder().s(sortKey).build()
-                    ))
-                    .updateExpression("SET #status = :status")
-                    .expressionAttributeNames(Map.of("#status", "Status"))
-                    .expressionAttributeValues(Map.of(
-                            ":status", AttributeValue.builder().s(updateRequest.getStatus().toString()).build()
-                    ))
-                    .conditionExpression("attribute_exists(PK) AND attribute_exists(SK)")
-                    .returnValues(ReturnValue.ALL_NEW)
-                    .build();
             context.getLogger().log("Updating order with request: " + updateRequest.toString());
-            UpdateItemResponse response = dynamoDb.updateItem(updateItemRequest);
+            ReturnValue returnValues = fields == null ? ReturnValue.NONE
+                    : UPDATED_FIELDS.containsAll(fields) ? ReturnValue.UPDATED_NEW : ReturnValue.ALL_NEW;
+            Map<String, AttributeValue> updated;
+            try {
+                updated = Futures.join(orders.updateStatus(transition, returnValues));
+            } catch (ConditionalCheckFailedException e) {
+                return conflictOrNotFound(transition);
+            }
             context.getLogger().log("Updated!");
+            broadcaster.publish(transition.email(), transition.orderId(), transition.status());
 
-
-
-            context.getLogger().log("Returning ");
+            mark = Metrics.start();
+            String body;
+            if (fields == null) {
+                body = MAPPER.writeValueAsString("success");
+            } else {
+                Map<String, AttributeValue> order = new HashMap<>(updated);
+                order.putAll(Keys.orderKey(transition.email(), transition.orderId()));
+                body = OrderJsonCodec.writeOrder(order, fields);
+            }
+            Metrics.phase(Phase.SERIALIZE, mark);
 
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(200)
@@ -62,12 +132,8 @@ public class UpdateOrderHandler implements RequestHandler<APIGatewayProxyRequest
                             "Access-Control-Allow-Origin", "*",
                             "Access-Control-Allow-Methods", "*"
                     ))
-                    .withBody(MAPPER.writeValueAsString("success"));
+                    .withBody(body);
 
-        } catch (ConditionalCheckFailedException e) {
-            return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(404)
-                    .withBody("Order not found");
         } catch (Exception e) {
             context.getLogger().log("Error updating order: " + e.getMessage());
             return new APIGatewayProxyResponseEvent()
@@ -76,4 +142,30 @@ public class UpdateOrderHandler implements RequestHandler<APIGatewayProxyRequest
         }
     }
 
+    // Null when the client did not ask for the order back
+    private static Set<OrderField> returnedFields(Map<String, String> queryParams) {
+        String requested = queryParams == null ? null : queryParams.get("fields");
+        // Unlike a read, an update returns nothing unless fields are named, so a blank list names none
+        if (requested == null || requested.isBlank()) {
+            return null;
+        }
+        Set<OrderField> fields = OrderField.parse(requested);
+        for (OrderField field : fields) {
+            if (field.isLineItems()) {
+                throw new IllegalArgumentException("An update returns only id, customerId, orderDate, totalPrice and status");
+            }
+        }
+        return fields;
+    }
+
+    // The condition fails both for a missing order and for one in a status it cannot move from
+    private APIGatewayProxyResponseEvent conflictOrNotFound(OrderRepository.Transition transition) {
+        return Futures.join(orders.currentStatus(transition.email(), transition.orderId()))
+                .map(status -> new APIGatewayProxyResponseEvent()
+                        .withStatusCode(409)
+                        .withBody("Order is " + status + ", cannot move to " + transition.status()))
+                .orElseGet(() -> new APIGatewayProxyResponseEvent()
+                        .withStatusCode(404)
+                        .withBody("Order not found"));
+    }
 }
@@ -0,0 +1,156 @@
+package dynamotaco.api;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.models.BatchStatusRequest;
+import dynamotaco.models.BatchStatusResult;
+import dynamotaco.models.StatusUpdateOutcome;
+import dynamotaco.models.UpdateOrderRequest;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.stream.OrderStatusBroadcaster;
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.util.*;
+
+/**
+ * POST /orders/status with {@code {"atomic": false, "updates": [{"email", "orderId", "status",
+ * "expectedStatus"}, ...]}}, for bumping a whole rack of tickets at once. Each update only applies
+ * while the order is in {@code expectedStatus}, or when that is left out, in a status the
+ * {@link dynamotaco.models.OrderStatus} state machine allows moving from.
+ *
+ * An atomic request of up to 100 updates is one TransactWriteItems call that applies all of them
+ * or none. Otherwise every order gets its own conditional UpdateItem, several at a time, and the
+ * ones that can move do. The response lists the outcome of every update in request order.
+ */
+public class UpdateOrdersStatusHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    private static final int MAX_UPDATES = 500;
+    private static final int MAX_ATOMIC_UPDATES = 100;
+
+    private final OrderRepository orders;
+    private final OrderStatusBroadcaster broadcaster;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+    private static final int CONCURRENCY = Config.getInt("STATUS_UPDATE_CONCURRENCY", "status.update.concurrency", 16);
+
+    public UpdateOrdersStatusHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public UpdateOrdersStatusHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public UpdateOrdersStatusHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, new OrderStatusBroadcaster());
+    }
+
+    public UpdateOrdersStatusHandler(DynamoDbAsyncClient dynamoDb, OrderStatusBroadcaster broadcaster) {
+        this.orders = new OrderRepository(dynamoDb, TABLE_NAME, CONCURRENCY);
+        this.broadcaster = broadcaster;
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("UpdateOrdersStatus", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        try {
+            long mark = Metrics.start();
+            BatchStatusRequest batch = MAPPER.readValue(request.getBody(), BatchStatusRequest.class);
+            Metrics.phase(Phase.DESERIALIZE, mark);
+            List<UpdateOrderRequest> updates = batch == null ? null : batch.getUpdates();
+            int maxUpdates = batch != null && batch.isAtomic() ? MAX_ATOMIC_UPDATES : MAX_UPDATES;
+            if (updates == null || updates.isEmpty() || updates.size() > maxUpdates) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody("Expected between 1 and " + maxUpdates + " updates");
+            }
+            context.getLogger().log("Updating the status of " + updates.size() + " orders, atomic " + batch.isAtomic());
+
+            BatchStatusResult[] results = new BatchStatusResult[updates.size()];
+            List<OrderRepository.Transition> transitions = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            Set<String> keys = new HashSet<>();
+            for (int i = 0; i < updates.size(); i++) {
+                UpdateOrderRequest update = updates.get(i);
+                String orderId = update == null ? null : update.getOrderId();
+                if (update == null || update.getEmail() == null || orderId == null || update.getStatus() == null) {
+                    results[i] = invalid(i, orderId, "Missing required fields: email, orderId, or status");
+                    continue;
+                }
+                // A transaction may not name the same item twice, and in parallel the second update would race the first
+                if (!keys.add(update.getEmail() + "|" + orderId)) {
+                    results[i] = invalid(i, orderId, "Duplicate order in request");
+                    continue;
+                }
+                try {
+                    transitions.add(new OrderRepository.Transition(update.getEmail(), orderId,
+                            update.getExpectedStatus(), update.getStatus()));
+                    positions.add(i);
+                } catch (IllegalArgumentException e) {
+                    results[i] = invalid(i, orderId, e.getMessage());
+                }
+            }
+
+            if (batch.isAtomic() && transitions.size() < updates.size()) {
+                for (int position : positions) {
+                    results[position] = new BatchStatusResult(position, updates.get(position).getOrderId(),
+                            StatusUpdateOutcome.ABORTED, null, null);
+                }
+                return respond(400, results);
+            }
+
+            List<OrderRepository.TransitionResult> outcomes = transitions.isEmpty()
+                    ? List.of()
+                    : Futures.join(batch.isAtomic() ? orders.transitionAtomically(transitions) : orders.transitionEach(transitions));
+            for (int j = 0; j < outcomes.size(); j++) {
+                int position = positions.get(j);
+                OrderRepository.TransitionResult outcome = outcomes.get(j);
+                results[position] = new BatchStatusResult(position, updates.get(position).getOrderId(),
+                        outcome.outcome(), outcome.current(), null);
+                if (outcome.outcome() == StatusUpdateOutcome.UPDATED) {
+                    OrderRepository.Transition transition = transitions.get(j);
+                    broadcaster.publish(transition.email(), transition.orderId(), transition.status());
+                }
+            }
+
+            boolean allUpdated = Arrays.stream(results).allMatch(result -> result.getOutcome() == StatusUpdateOutcome.UPDATED);
+            return respond(allUpdated ? 200 : batch.isAtomic() ? 409 : 207, results);
+        } catch (Exception e) {
+            context.getLogger().log("Error updating order statuses: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(500)
+                    .withBody("Error updating orders");
+        }
+    }
+
+    private static BatchStatusResult invalid(int index, String orderId, String error) {
+        return new BatchStatusResult(index, orderId, StatusUpdateOutcome.INVALID, null, error);
+    }
+
+    private static APIGatewayProxyResponseEvent respond(int statusCode, BatchStatusResult[] results) throws Exception {
+        long mark = Metrics.start();
+        String body = MAPPER.writeValueAsString(results);
+        Metrics.phase(Phase.SERIALIZE, mark);
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(statusCode)
+                .withHeaders(Map.of(
+                        "Access-Control-Allow-Headers", "*",
+                        "Access-Control-Allow-Origin", "*",
+                        "Access-Control-Allow-Methods", "*"
+                ))
+                .withBody(body);
+    }
+}
@@ -0,0 +1,205 @@
+package dynamotaco.api;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.metrics.Phase;
+import dynamotaco.models.OrderField;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.stream.OrderStatusBroadcaster;
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.OrderJsonCodec;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * GET /order/status?email=...&orderId=...&since=RECEIVED[&wait=25]
+ *
+ * Long-polls an order's status. Answers {@code {"id", "status"}} as soon as the status is other
+ * than {@code since}, or with {@code since} itself once {@code wait} seconds have passed, after
+ * which the client asks again. Without {@code since} it answers with the current status at once.
+ *
+ * The status is read once, consistently, after subscribing, so a change made between the client's
+ * last answer and the subscription is not missed. From then on the handler waits on the
+ * {@link OrderStatusBroadcaster} that the status writers in this process publish to, and reads
+ * nothing. Where orders are also updated by other processes, as with separate Lambda functions or
+ * several servers, {@code STATUS_WAIT_RECHECK_MILLIS} reads the status again at that interval.
+ * Those rechecks are eventually consistent: a change they miss by a moment is seen by the next one.
+ */
+public class WaitOrderStatusHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    // API Gateway gives up on an integration after 29 seconds
+    private static final int MAX_WAIT_SECONDS = Config.getInt("STATUS_WAIT_MAX_SECONDS", "status.wait.maxSeconds", 25);
+    private static final long RECHECK_MILLIS = Config.getLong("STATUS_WAIT_RECHECK_MILLIS", "status.wait.recheckMillis", 0);
+    private static final Set<OrderField> FIELDS = EnumSet.of(OrderField.ID, OrderField.STATUS);
+
+    private final OrderRepository orders;
+    private final OrderStatusBroadcaster broadcaster;
+    private final Duration recheck;
+    private static final String TABLE_NAME = HandlerBootstrap.TABLE_NAME;
+
+    public WaitOrderStatusHandler() {
+        this(HandlerBootstrap.dynamoDbAsync());
+    }
+
+    public WaitOrderStatusHandler(DynamoDbClient dynamoDb) {
+        this(BlockingAsyncClient.wrap(dynamoDb));
+    }
+
+    public WaitOrderStatusHandler(DynamoDbAsyncClient dynamoDb) {
+        this(dynamoDb, new OrderStatusBroadcaster());
+    }
+
+    public WaitOrderStatusHandler(DynamoDbAsyncClient dynamoDb, OrderStatusBroadcaster broadcaster) {
+        this(dynamoDb, broadcaster, Duration.ofMillis(RECHECK_MILLIS));
+    }
+
+    /**
+     * @param recheck how often to read the status again while waiting; zero relies on
+     *                {@code broadcaster} alone
+     */
+    public WaitOrderStatusHandler(DynamoDbAsyncClient dynamoDb, OrderStatusBroadcaster broadcaster, Duration recheck) {
+        this.orders = new OrderRepository(dynamoDb, TABLE_NAME);
+        this.broadcaster = broadcaster;
+        this.recheck = recheck;
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        return Metrics.invoke("WaitOrderStatus", request, context, this::handle);
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        try {
+            Map<String, String> queryParams = Optional.ofNullable(request.getQueryStringParameters()).orElse(Map.of());
+            String email = queryParams.get("email");
+            String orderId = queryParams.get("orderId");
+
+            if (email == null || orderId == null) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody("Missing email or orderId");
+            }
+
+            OrderStatus since;
+            Duration wait;
+            try {
+                since = parseSince(queryParams.get("since"));
+                wait = parseWait(queryParams.get("wait"));
+            } catch (IllegalArgumentException e) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(400)
+                        .withBody(e.getMessage());
+            }
+
+            Optional<OrderStatus> status;
+            if (since == null) {
+                status = Futures.join(orders.currentStatus(email, orderId));
+            } else {
+                Optional<OrderStatusBroadcaster.Subscription> subscription = broadcaster.subscribe(email, orderId);
+                if (subscription.isEmpty()) {
+                    return new APIGatewayProxyResponseEvent()
+                            .withStatusCode(503)
+                            .withHeaders(Map.of("Retry-After", "1"))
+                            .withBody("Too many clients waiting, try again shortly");
+                }
+                try (OrderStatusBroadcaster.Subscription waiting = subscription.get()) {
+                    status = awaitChange(waiting, email, orderId, since, wait);
+                }
+            }
+
+            if (status.isEmpty()) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(404)
+                        .withBody("Order not found");
+            }
+
+            long mark = Metrics.start();
+            Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey(email, orderId));
+            item.put("Status", AttributeValue.fromS(status.get().toString()));
+            String body = OrderJsonCodec.writeOrder(item, FIELDS);
+            Metrics.phase(Phase.SERIALIZE, mark);
+
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(200)
+                    .withHeaders(Map.of(
+                            "Access-Control-Allow-Headers", "*",
+                            "Access-Control-Allow-Origin", "*",
+                            "Access-Control-Allow-Methods", "*",
+                            "Cache-Control", "no-store"
+                    ))
+                    .withBody(body);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(503)
+                    .withBody("Shutting down, try again shortly");
+        } catch (Exception e) {
+            context.getLogger().log("Error waiting for order status: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(500)
+                    .withBody("Error retrieving order status");
+        }
+    }
+
+    // Empty when there is no such order; otherwise the status once it is not since, or since when the wait is over
+    private Optional<OrderStatus> awaitChange(OrderStatusBroadcaster.Subscription subscription, String email,
+                                              String orderId, OrderStatus since, Duration wait) throws InterruptedException {
+        Optional<OrderStatus> current = Futures.join(orders.currentStatus(email, orderId));
+        long deadline = System.nanoTime() + wait.toNanos();
+        while (current.isPresent() && current.get() == since) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            OrderStatus published = subscription.await(Duration.ofNanos(
+                    recheck.isZero() ? remaining : Math.min(remaining, recheck.toNanos())));
+            if (published != null) {
+                return Optional.of(published);
+            }
+            if (!recheck.isZero()) {
+                current = Futures.join(orders.currentStatus(email, orderId, false));
+            }
+        }
+        return current;
+    }
+
+    private static OrderStatus parseSince(String since) {
+        if (since == null) {
+            return null;
+        }
+        for (OrderStatus status : OrderStatus.values()) {
+            if (status.name().equals(since)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("since must be one of " + Arrays.toString(OrderStatus.values()));
+    }
+
+    private static Duration parseWait(String wait) {
+        if (wait == null) {
+            return Duration.ofSeconds(MAX_WAIT_SECONDS);
+        }
+        try {
+            int seconds = Integer.parseInt(wait);
+            if (seconds < 0 || seconds > MAX_WAIT_SECONDS) {
+                throw new IllegalArgumentException("wait must be between 0 and " + MAX_WAIT_SECONDS);
+            }
+            return Duration.ofSeconds(seconds);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("wait must be a number");
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package dynamotaco.cache;
+
+import dynamotaco.models.Customer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded per-container cache of customer profiles, including negative entries for emails that
+ * have no profile. Profiles expire after the TTL; negative entries after their own, usually much
+ * shorter, TTL because another container may create the profile in the meantime.
+ *
+ * With {@link Policy#TINY_LFU} (W-TinyLFU) new entries go into a small LRU window. An entry pushed
+ * out of the window only replaces the main region's eviction victim when a frequency sketch says
+ * it has been asked for more often, so a burst of one-off emails cannot flush the regulars. The
+ * main region is a segmented LRU: entries hit while on probation move to the protected segment.
+ * {@link Policy#LRU} is a single LRU list, kept for comparison.
+ *
+ * A capacity of 0 disables the cache: every lookup is a miss and nothing is stored.
+ */
+public class CustomerCache {
+
+    public enum Policy { LRU, TINY_LFU }
+
+    public enum Status { PRESENT, ABSENT, MISS }
+
+    /** What the cache knows about an email; {@code profile} is only set when {@code PRESENT}. */
+    public record Lookup(Status status, Customer profile) {
+    }
+
+    private static final Lookup ABSENT = new Lookup(Status.ABSENT, null);
+    private static final Lookup MISS = new Lookup(Status.MISS, null);
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protectedQueue = new Queue();
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    // Held only for map and list updates, never across a DynamoDB call
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public CustomerCache(int capacity, long ttlSeconds, long negativeTtlSeconds) {
+        this(capacity, ttlSeconds, negativeTtlSeconds, Policy.TINY_LFU, System::nanoTime);
+    }
+
+    public CustomerCache(int capacity, long ttlSeconds, long negativeTtlSeconds, Policy policy, LongSupplier clock) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.clock = clock;
+        if (policy == Policy.LRU) {
+            this.windowCapacity = capacity;
+            this.sketch = null;
+        } else {
+            this.windowCapacity = Math.min(capacity, Math.max(1, capacity / 100));
+            this.sketch = new FrequencySketch(capacity);
+        }
+        this.protectedCapacity = (capacity - windowCapacity) * 4 / 5;
+    }
+
+    public Lookup get(String email) {
+        if (capacity == 0) {
+            misses.increment();
+            return MISS;
+        }
+        lock.lock();
+        try {
+            if (sketch != null) {
+                sketch.increment(email);
+            }
+            Node node = nodes.get(email);
+            if (node == null) {
+                misses.increment();
+                return MISS;
+            }
+            if (clock.getAsLong() - node.expiresAtNanos >= 0) {
+                remove(node);
+                expirations.increment();
+                misses.increment();
+                return MISS;
+            }
+            touch(node);
+            (node.value == ABSENT ? negativeHits : hits).increment();
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Customer profile) {
+        store(profile.getEmail(), new Lookup(Status.PRESENT, profile), ttlNanos);
+    }
+
+    /** Remembers that {@code email} has no profile. */
+    public void putAbsent(String email) {
+        store(email, ABSENT, negativeTtlNanos);
+    }
+
+    public void invalidate(String email) {
+        lock.lock();
+        try {
+            Node node = nodes.get(email);
+            if (node != null) {
+                remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Positive and negative hits over all lookups, or 0 before the first lookup. */
+    public double hitRatio() {
+        long found = hits.sum() + negativeHits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+                "hits", hits.sum(),
+                "negativeHits", negativeHits.sum(),
+                "misses", misses.sum(),
+                "evictions", evictions.sum(),
+                "expirations", expirations.sum(),
+                "size", (long) size()
+        );
+    }
+
+    private void store(String email, Lookup value, long ttl) {
+        if (capacity == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (sketch != null) {
+                sketch.increment(email);
+            }
+            Node node = nodes.get(email);
+            if (node != null) {
+                node.value = value;
+                node.expiresAtNanos = clock.getAsLong() + ttl;
+                touch(node);
+                return;
+            }
+            node = new Node(email, value, clock.getAsLong() + ttl);
+            nodes.put(email, node);
+            window.addLast(node);
+            if (window.size > windowCapacity) {
+                admit(window.removeFirst());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The window's eldest entry moves to probation if there is room or it is used more than the victim
+    private void admit(Node candidate) {
+        if (probation.size + protectedQueue.size < capacity - windowCapacity) {
+            probation.addLast(candidate);
+            return;
+        }
+        Node victim = probation.first != null ? probation.first : protectedQueue.first;
+        if (victim != null && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            remove(victim);
+            probation.addLast(candidate);
+        } else {
+            nodes.remove(candidate.key);
+        }
+        evictions.increment();
+    }
+
+    private void touch(Node node) {
+        if (node.queue == window) {
+            window.moveToLast(node);
+        } else if (node.queue == protectedQueue) {
+            protectedQueue.moveToLast(node);
+        } else {
+            probation.remove(node);
+            protectedQueue.addLast(node);
+            if (protectedQueue.size > protectedCapacity) {
+                probation.addLast(protectedQueue.removeFirst());
+            }
+        }
+    }
+
+    private void remove(Node node) {
+        node.queue.remove(node);
+        nodes.remove(node.key);
+    }
+
+    private static final class Node {
+
+        final String key;
+        Lookup value;
+        long expiresAtNanos;
+        Queue queue;
+        Node previous;
+        Node next;
+
+        Node(String key, Lookup value, long expiresAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    // Doubly linked list in access order, eldest first
+    private static final class Queue {
+
+        Node first;
+        Node last;
+        int size;
+
+        void addLast(Node node) {
+            node.queue = this;
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            size++;
+        }
+
+        Node removeFirst() {
+            Node node = first;
+            remove(node);
+            return node;
+        }
+
+        void moveToLast(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            node.queue = null;
+            size--;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, 16 to a long, four rows. Every counter is halved once the
+     * number of increments reaches ten times the cache capacity, so old popularity fades.
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0x97cb3127L, 0xc2b2ae3dL, 0x165667b1L, 0x85ebca6bL};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int length = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+            this.table = new long[length];
+            this.mask = length - 1;
+            this.sampleSize = Math.max(10, 10 * capacity);
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int h = indexOf(hash, row);
+                frequency = Math.min(frequency, (int) (table[(h >>> 4) & mask] >>> ((h & 15) << 2)) & 15);
+            }
+            return frequency;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int h = indexOf(hash, row);
+                int index = (h >>> 4) & mask;
+                int shift = (h & 15) << 2;
+                if (((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private static int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h + (h >>> 32));
+        }
+
+        private static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package dynamotaco.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.models.MenuItem;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-container copy of the menu and its serialized JSON body.
+ *
+ * Entries younger than the TTL are served as-is. Entries inside the stale window are still served,
+ * but a background refresh is kicked off; older entries are refreshed before returning. A refresh
+ * first reads the menu version marker and only re-queries the whole partition when it changed.
+ * In Lambda the background refresh only progresses while an invocation is running, which is fine
+ * because the stale body stays valid until it finishes.
+ */
+public class MenuCache {
+
+    public interface Loader {
+        /** Current menu version, or null when the partition carries no version marker. */
+        String version();
+
+        List<MenuItem> load();
+    }
+
+    public record Snapshot(List<MenuItem> items, String json, String version, long loadedAtNanos) {
+    }
+
+    public record Result(Snapshot snapshot, Outcome outcome) {
+    }
+
+    public enum Outcome { HIT, STALE, MISS }
+
+    private final Loader loader;
+    private final ObjectMapper mapper;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final LongSupplier clock;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "menu-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder unchangedRefreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    // Not synchronized: the loader blocks on DynamoDB, which would pin a virtual thread to its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
+
+    public MenuCache(Loader loader, ObjectMapper mapper, long ttlSeconds, long staleSeconds) {
+        this(loader, mapper, ttlSeconds, staleSeconds, System::nanoTime);
+    }
+
+    public MenuCache(Loader loader, ObjectMapper mapper, long ttlSeconds, long staleSeconds, LongSupplier clock) {
+        this.loader = loader;
+        this.mapper = mapper;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.staleNanos = TimeUnit.SECONDS.toNanos(staleSeconds);
+        this.clock = clock;
+    }
+
+    public Snapshot get() {
+        return lookup().snapshot();
+    }
+
+    public Result lookup() {
+        Snapshot current = snapshot;
+        long age = current == null ? Long.MAX_VALUE : clock.getAsLong() - current.loadedAtNanos();
+
+        if (age < ttlNanos) {
+            hits.increment();
+            return new Result(current, Outcome.HIT);
+        }
+        if (age - ttlNanos < staleNanos) {
+            staleHits.increment();
+            if (refreshing.compareAndSet(false, true)) {
+                refresher.execute(() -> {
+                    try {
+                        refresh();
+                    } catch (RuntimeException e) {
+                        refreshFailures.increment();
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            }
+            return new Result(current, Outcome.STALE);
+        }
+
+        misses.increment();
+        lock.lock();
+        try {
+            // Another caller may have reloaded while we waited for the lock
+            Snapshot reloaded = snapshot;
+            if (reloaded != null && clock.getAsLong() - reloaded.loadedAtNanos() < ttlNanos) {
+                return new Result(reloaded, Outcome.MISS);
+            }
+            return new Result(refresh(), Outcome.MISS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+                "hits", hits.sum(),
+                "staleHits", staleHits.sum(),
+                "misses", misses.sum(),
+                "refreshes", refreshes.sum(),
+                "unchangedRefreshes", unchangedRefreshes.sum(),
+                "refreshFailures", refreshFailures.sum()
+        );
+    }
+
+    private Snapshot refresh() {
+        lock.lock();
+        try {
+            return reload();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Snapshot reload() {
+        refreshes.increment();
+        Snapshot current = snapshot;
+        String version = loader.version();
+
+        Snapshot next;
+        if (current != null && version != null && Objects.equals(version, current.version())) {
+            unchangedRefreshes.increment();
+            next = new Snapshot(current.items(), current.json(), version, clock.getAsLong());
+        } else {
+            List<MenuItem> items = List.copyOf(loader.load());
+            next = new Snapshot(items, serialize(items), version, clock.getAsLong());
+        }
+        snapshot = next;
+        return next;
+    }
+
+    private String serialize(List<MenuItem> items) {
+        try {
+            return mapper.writeValueAsString(items);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize menu", e);
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package dynamotaco.local;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interpreter for the subset of DynamoDB expression syntax the local stand-in needs: condition and
+ * key-condition expressions (comparisons, BETWEEN, IN, AND/OR/NOT, attribute_exists,
+ * attribute_not_exists, attribute_type, begins_with, contains, size), update expressions
+ * (SET with +, -, if_not_exists and list_append, REMOVE, ADD, DELETE) and projection expressions.
+ * Document paths are limited to top-level attributes.
+ */
+final class Expressions {
+
+    private Expressions() {
+    }
+
+    static boolean evaluate(String expression, Map<String, AttributeValue> item,
+                            Map<String, String> names, Map<String, AttributeValue> values) {
+        if (expression == null || expression.isBlank()) {
+            return true;
+        }
+        Parser parser = new Parser(expression, names, values);
+        boolean result = parser.condition(item);
+        parser.expectEnd();
+        return result;
+    }
+
+    static Map<String, AttributeValue> project(String projection, Map<String, AttributeValue> item, Map<String, String> names) {
+        if (projection == null || projection.isBlank()) {
+            return item;
+        }
+        Map<String, AttributeValue> projected = new HashMap<>();
+        for (String path : projection.split(",")) {
+            String name = resolveName(path.trim(), names);
+            AttributeValue value = item.get(name);
+            if (value != null) {
+                projected.put(name, value);
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * Applies an update expression to {@code item} in place and returns the names of the attributes it touched.
+     */
+    static Set<String> update(String expression, Map<String, AttributeValue> item,
+                              Map<String, String> names, Map<String, AttributeValue> values) {
+        Parser parser = new Parser(expression, names, values);
+        Set<String> touched = new LinkedHashSet<>();
+        while (!parser.atEnd()) {
+            String clause = parser.word().toUpperCase();
+            do {
+                String name = parser.name();
+                touched.add(name);
+                switch (clause) {
+                    case "SET" -> {
+                        parser.expect("=");
+                        item.put(name, parser.setValue(item));
+                    }
+                    case "REMOVE" -> item.remove(name);
+                    case "ADD" -> item.put(name, add(item.get(name), parser.operand(item)));
+                    case "DELETE" -> {
+                        AttributeValue result = deleteFromSet(item.get(name), parser.operand(item));
+                        if (result == null) {
+                            item.remove(name);
+                        } else {
+                            item.put(name, result);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported update clause " + clause);
+                }
+            } while (parser.accept(","));
+        }
+        return touched;
+    }
+
+    static int compare(AttributeValue left, AttributeValue right) {
+        if (left.n() != null && right.n() != null) {
+            return new BigDecimal(left.n()).compareTo(new BigDecimal(right.n()));
+        }
+        if (left.s() != null && right.s() != null) {
+            return left.s().compareTo(right.s());
+        }
+        if (left.b() != null && right.b() != null) {
+            return Arrays.compareUnsigned(left.b().asByteArrayUnsafe(), right.b().asByteArrayUnsafe());
+        }
+        throw new IllegalArgumentException("Cannot compare " + left + " with " + right);
+    }
+
+    static boolean equal(AttributeValue left, AttributeValue right) {
+        if (left == null || right == null) {
+            return false;
+        }
+        if (left.n() != null && right.n() != null) {
+            return new BigDecimal(left.n()).compareTo(new BigDecimal(right.n())) == 0;
+        }
+        return left.equals(right);
+    }
+
+    private static String resolveName(String token, Map<String, String> names) {
+        if (token.startsWith("#")) {
+            String name = names == null ? null : names.get(token);
+            if (name == null) {
+                throw new IllegalArgumentException("Undefined attribute name placeholder " + token);
+            }
+            return name;
+        }
+        return token;
+    }
+
+    private static AttributeValue add(AttributeValue current, AttributeValue delta) {
+        if (delta.n() != null) {
+            BigDecimal base = current == null ? BigDecimal.ZERO : new BigDecimal(current.n());
+            return AttributeValue.fromN(base.add(new BigDecimal(delta.n())).toPlainString());
+        }
+        if (delta.hasSs()) {
+            Set<String> merged = new LinkedHashSet<>(current == null ? List.of() : current.ss());
+            merged.addAll(delta.ss());
+            return AttributeValue.fromSs(new ArrayList<>(merged));
+        }
+        if (delta.hasNs()) {
+            Set<String> merged = new LinkedHashSet<>(current == null ? List.of() : current.ns());
+            merged.addAll(delta.ns());
+            return AttributeValue.fromNs(new ArrayList<>(merged));
+        }
+        throw new IllegalArgumentException("ADD only supports numbers and sets");
+    }
+
+    private static AttributeValue deleteFromSet(AttributeValue current, AttributeValue removed) {
+        if (current == null) {
+            return null;
+        }
+        if (removed.hasSs()) {
+            List<String> remaining = new ArrayList<>(current.ss());
+            remaining.removeAll(removed.ss());
+            return remaining.isEmpty() ? null : AttributeValue.fromSs(remaining);
+        }
+        if (removed.hasNs()) {
+            List<String> remaining = new ArrayList<>(current.ns());
+            remaining.removeAll(removed.ns());
+            return remaining.isEmpty() ? null : AttributeValue.fromNs(remaining);
+        }
+        throw new IllegalArgumentException("DELETE only supports sets");
+    }
+
+    private static String typeOf(AttributeValue value) {
+        if (value.s() != null) return "S";
+        if (value.n() != null) return "N";
+        if (value.b() != null) return "B";
+        if (value.bool() != null) return "BOOL";
+        if (Boolean.TRUE.equals(value.nul())) return "NULL";
+        if (value.hasM()) return "M";
+        if (value.hasL()) return "L";
+        if (value.hasSs()) return "SS";
+        if (value.hasNs()) return "NS";
+        if (value.hasBs()) return "BS";
+        return "NULL";
+    }
+
+    private static AttributeValue size(AttributeValue value) {
+        int size;
+        if (value.s() != null) size = value.s().length();
+        else if (value.b() != null) size = value.b().asByteArrayUnsafe().length;
+        else if (value.hasL()) size = value.l().size();
+        else if (value.hasM()) size = value.m().size();
+        else if (value.hasSs()) size = value.ss().size();
+        else if (value.hasNs()) size = value.ns().size();
+        else if (value.hasBs()) size = value.bs().size();
+        else throw new IllegalArgumentException("size() is not defined for " + value);
+        return AttributeValue.fromN(Integer.toString(size));
+    }
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private final Map<String, String> names;
+        private final Map<String, AttributeValue> values;
+        private int pos;
+
+        Parser(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+            this.tokens = tokenize(expression);
+            this.names = names;
+            this.values = values;
+        }
+
+        boolean condition(Map<String, AttributeValue> item) {
+            boolean result = conjunction(item);
+            while (acceptWord("OR")) {
+                boolean right = conjunction(item);
+                result = result || right;
+            }
+            return result;
+        }
+
+        private boolean conjunction(Map<String, AttributeValue> item) {
+            boolean result = negation(item);
+            while (acceptWord("AND")) {
+                boolean right = negation(item);
+                result = result && right;
+            }
+            return result;
+        }
+
+        private boolean negation(Map<String, AttributeValue> item) {
+            if (acceptWord("NOT")) {
+                return !negation(item);
+            }
+            return predicate(item);
+        }
+
+        private boolean predicate(Map<String, AttributeValue> item) {
+            if (accept("(")) {
+                boolean result = condition(item);
+                expect(")");
+                return result;
+            }
+            String token = peek();
+            String function = token.toLowerCase();
+            if (peekAt(1, "(")) {
+                switch (function) {
+                    case "attribute_exists" -> {
+                        pos += 2;
+                        String name = name();
+                        expect(")");
+                        return item.containsKey(name);
+                    }
+                    case "attribute_not_exists" -> {
+                        pos += 2;
+                        String name = name();
+                        expect(")");
+                        return !item.containsKey(name);
+                    }
+                    case "attribute_type" -> {
+                        pos += 2;
+                        AttributeValue value = item.get(name());
+                        expect(",");
+                        AttributeValue type = operand(item);
+                        expect(")");
+                        return value != null && typeOf(value).equals(type.s());
+                    }
+                    case "begins_with" -> {
+                        pos += 2;
+                        AttributeValue value = item.get(name());
+                        expect(",");
+                        AttributeValue prefix = operand(item);
+                        expect(")");
+                        return value != null && value.s() != null && prefix.s() != null && value.s().startsWith(prefix.s());
+                    }
+                    case "contains" -> {
+                        pos += 2;
+                        AttributeValue value = item.get(name());
+                        expect(",");
+                        AttributeValue needle = operand(item);
+                        expect(")");
+                        return contains(value, needle);
+                    }
+                    default -> {
+                        // size(...) compared to something; handled as an operand below
+                    }
+                }
+            }
+
+            AttributeValue left = operand(item);
+            if (acceptWord("BETWEEN")) {
+                AttributeValue low = operand(item);
+                expectWord("AND");
+                AttributeValue high = operand(item);
+                return left != null && comparable(left, low) && compare(left, low) >= 0 && compare(left, high) <= 0;
+            }
+            if (acceptWord("IN")) {
+                expect("(");
+                boolean found = false;
+                do {
+                    found |= equal(left, operand(item));
+                } while (accept(","));
+                expect(")");
+                return found;
+            }
+
+            String comparator = next();
+            AttributeValue right = operand(item);
+            switch (comparator) {
+                case "=":
+                    return equal(left, right);
+                case "<>":
+                    return !equal(left, right);
+                default:
+                    if (left == null || right == null || !comparable(left, right)) {
+                        return false;
+                    }
+                    int cmp = compare(left, right);
+                    return switch (comparator) {
+                        case "<" -> cmp < 0;
+                        case "<=" -> cmp <= 0;
+                        case ">" -> cmp > 0;
+                        case ">=" -> cmp >= 0;
+                        default -> throw new IllegalArgumentException("Unknown comparator " + comparator);
+                    };
+            }
+        }
+
+        AttributeValue setValue(Map<String, AttributeValue> item) {
+            AttributeValue left = operand(item);
+            if (accept("+")) {
+                AttributeValue right = operand(item);
+                return AttributeValue.fromN(new BigDecimal(left.n()).add(new BigDecimal(right.n())).toPlainString());
+            }
+            if (accept("-")) {
+                AttributeValue right = operand(item);
+                return AttributeValue.fromN(new BigDecimal(left.n()).subtract(new BigDecimal(right.n())).toPlainString());
+            }
+            return left;
+        }
+
+        AttributeValue operand(Map<String, AttributeValue> item) {
+            String token = next();
+            if (token.startsWith(":")) {
+                AttributeValue value = values == null ? null : values.get(token);
+                if (value == null) {
+                    throw new IllegalArgumentException("Undefined attribute value placeholder " + token);
+                }
+                return value;
+            }
+            if (accept("(")) {
+                switch (token.toLowerCase()) {
+                    case "size" -> {
+                        AttributeValue value = item.get(name());
+                        expect(")");
+                        return value == null ? null : size(value);
+                    }
+                    case "if_not_exists" -> {
+                        AttributeValue existing = item.get(name());
+                        expect(",");
+                        AttributeValue fallback = operand(item);
+                        expect(")");
+                        return existing != null ? existing : fallback;
+                    }
+                    case "list_append" -> {
+                        AttributeValue first = operand(item);
+                        expect(",");
+                        AttributeValue second = operand(item);
+                        expect(")");
+                        List<AttributeValue> appended = new ArrayList<>(first == null ? List.of() : first.l());
+                        appended.addAll(second == null ? List.of() : second.l());
+                        return AttributeValue.fromL(appended);
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported function " + token);
+                }
+            }
+            return item.get(resolveName(token, names));
+        }
+
+        String name() {
+            return resolveName(next(), names);
+        }
+
+        String word() {
+            return next();
+        }
+
+        boolean atEnd() {
+            return pos >= tokens.size();
+        }
+
+        void expectEnd() {
+            if (!atEnd()) {
+                throw new IllegalArgumentException("Unexpected token " + tokens.get(pos));
+            }
+        }
+
+        boolean accept(String token) {
+            if (!atEnd() && tokens.get(pos).equals(token)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(String token) {
+            if (!accept(token)) {
+                throw new IllegalArgumentException("Expected '" + token + "' but found " + (atEnd() ? "end of expression" : tokens.get(pos)));
+            }
+        }
+
+        private boolean acceptWord(String word) {
+            if (!atEnd() && tokens.get(pos).equalsIgnoreCase(word)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expectWord(String word) {
+            if (!acceptWord(word)) {
+                throw new IllegalArgumentException("Expected " + word);
+            }
+        }
+
+        private String peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of expression");
+            }
+            return tokens.get(pos);
+        }
+
+        private boolean peekAt(int offset, String token) {
+            return pos + offset < tokens.size() && tokens.get(pos + offset).equals(token);
+        }
+
+        private String next() {
+            String token = peek();
+            pos++;
+            return token;
+        }
+
+        private static boolean comparable(AttributeValue left, AttributeValue right) {
+            return (left.n() != null && right.n() != null)
+                    || (left.s() != null && right.s() != null)
+                    || (left.b() != null && right.b() != null);
+        }
+
+        private static boolean contains(AttributeValue value, AttributeValue needle) {
+            if (value == null) {
+                return false;
+            }
+            if (value.s() != null && needle.s() != null) {
+                return value.s().contains(needle.s());
+            }
+            if (value.hasSs() && needle.s() != null) {
+                return value.ss().contains(needle.s());
+            }
+            if (value.hasNs() && needle.n() != null) {
+                return value.ns().stream().anyMatch(n -> new BigDecimal(n).compareTo(new BigDecimal(needle.n())) == 0);
+            }
+            if (value.hasL()) {
+                return value.l().stream().anyMatch(element -> equal(element, needle));
+            }
+            return false;
+        }
+
+        private static List<String> tokenize(String expression) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < expression.length()) {
+                char c = expression.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '<' || c == '>') {
+                    if (i + 1 < expression.length() && (expression.charAt(i + 1) == '=' || (c == '<' && expression.charAt(i + 1) == '>'))) {
+                        tokens.add(expression.substring(i, i + 2));
+                        i += 2;
+                    } else {
+                        tokens.add(String.valueOf(c));
+                        i++;
+                    }
+                } else if ("()=,+-[]".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < expression.length()) {
+                        char d = expression.charAt(i);
+                        if (Character.isWhitespace(d) || "()=,+-[]<>".indexOf(d) >= 0) {
+                            break;
+                        }
+                        i++;
+                    }
+                    tokens.add(expression.substring(start, i));
+                }
+            }
+            return tokens;
+        }
+    }
+}
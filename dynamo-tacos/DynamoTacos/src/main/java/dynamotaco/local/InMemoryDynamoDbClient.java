@@ -0,0 +1,693 @@
+package dynamotaco.local;
+
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.resilience.TokenBucket;
+import dynamotaco.util.ItemSizes;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for the TacoOrderingApp table, used by tests, benchmarks and the local server.
+ *
+ * Items are kept per partition in sorted maps so queries behave like DynamoDB's (sort key order,
+ * Limit, LastEvaluatedKey, ScanIndexForward), and the GSIs from template.yaml are maintained
+ * on every write. Writes are serialized on one lock, which makes condition expressions and
+ * transactions atomic. A fixed per-call latency, latency spikes, throttling (at random or above a
+ * provisioned request rate) and a fraction of unprocessed batch items can be configured to model
+ * the network and an overloaded table.
+ */
+public class InMemoryDynamoDbClient implements DynamoDbClient {
+
+    public static final String PARTITION_KEY = "PK";
+    public static final String SORT_KEY = "SK";
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final Map<String, ConcurrentNavigableMap<String, Map<String, AttributeValue>>> partitions = new ConcurrentHashMap<>();
+    private final Map<String, IndexSchema> indexes = new LinkedHashMap<>();
+    private final Map<String, Map<String, ConcurrentNavigableMap<String, Map<String, AttributeValue>>>> indexData = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private volatile long latencyNanos;
+    private volatile double unprocessedRate;
+    private volatile double throttleRate;
+    private volatile TokenBucket provisioned;
+    private volatile double spikeRate;
+    private volatile long spikeNanos;
+
+    private record IndexSchema(String hashAttribute, String rangeAttribute) {
+
+        boolean indexes(Map<String, AttributeValue> item) {
+            AttributeValue hash = item.get(hashAttribute);
+            AttributeValue range = item.get(rangeAttribute);
+            return hash != null && hash.s() != null && range != null && range.s() != null;
+        }
+
+        boolean sameKey(Map<String, AttributeValue> a, Map<String, AttributeValue> b) {
+            return a.get(hashAttribute).equals(b.get(hashAttribute)) && a.get(rangeAttribute).equals(b.get(rangeAttribute));
+        }
+    }
+
+    public InMemoryDynamoDbClient() {
+        // Not through withIndex, which subclasses may override before their fields are set
+        addIndex("GSI1_StatusOrderDate", "Status", "OrderDate");
+        addIndex("GSI2_CustomerIdTacoId", "CustomerId", "TacoId");
+        addIndex("GSI3_OrderIdSideItemId", "OrderId", "SideItemId");
+        addIndex("GSI4_StatusShardOrderDate", "StatusShard", "OrderDate");
+    }
+
+    public InMemoryDynamoDbClient withIndex(String indexName, String hashAttribute, String rangeAttribute) {
+        addIndex(indexName, hashAttribute, rangeAttribute);
+        return this;
+    }
+
+    private void addIndex(String indexName, String hashAttribute, String rangeAttribute) {
+        indexes.put(indexName, new IndexSchema(hashAttribute, rangeAttribute));
+        indexData.put(indexName, new ConcurrentHashMap<>());
+    }
+
+    /** Drops an index, as a table deployed without it would have. */
+    public InMemoryDynamoDbClient withoutIndex(String indexName) {
+        indexes.remove(indexName);
+        indexData.remove(indexName);
+        return this;
+    }
+
+    /** Sleeps for {@code latency} on every call to model the network round trip. */
+    public InMemoryDynamoDbClient withLatency(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+        return this;
+    }
+
+    /** Returns roughly this fraction of BatchWriteItem requests as UnprocessedItems. */
+    public InMemoryDynamoDbClient withUnprocessedRate(double unprocessedRate) {
+        this.unprocessedRate = unprocessedRate;
+        return this;
+    }
+
+    /** Fails roughly this fraction of calls with ProvisionedThroughputExceededException. */
+    public InMemoryDynamoDbClient withThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+        return this;
+    }
+
+    /** Throttles calls beyond {@code requestsPerSecond}, with a tenth of a second of burst. */
+    public InMemoryDynamoDbClient withProvisionedRate(double requestsPerSecond) {
+        this.provisioned = new TokenBucket(requestsPerSecond, Math.max(1, requestsPerSecond / 10));
+        return this;
+    }
+
+    /** Adds {@code spike} to roughly this fraction of calls, on top of the fixed latency. */
+    public InMemoryDynamoDbClient withLatencySpikes(double spikeRate, Duration spike) {
+        this.spikeRate = spikeRate;
+        this.spikeNanos = spike.toNanos();
+        return this;
+    }
+
+    /** The same table behind the async interface, each call running on its own virtual thread. */
+    public DynamoDbAsyncClient async() {
+        return BlockingAsyncClient.wrap(this);
+    }
+
+    public long callCount(String operation) {
+        LongAdder adder = calls.get(operation);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public int itemCount() {
+        return partitions.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            partitions.clear();
+            indexData.values().forEach(Map::clear);
+        }
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        enter("GetItem");
+        Map<String, AttributeValue> item = find(request.key());
+        GetItemResponse.Builder response = GetItemResponse.builder();
+        if (item != null) {
+            response.item(Expressions.project(request.projectionExpression(), item, request.expressionAttributeNames()));
+        }
+        double units = readUnits(item == null ? 0 : ItemSizes.itemSize(item), Boolean.TRUE.equals(request.consistentRead()));
+        return response.consumedCapacity(capacity(request.returnConsumedCapacity(), request.tableName(), units, 0)).build();
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        enter("PutItem");
+        Map<String, AttributeValue> item = new HashMap<>(request.item());
+        Map<String, AttributeValue> previous;
+        synchronized (writeLock) {
+            previous = find(item);
+            checkCondition(request.conditionExpression(), previous, request.expressionAttributeNames(), request.expressionAttributeValues());
+            store(item);
+        }
+        PutItemResponse.Builder response = PutItemResponse.builder();
+        if (request.returnValues() == ReturnValue.ALL_OLD && previous != null) {
+            response.attributes(previous);
+        }
+        double units = writeUnits(previous, item);
+        return response.consumedCapacity(capacity(request.returnConsumedCapacity(), request.tableName(), 0, units)).build();
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        enter("DeleteItem");
+        Map<String, AttributeValue> previous;
+        synchronized (writeLock) {
+            previous = find(request.key());
+            checkCondition(request.conditionExpression(), previous, request.expressionAttributeNames(), request.expressionAttributeValues());
+            if (previous != null) {
+                remove(previous);
+            }
+        }
+        DeleteItemResponse.Builder response = DeleteItemResponse.builder();
+        if (request.returnValues() == ReturnValue.ALL_OLD && previous != null) {
+            response.attributes(previous);
+        }
+        double units = writeUnits(previous, null);
+        return response.consumedCapacity(capacity(request.returnConsumedCapacity(), request.tableName(), 0, units)).build();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        enter("UpdateItem");
+        Map<String, AttributeValue> previous;
+        Map<String, AttributeValue> updated;
+        Set<String> touched;
+        synchronized (writeLock) {
+            previous = find(request.key());
+            checkCondition(request.conditionExpression(), previous, request.expressionAttributeNames(), request.expressionAttributeValues());
+            updated = previous == null ? new HashMap<>(request.key()) : new HashMap<>(previous);
+            touched = Expressions.update(request.updateExpression(), updated, request.expressionAttributeNames(), request.expressionAttributeValues());
+            store(updated);
+        }
+
+        UpdateItemResponse.Builder response = UpdateItemResponse.builder();
+        ReturnValue returnValue = request.returnValues() == null ? ReturnValue.NONE : request.returnValues();
+        switch (returnValue) {
+            case ALL_NEW -> response.attributes(updated);
+            case ALL_OLD -> {
+                if (previous != null) {
+                    response.attributes(previous);
+                }
+            }
+            case UPDATED_NEW -> response.attributes(select(updated, touched));
+            case UPDATED_OLD -> {
+                if (previous != null) {
+                    response.attributes(select(previous, touched));
+                }
+            }
+            default -> {
+            }
+        }
+        double units = writeUnits(previous, updated);
+        return response.consumedCapacity(capacity(request.returnConsumedCapacity(), request.tableName(), 0, units)).build();
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        enter("Query");
+        String hashAttribute = request.indexName() == null ? PARTITION_KEY : schema(request.indexName()).hashAttribute();
+        AttributeValue hashValue = hashKeyValue(request.keyConditionExpression(), hashAttribute,
+                request.expressionAttributeNames(), request.expressionAttributeValues());
+
+        NavigableMap<String, Map<String, AttributeValue>> candidates = request.indexName() == null
+                ? partitions.getOrDefault(hashValue.s(), new ConcurrentSkipListMap<>())
+                : indexData.get(request.indexName()).getOrDefault(hashValue.s(), new ConcurrentSkipListMap<>());
+        if (Boolean.FALSE.equals(request.scanIndexForward())) {
+            candidates = candidates.descendingMap();
+        }
+        if (request.hasExclusiveStartKey()) {
+            String startPosition = position(request.indexName(), request.exclusiveStartKey());
+            candidates = candidates.tailMap(startPosition, false);
+        }
+
+        return (QueryResponse) page(candidates.values(), request.keyConditionExpression(), request.filterExpression(),
+                request.projectionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues(),
+                request.limit(), request.indexName(), Boolean.TRUE.equals(request.consistentRead()),
+                request.returnConsumedCapacity(), request.tableName(), true);
+    }
+
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        enter("Scan");
+        int segment = request.segment() == null ? 0 : request.segment();
+        int totalSegments = request.totalSegments() == null ? 1 : request.totalSegments();
+
+        // Partitions are assigned to segments by hash, the same way DynamoDB splits its key space
+        List<String> partitionKeys = partitions.keySet().stream()
+                .filter(pk -> Math.floorMod(pk.hashCode(), totalSegments) == segment)
+                .sorted()
+                .toList();
+        String startPk = request.hasExclusiveStartKey() ? request.exclusiveStartKey().get(PARTITION_KEY).s() : null;
+        String startSk = request.hasExclusiveStartKey() ? request.exclusiveStartKey().get(SORT_KEY).s() : null;
+
+        Iterable<Map<String, AttributeValue>> items = () -> partitionKeys.stream()
+                .filter(pk -> startPk == null || pk.compareTo(startPk) >= 0)
+                .flatMap(pk -> {
+                    NavigableMap<String, Map<String, AttributeValue>> partition = partitions.getOrDefault(pk, new ConcurrentSkipListMap<>());
+                    return (pk.equals(startPk) ? partition.tailMap(startSk, false) : partition).values().stream();
+                })
+                .iterator();
+
+        return (ScanResponse) page(items, null, request.filterExpression(), request.projectionExpression(),
+                request.expressionAttributeNames(), request.expressionAttributeValues(), request.limit(), null,
+                Boolean.TRUE.equals(request.consistentRead()), request.returnConsumedCapacity(), request.tableName(), false);
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        enter("BatchWriteItem");
+        Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+        List<ConsumedCapacity> consumed = new ArrayList<>();
+        request.requestItems().forEach((tableName, writes) -> {
+            if (writes.size() > 25) {
+                throw DynamoDbException.builder().message("Too many items requested for the BatchWriteItem call").statusCode(400).build();
+            }
+            double units = 0;
+            for (WriteRequest write : writes) {
+                if (unprocessedRate > 0 && ThreadLocalRandom.current().nextDouble() < unprocessedRate) {
+                    unprocessed.computeIfAbsent(tableName, name -> new ArrayList<>()).add(write);
+                    continue;
+                }
+                synchronized (writeLock) {
+                    if (write.putRequest() != null) {
+                        Map<String, AttributeValue> item = new HashMap<>(write.putRequest().item());
+                        Map<String, AttributeValue> previous = find(item);
+                        store(item);
+                        units += writeUnits(previous, item);
+                    } else if (write.deleteRequest() != null) {
+                        Map<String, AttributeValue> previous = find(write.deleteRequest().key());
+                        if (previous != null) {
+                            remove(previous);
+                        }
+                        units += writeUnits(previous, null);
+                    }
+                }
+            }
+            ConsumedCapacity capacity = capacity(request.returnConsumedCapacity(), tableName, 0, units);
+            if (capacity != null) {
+                consumed.add(capacity);
+            }
+        });
+        return BatchWriteItemResponse.builder()
+                .unprocessedItems(unprocessed)
+                .consumedCapacity(consumed.isEmpty() ? null : consumed)
+                .build();
+    }
+
+    @Override
+    public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+        enter("BatchGetItem");
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        List<ConsumedCapacity> consumed = new ArrayList<>();
+        request.requestItems().forEach((tableName, keysAndAttributes) -> {
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            double units = 0;
+            for (Map<String, AttributeValue> key : keysAndAttributes.keys()) {
+                Map<String, AttributeValue> item = find(key);
+                if (item != null) {
+                    found.add(Expressions.project(keysAndAttributes.projectionExpression(), item, keysAndAttributes.expressionAttributeNames()));
+                    units += readUnits(ItemSizes.itemSize(item), Boolean.TRUE.equals(keysAndAttributes.consistentRead()));
+                }
+            }
+            responses.put(tableName, found);
+            ConsumedCapacity capacity = capacity(request.returnConsumedCapacity(), tableName, units, 0);
+            if (capacity != null) {
+                consumed.add(capacity);
+            }
+        });
+        return BatchGetItemResponse.builder()
+                .responses(responses)
+                .unprocessedKeys(Map.of())
+                .consumedCapacity(consumed.isEmpty() ? null : consumed)
+                .build();
+    }
+
+    @Override
+    public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+        enter("TransactWriteItems");
+        if (request.transactItems().size() > 100) {
+            throw DynamoDbException.builder().message("Member must have length less than or equal to 100").statusCode(400).build();
+        }
+        double units = 0;
+        synchronized (writeLock) {
+            // Validate every condition first so that a failure leaves the table untouched
+            List<CancellationReason> reasons = new ArrayList<>();
+            boolean cancelled = false;
+            for (TransactWriteItem transactItem : request.transactItems()) {
+                String failure = transactConditionFailure(transactItem);
+                cancelled |= failure != null;
+                CancellationReason.Builder reason = CancellationReason.builder().code(failure == null ? "None" : failure);
+                Map<String, AttributeValue> existing = failure == null ? null : returnedOnFailure(transactItem);
+                if (existing != null) {
+                    reason.item(existing);
+                }
+                reasons.add(reason.build());
+            }
+            if (cancelled) {
+                throw TransactionCanceledException.builder()
+                        .message("Transaction cancelled, please refer cancellation reasons for specific reasons")
+                        .cancellationReasons(reasons)
+                        .statusCode(400)
+                        .build();
+            }
+
+            for (TransactWriteItem transactItem : request.transactItems()) {
+                if (transactItem.put() != null) {
+                    Map<String, AttributeValue> item = new HashMap<>(transactItem.put().item());
+                    Map<String, AttributeValue> previous = find(item);
+                    store(item);
+                    units += 2 * writeUnits(previous, item);
+                } else if (transactItem.update() != null) {
+                    Update update = transactItem.update();
+                    Map<String, AttributeValue> previous = find(update.key());
+                    Map<String, AttributeValue> updated = previous == null ? new HashMap<>(update.key()) : new HashMap<>(previous);
+                    Expressions.update(update.updateExpression(), updated, update.expressionAttributeNames(), update.expressionAttributeValues());
+                    store(updated);
+                    units += 2 * writeUnits(previous, updated);
+                } else if (transactItem.delete() != null) {
+                    Map<String, AttributeValue> previous = find(transactItem.delete().key());
+                    if (previous != null) {
+                        remove(previous);
+                        units += 2 * writeUnits(previous, null);
+                    }
+                } else {
+                    units += 2;
+                }
+            }
+        }
+        String tableName = request.transactItems().isEmpty() ? null : transactTable(request.transactItems().get(0));
+        ConsumedCapacity capacity = capacity(request.returnConsumedCapacity(), tableName, 0, units);
+        return TransactWriteItemsResponse.builder()
+                .consumedCapacity(capacity == null ? null : List.of(capacity))
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static double readUnits(int size, boolean consistent) {
+        double units = Math.max(1, Math.ceil(size / 4096.0));
+        return consistent ? units : units / 2;
+    }
+
+    private static double writeUnits(int size) {
+        return Math.max(1, Math.ceil(size / 1024.0));
+    }
+
+    /**
+     * The write units of replacing {@code previous} with {@code item}, either of which may be
+     * absent, in the table and in every index. Each index projects all attributes, as in
+     * template.yaml: an item entering, changing in or leaving an index is one write there, sized
+     * like the table write, and a change of its index key is a delete plus a put.
+     */
+    private double writeUnits(Map<String, AttributeValue> previous, Map<String, AttributeValue> item) {
+        int before = previous == null ? 0 : ItemSizes.itemSize(previous);
+        int after = item == null ? 0 : ItemSizes.itemSize(item);
+        double units = writeUnits(Math.max(before, after));
+        for (IndexSchema schema : indexes.values()) {
+            boolean was = previous != null && schema.indexes(previous);
+            boolean is = item != null && schema.indexes(item);
+            if (was && is && !schema.sameKey(previous, item)) {
+                units += writeUnits(before) + writeUnits(after);
+            } else if (was && is) {
+                units += writeUnits(Math.max(before, after));
+            } else if (was) {
+                units += writeUnits(before);
+            } else if (is) {
+                units += writeUnits(after);
+            }
+        }
+        return units;
+    }
+
+    private static ConsumedCapacity capacity(ReturnConsumedCapacity mode, String tableName, double readUnits, double writeUnits) {
+        if (mode == null || mode == ReturnConsumedCapacity.NONE) {
+            return null;
+        }
+        return ConsumedCapacity.builder()
+                .tableName(tableName)
+                .capacityUnits(readUnits + writeUnits)
+                .readCapacityUnits(readUnits == 0 ? null : readUnits)
+                .writeCapacityUnits(writeUnits == 0 ? null : writeUnits)
+                .build();
+    }
+
+    private void enter(String operation) {
+        calls.computeIfAbsent(operation, name -> new LongAdder()).increment();
+        long latency = latencyNanos;
+        if (spikeRate > 0 && ThreadLocalRandom.current().nextDouble() < spikeRate) {
+            latency += spikeNanos;
+        }
+        if (latency > 0) {
+            LockSupport.parkNanos(latency);
+        }
+        TokenBucket capacity = provisioned;
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate
+                || capacity != null && !capacity.tryAcquire()) {
+            throw ProvisionedThroughputExceededException.builder()
+                    .message("The level of configured provisioned throughput for the table was exceeded")
+                    .statusCode(400)
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                            .errorCode("ProvisionedThroughputExceededException")
+                            .serviceName("DynamoDb")
+                            .build())
+                    .build();
+        }
+    }
+
+    private Object page(Iterable<Map<String, AttributeValue>> candidates, String keyCondition, String filter, String projection,
+                        Map<String, String> names, Map<String, AttributeValue> values, Integer limit, String indexName,
+                        boolean consistent, ReturnConsumedCapacity capacityMode, String tableName, boolean isQuery) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Map<String, AttributeValue> lastEvaluated = null;
+        int scanned = 0;
+        int bytes = 0;
+        boolean more = false;
+
+        Iterator<Map<String, AttributeValue>> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+            Map<String, AttributeValue> item = iterator.next();
+            if (keyCondition != null && !Expressions.evaluate(keyCondition, item, names, values)) {
+                continue;
+            }
+            if ((limit != null && scanned >= limit) || bytes >= 1024 * 1024) {
+                more = true;
+                break;
+            }
+            scanned++;
+            bytes += ItemSizes.itemSize(item);
+            lastEvaluated = item;
+            if (Expressions.evaluate(filter, item, names, values)) {
+                items.add(Expressions.project(projection, item, names));
+            }
+        }
+
+        Map<String, AttributeValue> lastEvaluatedKey = more && lastEvaluated != null ? keyOf(indexName, lastEvaluated) : null;
+        ConsumedCapacity capacity = capacity(capacityMode, tableName, readUnits(bytes, consistent), 0);
+        if (isQuery) {
+            return QueryResponse.builder()
+                    .items(items)
+                    .count(items.size())
+                    .scannedCount(scanned)
+                    .lastEvaluatedKey(lastEvaluatedKey)
+                    .consumedCapacity(capacity)
+                    .build();
+        }
+        return ScanResponse.builder()
+                .items(items)
+                .count(items.size())
+                .scannedCount(scanned)
+                .lastEvaluatedKey(lastEvaluatedKey)
+                .consumedCapacity(capacity)
+                .build();
+    }
+
+    private Map<String, AttributeValue> find(Map<String, AttributeValue> key) {
+        AttributeValue pk = key.get(PARTITION_KEY);
+        AttributeValue sk = key.get(SORT_KEY);
+        if (pk == null || sk == null) {
+            throw DynamoDbException.builder().message("The provided key element does not match the schema").statusCode(400).build();
+        }
+        Map<String, Map<String, AttributeValue>> partition = partitions.get(pk.s());
+        return partition == null ? null : partition.get(sk.s());
+    }
+
+    private void store(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> previous = find(item);
+        if (previous != null) {
+            unindex(previous);
+        }
+        Map<String, AttributeValue> stored = Collections.unmodifiableMap(item);
+        partitions.computeIfAbsent(item.get(PARTITION_KEY).s(), pk -> new ConcurrentSkipListMap<>())
+                .put(item.get(SORT_KEY).s(), stored);
+        indexes.forEach((indexName, schema) -> {
+            AttributeValue hash = stored.get(schema.hashAttribute());
+            AttributeValue range = stored.get(schema.rangeAttribute());
+            if (hash != null && hash.s() != null && range != null && range.s() != null) {
+                indexData.get(indexName).computeIfAbsent(hash.s(), value -> new ConcurrentSkipListMap<>())
+                        .put(position(indexName, stored), stored);
+            }
+        });
+    }
+
+    private void remove(Map<String, AttributeValue> item) {
+        unindex(item);
+        Map<String, Map<String, AttributeValue>> partition = partitions.get(item.get(PARTITION_KEY).s());
+        if (partition != null) {
+            partition.remove(item.get(SORT_KEY).s());
+        }
+    }
+
+    private void unindex(Map<String, AttributeValue> item) {
+        indexes.forEach((indexName, schema) -> {
+            AttributeValue hash = item.get(schema.hashAttribute());
+            if (hash != null && hash.s() != null && item.get(schema.rangeAttribute()) != null) {
+                Map<String, Map<String, AttributeValue>> entries = indexData.get(indexName).get(hash.s());
+                if (entries != null) {
+                    entries.remove(position(indexName, item));
+                }
+            }
+        });
+    }
+
+    private String position(String indexName, Map<String, AttributeValue> item) {
+        if (indexName == null) {
+            return item.get(SORT_KEY).s();
+        }
+        return item.get(schema(indexName).rangeAttribute()).s() + KEY_SEPARATOR
+                + item.get(PARTITION_KEY).s() + KEY_SEPARATOR + item.get(SORT_KEY).s();
+    }
+
+    private Map<String, AttributeValue> keyOf(String indexName, Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(PARTITION_KEY, item.get(PARTITION_KEY));
+        key.put(SORT_KEY, item.get(SORT_KEY));
+        if (indexName != null) {
+            IndexSchema schema = schema(indexName);
+            key.put(schema.hashAttribute(), item.get(schema.hashAttribute()));
+            key.put(schema.rangeAttribute(), item.get(schema.rangeAttribute()));
+        }
+        return key;
+    }
+
+    private IndexSchema schema(String indexName) {
+        IndexSchema schema = indexes.get(indexName);
+        if (schema == null) {
+            throw DynamoDbException.builder().message("The table does not have the specified index: " + indexName).statusCode(400).build();
+        }
+        return schema;
+    }
+
+    private static void checkCondition(String condition, Map<String, AttributeValue> existing,
+                                       Map<String, String> names, Map<String, AttributeValue> values) {
+        if (!Expressions.evaluate(condition, existing == null ? Map.of() : existing, names, values)) {
+            throw ConditionalCheckFailedException.builder().message("The conditional request failed").statusCode(400).build();
+        }
+    }
+
+    private String transactConditionFailure(TransactWriteItem transactItem) {
+        if (transactItem.put() != null) {
+            Put put = transactItem.put();
+            return conditionHolds(put.conditionExpression(), find(put.item()), put.expressionAttributeNames(), put.expressionAttributeValues());
+        }
+        if (transactItem.update() != null) {
+            Update update = transactItem.update();
+            return conditionHolds(update.conditionExpression(), find(update.key()), update.expressionAttributeNames(), update.expressionAttributeValues());
+        }
+        if (transactItem.delete() != null) {
+            Delete delete = transactItem.delete();
+            return conditionHolds(delete.conditionExpression(), find(delete.key()), delete.expressionAttributeNames(), delete.expressionAttributeValues());
+        }
+        ConditionCheck check = transactItem.conditionCheck();
+        return conditionHolds(check.conditionExpression(), find(check.key()), check.expressionAttributeNames(), check.expressionAttributeValues());
+    }
+
+    // The item as it was, for the writes that ask for it with ReturnValuesOnConditionCheckFailure=ALL_OLD
+    private Map<String, AttributeValue> returnedOnFailure(TransactWriteItem transactItem) {
+        ReturnValuesOnConditionCheckFailure returnValues;
+        Map<String, AttributeValue> key;
+        if (transactItem.put() != null) {
+            returnValues = transactItem.put().returnValuesOnConditionCheckFailure();
+            key = transactItem.put().item();
+        } else if (transactItem.update() != null) {
+            returnValues = transactItem.update().returnValuesOnConditionCheckFailure();
+            key = transactItem.update().key();
+        } else if (transactItem.delete() != null) {
+            returnValues = transactItem.delete().returnValuesOnConditionCheckFailure();
+            key = transactItem.delete().key();
+        } else {
+            returnValues = transactItem.conditionCheck().returnValuesOnConditionCheckFailure();
+            key = transactItem.conditionCheck().key();
+        }
+        return returnValues == ReturnValuesOnConditionCheckFailure.ALL_OLD ? find(key) : null;
+    }
+
+    private static String conditionHolds(String condition, Map<String, AttributeValue> existing,
+                                         Map<String, String> names, Map<String, AttributeValue> values) {
+        return Expressions.evaluate(condition, existing == null ? Map.of() : existing, names, values) ? null : "ConditionalCheckFailed";
+    }
+
+    private static String transactTable(TransactWriteItem transactItem) {
+        if (transactItem.put() != null) return transactItem.put().tableName();
+        if (transactItem.update() != null) return transactItem.update().tableName();
+        if (transactItem.delete() != null) return transactItem.delete().tableName();
+        return transactItem.conditionCheck().tableName();
+    }
+
+    private static Map<String, AttributeValue> select(Map<String, AttributeValue> item, Set<String> names) {
+        Map<String, AttributeValue> selected = new HashMap<>();
+        for (String name : names) {
+            AttributeValue value = item.get(name);
+            if (value != null) {
+                selected.put(name, value);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Pulls the value compared for equality with the hash key out of a key condition such as
+     * {@code PK = :pk AND begins_with(SK, :prefix)}.
+     */
+    private static AttributeValue hashKeyValue(String keyCondition, String hashAttribute,
+                                               Map<String, String> names, Map<String, AttributeValue> values) {
+        if (keyCondition == null) {
+            throw SdkClientException.create("KeyConditionExpression is required");
+        }
+        String[] tokens = keyCondition.replace("(", " ( ").replace(")", " ) ").replace("=", " = ").trim().split("\\s+");
+        for (int i = 0; i + 2 < tokens.length; i++) {
+            String name = tokens[i].startsWith("#") && names != null ? names.get(tokens[i]) : tokens[i];
+            if (hashAttribute.equals(name) && tokens[i + 1].equals("=") && values != null && values.containsKey(tokens[i + 2])) {
+                return values.get(tokens[i + 2]);
+            }
+        }
+        throw DynamoDbException.builder().message("Query condition missed key schema element: " + hashAttribute).statusCode(400).build();
+    }
+}
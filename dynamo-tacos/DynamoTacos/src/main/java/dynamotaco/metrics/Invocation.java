@@ -0,0 +1,123 @@
+package dynamotaco.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * What one request spent: time per phase, DynamoDB calls, the capacity they consumed and the size
+ * of every item they read or wrote. DynamoDB callbacks may record from other threads, so updates
+ * go through a lock; it is only ever contended by the parallel calls of one request.
+ */
+public final class Invocation {
+
+    final String route;
+    final boolean coldStart;
+    final long startedAt = System.nanoTime();
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final ReentrantLock lock = new ReentrantLock();
+    private int dynamoDbCalls;
+    private double readUnits;
+    private double writeUnits;
+    private long[] itemBytes = new long[8];
+    private int itemCount;
+
+    Invocation(String route, boolean coldStart) {
+        this.route = route;
+        this.coldStart = coldStart;
+    }
+
+    public String route() {
+        return route;
+    }
+
+    public void addPhase(Phase phase, long nanos) {
+        lock.lock();
+        try {
+            phaseNanos[phase.ordinal()] += nanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addDynamoDbCall(long nanos) {
+        lock.lock();
+        try {
+            phaseNanos[Phase.DYNAMODB.ordinal()] += nanos;
+            dynamoDbCalls++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addCapacity(double readUnits, double writeUnits) {
+        lock.lock();
+        try {
+            this.readUnits += readUnits;
+            this.writeUnits += writeUnits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addItemBytes(long bytes) {
+        lock.lock();
+        try {
+            if (itemCount == itemBytes.length) {
+                itemBytes = Arrays.copyOf(itemBytes, itemCount * 2);
+            }
+            itemBytes[itemCount++] = bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void recordItemBytes(Histogram histogram) {
+        lock.lock();
+        try {
+            for (int i = 0; i < itemCount; i++) {
+                histogram.recordValue(itemBytes[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long phaseNanos(Phase phase) {
+        lock.lock();
+        try {
+            return phaseNanos[phase.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int dynamoDbCalls() {
+        lock.lock();
+        try {
+            return dynamoDbCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double readUnits() {
+        lock.lock();
+        try {
+            return readUnits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double writeUnits() {
+        lock.lock();
+        try {
+            return writeUnits;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
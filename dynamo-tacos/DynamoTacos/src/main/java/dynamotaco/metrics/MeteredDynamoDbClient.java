@@ -0,0 +1,215 @@
+package dynamotaco.metrics;
+
+import dynamotaco.util.ItemSizes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Records what every DynamoDB call of the current {@link Invocation} costs: its latency, the
+ * capacity it consumed and the size of the items it read or wrote. Requests made inside an
+ * invocation ask for {@code ReturnConsumedCapacity=TOTAL}; calls made outside one, e.g. priming
+ * or stream processing, go through untouched.
+ *
+ * Results complete with the invocation current again, so a call chained on another one, like the
+ * next page of a query, is attributed to the same request whichever thread finishes it.
+ */
+public class MeteredDynamoDbClient implements DynamoDbAsyncClient {
+
+    private final DynamoDbAsyncClient delegate;
+
+    public MeteredDynamoDbClient(DynamoDbAsyncClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::getItem, (invocation, response) -> {
+                    read(invocation, response.consumedCapacity());
+                    if (response.hasItem()) {
+                        invocation.addItemBytes(ItemSizes.itemSize(response.item()));
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::putItem, (invocation, response) -> {
+                    write(invocation, response.consumedCapacity());
+                    invocation.addItemBytes(ItemSizes.itemSize(request.item()));
+                });
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::updateItem, (invocation, response) -> {
+                    write(invocation, response.consumedCapacity());
+                    if (response.hasAttributes()) {
+                        invocation.addItemBytes(ItemSizes.itemSize(response.attributes()));
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::deleteItem,
+                (invocation, response) -> write(invocation, response.consumedCapacity()));
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::query, (invocation, response) -> {
+                    read(invocation, response.consumedCapacity());
+                    items(invocation, response.items());
+                });
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> scan(ScanRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::scan, (invocation, response) -> {
+                    read(invocation, response.consumedCapacity());
+                    items(invocation, response.items());
+                });
+    }
+
+    @Override
+    public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::batchWriteItem, (invocation, response) -> {
+                    write(invocation, response.consumedCapacity());
+                    for (List<WriteRequest> writes : request.requestItems().values()) {
+                        for (WriteRequest write : writes) {
+                            if (write.putRequest() != null) {
+                                invocation.addItemBytes(ItemSizes.itemSize(write.putRequest().item()));
+                            }
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::batchGetItem, (invocation, response) -> {
+                    read(invocation, response.consumedCapacity());
+                    response.responses().values().forEach(items -> items(invocation, items));
+                });
+    }
+
+    @Override
+    public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::transactWriteItems, (invocation, response) -> {
+                    write(invocation, response.consumedCapacity());
+                    for (TransactWriteItem item : request.transactItems()) {
+                        if (item.put() != null) {
+                            invocation.addItemBytes(ItemSizes.itemSize(item.put().item()));
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<TransactGetItemsResponse> transactGetItems(TransactGetItemsRequest request) {
+        return call(request, r -> r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build(),
+                request.returnConsumedCapacity(), delegate::transactGetItems, (invocation, response) -> {
+                    read(invocation, response.consumedCapacity());
+                    for (ItemResponse item : response.responses()) {
+                        if (item.hasItem()) {
+                            invocation.addItemBytes(ItemSizes.itemSize(item.item()));
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private <R, T> CompletableFuture<T> call(R request, Function<R, R> withCapacity, ReturnConsumedCapacity requested,
+                                             Function<R, CompletableFuture<T>> send,
+                                             BiConsumer<Invocation, T> record) {
+        Invocation invocation = Metrics.current();
+        if (invocation == null) {
+            return send.apply(request);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        send.apply(requested == null ? withCapacity.apply(request) : request).whenComplete((response, failure) -> {
+            if (response != null) {
+                try {
+                    record.accept(invocation, response);
+                } catch (RuntimeException e) {
+                    System.err.println("Could not record DynamoDB metrics: " + e.getMessage());
+                }
+            }
+            invocation.addDynamoDbCall(System.nanoTime() - start);
+            Invocation previous = Metrics.enter(invocation);
+            try {
+                if (failure == null) {
+                    result.complete(response);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            } finally {
+                Metrics.exit(previous);
+            }
+        });
+        return result;
+    }
+
+    private static void read(Invocation invocation, ConsumedCapacity capacity) {
+        if (capacity != null) {
+            invocation.addCapacity(units(capacity.readCapacityUnits(), capacity.capacityUnits()),
+                    orZero(capacity.writeCapacityUnits()));
+        }
+    }
+
+    private static void write(Invocation invocation, ConsumedCapacity capacity) {
+        if (capacity != null) {
+            invocation.addCapacity(orZero(capacity.readCapacityUnits()),
+                    units(capacity.writeCapacityUnits(), capacity.capacityUnits()));
+        }
+    }
+
+    private static void read(Invocation invocation, List<ConsumedCapacity> capacities) {
+        capacities.forEach(capacity -> read(invocation, capacity));
+    }
+
+    private static void write(Invocation invocation, List<ConsumedCapacity> capacities) {
+        capacities.forEach(capacity -> write(invocation, capacity));
+    }
+
+    private static void items(Invocation invocation, Collection<Map<String, AttributeValue>> items) {
+        for (Map<String, AttributeValue> item : items) {
+            invocation.addItemBytes(ItemSizes.itemSize(item));
+        }
+    }
+
+    // Only the total is filled in unless the request asked for INDEXES; then it is all one kind
+    private static double units(Double split, Double total) {
+        return split != null ? split : orZero(total);
+    }
+
+    private static double orZero(Double value) {
+        return value == null ? 0 : value;
+    }
+}
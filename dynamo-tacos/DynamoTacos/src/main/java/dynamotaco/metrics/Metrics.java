@@ -0,0 +1,125 @@
+package dynamotaco.metrics;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.util.Config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Per-route latency and DynamoDB cost metrics, written to stdout as CloudWatch Embedded Metric
+ * Format lines, which Lambda forwards to CloudWatch Logs where they become metrics without any
+ * API calls.
+ *
+ * Handlers run through {@link #invoke}, which makes an {@link Invocation} current for the calling
+ * thread, and mark their phases with {@link #phase}; {@link MeteredDynamoDbClient} adds DynamoDB
+ * time, consumed capacity and item sizes. When the request is answered, its numbers go into the
+ * route's histograms and everything recorded since the previous flush is printed as one line.
+ *
+ * On by default inside Lambda only; {@code METRICS_ENABLED} overrides that. When off,
+ * {@link #invoke} just calls the handler and {@link #phase} returns right away.
+ */
+public final class Metrics {
+
+    private static final String NAMESPACE = Config.get("METRICS_NAMESPACE", "metrics.namespace", "DynamoTacos");
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<>();
+    private static final Map<String, RouteMetrics> ROUTES = new ConcurrentHashMap<>();
+    private static final AtomicBoolean COLD = new AtomicBoolean(true);
+
+    private static volatile boolean enabled = Config.getBoolean("METRICS_ENABLED", "metrics.enabled",
+            System.getenv("AWS_LAMBDA_FUNCTION_NAME") != null);
+    private static volatile Consumer<String> sink = System.out::println;
+    private static volatile Consumer<Invocation> listener = invocation -> {
+    };
+
+    private Metrics() {
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /** Where EMF lines go, stdout unless a test or benchmark wants them. */
+    public static void setSink(Consumer<String> value) {
+        sink = value;
+    }
+
+    /**
+     * Called with every finished invocation after its line is emitted, e.g. by a load generator
+     * adding up consumed capacity per route.
+     */
+    public static void setListener(Consumer<Invocation> value) {
+        listener = value;
+    }
+
+    /** The next invocation counts as a cold start again, e.g. after a SnapStart restore. */
+    public static void markColdStart() {
+        COLD.set(true);
+    }
+
+    public static APIGatewayProxyResponseEvent invoke(
+            String route, APIGatewayProxyRequestEvent request, Context context,
+            RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler) {
+        if (!enabled) {
+            return handler.handleRequest(request, context);
+        }
+        RouteMetrics metrics = ROUTES.computeIfAbsent(route, RouteMetrics::new);
+        Invocation invocation = new Invocation(route, COLD.getAndSet(false));
+        Invocation previous = enter(invocation);
+        APIGatewayProxyResponseEvent response = null;
+        try {
+            response = handler.handleRequest(request, context);
+            return response;
+        } finally {
+            exit(previous);
+            int statusCode = response == null || response.getStatusCode() == null ? 500 : response.getStatusCode();
+            try {
+                sink.accept(metrics.flush(invocation, statusCode, NAMESPACE, System.currentTimeMillis()));
+                listener.accept(invocation);
+            } catch (RuntimeException e) {
+                // Metrics must never fail the request they describe
+                System.err.println("Could not emit metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Returns a start mark for {@link #phase}; cheaper than {@code System.nanoTime()} when metrics are off. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Adds the time since {@code startNanos} to {@code phase} of the current invocation. */
+    public static void phase(Phase phase, long startNanos) {
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.addPhase(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    public static Invocation current() {
+        return enabled ? CURRENT.get() : null;
+    }
+
+    static Invocation enter(Invocation invocation) {
+        Invocation previous = CURRENT.get();
+        CURRENT.set(invocation);
+        return previous;
+    }
+
+    static void exit(Invocation previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
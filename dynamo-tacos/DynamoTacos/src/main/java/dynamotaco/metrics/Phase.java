@@ -0,0 +1,22 @@
+package dynamotaco.metrics;
+
+/**
+ * The parts of a request that get their own latency metric. DynamoDB time is measured by
+ * {@link MeteredDynamoDbClient}; the others are marked by the handlers.
+ */
+public enum Phase {
+    DESERIALIZE("DeserializeTime"),
+    DYNAMODB("DynamoDbTime"),
+    MAPPING("MappingTime"),
+    SERIALIZE("SerializeTime");
+
+    private final String metricName;
+
+    Phase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String metricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,165 @@
+package dynamotaco.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HDR histograms for one route: total duration and each phase in microseconds, plus the size of
+ * every item read or written. {@link #flush} records an invocation, renders what the histograms
+ * hold as one Embedded Metric Format line and resets them, all under one lock, so concurrent
+ * invocations of a route (in the local server) each get a line of their own. A Lambda container
+ * runs one invocation at a time and never waits for it.
+ *
+ * Plain auto-resizing histograms rather than {@code Recorder}s: swapping a recorder's interval
+ * histogram costs a few microseconds each, and a flush would swap six of them per request.
+ */
+final class RouteMetrics {
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+    // CloudWatch accepts at most 100 distinct values per metric
+    private static final int MAX_VALUES = 100;
+
+    final String route;
+    private final Histogram duration = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+    private final Histogram itemBytes = new Histogram(SIGNIFICANT_DIGITS);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    RouteMetrics(String route) {
+        this.route = route;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram(SIGNIFICANT_DIGITS);
+        }
+    }
+
+    String flush(Invocation invocation, int statusCode, String namespace, long timestampMillis) {
+        long elapsed = System.nanoTime() - invocation.startedAt;
+        lock.lock();
+        try {
+            duration.recordValue(micros(elapsed));
+            for (Phase phase : Phase.values()) {
+                long nanos = invocation.phaseNanos(phase);
+                if (nanos > 0) {
+                    phases[phase.ordinal()].recordValue(micros(nanos));
+                }
+            }
+            invocation.recordItemBytes(itemBytes);
+            return render(invocation, statusCode, namespace, timestampMillis);
+        } finally {
+            duration.reset();
+            for (Histogram phase : phases) {
+                phase.reset();
+            }
+            itemBytes.reset();
+            lock.unlock();
+        }
+    }
+
+    private String render(Invocation invocation, int statusCode, String namespace, long timestampMillis) {
+        StringBuilder definitions = new StringBuilder(512);
+        StringBuilder values = new StringBuilder(1024);
+
+        metric(definitions, values, "Duration", "Milliseconds", duration, 1e-3);
+        for (Phase phase : Phase.values()) {
+            metric(definitions, values, phase.metricName(), "Milliseconds", phases[phase.ordinal()], 1e-3);
+        }
+        metric(definitions, values, "ItemBytes", "Bytes", itemBytes, 1);
+        metric(definitions, values, "DynamoDbCalls", "Count", invocation.dynamoDbCalls());
+        metric(definitions, values, "ReadCapacityUnits", "Count", invocation.readUnits());
+        metric(definitions, values, "WriteCapacityUnits", "Count", invocation.writeUnits());
+        metric(definitions, values, "ColdStart", "Count", invocation.coldStart ? 1 : 0);
+        metric(definitions, values, "ServerErrors", "Count", statusCode >= 500 ? 1 : 0);
+
+        StringBuilder line = new StringBuilder(definitions.length() + values.length() + 200);
+        line.append("{\"_aws\":{\"Timestamp\":").append(timestampMillis)
+                .append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+        string(line, namespace);
+        line.append(",\"Dimensions\":[[\"Route\"]],\"Metrics\":[").append(definitions).append("]}]},\"Route\":");
+        string(line, route);
+        line.append(",\"StatusCode\":").append(statusCode)
+                .append(",\"ColdStartInvocation\":").append(invocation.coldStart)
+                .append(values).append('}');
+        return line.toString();
+    }
+
+    private static void metric(StringBuilder definitions, StringBuilder values, String name, String unit,
+                               Histogram histogram, double scale) {
+        if (histogram.getTotalCount() == 0) {
+            return;
+        }
+        define(definitions, name, unit);
+        values.append(",\"").append(name).append("\":{\"Values\":[");
+        StringBuilder counts = new StringBuilder(",\"Counts\":[");
+        Iterable<HistogramIterationValue> buckets = histogram.recordedValues();
+        if (histogram.getTotalCount() > MAX_VALUES && distinct(histogram) > MAX_VALUES) {
+            long lowest = Math.max(1, histogram.getMinValue());
+            double base = Math.max(1.01, Math.pow((double) histogram.getMaxValue() / lowest, 1.0 / (MAX_VALUES - 2)));
+            buckets = histogram.logarithmicBucketValues(lowest, base);
+        }
+        boolean first = true;
+        for (HistogramIterationValue bucket : buckets) {
+            long count = bucket.getCountAddedInThisIterationStep();
+            if (count == 0) {
+                continue;
+            }
+            if (!first) {
+                values.append(',');
+                counts.append(',');
+            }
+            first = false;
+            number(values, histogram.highestEquivalentValue(bucket.getValueIteratedTo()) * scale);
+            counts.append(count);
+        }
+        values.append(']').append(counts).append("]}");
+    }
+
+    private static int distinct(Histogram histogram) {
+        int distinct = 0;
+        for (HistogramIterationValue ignored : histogram.recordedValues()) {
+            distinct++;
+        }
+        return distinct;
+    }
+
+    private static void metric(StringBuilder definitions, StringBuilder values, String name, String unit, double value) {
+        define(definitions, name, unit);
+        values.append(",\"").append(name).append("\":");
+        number(values, value);
+    }
+
+    private static void define(StringBuilder definitions, String name, String unit) {
+        if (!definitions.isEmpty()) {
+            definitions.append(',');
+        }
+        definitions.append("{\"Name\":\"").append(name).append("\",\"Unit\":\"").append(unit).append("\"}");
+    }
+
+    private static void number(StringBuilder out, double value) {
+        if (value == Math.rint(value)) {
+            out.append((long) value);
+        } else {
+            out.append(Math.round(value * 1000) / 1000.0);
+        }
+    }
+
+    private static void string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static long micros(long nanos) {
+        return Math.max(0, nanos / 1000);
+    }
+}
@@ -0,0 +1,50 @@
+package dynamotaco.models;
+
+public class BatchOrderResult {
+    private int index;
+    private String orderId;
+    private boolean created;
+    private String error;
+
+    public BatchOrderResult() {
+    }
+
+    public BatchOrderResult(int index, String orderId, boolean created, String error) {
+        this.index = index;
+        this.orderId = orderId;
+        this.created = created;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public boolean isCreated() {
+        return created;
+    }
+
+    public void setCreated(boolean created) {
+        this.created = created;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
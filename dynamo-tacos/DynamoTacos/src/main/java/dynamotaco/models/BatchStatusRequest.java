@@ -0,0 +1,24 @@
+package dynamotaco.models;
+
+import java.util.List;
+
+public class BatchStatusRequest {
+    private boolean atomic;
+    private List<UpdateOrderRequest> updates;
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    public void setAtomic(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    public List<UpdateOrderRequest> getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(List<UpdateOrderRequest> updates) {
+        this.updates = updates;
+    }
+}
@@ -0,0 +1,61 @@
+package dynamotaco.models;
+
+public class BatchStatusResult {
+    private int index;
+    private String orderId;
+    private StatusUpdateOutcome outcome;
+    private OrderStatus status;
+    private String error;
+
+    public BatchStatusResult() {
+    }
+
+    public BatchStatusResult(int index, String orderId, StatusUpdateOutcome outcome, OrderStatus status, String error) {
+        this.index = index;
+        this.orderId = orderId;
+        this.outcome = outcome;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public StatusUpdateOutcome getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(StatusUpdateOutcome outcome) {
+        this.outcome = outcome;
+    }
+
+    /** The status the order is in now: the new one when updated, the one that conflicted otherwise. */
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,58 @@
+package dynamotaco.models;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of an order in the API JSON, in the order they are written. {@code fields=status,totalPrice}
+ * on an order request selects some of them.
+ */
+public enum OrderField {
+    ID("id"),
+    CUSTOMER_ID("customerId"),
+    ORDER_DATE("orderDate"),
+    TOTAL_PRICE("totalPrice"),
+    STATUS("status"),
+    TACOS("tacos"),
+    SIDE_ITEMS("sideItems");
+
+    public static final Set<OrderField> ALL = Collections.unmodifiableSet(EnumSet.allOf(OrderField.class));
+
+    private final String jsonName;
+
+    OrderField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    public boolean isLineItems() {
+        return this == TACOS || this == SIDE_ITEMS;
+    }
+
+    /**
+     * The fields named in a comma-separated list of JSON names; null or blank selects all of them.
+     */
+    public static Set<OrderField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<OrderField> selected = EnumSet.noneOf(OrderField.class);
+        for (String name : fields.split(",")) {
+            selected.add(fromJsonName(name.trim()));
+        }
+        return selected;
+    }
+
+    private static OrderField fromJsonName(String name) {
+        for (OrderField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown order field " + name);
+    }
+}
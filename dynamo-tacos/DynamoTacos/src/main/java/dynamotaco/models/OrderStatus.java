@@ -1,7 +1,29 @@
 package dynamotaco.models;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where an order is in the kitchen. Orders start RECEIVED and move on to COMPLETED or CANCELLED,
+ * which are final.
+ */
 public enum OrderStatus {
     RECEIVED,
     COMPLETED,
-    CANCELLED
+    CANCELLED;
+
+    public boolean canMoveTo(OrderStatus next) {
+        return this == RECEIVED && next != RECEIVED;
+    }
+
+    /** The statuses an order can be moved to this one from; empty for RECEIVED. */
+    public List<OrderStatus> predecessors() {
+        List<OrderStatus> predecessors = new ArrayList<>();
+        for (OrderStatus status : values()) {
+            if (status.canMoveTo(this)) {
+                predecessors.add(status);
+            }
+        }
+        return predecessors;
+    }
 }
@@ -0,0 +1,14 @@
+package dynamotaco.models;
+
+public enum StatusUpdateOutcome {
+    UPDATED,
+    // Missing fields, a transition the state machine does not allow, or the same order twice
+    INVALID,
+    NOT_FOUND,
+    // The order is not in the expected status
+    CONFLICT,
+    // Valid, but not written because another update in the same transaction failed
+    ABORTED,
+    // Throttled or failed otherwise; safe to retry
+    FAILED
+}
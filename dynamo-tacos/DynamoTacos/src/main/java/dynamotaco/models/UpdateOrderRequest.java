@@ -4,6 +4,7 @@ public class UpdateOrderRequest {
     private String email;
     private String orderId;
     private OrderStatus status;
+    private OrderStatus expectedStatus;
 
     public String getEmail() {
         return email;
@@ -28,4 +29,13 @@ public class UpdateOrderRequest {
     public void setStatus(OrderStatus status) {
         this.status = status;
     }
+
+    /** The status the order must be in for the update to apply; any status that may move to {@code status} when null. */
+    public OrderStatus getExpectedStatus() {
+        return expectedStatus;
+    }
+
+    public void setExpectedStatus(OrderStatus expectedStatus) {
+        this.expectedStatus = expectedStatus;
+    }
 }
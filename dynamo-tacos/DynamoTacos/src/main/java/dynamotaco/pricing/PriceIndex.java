@@ -0,0 +1,148 @@
+package dynamotaco.pricing;
+
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.MenuItem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable menu price table in whole cents, with each item's name, keyed by item type and menu item
+ * id (ids repeat across types: taco, topping and side {@code 001} are different items).
+ *
+ * Numeric ids, which is all the menu uses, are packed with the type into a {@code long} and looked
+ * up in an open-addressing table without allocating. Other ids go through a String map.
+ */
+public final class PriceIndex {
+
+    public static final long MISSING = -1;
+
+    private static final long EMPTY = -1;
+    private static final int MAX_NUMERIC_DIGITS = 9;
+
+    private final long[] keys;
+    private final long[] cents;
+    private final String[] names;
+    private final int mask;
+    private final Map<String, Long> otherIds;
+    private final Map<String, String> otherNames;
+    private final int size;
+
+    private PriceIndex(List<MenuItem> items) {
+        int capacity = Integer.highestOneBit(Math.max(8, items.size()) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.cents = new long[capacity];
+        this.names = new String[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+
+        Map<String, Long> other = new HashMap<>();
+        Map<String, String> otherNames = new HashMap<>();
+        for (MenuItem item : items) {
+            if (item.getFoodItemType() == null || item.getId() == null) {
+                continue;
+            }
+            long price = Math.round(item.getPrice() * 100);
+            long key = numericKey(item.getFoodItemType(), item.getId());
+            if (key == EMPTY) {
+                other.put(item.getFoodItemType() + "#" + item.getId(), price);
+                if (item.getName() != null) {
+                    otherNames.put(item.getFoodItemType() + "#" + item.getId(), item.getName());
+                }
+            } else {
+                put(key, price, item.getName());
+            }
+        }
+        this.otherIds = Map.copyOf(other);
+        this.otherNames = Map.copyOf(otherNames);
+        this.size = items.size();
+    }
+
+    public static PriceIndex of(List<MenuItem> items) {
+        return new PriceIndex(items);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the price in cents, or {@link #MISSING} when the menu has no such item
+     */
+    public long cents(FoodItemType type, String menuItemId) {
+        if (menuItemId == null) {
+            return MISSING;
+        }
+        long key = numericKey(type, menuItemId);
+        if (key == EMPTY) {
+            if (otherIds.isEmpty()) {
+                return MISSING;
+            }
+            Long price = otherIds.get(type + "#" + menuItemId);
+            return price == null ? MISSING : price;
+        }
+        int slot = find(key);
+        return slot < 0 ? MISSING : cents[slot];
+    }
+
+    /**
+     * @return the item's name on the menu, or null when the menu has no such item or no name for it
+     */
+    public String name(FoodItemType type, String menuItemId) {
+        if (menuItemId == null) {
+            return null;
+        }
+        long key = numericKey(type, menuItemId);
+        if (key == EMPTY) {
+            return otherNames.get(type + "#" + menuItemId);
+        }
+        int slot = find(key);
+        return slot < 0 ? null : names[slot];
+    }
+
+    // The key's slot, or -1 when it is not in the table
+    private int find(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long stored = keys[slot];
+            if (stored == key) {
+                return slot;
+            }
+            if (stored == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void put(long key, long price, String name) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        cents[slot] = price;
+        names[slot] = name;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    // Type, digit count and value, so "001" and "1" stay different ids; EMPTY when not all digits
+    private static long numericKey(FoodItemType type, String id) {
+        int length = id.length();
+        if (length == 0 || length > MAX_NUMERIC_DIGITS) {
+            return EMPTY;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return EMPTY;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return ((long) type.ordinal() << 40) | ((long) length << 32) | value;
+    }
+}
@@ -0,0 +1,189 @@
+package dynamotaco.pricing;
+
+import dynamotaco.cache.MenuCache;
+import dynamotaco.models.*;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Prices orders from the menu instead of trusting the prices the client sent. Every taco, topping
+ * and side is resolved by its {@code menuItemId} in a {@link PriceIndex}, side items are charged per
+ * {@code quantity} (0 meaning the field was left out, i.e. one), and totals are summed in cents.
+ *
+ * The index is rebuilt only when {@code menu} returns a different list, so backing it with the menu
+ * cache reuses the cache's TTL and version checks.
+ */
+public class PricingEngine {
+
+    public static final long UNPRICED = -1;
+    public static final int MAX_QUANTITY = 99;
+
+    private final Supplier<List<MenuItem>> menu;
+    private volatile Indexed indexed;
+
+    private record Indexed(List<MenuItem> items, PriceIndex index) {
+    }
+
+    public PricingEngine(Supplier<List<MenuItem>> menu) {
+        this.menu = menu;
+    }
+
+    /**
+     * Prices from the cached menu; the index is rebuilt when the cache loads a new menu version.
+     */
+    public static PricingEngine fromMenuCache(MenuCache menuCache) {
+        return new PricingEngine(() -> menuCache.get().items());
+    }
+
+    public static PricingEngine of(List<MenuItem> items) {
+        return new PricingEngine(() -> items);
+    }
+
+    public PriceIndex index() {
+        List<MenuItem> items = menu.get();
+        Indexed current = indexed;
+        if (current == null || current.items() != items) {
+            current = new Indexed(items, PriceIndex.of(items));
+            indexed = current;
+        }
+        return current.index();
+    }
+
+    /**
+     * The order total in cents, or {@link #UNPRICED} when a line is not on the menu or has an invalid
+     * quantity. Does not allocate and does not modify the order.
+     */
+    public long totalCents(Order order) {
+        return totalCents(index(), order);
+    }
+
+    /**
+     * Prices many orders against one index; {@code totals[i]} receives the total of {@code orders.get(i)}.
+     */
+    public void totalCents(List<Order> orders, long[] totals) {
+        PriceIndex index = index();
+        for (int i = 0, n = orders.size(); i < n; i++) {
+            totals[i] = totalCents(index, orders.get(i));
+        }
+    }
+
+    public long[] totalCents(List<Order> orders) {
+        long[] totals = new long[orders.size()];
+        totalCents(orders, totals);
+        return totals;
+    }
+
+    /**
+     * Replaces every line price and name with the menu's and returns the total in cents.
+     *
+     * @throws PricingException naming the first line that cannot be priced
+     */
+    public long price(Order order) {
+        PriceIndex index = index();
+        long total = 0;
+        List<Taco> tacos = order.getTacos();
+        for (int i = 0, n = tacos == null ? 0 : tacos.size(); i < n; i++) {
+            Taco taco = tacos.get(i);
+            total += apply(index, FoodItemType.TACO, taco, taco.getMenuItemId(), 1);
+            List<Topping> toppings = taco.getToppings();
+            for (int j = 0, m = toppings == null ? 0 : toppings.size(); j < m; j++) {
+                Topping topping = toppings.get(j);
+                total += apply(index, FoodItemType.TOPPING, topping, topping.getMenuItemId(), 1);
+            }
+        }
+        List<SideItem> sideItems = order.getSideItems();
+        for (int i = 0, n = sideItems == null ? 0 : sideItems.size(); i < n; i++) {
+            SideItem side = sideItems.get(i);
+            int quantity = sideQuantity(side.getMenuItemId(), side.getQuantity());
+            side.setQuantity(quantity);
+            total += apply(index, FoodItemType.SIDE, side, side.getMenuItemId(), quantity);
+        }
+        return total;
+    }
+
+    /**
+     * The menu price of one line in cents.
+     *
+     * @throws PricingException when the menu has no such item
+     */
+    public static long menuCents(PriceIndex index, FoodItemType type, String menuItemId) {
+        long price = index.cents(type, menuItemId);
+        if (price == PriceIndex.MISSING) {
+            throw new PricingException("Unknown " + type.toString().toLowerCase() + " menuItemId " + menuItemId);
+        }
+        return price;
+    }
+
+    /**
+     * The name of one line as the menu has it; {@code sent} only for a menu item without a name.
+     */
+    public static String menuName(PriceIndex index, FoodItemType type, String menuItemId, String sent) {
+        String name = index.name(type, menuItemId);
+        return name != null ? name : sent;
+    }
+
+    /**
+     * The quantity a side item is charged for, 0 (left out) meaning one.
+     *
+     * @throws PricingException when the quantity is out of range
+     */
+    public static int sideQuantity(String menuItemId, int quantity) {
+        int charged = quantity(quantity);
+        if (charged < 0) {
+            throw new PricingException("Side item " + menuItemId + " quantity must be between 1 and " + MAX_QUANTITY);
+        }
+        return charged;
+    }
+
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    private static long totalCents(PriceIndex index, Order order) {
+        long total = 0;
+        List<Taco> tacos = order.getTacos();
+        for (int i = 0, n = tacos == null ? 0 : tacos.size(); i < n; i++) {
+            Taco taco = tacos.get(i);
+            long price = index.cents(FoodItemType.TACO, taco.getMenuItemId());
+            if (price == PriceIndex.MISSING) {
+                return UNPRICED;
+            }
+            total += price;
+            List<Topping> toppings = taco.getToppings();
+            for (int j = 0, m = toppings == null ? 0 : toppings.size(); j < m; j++) {
+                price = index.cents(FoodItemType.TOPPING, toppings.get(j).getMenuItemId());
+                if (price == PriceIndex.MISSING) {
+                    return UNPRICED;
+                }
+                total += price;
+            }
+        }
+        List<SideItem> sideItems = order.getSideItems();
+        for (int i = 0, n = sideItems == null ? 0 : sideItems.size(); i < n; i++) {
+            SideItem side = sideItems.get(i);
+            long price = index.cents(FoodItemType.SIDE, side.getMenuItemId());
+            int quantity = quantity(side.getQuantity());
+            if (price == PriceIndex.MISSING || quantity < 0) {
+                return UNPRICED;
+            }
+            total += price * quantity;
+        }
+        return total;
+    }
+
+    private static long apply(PriceIndex index, FoodItemType type, BaseItem line, String menuItemId, int quantity) {
+        long price = menuCents(index, type, menuItemId);
+        line.setPrice(toDollars(price));
+        line.setName(menuName(index, type, menuItemId, line.getName()));
+        return price * quantity;
+    }
+
+    // Omitted quantity (0) means one; -1 when out of range
+    private static int quantity(int quantity) {
+        if (quantity == 0) {
+            return 1;
+        }
+        return quantity < 0 || quantity > MAX_QUANTITY ? -1 : quantity;
+    }
+}
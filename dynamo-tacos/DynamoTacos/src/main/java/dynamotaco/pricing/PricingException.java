@@ -0,0 +1,13 @@
+package dynamotaco.pricing;
+
+/**
+ * An order line that cannot be priced from the menu: unknown menu item or invalid quantity.
+ */
+public class PricingException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PricingException(String message) {
+        super(message);
+    }
+}
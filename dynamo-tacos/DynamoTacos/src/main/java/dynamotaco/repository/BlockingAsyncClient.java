@@ -0,0 +1,94 @@
+package dynamotaco.repository;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Exposes a synchronous {@link DynamoDbClient} as a {@link DynamoDbAsyncClient} by running each call
+ * on its own virtual thread. Used for the handler constructors that take a blocking client and to put
+ * the repositories on top of {@code InMemoryDynamoDbClient} in tests and benchmarks.
+ */
+public final class BlockingAsyncClient implements DynamoDbAsyncClient {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final DynamoDbClient delegate;
+
+    private BlockingAsyncClient(DynamoDbClient delegate) {
+        this.delegate = delegate;
+    }
+
+    public static DynamoDbAsyncClient wrap(DynamoDbClient delegate) {
+        return new BlockingAsyncClient(delegate);
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        return call(() -> delegate.getItem(request));
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return call(() -> delegate.putItem(request));
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return call(() -> delegate.updateItem(request));
+    }
+
+    @Override
+    public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+        return call(() -> delegate.deleteItem(request));
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest request) {
+        return call(() -> delegate.query(request));
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> scan(ScanRequest request) {
+        return call(() -> delegate.scan(request));
+    }
+
+    @Override
+    public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        return call(() -> delegate.batchWriteItem(request));
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+        return call(() -> delegate.batchGetItem(request));
+    }
+
+    @Override
+    public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+        return call(() -> delegate.transactWriteItems(request));
+    }
+
+    @Override
+    public CompletableFuture<TransactGetItemsResponse> transactGetItems(TransactGetItemsRequest request) {
+        return call(() -> delegate.transactGetItems(request));
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static <T> CompletableFuture<T> call(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(operation, EXECUTOR);
+    }
+}
@@ -0,0 +1,197 @@
+package dynamotaco.repository;
+
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.models.Customer;
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Customer profiles, stored as the {@code PROFILE} item of the customer's partition.
+ *
+ * Profiles this repository writes or reads are kept in its {@link CustomerCache}; {@link #find}
+ * answers from the cache when it can, including for emails it already found to have no profile.
+ */
+public class CustomerRepository {
+
+    static final String IDEMPOTENCY_KEY = "IdempotencyKey";
+
+    public enum CreateOutcome {
+        CREATED,
+        // The profile was created earlier by a request carrying the same idempotency key
+        REPLAYED,
+        ALREADY_EXISTS
+    }
+
+    private static final int CACHE_SIZE = Config.getInt("CUSTOMER_CACHE_SIZE", "customer.cache.size", 10_000);
+    private static final long CACHE_TTL_SECONDS = Config.getLong("CUSTOMER_CACHE_TTL_SECONDS", "customer.cache.ttlSeconds", 300);
+    private static final long CACHE_NEGATIVE_TTL_SECONDS =
+            Config.getLong("CUSTOMER_CACHE_NEGATIVE_TTL_SECONDS", "customer.cache.negativeTtlSeconds", 30);
+    private static final CustomerCache.Policy CACHE_POLICY =
+            CustomerCache.Policy.valueOf(Config.get("CUSTOMER_CACHE_POLICY", "customer.cache.policy", "TINY_LFU"));
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+    private final CustomerCache cache;
+
+    public CustomerRepository(DynamoDbAsyncClient dynamoDb, String tableName) {
+        this(dynamoDb, tableName, new CustomerCache(0, 0, 0));
+    }
+
+    public CustomerRepository(DynamoDbAsyncClient dynamoDb, String tableName, CustomerCache cache) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.cache = cache;
+    }
+
+    /**
+     * A customer cache with this deployment's size, TTLs and policy.
+     */
+    public static CustomerCache newCache() {
+        return new CustomerCache(CACHE_SIZE, CACHE_TTL_SECONDS, CACHE_NEGATIVE_TTL_SECONDS, CACHE_POLICY, System::nanoTime);
+    }
+
+    public CustomerCache cache() {
+        return cache;
+    }
+
+    /**
+     * The customer's profile, from the cache when it is there. Both outcomes of a read are cached,
+     * an email without a profile as a negative entry.
+     */
+    public CompletableFuture<Optional<Customer>> find(String email) {
+        CustomerCache.Lookup cached = cache.get(email);
+        if (cached.status() != CustomerCache.Status.MISS) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(cached.profile()));
+        }
+        return load(email);
+    }
+
+    /**
+     * Reads the profile from the table, skipping the cache lookup, and caches what it found.
+     */
+    public CompletableFuture<Optional<Customer>> load(String email) {
+        return dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.profileKey(email))
+                        .build())
+                .thenApply(response -> {
+                    if (!response.hasItem() || response.item().isEmpty()) {
+                        cache.putAbsent(email);
+                        return Optional.empty();
+                    }
+                    Customer customer = toCustomer(response.item());
+                    customer.setEmail(email);
+                    cache.put(customer);
+                    return Optional.of(customer);
+                });
+    }
+
+    public CompletableFuture<Boolean> exists(String email) {
+        return dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.profileKey(email))
+                        .projectionExpression(Keys.PK)
+                        .build())
+                .thenApply(response -> response.hasItem() && !response.item().isEmpty());
+    }
+
+    public CompletableFuture<Void> save(Customer customer) {
+        return dynamoDb.putItem(PutItemRequest.builder()
+                        .tableName(tableName)
+                        .item(toItem(customer))
+                        .build())
+                .thenApply(response -> {
+                    cache.put(customer);
+                    return null;
+                });
+    }
+
+    /**
+     * Creates the profile with a single conditional PutItem, so concurrent signups for the same email
+     * cannot both succeed. When {@code idempotencyKey} is given it is stored on the profile, and a
+     * conflicting create carrying the same key is reported as {@link CreateOutcome#REPLAYED}; only
+     * that conflict path pays for an extra read.
+     */
+    public CompletableFuture<CreateOutcome> create(Customer customer, String idempotencyKey) {
+        Map<String, AttributeValue> item = toItem(customer);
+        if (idempotencyKey != null) {
+            item.put(IDEMPOTENCY_KEY, AttributeValue.builder().s(idempotencyKey).build());
+        }
+
+        return dynamoDb.putItem(PutItemRequest.builder()
+                        .tableName(tableName)
+                        .item(item)
+                        .conditionExpression("attribute_not_exists(PK)")
+                        .build())
+                .thenApply(response -> CreateOutcome.CREATED)
+                .exceptionallyCompose(failure -> {
+                    Throwable cause = Futures.unwrap(failure);
+                    if (!(cause instanceof ConditionalCheckFailedException)) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    if (idempotencyKey == null) {
+                        return CompletableFuture.completedFuture(CreateOutcome.ALREADY_EXISTS);
+                    }
+                    return storedIdempotencyKey(customer.getEmail())
+                            .thenApply(stored -> idempotencyKey.equals(stored)
+                                    ? CreateOutcome.REPLAYED
+                                    : CreateOutcome.ALREADY_EXISTS);
+                })
+                .whenComplete((outcome, failure) -> {
+                    // Whatever happened, a negative entry for this email may now be wrong
+                    if (outcome == CreateOutcome.CREATED || outcome == CreateOutcome.REPLAYED) {
+                        cache.put(customer);
+                    } else {
+                        cache.invalidate(customer.getEmail());
+                    }
+                });
+    }
+
+    private CompletableFuture<String> storedIdempotencyKey(String email) {
+        return dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.profileKey(email))
+                        .projectionExpression(IDEMPOTENCY_KEY)
+                        .consistentRead(true)
+                        .build())
+                .thenApply(response -> {
+                    AttributeValue stored = response.hasItem() ? response.item().get(IDEMPOTENCY_KEY) : null;
+                    return stored == null ? null : stored.s();
+                });
+    }
+
+    public static Customer toCustomer(Map<String, AttributeValue> item) {
+        Customer customer = new Customer();
+        customer.setEmail(string(item, "Email"));
+        customer.setFirstName(string(item, "FirstName"));
+        customer.setLastName(string(item, "LastName"));
+        customer.setPhoneNumber(string(item, "PhoneNumber"));
+        return customer;
+    }
+
+    private static String string(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null ? null : value.s();
+    }
+
+    public static Map<String, AttributeValue> toItem(Customer customer) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(Keys.PK, AttributeValue.builder().s(Keys.customer(customer.getEmail())).build());
+        item.put(Keys.SK, AttributeValue.builder().s(Keys.PROFILE).build());
+        item.put("FirstName", AttributeValue.builder().s(customer.getFirstName()).build());
+        item.put("LastName", AttributeValue.builder().s(customer.getLastName()).build());
+        item.put("Email", AttributeValue.builder().s(customer.getEmail()).build());
+        item.put("PhoneNumber", AttributeValue.builder().s(customer.getPhoneNumber()).build());
+        return item;
+    }
+}
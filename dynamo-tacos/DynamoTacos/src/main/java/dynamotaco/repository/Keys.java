@@ -0,0 +1,58 @@
+package dynamotaco.repository;
+
+import dynamotaco.stats.Granularity;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Key layout of the single table: customers live in {@code CUSTOMER#<email>} partitions with a
+ * {@code PROFILE} item and one {@code ORDER#<id>} item per order. Sales rollups live in one
+ * {@code STATS#<granularity>#<window start>} partition per window, and what one run of stream
+ * records added to them in a {@code STATSBATCH#<first sequence number>} partition.
+ */
+public final class Keys {
+
+    public static final String PK = "PK";
+    public static final String SK = "SK";
+    public static final String CUSTOMER_PREFIX = "CUSTOMER#";
+    public static final String ORDER_PREFIX = "ORDER#";
+    public static final String PROFILE = "PROFILE";
+    public static final String STATS_PREFIX = "STATS#";
+    public static final String STATS_BATCH_PREFIX = "STATSBATCH#";
+
+    private Keys() {
+    }
+
+    public static String customer(String email) {
+        return CUSTOMER_PREFIX + email;
+    }
+
+    public static String order(String orderId) {
+        return ORDER_PREFIX + orderId;
+    }
+
+    public static String stats(Granularity granularity, long windowStart) {
+        return STATS_PREFIX + granularity + "#" + Instant.ofEpochMilli(windowStart);
+    }
+
+    public static String statsBatch(String firstSequenceNumber) {
+        return STATS_BATCH_PREFIX + firstSequenceNumber;
+    }
+
+    public static Map<String, AttributeValue> key(String partitionKey, String sortKey) {
+        return Map.of(
+                PK, AttributeValue.builder().s(partitionKey).build(),
+                SK, AttributeValue.builder().s(sortKey).build()
+        );
+    }
+
+    public static Map<String, AttributeValue> profileKey(String email) {
+        return key(customer(email), PROFILE);
+    }
+
+    public static Map<String, AttributeValue> orderKey(String email, String orderId) {
+        return key(customer(email), order(orderId));
+    }
+}
@@ -0,0 +1,97 @@
+package dynamotaco.repository;
+
+import dynamotaco.cache.MenuCache;
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.MenuItem;
+import dynamotaco.util.Futures;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The menu partition: one item per menu entry plus a {@code VERSION} marker item.
+ */
+public class MenuRepository {
+
+    public static final String MENU_PARTITION = "MENU";
+    // Bump the Version attribute on this item whenever the menu is reloaded (see menuItems.json)
+    public static final String VERSION_SORT_KEY = "VERSION";
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+
+    public MenuRepository(DynamoDbAsyncClient dynamoDb, String tableName) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+    }
+
+    /**
+     * @return the menu version, or null when the table has no version marker
+     */
+    public CompletableFuture<String> version() {
+        return dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.key(MENU_PARTITION, VERSION_SORT_KEY))
+                        .projectionExpression("Version")
+                        .build())
+                .thenApply(response -> {
+                    if (!response.hasItem() || !response.item().containsKey("Version")) {
+                        return null;
+                    }
+                    AttributeValue version = response.item().get("Version");
+                    return version.n() != null ? version.n() : version.s();
+                });
+    }
+
+    public CompletableFuture<List<MenuItem>> items() {
+        return dynamoDb.query(QueryRequest.builder()
+                        .tableName(tableName)
+                        .keyConditionExpression("PK = :menuPartition")
+                        .expressionAttributeValues(Map.of(
+                                ":menuPartition", AttributeValue.builder().s(MENU_PARTITION).build()
+                        ))
+                        .build())
+                // Skip the version marker, everything else in the partition is a menu item
+                .thenApply(response -> response.items().stream()
+                        .filter(item -> !VERSION_SORT_KEY.equals(item.get(Keys.SK).s()))
+                        .map(MenuRepository::toMenuItem)
+                        .toList());
+    }
+
+    /**
+     * A blocking loader for {@link MenuCache}, joining the calls above.
+     */
+    public MenuCache.Loader cacheLoader() {
+        return new MenuCache.Loader() {
+            @Override
+            public String version() {
+                return Futures.join(MenuRepository.this.version());
+            }
+
+            @Override
+            public List<MenuItem> load() {
+                return Futures.join(items());
+            }
+        };
+    }
+
+    public static MenuItem toMenuItem(Map<String, AttributeValue> item) {
+        MenuItem menuItem = new MenuItem();
+        menuItem.setId(item.get("id").s());
+        menuItem.setName(item.get("name").s());
+        menuItem.setPrice(Double.parseDouble(item.get("price").n()));
+        menuItem.setDescription(item.get("description") != null ? item.get("description").s() : null);
+
+        // Parse FoodItemType from string, default to null if not set
+        if (item.containsKey("foodItemType")) {
+            menuItem.setFoodItemType(FoodItemType.valueOf(item.get("foodItemType").s()));
+        }
+
+        return menuItem;
+    }
+}
@@ -0,0 +1,227 @@
+package dynamotaco.repository;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.*;
+
+/**
+ * The normalized layout from TaocOrderAppTableDetails.md. The order item keeps only the header
+ * attributes and is marked with {@code Layout = NORMALIZED}; every taco and side item is its own
+ * item in the order's {@code ORDER#<email>#<orderId>} partition, and every topping lives in its
+ * taco's {@code TACO#<email>#<orderId>#<taco position>} partition. Line items keep the attribute
+ * names of the nested maps plus a {@code Position}, so {@link #assemble} gives back exactly the
+ * nested order item.
+ *
+ * Order ids may come from the client, so the line partitions carry the customer as well, with
+ * {@code #} and {@code %} escaped in each part: two customers using the same order id never share
+ * lines. Lines are keyed by their position, and the order item counts its tacos and sides (and
+ * each taco its toppings). Posting an order id again overwrites its lines, and {@link #assemble}
+ * ignores any that a longer earlier version left beyond the counts. The counts also serve readers
+ * of the stream, which see the order item apart from its lines.
+ */
+public final class NormalizedOrders {
+
+    public static final String LAYOUT = "Layout";
+    public static final String TACO_PREFIX = "TACO#";
+    public static final String TOPPING_PREFIX = "TOPPING#";
+    public static final String SIDE_PREFIX = "SIDE#";
+    public static final String TACO_COUNT = "TacoCount";
+    public static final String SIDE_COUNT = "SideCount";
+
+    static final String POSITION = "Position";
+    static final String TOPPING_COUNT = "ToppingCount";
+
+    private static final Comparator<Map<String, AttributeValue>> BY_POSITION =
+            Comparator.comparingInt(NormalizedOrders::position);
+
+    private NormalizedOrders() {
+    }
+
+    public static boolean isNormalized(Map<String, AttributeValue> orderItem) {
+        AttributeValue layout = orderItem.get(LAYOUT);
+        return layout != null && OrderLayout.NORMALIZED.name().equals(layout.s());
+    }
+
+    /**
+     * Whether a table key is a taco, side or topping of a normalized order, rather than, say, a
+     * menu item with the same sort key.
+     */
+    public static boolean isLineItem(String partitionKey, String sortKey) {
+        return partitionKey.startsWith(Keys.ORDER_PREFIX) && (sortKey.startsWith(TACO_PREFIX) || sortKey.startsWith(SIDE_PREFIX))
+                || partitionKey.startsWith(TACO_PREFIX) && sortKey.startsWith(TOPPING_PREFIX);
+    }
+
+    /**
+     * The partition holding the tacos and sides of a customer's order.
+     */
+    public static String linePartition(String email, String orderId) {
+        return Keys.ORDER_PREFIX + escape(email) + "#" + escape(orderId);
+    }
+
+    /**
+     * The line partition of the order item with these keys.
+     */
+    public static String linePartition(Map<String, AttributeValue> orderItem) {
+        return linePartition(orderItem.get(Keys.PK).s().substring(Keys.CUSTOMER_PREFIX.length()),
+                orderItem.get(Keys.SK).s().substring(Keys.ORDER_PREFIX.length()));
+    }
+
+    /**
+     * The partition holding the toppings of the taco at {@code position} in an order's line partition.
+     */
+    public static String toppingPartition(String linePartition, int position) {
+        return TACO_PREFIX + linePartition.substring(Keys.ORDER_PREFIX.length()) + "#" + position;
+    }
+
+    /**
+     * Splits a nested order item into its header, always first, and one item per taco, topping and side.
+     */
+    public static List<Map<String, AttributeValue>> split(Map<String, AttributeValue> orderItem) {
+        String orderPartition = linePartition(orderItem);
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+
+        Map<String, AttributeValue> header = new HashMap<>(orderItem);
+        header.remove("Tacos");
+        header.remove("SideItems");
+        header.put(LAYOUT, AttributeValue.fromS(OrderLayout.NORMALIZED.name()));
+        items.add(header);
+
+        List<AttributeValue> tacos = list(orderItem.get("Tacos"));
+        List<AttributeValue> sides = list(orderItem.get("SideItems"));
+        header.put(TACO_COUNT, position(tacos.size()));
+        header.put(SIDE_COUNT, position(sides.size()));
+        for (int i = 0; i < tacos.size(); i++) {
+            Map<String, AttributeValue> taco = new HashMap<>(tacos.get(i).m());
+            List<AttributeValue> toppings = list(taco.remove("Toppings"));
+            taco.put(Keys.PK, AttributeValue.fromS(orderPartition));
+            taco.put(Keys.SK, AttributeValue.fromS(TACO_PREFIX + i));
+            taco.put(POSITION, position(i));
+            if (!toppings.isEmpty()) {
+                taco.put(TOPPING_COUNT, position(toppings.size()));
+            }
+            items.add(taco);
+
+            for (int j = 0; j < toppings.size(); j++) {
+                Map<String, AttributeValue> topping = new HashMap<>(toppings.get(j).m());
+                topping.put(Keys.PK, AttributeValue.fromS(toppingPartition(orderPartition, i)));
+                topping.put(Keys.SK, AttributeValue.fromS(TOPPING_PREFIX + j));
+                topping.put(POSITION, position(j));
+                items.add(topping);
+            }
+        }
+
+        for (int i = 0; i < sides.size(); i++) {
+            Map<String, AttributeValue> side = new HashMap<>(sides.get(i).m());
+            side.put(Keys.PK, AttributeValue.fromS(orderPartition));
+            side.put(Keys.SK, AttributeValue.fromS(SIDE_PREFIX + i));
+            side.put(POSITION, position(i));
+            items.add(side);
+        }
+        return items;
+    }
+
+    /**
+     * Positions of the tacos, among the order's current ones, whose toppings have to be read from
+     * their own partitions.
+     */
+    public static List<Integer> tacosWithToppings(Map<String, AttributeValue> header,
+                                                  List<Map<String, AttributeValue>> orderPartition) {
+        int tacoCount = count(header, TACO_COUNT);
+        List<Integer> positions = new ArrayList<>();
+        for (Map<String, AttributeValue> line : orderPartition) {
+            if (line.get(Keys.SK).s().startsWith(TACO_PREFIX) && line.containsKey(TOPPING_COUNT)
+                    && position(line) < tacoCount) {
+                positions.add(position(line));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Rebuilds the nested order item from the header, the items of its line partition and the
+     * toppings of each taco by its position. Lines beyond the header's counts are left out.
+     */
+    public static Map<String, AttributeValue> assemble(Map<String, AttributeValue> header,
+                                                       List<Map<String, AttributeValue>> orderPartition,
+                                                       Map<Integer, List<Map<String, AttributeValue>>> toppingsByTaco) {
+        int tacoCount = count(header, TACO_COUNT);
+        int sideCount = count(header, SIDE_COUNT);
+        List<Map<String, AttributeValue>> tacos = new ArrayList<>();
+        List<Map<String, AttributeValue>> sides = new ArrayList<>();
+        for (Map<String, AttributeValue> line : orderPartition) {
+            String sortKey = line.get(Keys.SK).s();
+            if (sortKey.startsWith(TACO_PREFIX) && position(line) < tacoCount) {
+                tacos.add(line);
+            } else if (sortKey.startsWith(SIDE_PREFIX) && position(line) < sideCount) {
+                sides.add(line);
+            }
+        }
+        tacos.sort(BY_POSITION);
+        sides.sort(BY_POSITION);
+
+        Map<String, AttributeValue> order = new HashMap<>(header);
+        order.remove(LAYOUT);
+        order.remove(TACO_COUNT);
+        order.remove(SIDE_COUNT);
+        if (!tacos.isEmpty()) {
+            List<AttributeValue> nestedTacos = new ArrayList<>(tacos.size());
+            for (Map<String, AttributeValue> taco : tacos) {
+                Map<String, AttributeValue> nested = strip(taco);
+                int toppingCount = count(taco, TOPPING_COUNT);
+                nested.remove(TOPPING_COUNT);
+                List<Map<String, AttributeValue>> toppings = toppingsByTaco.get(position(taco));
+                if (toppings != null && !toppings.isEmpty()) {
+                    List<Map<String, AttributeValue>> sorted = new ArrayList<>();
+                    for (Map<String, AttributeValue> topping : toppings) {
+                        if (position(topping) < toppingCount) {
+                            sorted.add(topping);
+                        }
+                    }
+                    sorted.sort(BY_POSITION);
+                    nested.put("Toppings", AttributeValue.fromL(sorted.stream()
+                            .map(topping -> AttributeValue.fromM(strip(topping)))
+                            .toList()));
+                }
+                nestedTacos.add(AttributeValue.fromM(nested));
+            }
+            order.put("Tacos", AttributeValue.fromL(nestedTacos));
+        }
+        if (!sides.isEmpty()) {
+            order.put("SideItems", AttributeValue.fromL(sides.stream()
+                    .map(side -> AttributeValue.fromM(strip(side)))
+                    .toList()));
+        }
+        return order;
+    }
+
+    private static Map<String, AttributeValue> strip(Map<String, AttributeValue> line) {
+        Map<String, AttributeValue> nested = new HashMap<>(line);
+        nested.remove(Keys.PK);
+        nested.remove(Keys.SK);
+        nested.remove(POSITION);
+        return nested;
+    }
+
+    // Escapes the separator so that no two key parts run into each other
+    private static String escape(String part) {
+        return part.replace("%", "%25").replace("#", "%23");
+    }
+
+    private static int position(Map<String, AttributeValue> line) {
+        return Integer.parseInt(line.get(POSITION).n());
+    }
+
+    // An item without the count is not capped
+    private static int count(Map<String, AttributeValue> item, String attribute) {
+        AttributeValue count = item.get(attribute);
+        return count == null ? Integer.MAX_VALUE : Integer.parseInt(count.n());
+    }
+
+    private static List<AttributeValue> list(AttributeValue value) {
+        return value == null || !value.hasL() ? List.of() : value.l();
+    }
+
+    private static AttributeValue position(int position) {
+        return AttributeValue.fromN(Integer.toString(position));
+    }
+}
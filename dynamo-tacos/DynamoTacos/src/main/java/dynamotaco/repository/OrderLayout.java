@@ -0,0 +1,26 @@
+package dynamotaco.repository;
+
+import dynamotaco.util.CompactLineItems;
+
+/**
+ * How an order's tacos, toppings and side items are stored.
+ */
+public enum OrderLayout {
+
+    /** Everything in the order item, as {@code Tacos} and {@code SideItems} lists of maps. */
+    NESTED,
+
+    /** Also in the order item, with all lines packed into one binary attribute by {@link CompactLineItems}. */
+    COMPACT,
+
+    /** One item per line, see {@link NormalizedOrders}. */
+    NORMALIZED;
+
+    public static OrderLayout parse(String layout) {
+        try {
+            return valueOf(layout.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown order layout " + layout);
+        }
+    }
+}
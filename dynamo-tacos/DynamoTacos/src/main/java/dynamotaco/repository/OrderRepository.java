@@ -0,0 +1,661 @@
+package dynamotaco.repository;
+
+import dynamotaco.models.OrderField;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.models.StatusUpdateOutcome;
+import dynamotaco.resilience.ResilientDynamoDbClient;
+import dynamotaco.util.BatchWriter;
+import dynamotaco.util.CompactLineItems;
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Order items in the customer partitions. Every call is non-blocking so callers can start several
+ * and join them together; with the nested and compact layouts each is a single round trip.
+ *
+ * With {@link OrderLayout#NORMALIZED} new orders are written as {@link NormalizedOrders} and read
+ * back by querying the line partitions in parallel. Reads recognise either layout per order, so a
+ * deployment can switch layouts without migrating the orders it already has.
+ */
+public class OrderRepository {
+
+    // Status is a reserved word, so the summary projection goes through an attribute name placeholder
+    static final String SUMMARY_PROJECTION = "PK, SK, OrderDate, #status, TotalPrice";
+    // What the kitchen display shows: no prices or totals
+    static final String QUEUE_PROJECTION = "PK, SK, OrderDate, #status, Tacos, SideItems, "
+            + CompactLineItems.ATTRIBUTE + ", " + NormalizedOrders.LAYOUT;
+
+    public static final String STATUS_INDEX = "GSI1_StatusOrderDate";
+    public static final String SHARDED_STATUS_INDEX = "GSI4_StatusShardOrderDate";
+    public static final String STATUS_SHARD = "StatusShard";
+
+    /**
+     * Number of {@code <status>#<n>} shards written to {@link #STATUS_SHARD}; 0 leaves orders indexed
+     * by the plain status in GSI1 only. Above 0 nothing reads GSI1, and the table must be deployed
+     * without it, or every order still lands under one hot status key there.
+     */
+    public static final int STATUS_SHARDS = Config.getInt("STATUS_SHARDS", "status.shards", 0);
+
+    /** The layout new orders are written in. */
+    public static final OrderLayout ORDER_LAYOUT = OrderLayout.parse(Config.get("ORDER_LAYOUT", "order.layout", "NESTED"));
+
+    // DynamoDB's limit on the items of one TransactWriteItems call
+    static final int MAX_TRANSACTION_ITEMS = 100;
+
+    // The same order the index returns within one shard: OrderDate, then the table key as tie-breaker
+    private static final Comparator<Map<String, AttributeValue>> QUEUE_ORDER = Comparator
+            .<Map<String, AttributeValue>, String>comparing(item -> item.get("OrderDate").s())
+            .thenComparing(item -> item.get(Keys.PK).s())
+            .thenComparing(item -> item.get(Keys.SK).s());
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+    private final BatchWriter batchWriter;
+    private final int concurrency;
+    private final int statusShards;
+    private final OrderLayout layout;
+
+    public OrderRepository(DynamoDbAsyncClient dynamoDb, String tableName) {
+        this(dynamoDb, tableName, 8);
+    }
+
+    public OrderRepository(DynamoDbAsyncClient dynamoDb, String tableName, int batchConcurrency) {
+        this(dynamoDb, tableName, batchConcurrency, STATUS_SHARDS);
+    }
+
+    public OrderRepository(DynamoDbAsyncClient dynamoDb, String tableName, int batchConcurrency, int statusShards) {
+        this(dynamoDb, tableName, batchConcurrency, statusShards, ORDER_LAYOUT);
+    }
+
+    public OrderRepository(DynamoDbAsyncClient dynamoDb, String tableName, int batchConcurrency, int statusShards,
+                           OrderLayout layout) {
+        if (statusShards < 0) {
+            throw new IllegalArgumentException("statusShards must not be negative");
+        }
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.batchWriter = new BatchWriter(dynamoDb, tableName, batchConcurrency);
+        this.concurrency = batchConcurrency;
+        this.statusShards = statusShards;
+        this.layout = layout;
+    }
+
+    public record Page(List<Map<String, AttributeValue>> items, Map<String, AttributeValue> lastEvaluatedKey) {
+        public boolean hasMore() {
+            return lastEvaluatedKey != null;
+        }
+    }
+
+    /**
+     * The order item; a normalized order comes back reassembled into the nested shape.
+     */
+    public CompletableFuture<Optional<Map<String, AttributeValue>>> find(String email, String orderId) {
+        return find(email, orderId, OrderField.ALL);
+    }
+
+    /**
+     * The order item with only the attributes behind {@code fields}, plus its key. Without tacos or
+     * side items, a normalized order's line partitions are not read at all. The read costs the same
+     * capacity units either way; a projection only saves what is sent and parsed.
+     */
+    public CompletableFuture<Optional<Map<String, AttributeValue>>> find(String email, String orderId, Set<OrderField> fields) {
+        GetItemRequest.Builder request = GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Keys.orderKey(email, orderId));
+        if (!fields.containsAll(OrderField.ALL)) {
+            request.projectionExpression(projection(fields));
+            if (fields.contains(OrderField.STATUS)) {
+                request.expressionAttributeNames(Map.of("#status", "Status"));
+            }
+        }
+        boolean lineItems = fields.contains(OrderField.TACOS) || fields.contains(OrderField.SIDE_ITEMS);
+        CompletableFuture<GetItemResponse> header = dynamoDb.getItem(request.build());
+        // Orders written by this deployment are normalized, so read the lines alongside the header
+        CompletableFuture<List<Map<String, AttributeValue>>> lines =
+                lineItems && layout == OrderLayout.NORMALIZED
+                        ? queryPartition(NormalizedOrders.linePartition(email, orderId)) : null;
+        return header.thenCompose(response -> {
+            if (!response.hasItem()) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            Map<String, AttributeValue> item = response.item();
+            if (!NormalizedOrders.isNormalized(item)) {
+                return CompletableFuture.completedFuture(Optional.of(item));
+            }
+            return (lines == null ? queryPartition(NormalizedOrders.linePartition(email, orderId)) : lines)
+                    .thenCompose(orderPartition -> assemble(item, orderPartition))
+                    .thenApply(Optional::of);
+        });
+    }
+
+    /**
+     * Writes the order in this repository's layout. A normalized order of up to 100 items is one
+     * transaction; a larger one writes its lines in batches first and the header last, so a reader
+     * never sees a header whose lines are missing.
+     */
+    public CompletableFuture<Void> save(Map<String, AttributeValue> orderItem) {
+        Map<String, AttributeValue> item = withStatusShard(orderItem);
+        if (layout != OrderLayout.NORMALIZED) {
+            return put(layout == OrderLayout.COMPACT ? CompactLineItems.compact(item) : item);
+        }
+        List<Map<String, AttributeValue>> items = NormalizedOrders.split(item);
+        if (items.size() <= MAX_TRANSACTION_ITEMS) {
+            return dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder()
+                            .transactItems(items.stream()
+                                    .map(put -> TransactWriteItem.builder()
+                                            .put(Put.builder().tableName(tableName).item(put).build())
+                                            .build())
+                                    .toList())
+                            .build())
+                    .thenApply(response -> null);
+        }
+        return batchWriter.writeAll(putRequests(items.subList(1, items.size())))
+                .thenCompose(failed -> {
+                    if (!failed.isEmpty()) {
+                        throw new IllegalStateException(failed.size() + " line items of " + item.get(Keys.SK).s()
+                                + " were not written");
+                    }
+                    return put(items.get(0));
+                });
+    }
+
+    private CompletableFuture<Void> put(Map<String, AttributeValue> item) {
+        return dynamoDb.putItem(PutItemRequest.builder()
+                        .tableName(tableName)
+                        .item(item)
+                        .build())
+                .thenApply(response -> null);
+    }
+
+    /**
+     * Writes the items through BatchWriteItem. Normalized orders write all their lines first and
+     * then the headers of the orders whose lines all made it.
+     *
+     * @return the items that were still unprocessed after retrying; empty when everything was written
+     */
+    public CompletableFuture<List<Map<String, AttributeValue>>> saveAll(List<Map<String, AttributeValue>> orderItems) {
+        if (layout != OrderLayout.NORMALIZED) {
+            return batchWriter.writeAll(putRequests(orderItems.stream()
+                            .map(this::withStatusShard)
+                            .map(item -> layout == OrderLayout.COMPACT ? CompactLineItems.compact(item) : item)
+                            .toList()))
+                    .thenApply(failed -> failed.stream().map(write -> write.putRequest().item()).toList());
+        }
+
+        List<Map<String, AttributeValue>> headers = new ArrayList<>(orderItems.size());
+        List<Map<String, AttributeValue>> lines = new ArrayList<>();
+        // Unprocessed requests come back as new objects, so failed lines are traced to their order by key
+        Map<String, Integer> orderOfLine = new HashMap<>();
+        for (Map<String, AttributeValue> orderItem : orderItems) {
+            List<Map<String, AttributeValue>> items = NormalizedOrders.split(withStatusShard(orderItem));
+            for (Map<String, AttributeValue> line : items.subList(1, items.size())) {
+                orderOfLine.put(keyOf(line), headers.size());
+            }
+            headers.add(items.get(0));
+            lines.addAll(items.subList(1, items.size()));
+        }
+
+        return batchWriter.writeAll(putRequests(lines)).thenCompose(failedLines -> {
+            Set<Integer> incomplete = new HashSet<>();
+            for (WriteRequest write : failedLines) {
+                incomplete.add(orderOfLine.get(keyOf(write.putRequest().item())));
+            }
+            List<Map<String, AttributeValue>> failed = new ArrayList<>();
+            List<Map<String, AttributeValue>> complete = new ArrayList<>();
+            for (int i = 0; i < headers.size(); i++) {
+                (incomplete.contains(i) ? failed : complete).add(headers.get(i));
+            }
+            return batchWriter.writeAll(putRequests(complete)).thenApply(failedHeaders -> {
+                failedHeaders.forEach(write -> failed.add(write.putRequest().item()));
+                return failed;
+            });
+        });
+    }
+
+    public CompletableFuture<Page> findByCustomer(String email, Integer limit,
+                                                  Map<String, AttributeValue> startKey, boolean summary) {
+        return findByCustomer(email, limit, startKey, summary, false);
+    }
+
+    /**
+     * One page of the customer's orders in sort key order. {@code limit} may be null for DynamoDB's
+     * own 1 MB page size; {@code summary} projects only the attributes needed for the summary view.
+     * With {@code newestFirst} the page is read backwards, which for time-ordered order ids (see
+     * {@link dynamotaco.util.UlidGenerator}) returns the most recent orders.
+     */
+    public CompletableFuture<Page> findByCustomer(String email, Integer limit, Map<String, AttributeValue> startKey,
+                                                  boolean summary, boolean newestFirst) {
+        QueryRequest.Builder builder = QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("PK = :pk AND begins_with(SK, :skPrefix)")
+                .expressionAttributeValues(Map.of(
+                        ":pk", AttributeValue.builder().s(Keys.customer(email)).build(),
+                        ":skPrefix", AttributeValue.builder().s(Keys.ORDER_PREFIX).build()
+                ))
+                .scanIndexForward(!newestFirst)
+                .limit(limit)
+                .exclusiveStartKey(startKey);
+        if (summary) {
+            builder.projectionExpression(SUMMARY_PROJECTION)
+                    .expressionAttributeNames(Map.of("#status", "Status"));
+        }
+        return dynamoDb.query(builder.build())
+                .thenCompose(response -> assembleAll(response.items())
+                        .thenApply(items -> new Page(items,
+                                response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                                        ? response.lastEvaluatedKey()
+                                        : null)));
+    }
+
+    /**
+     * One page of the orders in {@code status}, oldest first, projected for the kitchen display.
+     * {@code from} and {@code to} bound OrderDate inclusively and may be null. {@code startKey} is
+     * the {@link Page#lastEvaluatedKey()} of the previous page.
+     *
+     * With status sharding on, every shard is queried in parallel and the pages are merged by
+     * OrderDate. Orders after the earliest position a shard stopped at are left for the next page,
+     * which may return fewer than {@code limit}. The returned key is the position of the last order
+     * handed out, so each shard resumes right after it on the next page.
+     */
+    public CompletableFuture<Page> findByStatus(OrderStatus status, String from, String to, int limit,
+                                                Map<String, AttributeValue> startKey) {
+        if (statusShards == 0) {
+            return dynamoDb.query(queueQuery(STATUS_INDEX, "Status", status.toString(), from, to, limit, startKey))
+                    .thenCompose(response -> assembleAll(response.items())
+                            .thenApply(items -> new Page(items,
+                                    response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                                            ? response.lastEvaluatedKey()
+                                            : null)));
+        }
+
+        List<CompletableFuture<QueryResponse>> shards = new ArrayList<>(statusShards);
+        for (int shard = 0; shard < statusShards; shard++) {
+            Map<String, AttributeValue> shardStartKey = null;
+            if (startKey != null) {
+                shardStartKey = new HashMap<>(startKey);
+                shardStartKey.remove("Status");
+                shardStartKey.put(STATUS_SHARD, AttributeValue.builder().s(status + "#" + shard).build());
+            }
+            shards.add(dynamoDb.query(queueQuery(SHARDED_STATUS_INDEX, STATUS_SHARD, status + "#" + shard,
+                    from, to, limit, shardStartKey)));
+        }
+        return CompletableFuture.allOf(shards.toArray(CompletableFuture[]::new))
+                .thenApply(done -> mergeShards(shards, limit))
+                .thenCompose(page -> assembleAll(page.items())
+                        .thenApply(items -> new Page(items, page.lastEvaluatedKey())));
+    }
+
+    private static Page mergeShards(List<CompletableFuture<QueryResponse>> shards, int limit) {
+        List<Map<String, AttributeValue>> merged = new ArrayList<>();
+        // The earliest position a shard stopped at with more left to read
+        Map<String, AttributeValue> readUpTo = null;
+        for (CompletableFuture<QueryResponse> shard : shards) {
+            QueryResponse response = shard.join();
+            merged.addAll(response.items());
+            if (response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    && (readUpTo == null || QUEUE_ORDER.compare(response.lastEvaluatedKey(), readUpTo) < 0)) {
+                readUpTo = response.lastEvaluatedKey();
+            }
+        }
+        merged.sort(QUEUE_ORDER);
+        if (merged.size() <= limit && readUpTo == null) {
+            return new Page(merged, null);
+        }
+
+        // A shard cut short by its limit or the 1 MB page may still hold orders before those other
+        // shards returned after its stop, so only orders up to the earliest stop are handed out
+        int end = Math.min(limit, merged.size());
+        while (readUpTo != null && end > 0 && QUEUE_ORDER.compare(merged.get(end - 1), readUpTo) > 0) {
+            end--;
+        }
+        List<Map<String, AttributeValue>> page = merged.subList(0, end);
+        if (page.isEmpty()) {
+            return new Page(page, null);
+        }
+        Map<String, AttributeValue> last = page.get(page.size() - 1);
+        Map<String, AttributeValue> position = new HashMap<>();
+        for (String attribute : List.of("Status", "OrderDate", Keys.PK, Keys.SK)) {
+            position.put(attribute, last.get(attribute));
+        }
+        return new Page(page, position);
+    }
+
+    private QueryRequest queueQuery(String indexName, String hashAttribute, String hashValue, String from, String to,
+                                    int limit, Map<String, AttributeValue> startKey) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":key", AttributeValue.builder().s(hashValue).build());
+        String keyCondition = "#key = :key";
+        if (from != null) {
+            values.put(":from", AttributeValue.builder().s(from).build());
+        }
+        if (to != null) {
+            values.put(":to", AttributeValue.builder().s(to).build());
+        }
+        if (from != null && to != null) {
+            keyCondition += " AND OrderDate BETWEEN :from AND :to";
+        } else if (from != null) {
+            keyCondition += " AND OrderDate >= :from";
+        } else if (to != null) {
+            keyCondition += " AND OrderDate <= :to";
+        }
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(indexName)
+                .keyConditionExpression(keyCondition)
+                .expressionAttributeNames(Map.of("#key", hashAttribute, "#status", "Status"))
+                .expressionAttributeValues(values)
+                .projectionExpression(QUEUE_PROJECTION)
+                .scanIndexForward(true)
+                .limit(limit)
+                .exclusiveStartKey(startKey)
+                .build();
+    }
+
+    /**
+     * One status change: the order moves to {@code status} only while it is in {@code expected} or,
+     * when {@code expected} is null, in any status {@link OrderStatus} allows moving to it from.
+     */
+    public record Transition(String email, String orderId, OrderStatus expected, OrderStatus status) {
+        public Transition {
+            if (expected == null ? status.predecessors().isEmpty() : !expected.canMoveTo(status)) {
+                throw new IllegalArgumentException("Orders cannot move "
+                        + (expected == null ? "" : "from " + expected + " ") + "to " + status);
+            }
+        }
+    }
+
+    /**
+     * What became of one {@link Transition}. {@code current} is the order's status afterwards, null
+     * when the order does not exist or its status is not known.
+     */
+    public record TransitionResult(StatusUpdateOutcome outcome, OrderStatus current) {
+    }
+
+    /**
+     * Sets the order status if the state machine allows it from the status the order is in, failing
+     * with ConditionalCheckFailedException when the order does not exist or is in another status.
+     *
+     * @return the order as stored after the update
+     */
+    public CompletableFuture<Map<String, AttributeValue>> updateStatus(String email, String orderId, OrderStatus status) {
+        return updateStatus(new Transition(email, orderId, null, status), ReturnValue.ALL_NEW);
+    }
+
+    /**
+     * @param returnValues what to read back: {@code NONE} for nothing, {@code UPDATED_NEW} for the
+     *                     status attributes alone, {@code ALL_NEW} for the whole order item
+     * @return the attributes {@code returnValues} asked for, empty for {@code NONE}
+     */
+    public CompletableFuture<Map<String, AttributeValue>> updateStatus(Transition transition, ReturnValue returnValues) {
+        return dynamoDb.updateItem(UpdateItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.orderKey(transition.email(), transition.orderId()))
+                        .updateExpression(statusUpdate())
+                        .conditionExpression(statusCondition(transition))
+                        .expressionAttributeNames(Map.of("#status", "Status"))
+                        .expressionAttributeValues(statusValues(transition))
+                        .returnValues(returnValues)
+                        .build())
+                .thenApply(UpdateItemResponse::attributes);
+    }
+
+    /**
+     * Applies up to {@value #MAX_TRANSACTION_ITEMS} transitions in one TransactWriteItems call: all
+     * of them, or none when any order is missing or in another status. Cancelled transactions report
+     * the status that failed each condition, so there is nothing to read back. A transactional write
+     * costs twice the write units of a plain one.
+     *
+     * @return one result per transition, in the same order
+     */
+    public CompletableFuture<List<TransitionResult>> transitionAtomically(List<Transition> transitions) {
+        if (transitions.isEmpty() || transitions.size() > MAX_TRANSACTION_ITEMS) {
+            throw new IllegalArgumentException("Expected between 1 and " + MAX_TRANSACTION_ITEMS + " transitions");
+        }
+        List<TransactWriteItem> items = transitions.stream()
+                .map(transition -> TransactWriteItem.builder()
+                        .update(Update.builder()
+                                .tableName(tableName)
+                                .key(Keys.orderKey(transition.email(), transition.orderId()))
+                                .updateExpression(statusUpdate())
+                                .conditionExpression(statusCondition(transition))
+                                .expressionAttributeNames(Map.of("#status", "Status"))
+                                .expressionAttributeValues(statusValues(transition))
+                                .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                                .build())
+                        .build())
+                .toList();
+        return dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(items).build())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return transitions.stream()
+                                .map(transition -> new TransitionResult(StatusUpdateOutcome.UPDATED, transition.status()))
+                                .toList();
+                    }
+                    Throwable cause = Futures.unwrap(error);
+                    if (cause instanceof TransactionCanceledException cancelled && cancelled.hasCancellationReasons()) {
+                        return cancelled.cancellationReasons().stream().map(OrderRepository::cancelled).toList();
+                    }
+                    if (ResilientDynamoDbClient.isThrottling(cause)) {
+                        return Collections.nCopies(transitions.size(), new TransitionResult(StatusUpdateOutcome.FAILED, null));
+                    }
+                    throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+                });
+    }
+
+    /**
+     * Applies each transition with its own conditional UpdateItem, as many at a time as this
+     * repository writes batches, so one order that cannot move does not hold back the others. Orders
+     * whose condition failed are read back to tell a missing order from one in another status.
+     *
+     * @return one result per transition, in the same order
+     */
+    public CompletableFuture<List<TransitionResult>> transitionEach(List<Transition> transitions) {
+        TransitionResult[] results = new TransitionResult[transitions.size()];
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(concurrency, transitions.size())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = transitionNext(transitions, next, results);
+        }
+        return CompletableFuture.allOf(lanes).thenApply(done -> Arrays.asList(results));
+    }
+
+    private CompletableFuture<Void> transitionNext(List<Transition> transitions, AtomicInteger next, TransitionResult[] results) {
+        int index = next.getAndIncrement();
+        if (index >= transitions.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Transition transition = transitions.get(index);
+        return updateStatus(transition, ReturnValue.NONE)
+                .thenApply(updated -> new TransitionResult(StatusUpdateOutcome.UPDATED, transition.status()))
+                .exceptionallyCompose(error -> Futures.unwrap(error) instanceof ConditionalCheckFailedException
+                        ? currentStatus(transition.email(), transition.orderId())
+                                .thenApply(current -> current
+                                        .map(status -> new TransitionResult(StatusUpdateOutcome.CONFLICT, status))
+                                        .orElseGet(() -> new TransitionResult(StatusUpdateOutcome.NOT_FOUND, null)))
+                        : CompletableFuture.failedFuture(error))
+                .exceptionally(error -> new TransitionResult(StatusUpdateOutcome.FAILED, null))
+                .thenCompose(result -> {
+                    results[index] = result;
+                    return transitionNext(transitions, next, results);
+                });
+    }
+
+    /** The order's status from a consistent read; empty when there is no such order. */
+    public CompletableFuture<Optional<OrderStatus>> currentStatus(String email, String orderId) {
+        return currentStatus(email, orderId, true);
+    }
+
+    /** The order's status, read consistently or, at half the read units, eventually consistently. */
+    public CompletableFuture<Optional<OrderStatus>> currentStatus(String email, String orderId, boolean consistent) {
+        return dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.orderKey(email, orderId))
+                        .projectionExpression("#status")
+                        .expressionAttributeNames(Map.of("#status", "Status"))
+                        .consistentRead(consistent)
+                        .build())
+                .thenApply(response -> response.hasItem() && response.item().containsKey("Status")
+                        ? Optional.of(OrderStatus.valueOf(response.item().get("Status").s()))
+                        : Optional.empty());
+    }
+
+    private static TransitionResult cancelled(CancellationReason reason) {
+        return switch (reason.code() == null ? "None" : reason.code()) {
+            case "None" -> new TransitionResult(StatusUpdateOutcome.ABORTED, null);
+            case "ConditionalCheckFailed" -> reason.hasItem() && reason.item().containsKey("Status")
+                    ? new TransitionResult(StatusUpdateOutcome.CONFLICT, OrderStatus.valueOf(reason.item().get("Status").s()))
+                    : new TransitionResult(StatusUpdateOutcome.NOT_FOUND, null);
+            default -> new TransitionResult(StatusUpdateOutcome.FAILED, null);
+        };
+    }
+
+    // The key is always projected, so a found order never comes back as an empty item
+    private static String projection(Set<OrderField> fields) {
+        StringJoiner projection = new StringJoiner(", ").add(Keys.PK).add(Keys.SK);
+        if (fields.contains(OrderField.ORDER_DATE)) {
+            projection.add("OrderDate");
+        }
+        if (fields.contains(OrderField.TOTAL_PRICE)) {
+            projection.add("TotalPrice");
+        }
+        if (fields.contains(OrderField.STATUS)) {
+            projection.add("#status");
+        }
+        if (fields.contains(OrderField.TACOS)) {
+            projection.add("Tacos");
+        }
+        if (fields.contains(OrderField.SIDE_ITEMS)) {
+            projection.add("SideItems");
+        }
+        if (fields.contains(OrderField.TACOS) || fields.contains(OrderField.SIDE_ITEMS)) {
+            projection.add(CompactLineItems.ATTRIBUTE).add(NormalizedOrders.LAYOUT)
+                    .add(NormalizedOrders.TACO_COUNT).add(NormalizedOrders.SIDE_COUNT);
+        }
+        return projection.toString();
+    }
+
+    private String statusUpdate() {
+        return statusShards > 0 ? "SET #status = :status, " + STATUS_SHARD + " = :shard" : "SET #status = :status";
+    }
+
+    // A missing order has no status, so either condition also fails for it
+    private static String statusCondition(Transition transition) {
+        if (transition.expected() != null) {
+            return "#status = :expected";
+        }
+        StringJoiner condition = new StringJoiner(", ", "#status IN (", ")");
+        for (int i = 0; i < transition.status().predecessors().size(); i++) {
+            condition.add(":from" + i);
+        }
+        return condition.toString();
+    }
+
+    private Map<String, AttributeValue> statusValues(Transition transition) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":status", AttributeValue.fromS(transition.status().name()));
+        if (transition.expected() != null) {
+            values.put(":expected", AttributeValue.fromS(transition.expected().name()));
+        } else {
+            List<OrderStatus> predecessors = transition.status().predecessors();
+            for (int i = 0; i < predecessors.size(); i++) {
+                values.put(":from" + i, AttributeValue.fromS(predecessors.get(i).name()));
+            }
+        }
+        if (statusShards > 0) {
+            values.put(":shard", AttributeValue.fromS(statusShard(transition.status().name(), transition.orderId())));
+        }
+        return values;
+    }
+
+    /**
+     * The write-sharded status key, {@code <status>#<n>}. An order always lands in the same shard so
+     * a status update moves it between shards of the same number.
+     */
+    String statusShard(String status, String orderId) {
+        return status + "#" + Math.floorMod(orderId.hashCode(), statusShards);
+    }
+
+    private Map<String, AttributeValue> withStatusShard(Map<String, AttributeValue> orderItem) {
+        AttributeValue status = orderItem.get("Status");
+        AttributeValue sortKey = orderItem.get(Keys.SK);
+        if (statusShards == 0 || status == null || sortKey == null || !sortKey.s().startsWith(Keys.ORDER_PREFIX)) {
+            return orderItem;
+        }
+        Map<String, AttributeValue> sharded = new HashMap<>(orderItem);
+        sharded.put(STATUS_SHARD, AttributeValue.builder()
+                .s(statusShard(status.s(), sortKey.s().substring(Keys.ORDER_PREFIX.length())))
+                .build());
+        return sharded;
+    }
+    /**
+     * Reassembles the normalized orders among {@code items}, all of them in parallel; nested orders
+     * pass through unchanged.
+     */
+    private CompletableFuture<List<Map<String, AttributeValue>>> assembleAll(List<Map<String, AttributeValue>> items) {
+        if (items.stream().noneMatch(NormalizedOrders::isNormalized)) {
+            return CompletableFuture.completedFuture(items);
+        }
+        List<CompletableFuture<Map<String, AttributeValue>>> assembled = items.stream()
+                .map(item -> NormalizedOrders.isNormalized(item)
+                        ? queryPartition(NormalizedOrders.linePartition(item)).thenCompose(lines -> assemble(item, lines))
+                        : CompletableFuture.completedFuture(item))
+                .toList();
+        return CompletableFuture.allOf(assembled.toArray(CompletableFuture[]::new))
+                .thenApply(done -> assembled.stream().map(CompletableFuture::join).toList());
+    }
+
+    // Reads the toppings of every taco in parallel, then puts the order back together
+    private CompletableFuture<Map<String, AttributeValue>> assemble(Map<String, AttributeValue> header,
+                                                                    List<Map<String, AttributeValue>> orderPartition) {
+        String linePartition = NormalizedOrders.linePartition(header);
+        Map<Integer, CompletableFuture<List<Map<String, AttributeValue>>>> toppings = new HashMap<>();
+        for (int position : NormalizedOrders.tacosWithToppings(header, orderPartition)) {
+            toppings.put(position, queryPartition(NormalizedOrders.toppingPartition(linePartition, position)));
+        }
+        return CompletableFuture.allOf(toppings.values().toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    Map<Integer, List<Map<String, AttributeValue>>> toppingsByTaco = new HashMap<>();
+                    toppings.forEach((position, query) -> toppingsByTaco.put(position, query.join()));
+                    return NormalizedOrders.assemble(header, orderPartition, toppingsByTaco);
+                });
+    }
+
+    private CompletableFuture<List<Map<String, AttributeValue>>> queryPartition(String partitionKey) {
+        return queryPartition(partitionKey, null, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<Map<String, AttributeValue>>> queryPartition(String partitionKey,
+                                                                               Map<String, AttributeValue> startKey,
+                                                                               List<Map<String, AttributeValue>> items) {
+        return dynamoDb.query(QueryRequest.builder()
+                        .tableName(tableName)
+                        .keyConditionExpression("PK = :pk")
+                        .expressionAttributeValues(Map.of(":pk", AttributeValue.builder().s(partitionKey).build()))
+                        .exclusiveStartKey(startKey)
+                        .build())
+                .thenCompose(response -> {
+                    items.addAll(response.items());
+                    return response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                            ? queryPartition(partitionKey, response.lastEvaluatedKey(), items)
+                            : CompletableFuture.completedFuture(items);
+                });
+    }
+
+    private static List<WriteRequest> putRequests(List<Map<String, AttributeValue>> items) {
+        return items.stream()
+                .map(item -> WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build())
+                .toList();
+    }
+
+    private static String keyOf(Map<String, AttributeValue> item) {
+        return item.get(Keys.PK).s() + "|" + item.get(Keys.SK).s();
+    }
+}
@@ -0,0 +1,265 @@
+package dynamotaco.repository;
+
+import dynamotaco.stats.Granularity;
+import dynamotaco.stats.Rollup;
+import dynamotaco.util.Futures;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Sales rollups: one {@code STATS#<granularity>#<window start>} partition per window, holding a
+ * {@code Count} and {@code RevenueCents} item per {@link Rollup#sortKey()}. Rollups are written as
+ * deltas with ADD, so any number of containers can add to the same window without reading it first.
+ *
+ * ADD is not idempotent, so deltas from the table's stream are added at most once with
+ * {@link #addOnce}. The deltas of one run of records are first stored under the run's first
+ * sequence number, then added in transactions of up to {@value #GROUP_SIZE}, each of which also
+ * writes a marker that fails it when it was added before. A redelivered run is finished from what
+ * was stored instead of being counted again. These items expire through the table's
+ * {@code ExpiresAt} TTL a day later.
+ */
+public class StatsRepository {
+
+    /** Rollups per transaction: DynamoDB takes 100 actions, and one is the group's marker. */
+    public static final int GROUP_SIZE = 99;
+
+    private static final String ROLLUPS = "ROLLUPS";
+    private static final String GROUP_PREFIX = "GROUP#";
+    private static final long BATCH_RETENTION_SECONDS = Duration.ofDays(1).toSeconds();
+    private static final String ADD_EXPRESSION = "ADD #count :count, RevenueCents :revenue SET WindowStart = :start";
+
+    /**
+     * The rollups one run of stream records added up to, and which {@link #GROUP_SIZE} groups of
+     * them have been added to the stored rollups.
+     */
+    public record StreamBatch(String firstSequenceNumber, String lastSequenceNumber, List<Rollup> rollups,
+                              Set<Integer> addedGroups) {
+
+        public boolean complete() {
+            return addedGroups.size() >= groups(rollups.size());
+        }
+    }
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+
+    public StatsRepository(DynamoDbAsyncClient dynamoDb, String tableName) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Adds the rollup's count and revenue to what is stored for its window and key.
+     */
+    public CompletableFuture<Void> add(Rollup delta) {
+        return dynamoDb.updateItem(UpdateItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Keys.key(Keys.stats(delta.granularity(), delta.windowStart()), delta.sortKey()))
+                        .updateExpression(ADD_EXPRESSION)
+                        // COUNT is a reserved word
+                        .expressionAttributeNames(Map.of("#count", "Count"))
+                        .expressionAttributeValues(addValues(delta))
+                        .build())
+                .thenApply(response -> null);
+    }
+
+    /**
+     * The run of stream records starting at {@code firstSequenceNumber} as stored by {@link #addOnce},
+     * or null when no run started there.
+     */
+    public CompletableFuture<StreamBatch> findBatch(String firstSequenceNumber) {
+        // One rollups item and a marker per group, far below a page
+        return dynamoDb.query(QueryRequest.builder()
+                        .tableName(tableName)
+                        .keyConditionExpression("PK = :pk")
+                        .expressionAttributeValues(Map.of(
+                                ":pk", AttributeValue.builder().s(Keys.statsBatch(firstSequenceNumber)).build()))
+                        .consistentRead(true)
+                        .build())
+                .thenApply(response -> {
+                    Map<String, AttributeValue> stored = null;
+                    Set<Integer> added = new HashSet<>();
+                    for (Map<String, AttributeValue> item : response.items()) {
+                        String sortKey = item.get(Keys.SK).s();
+                        if (ROLLUPS.equals(sortKey)) {
+                            stored = item;
+                        } else if (sortKey.startsWith(GROUP_PREFIX)) {
+                            added.add(Integer.parseInt(sortKey.substring(GROUP_PREFIX.length())));
+                        }
+                    }
+                    if (stored == null) {
+                        return null;
+                    }
+                    List<Rollup> rollups = new ArrayList<>();
+                    for (AttributeValue value : stored.get("Rollups").l()) {
+                        rollups.add(rollup(value.m()));
+                    }
+                    return new StreamBatch(firstSequenceNumber, stored.get("LastSequenceNumber").s(), rollups, added);
+                });
+    }
+
+    /**
+     * Adds the rollups of the stream records {@code firstSequenceNumber} to {@code lastSequenceNumber}
+     * unless a run starting at the same record was stored before; that run is finished instead.
+     * Fails when any group could not be added; {@link #addRemaining} picks up from there.
+     */
+    public CompletableFuture<Void> addOnce(String firstSequenceNumber, String lastSequenceNumber, List<Rollup> rollups) {
+        List<AttributeValue> stored = new ArrayList<>(rollups.size());
+        for (Rollup rollup : rollups) {
+            stored.add(AttributeValue.fromM(Map.of(
+                    "Granularity", AttributeValue.fromS(rollup.granularity().name()),
+                    "WindowStart", number(rollup.windowStart()),
+                    "Key", AttributeValue.fromS(rollup.sortKey()),
+                    "Count", number(rollup.count()),
+                    "RevenueCents", number(rollup.revenueCents()))));
+        }
+        Map<String, AttributeValue> item = new HashMap<>(Keys.key(Keys.statsBatch(firstSequenceNumber), ROLLUPS));
+        item.put("LastSequenceNumber", AttributeValue.fromS(lastSequenceNumber));
+        item.put("Rollups", AttributeValue.fromL(stored));
+        item.put("ExpiresAt", expiresAt());
+        return dynamoDb.putItem(PutItemRequest.builder()
+                        .tableName(tableName)
+                        .item(item)
+                        .conditionExpression("attribute_not_exists(PK)")
+                        .build())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return new StreamBatch(firstSequenceNumber, lastSequenceNumber, rollups, Set.of());
+                    }
+                    if (Futures.unwrap(error) instanceof ConditionalCheckFailedException) {
+                        return null;
+                    }
+                    throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                })
+                .thenCompose(batch -> batch != null ? addRemaining(batch)
+                        : findBatch(firstSequenceNumber).thenCompose(this::addRemaining));
+    }
+
+    /**
+     * Adds the groups of a stored run that have not been added yet, all at once.
+     */
+    public CompletableFuture<Void> addRemaining(StreamBatch batch) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int group = 0; group < groups(batch.rollups().size()); group++) {
+            if (!batch.addedGroups().contains(group)) {
+                int from = group * GROUP_SIZE;
+                writes.add(addGroup(batch.firstSequenceNumber(), group,
+                        batch.rollups().subList(from, Math.min(from + GROUP_SIZE, batch.rollups().size()))));
+            }
+        }
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Void> addGroup(String firstSequenceNumber, int group, List<Rollup> rollups) {
+        List<TransactWriteItem> items = new ArrayList<>(rollups.size() + 1);
+        Map<String, AttributeValue> marker = new HashMap<>(Keys.key(Keys.statsBatch(firstSequenceNumber), GROUP_PREFIX + group));
+        marker.put("ExpiresAt", expiresAt());
+        items.add(TransactWriteItem.builder()
+                .put(Put.builder()
+                        .tableName(tableName)
+                        .item(marker)
+                        .conditionExpression("attribute_not_exists(PK)")
+                        .build())
+                .build());
+        for (Rollup rollup : rollups) {
+            items.add(TransactWriteItem.builder()
+                    .update(Update.builder()
+                            .tableName(tableName)
+                            .key(Keys.key(Keys.stats(rollup.granularity(), rollup.windowStart()), rollup.sortKey()))
+                            .updateExpression(ADD_EXPRESSION)
+                            .expressionAttributeNames(Map.of("#count", "Count"))
+                            .expressionAttributeValues(addValues(rollup))
+                            .build())
+                    .build());
+        }
+        return dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(items).build())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return null;
+                    }
+                    // Only the marker has a condition: this group was added by an earlier delivery
+                    Throwable cause = Futures.unwrap(error);
+                    if (cause instanceof TransactionCanceledException cancelled && cancelled.hasCancellationReasons()
+                            && "ConditionalCheckFailed".equals(cancelled.cancellationReasons().get(0).code())) {
+                        return null;
+                    }
+                    throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                });
+    }
+
+    /**
+     * Every rollup of one window.
+     */
+    public CompletableFuture<List<Rollup>> find(Granularity granularity, long windowStart) {
+        return query(granularity, windowStart, null, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<Rollup>> query(Granularity granularity, long windowStart,
+                                                  Map<String, AttributeValue> startKey, List<Rollup> rollups) {
+        return dynamoDb.query(QueryRequest.builder()
+                        .tableName(tableName)
+                        .keyConditionExpression("PK = :pk")
+                        .expressionAttributeValues(Map.of(
+                                ":pk", AttributeValue.builder().s(Keys.stats(granularity, windowStart)).build()))
+                        .exclusiveStartKey(startKey)
+                        .build())
+                .thenCompose(response -> {
+                    for (Map<String, AttributeValue> item : response.items()) {
+                        Rollup.Key key = Rollup.Key.parse(item.get(Keys.SK).s());
+                        rollups.add(new Rollup(granularity, windowStart, key.dimension(), key.name(),
+                                number(item.get("Count")), number(item.get("RevenueCents"))));
+                    }
+                    return response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                            ? query(granularity, windowStart, response.lastEvaluatedKey(), rollups)
+                            : CompletableFuture.completedFuture(rollups);
+                });
+    }
+
+    private static Rollup rollup(Map<String, AttributeValue> stored) {
+        Rollup.Key key = Rollup.Key.parse(stored.get("Key").s());
+        return new Rollup(Granularity.valueOf(stored.get("Granularity").s()), number(stored.get("WindowStart")),
+                key.dimension(), key.name(), number(stored.get("Count")), number(stored.get("RevenueCents")));
+    }
+
+    private static Map<String, AttributeValue> addValues(Rollup delta) {
+        return Map.of(
+                ":count", number(delta.count()),
+                ":revenue", number(delta.revenueCents()),
+                ":start", number(delta.windowStart()));
+    }
+
+    static int groups(int rollups) {
+        return (rollups + GROUP_SIZE - 1) / GROUP_SIZE;
+    }
+
+    private static AttributeValue expiresAt() {
+        return number(System.currentTimeMillis() / 1000 + BATCH_RETENTION_SECONDS);
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+
+    private static long number(AttributeValue value) {
+        return value == null || value.n() == null ? 0 : Long.parseLong(value.n());
+    }
+}
@@ -0,0 +1,49 @@
+package dynamotaco.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the last {@code window} latencies of one kind of call and a percentile over them, which is
+ * recomputed every {@code window / 8} samples rather than on every read.
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private final double percentile;
+    private final int recomputeEvery;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private volatile long value = -1;
+
+    public LatencyTracker(int window, double percentile) {
+        this.samples = new long[window];
+        this.percentile = percentile;
+        this.recomputeEvery = Math.max(1, window / 8);
+    }
+
+    public void record(long nanos) {
+        lock.lock();
+        try {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (++sinceRecompute >= recomputeEvery && count >= recomputeEvery) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                value = sorted[Math.min(count - 1, (int) Math.ceil(count * percentile) - 1)];
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The percentile in nanoseconds, or -1 until enough samples were recorded. */
+    public long percentileNanos() {
+        return value;
+    }
+}
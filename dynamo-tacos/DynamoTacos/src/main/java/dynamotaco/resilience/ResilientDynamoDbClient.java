@@ -0,0 +1,357 @@
+package dynamotaco.resilience;
+
+import dynamotaco.util.Config;
+import dynamotaco.util.Futures;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the async client with client-side rate limiting, retries and hedged reads.
+ *
+ * <ul>
+ * <li>Every call first takes a token from the bucket of its table, or {@code table/index} for
+ * queries and scans on an index, when a rate is configured for it. A throttled call lowers that
+ * bucket's rate and successful ones raise it back, so the client backs off as a whole instead of
+ * every caller retrying into a throttled partition.</li>
+ * <li>Throttling, 5xx and client (network) errors are retried up to {@code maxAttempts} with
+ * decorrelated jitter: each sleep is random between the base and three times the previous sleep,
+ * capped. Anything else, e.g. a failed condition, is returned right away.</li>
+ * <li>With hedging on, an eventually consistent GetItem or Query that takes longer than the recent
+ * p95 for its operation gets a second, identical request; the first answer wins. Hedges need a
+ * token from the bucket but never wait for one, and are skipped for a second after any throttled
+ * call so they do not add load to a table that is already over its capacity.</li>
+ * </ul>
+ * The SDK client underneath should have its own retries turned off, see {@code HandlerBootstrap}.
+ */
+public class ResilientDynamoDbClient implements DynamoDbAsyncClient {
+
+    private static final int LATENCY_WINDOW = 1024;
+    private static final long HEDGE_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final DynamoDbAsyncClient delegate;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+
+    private volatile double defaultRate;
+    private volatile int maxAttempts = 4;
+    private volatile long baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(25);
+    private volatile long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile boolean hedging;
+    private volatile double hedgePercentile = 0.95;
+    private volatile long throttledAt = System.nanoTime() - HEDGE_PAUSE_NANOS;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttles = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder rateLimitedNanos = new LongAdder();
+
+    public ResilientDynamoDbClient(DynamoDbAsyncClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Wraps {@code delegate} with the settings from the environment:
+     * {@code DYNAMODB_MAX_ATTEMPTS}, {@code DYNAMODB_BACKOFF_BASE_MILLIS},
+     * {@code DYNAMODB_BACKOFF_MAX_MILLIS}, {@code DYNAMODB_RATE_LIMITS}
+     * ({@code TacoOrderingApp=500,TacoOrderingApp/GSI1_StatusOrderDate=100}, requests per second),
+     * {@code DYNAMODB_DEFAULT_RATE_LIMIT} and {@code DYNAMODB_HEDGE_READS}.
+     */
+    public static ResilientDynamoDbClient fromConfig(DynamoDbAsyncClient delegate) {
+        ResilientDynamoDbClient client = new ResilientDynamoDbClient(delegate)
+                .withMaxAttempts(Config.getInt("DYNAMODB_MAX_ATTEMPTS", "dynamodb.maxAttempts", 4))
+                .withBackoff(Duration.ofMillis(Config.getLong("DYNAMODB_BACKOFF_BASE_MILLIS", "dynamodb.backoffBaseMillis", 25)),
+                        Duration.ofMillis(Config.getLong("DYNAMODB_BACKOFF_MAX_MILLIS", "dynamodb.backoffMaxMillis", 1000)))
+                .withDefaultRateLimit(Double.parseDouble(Config.get("DYNAMODB_DEFAULT_RATE_LIMIT", "dynamodb.defaultRateLimit", "0")))
+                .withHedging(Config.getBoolean("DYNAMODB_HEDGE_READS", "dynamodb.hedgeReads", false));
+        String limits = Config.get("DYNAMODB_RATE_LIMITS", "dynamodb.rateLimits", "");
+        for (String limit : limits.split(",")) {
+            if (limit.isBlank()) {
+                continue;
+            }
+            int separator = limit.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Rate limits must look like table=perSecond: " + limit);
+            }
+            client.withRateLimit(limit.substring(0, separator).trim(), Double.parseDouble(limit.substring(separator + 1).trim()));
+        }
+        return client;
+    }
+
+    /** Limits calls to a table, or to {@code table/index}, to {@code perSecond} with 100 ms of burst. */
+    public ResilientDynamoDbClient withRateLimit(String tableOrIndex, double perSecond) {
+        buckets.put(tableOrIndex, new TokenBucket(perSecond, Math.max(1, perSecond / 10)));
+        return this;
+    }
+
+    /** The rate for every table and index without its own limit; 0 leaves them unlimited. */
+    public ResilientDynamoDbClient withDefaultRateLimit(double perSecond) {
+        this.defaultRate = perSecond;
+        return this;
+    }
+
+    public ResilientDynamoDbClient withMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        return this;
+    }
+
+    public ResilientDynamoDbClient withBackoff(Duration base, Duration max) {
+        this.baseBackoffNanos = base.toNanos();
+        this.maxBackoffNanos = Math.max(base.toNanos(), max.toNanos());
+        return this;
+    }
+
+    public ResilientDynamoDbClient withHedging(boolean hedging) {
+        this.hedging = hedging;
+        return this;
+    }
+
+    public ResilientDynamoDbClient withHedgePercentile(double percentile) {
+        this.hedgePercentile = percentile;
+        latencies.clear();
+        return this;
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+                "calls", calls.sum(),
+                "retries", retries.sum(),
+                "throttles", throttles.sum(),
+                "hedges", hedges.sum(),
+                "hedgeWins", hedgeWins.sum(),
+                "rateLimitedMillis", TimeUnit.NANOSECONDS.toMillis(rateLimitedNanos.sum())
+        );
+    }
+
+    public static boolean isThrottling(Throwable failure) {
+        return failure instanceof ProvisionedThroughputExceededException
+                || failure instanceof RequestLimitExceededException
+                || failure instanceof SdkServiceException service && service.isThrottlingException();
+    }
+
+    public static boolean isRetryable(Throwable failure) {
+        return isThrottling(failure)
+                || failure instanceof SdkServiceException service && service.statusCode() >= 500
+                || failure instanceof SdkClientException;
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        boolean hedgeable = !Boolean.TRUE.equals(request.consistentRead());
+        return execute("GetItem", request.tableName(), hedgeable, () -> delegate.getItem(request));
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return execute("PutItem", request.tableName(), false, () -> delegate.putItem(request));
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return execute("UpdateItem", request.tableName(), false, () -> delegate.updateItem(request));
+    }
+
+    @Override
+    public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+        return execute("DeleteItem", request.tableName(), false, () -> delegate.deleteItem(request));
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest request) {
+        boolean hedgeable = !Boolean.TRUE.equals(request.consistentRead());
+        return execute("Query", limiterKey(request.tableName(), request.indexName()), hedgeable, () -> delegate.query(request));
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> scan(ScanRequest request) {
+        return execute("Scan", limiterKey(request.tableName(), request.indexName()), false, () -> delegate.scan(request));
+    }
+
+    @Override
+    public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        return execute("BatchWriteItem", firstTable(request.requestItems()), false, () -> delegate.batchWriteItem(request));
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+        return execute("BatchGetItem", firstTable(request.requestItems()), false, () -> delegate.batchGetItem(request));
+    }
+
+    @Override
+    public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+        String table = request.hasTransactItems() && !request.transactItems().isEmpty()
+                ? tableOf(request.transactItems().get(0))
+                : null;
+        return execute("TransactWriteItems", table, false, () -> delegate.transactWriteItems(request));
+    }
+
+    @Override
+    public CompletableFuture<TransactGetItemsResponse> transactGetItems(TransactGetItemsRequest request) {
+        String table = request.hasTransactItems() && !request.transactItems().isEmpty()
+                ? request.transactItems().get(0).get().tableName()
+                : null;
+        return execute("TransactGetItems", table, false, () -> delegate.transactGetItems(request));
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private <T> CompletableFuture<T> execute(String operation, String limiterKey, boolean hedgeable,
+                                             Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        TokenBucket bucket = bucket(limiterKey);
+        LatencyTracker tracker = latencies.computeIfAbsent(operation, name -> new LatencyTracker(LATENCY_WINDOW, hedgePercentile));
+        attempt(new Attempt<>(call, bucket, hedging && hedgeable ? tracker : null, tracker, result), 1, baseBackoffNanos);
+        return result;
+    }
+
+    private record Attempt<T>(Supplier<CompletableFuture<T>> call, TokenBucket bucket, LatencyTracker hedgeDelay,
+                              LatencyTracker tracker, CompletableFuture<T> result) {
+    }
+
+    private <T> void attempt(Attempt<T> attempt, int number, long previousSleep) {
+        long wait = attempt.bucket() == null ? 0 : attempt.bucket().reserve();
+        if (wait > 0) {
+            rateLimitedNanos.add(wait);
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS).execute(() -> send(attempt, number, previousSleep));
+        } else {
+            send(attempt, number, previousSleep);
+        }
+    }
+
+    private <T> void send(Attempt<T> attempt, int number, long previousSleep) {
+        CompletableFuture<T> response = attempt.hedgeDelay() == null ? timed(attempt) : hedged(attempt);
+        response.whenComplete((value, failure) -> {
+            TokenBucket bucket = attempt.bucket();
+            if (failure == null) {
+                if (bucket != null) {
+                    bucket.onSuccess();
+                }
+                attempt.result().complete(value);
+                return;
+            }
+            Throwable cause = Futures.unwrap(failure);
+            if (isThrottling(cause)) {
+                throttles.increment();
+                throttledAt = System.nanoTime();
+                if (bucket != null) {
+                    bucket.onThrottle();
+                }
+            }
+            if (number >= maxAttempts || !isRetryable(cause)) {
+                attempt.result().completeExceptionally(cause);
+                return;
+            }
+            retries.increment();
+            long sleep = Math.min(maxBackoffNanos,
+                    ThreadLocalRandom.current().nextLong(baseBackoffNanos, Math.max(baseBackoffNanos, previousSleep * 3) + 1));
+            CompletableFuture.delayedExecutor(sleep, TimeUnit.NANOSECONDS).execute(() -> attempt(attempt, number + 1, sleep));
+        });
+    }
+
+    // One request, its latency recorded for the hedge delay when it succeeds
+    private <T> CompletableFuture<T> timed(Attempt<T> attempt) {
+        calls.increment();
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = attempt.call().get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((value, failure) -> {
+            if (failure == null) {
+                attempt.tracker().record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    // The first success of the request and a copy sent once it is slower than the tracked percentile
+    private <T> CompletableFuture<T> hedged(Attempt<T> attempt) {
+        long delay = attempt.hedgeDelay().percentileNanos();
+        CompletableFuture<T> primary = timed(attempt);
+        if (delay < 0) {
+            return primary;
+        }
+
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        primary.whenComplete((value, failure) -> {
+            if (failure == null) {
+                first.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                first.completeExceptionally(failure);
+            }
+        });
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (first.isDone() || System.nanoTime() - throttledAt < HEDGE_PAUSE_NANOS
+                    || attempt.bucket() != null && !attempt.bucket().tryAcquire()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedges.increment();
+            timed(attempt).whenComplete((value, failure) -> {
+                if (failure == null) {
+                    if (first.complete(value)) {
+                        hedgeWins.increment();
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    first.completeExceptionally(failure);
+                }
+            });
+        });
+        return first;
+    }
+
+    private TokenBucket bucket(String key) {
+        if (key == null) {
+            return null;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null || defaultRate <= 0) {
+            return bucket;
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(defaultRate, Math.max(1, defaultRate / 10)));
+    }
+
+    private static String limiterKey(String tableName, String indexName) {
+        return indexName == null ? tableName : tableName + "/" + indexName;
+    }
+
+    private static String firstTable(Map<String, ?> requestItems) {
+        return requestItems == null || requestItems.isEmpty() ? null : requestItems.keySet().iterator().next();
+    }
+
+    private static String tableOf(TransactWriteItem item) {
+        if (item.put() != null) {
+            return item.put().tableName();
+        }
+        if (item.update() != null) {
+            return item.update().tableName();
+        }
+        if (item.delete() != null) {
+            return item.delete().tableName();
+        }
+        return item.conditionCheck() == null ? null : item.conditionCheck().tableName();
+    }
+}
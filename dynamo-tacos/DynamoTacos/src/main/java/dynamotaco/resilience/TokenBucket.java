@@ -0,0 +1,118 @@
+package dynamotaco.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that refills at {@code rate} tokens per second up to {@code burst} tokens.
+ *
+ * {@link #reserve} always takes a token, letting the balance go negative, and returns how long the
+ * caller has to wait before using it, so callers queue up fairly without spinning. The rate adapts
+ * to throttling: {@link #onThrottle} cuts it by 30% (at most once per 100 ms, so one burst of
+ * throttled calls counts once) and every {@link #onSuccess} wins back 1% of the configured rate.
+ */
+public class TokenBucket {
+
+    private static final double DECREASE = 0.7;
+    private static final double INCREASE = 0.01;
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final double maxRate;
+    private final double minRate;
+    private final double burst;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile double rate;
+    private double tokens;
+    private long refilledAt;
+    private long decreasedAt;
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        this(ratePerSecond, burst, System::nanoTime);
+    }
+
+    public TokenBucket(double ratePerSecond, double burst, LongSupplier clock) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate must be positive and burst at least 1");
+        }
+        this.maxRate = ratePerSecond;
+        this.minRate = Math.max(ratePerSecond / 20, 1);
+        this.burst = burst;
+        this.clock = clock;
+        this.rate = ratePerSecond;
+        this.tokens = burst;
+        this.refilledAt = clock.getAsLong();
+        this.decreasedAt = refilledAt - DECREASE_COOLDOWN_NANOS;
+    }
+
+    /** Takes a token and returns the nanoseconds to wait before it may be used, 0 when it is there. */
+    public long reserve() {
+        return reserve(1);
+    }
+
+    /** Takes {@code permits} tokens at once, for callers that spend one per item of a batch. */
+    public long reserve(int permits) {
+        lock.lock();
+        try {
+            refill();
+            tokens -= permits;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes a token only if one is available right now. */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            refill();
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onThrottle() {
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            if (now - decreasedAt >= DECREASE_COOLDOWN_NANOS) {
+                refill();
+                rate = Math.max(minRate, rate * DECREASE);
+                decreasedAt = now;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        if (rate >= maxRate) {
+            return;
+        }
+        lock.lock();
+        try {
+            refill();
+            rate = Math.min(maxRate, rate + maxRate * INCREASE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double rate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+        refilledAt = now;
+    }
+}
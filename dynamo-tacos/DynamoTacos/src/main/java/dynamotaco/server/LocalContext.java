@@ -0,0 +1,80 @@
+package dynamotaco.server;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lambda context handed to handlers by {@link LocalServer}. Handler log lines go to stdout when
+ * request logging is on and are dropped otherwise, since they would dominate the cost of a request.
+ */
+class LocalContext implements Context {
+
+    private static final LambdaLogger SILENT = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void log(byte[] message) {
+        }
+    };
+
+    private static final LambdaLogger STDOUT = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+            System.out.println(message);
+        }
+
+        @Override
+        public void log(byte[] message) {
+            log(new String(message, StandardCharsets.UTF_8));
+        }
+    };
+
+    private final String requestId;
+    private final String functionName;
+    private final LambdaLogger logger;
+
+    LocalContext(String requestId, String functionName, boolean logRequests) {
+        this.requestId = requestId;
+        this.functionName = functionName;
+        this.logger = logRequests ? STDOUT : SILENT;
+    }
+
+    @Override
+    public String getAwsRequestId() { return requestId; }
+
+    @Override
+    public String getLogGroupName() { return "local"; }
+
+    @Override
+    public String getLogStreamName() { return "local"; }
+
+    @Override
+    public String getFunctionName() { return functionName; }
+
+    @Override
+    public String getFunctionVersion() { return "$LATEST"; }
+
+    @Override
+    public String getInvokedFunctionArn() { return "local:" + functionName; }
+
+    @Override
+    public CognitoIdentity getIdentity() { return null; }
+
+    @Override
+    public ClientContext getClientContext() { return null; }
+
+    @Override
+    public int getRemainingTimeInMillis() { return Integer.MAX_VALUE; }
+
+    @Override
+    public int getMemoryLimitInMB() { return (int) (Runtime.getRuntime().maxMemory() >> 20); }
+
+    @Override
+    public LambdaLogger getLogger() { return logger; }
+}
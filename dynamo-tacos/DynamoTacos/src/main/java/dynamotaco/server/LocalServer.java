@@ -0,0 +1,293 @@
+package dynamotaco.server;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dynamotaco.api.*;
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.metrics.MeteredDynamoDbClient;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.repository.CustomerRepository;
+import dynamotaco.repository.Keys;
+import dynamotaco.stream.CacheInvalidationSink;
+import dynamotaco.stream.OrderChangeSink;
+import dynamotaco.stream.OrderStatusBroadcaster;
+import dynamotaco.util.Config;
+import dynamotaco.util.DynamoJson;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the API handlers in one JVM behind the JDK HTTP server, for container and on-prem
+ * deployments. Each HTTP request is turned into the APIGatewayProxyRequestEvent that API Gateway
+ * would have sent, handled on its own virtual thread, and the handler's response is written back.
+ *
+ * The handlers are created once and shared, so every route uses the same DynamoDB client, menu
+ * cache and idempotency cache instead of one set per Lambda function. A request waiting on
+ * {@code GET /order/status} parks its virtual thread until an update through this server wakes it.
+ * A process that reads the table's stream can feed {@link #streamSinks()}, which keep those caches
+ * and waiters current with writes made elsewhere. The server does not start one itself, so unless
+ * something feeds them the caches see other writers' changes only when their entries expire.
+ *
+ * <pre>
+ * java -cp DynamoTacos-1.0.jar dynamotaco.server.LocalServer [--port 8080] [--in-memory] [--seed menuItems.json]
+ * </pre>
+ */
+public class LocalServer implements AutoCloseable {
+
+    private static final Set<String> BODYLESS_METHODS = Set.of("GET", "HEAD", "DELETE", "OPTIONS");
+
+    static {
+        // Headers and body go out in separate writes; without TCP_NODELAY every keep-alive response
+        // waits out the client's delayed ACK (~40 ms). Read once when the JDK server is first used.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Map<String, Route>> routes = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final List<OrderChangeSink> streamSinks = new ArrayList<>();
+    private final boolean logRequests;
+
+    private record Route(String name, RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler) {
+    }
+
+    public LocalServer(int port) throws IOException {
+        this(port, Config.getBoolean("SERVER_LOG_REQUESTS", "server.logRequests", false));
+    }
+
+    public LocalServer(int port, boolean logRequests) throws IOException {
+        this.logRequests = logRequests;
+        this.server = HttpServer.create(new InetSocketAddress(port), Config.getInt("SERVER_BACKLOG", "server.backlog", 1024));
+        this.server.createContext("/", this::dispatch);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * A server with the same routes as template.yaml, all handlers sharing {@code dynamoDb}.
+     */
+    public static LocalServer withApiRoutes(DynamoDbAsyncClient dynamoDb, int port) throws IOException {
+        MenuHandler menu = new MenuHandler(dynamoDb);
+        // Orders are priced from the same cached menu that GET /menu serves
+        PricingEngine pricing = PricingEngine.fromMenuCache(menu.getMenuCache());
+        // Signups land in the same customer cache the order reads consult
+        CustomerCache customers = CustomerRepository.newCache();
+        // Status waiters are woken by the updates made through this server
+        OrderStatusBroadcaster statuses = new OrderStatusBroadcaster();
+        return new LocalServer(port)
+                .route("GET", "/menu", menu)
+                .route("POST", "/customer", new CreateCustomerHandler(dynamoDb, customers))
+                .route("POST", "/order", new CreateOrderHandler(dynamoDb, pricing))
+                .route("GET", "/order", new GetOrderHandler(dynamoDb, customers))
+                .route("PUT", "/order", new UpdateOrderHandler(dynamoDb, statuses))
+                .route("GET", "/order/status", new WaitOrderStatusHandler(dynamoDb, statuses))
+                .route("GET", "/orders", new GetAllOrdersHandler(dynamoDb, customers))
+                .route("GET", "/orders/queue", new GetOrderQueueHandler(dynamoDb))
+                .route("GET", "/stats", new GetStatsHandler(dynamoDb))
+                .route("POST", "/orders/batch", new CreateOrdersBatchHandler(dynamoDb, pricing))
+                .route("POST", "/orders/status", new UpdateOrdersStatusHandler(dynamoDb, statuses))
+                .streamSink(new CacheInvalidationSink(key -> {
+                    String partitionKey = key.get(Keys.PK).s();
+                    if (Keys.PROFILE.equals(key.get(Keys.SK).s()) && partitionKey.startsWith(Keys.CUSTOMER_PREFIX)) {
+                        customers.invalidate(partitionKey.substring(Keys.CUSTOMER_PREFIX.length()));
+                    }
+                }, menu.getMenuCache()::invalidate))
+                .streamSink(statuses);
+    }
+
+    public LocalServer route(String method, String path,
+                             RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler) {
+        routes.computeIfAbsent(path, p -> new ConcurrentHashMap<>())
+                .put(method, new Route(handler.getClass().getSimpleName(), handler));
+        return this;
+    }
+
+    public LocalServer streamSink(OrderChangeSink sink) {
+        streamSinks.add(sink);
+        return this;
+    }
+
+    /** The sinks that keep this server's caches and status waiters current when fed the table's stream. */
+    public List<OrderChangeSink> streamSinks() {
+        return List.copyOf(streamSinks);
+    }
+
+    public LocalServer start() {
+        server.start();
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public URI endpoint() {
+        return URI.create("http://localhost:" + port());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, Route> byMethod = routes.get(path);
+            if (byMethod == null) {
+                send(exchange, 404, Map.of(), "No route for " + path);
+                return;
+            }
+            Route route = byMethod.get(method);
+            if (route == null) {
+                send(exchange, 405, Map.of("Allow", String.join(", ", byMethod.keySet())), method + " not allowed on " + path);
+                return;
+            }
+
+            APIGatewayProxyRequestEvent event = toEvent(exchange, method, path);
+            LocalContext context = new LocalContext(Long.toString(requestIds.incrementAndGet()), route.name(), logRequests);
+            APIGatewayProxyResponseEvent response;
+            try {
+                response = route.handler().handleRequest(event, context);
+            } catch (RuntimeException e) {
+                // API Gateway answers 502 when the integration itself fails
+                context.getLogger().log("Handler " + route.name() + " failed: " + e);
+                send(exchange, 502, Map.of(), "Internal server error");
+                return;
+            }
+            send(exchange, response.getStatusCode() == null ? 200 : response.getStatusCode(),
+                    response.getHeaders() == null ? Map.of() : response.getHeaders(),
+                    response.getBody());
+        }
+    }
+
+    static APIGatewayProxyRequestEvent toEvent(HttpExchange exchange, String method, String path) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        Map<String, List<String>> multiValueHeaders = new HashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) -> {
+            headers.put(name, values.get(0));
+            multiValueHeaders.put(name, values);
+        });
+
+        Map<String, String> queryParameters = new LinkedHashMap<>();
+        Map<String, List<String>> multiValueQueryParameters = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                // API Gateway keeps the last value in the single-value map
+                queryParameters.put(name, value);
+                multiValueQueryParameters.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+            }
+        }
+
+        String body = null;
+        if (!BODYLESS_METHODS.contains(method)) {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] bytes = in.readAllBytes();
+                body = bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        return new APIGatewayProxyRequestEvent()
+                .withHttpMethod(method)
+                .withPath(path)
+                .withResource(path)
+                .withHeaders(headers)
+                .withMultiValueHeaders(multiValueHeaders)
+                // API Gateway sends null rather than an empty map when there is no query string
+                .withQueryStringParameters(queryParameters.isEmpty() ? null : queryParameters)
+                .withMultiValueQueryStringParameters(multiValueQueryParameters.isEmpty() ? null : multiValueQueryParameters)
+                .withBody(body)
+                .withIsBase64Encoded(false);
+    }
+
+    private static void send(HttpExchange exchange, int status, Map<String, String> headers, String body) throws IOException {
+        Headers responseHeaders = exchange.getResponseHeaders();
+        headers.forEach(responseHeaders::set);
+        if (!responseHeaders.containsKey("Content-Type")) {
+            responseHeaders.set("Content-Type", "application/json");
+        }
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Loads the put requests for the app table from a batch-write-item file, e.g. menuItems.json.
+     */
+    public static int seed(InMemoryDynamoDbClient table, Path file) throws IOException {
+        List<Map<String, AttributeValue>> items;
+        try (InputStream in = Files.newInputStream(file)) {
+            items = DynamoJson.readBatchFile(in, HandlerBootstrap.TABLE_NAME);
+        }
+        for (Map<String, AttributeValue> item : items) {
+            table.putItem(PutItemRequest.builder().tableName(HandlerBootstrap.TABLE_NAME).item(item).build());
+        }
+        return items.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Config.getInt("SERVER_PORT", "server.port", 8080);
+        boolean inMemory = Config.getBoolean("SERVER_IN_MEMORY", "server.inMemory", false);
+        String seedFile = Config.get("SERVER_SEED_FILE", "server.seedFile", "menuItems.json");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--in-memory" -> inMemory = true;
+                case "--seed" -> seedFile = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        DynamoDbAsyncClient dynamoDb;
+        if (inMemory) {
+            InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+            Path seed = Path.of(seedFile);
+            if (Files.exists(seed)) {
+                System.out.println("Seeded " + seed(table, seed) + " items from " + seed);
+            }
+            dynamoDb = Metrics.enabled() ? new MeteredDynamoDbClient(table.async()) : table.async();
+        } else {
+            dynamoDb = HandlerBootstrap.dynamoDbAsync();
+        }
+
+        LocalServer server = withApiRoutes(dynamoDb, port).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("DynamoTacos listening on " + server.endpoint()
+                + (inMemory ? " (in-memory table)" : " (table " + HandlerBootstrap.TABLE_NAME + ")"));
+    }
+}
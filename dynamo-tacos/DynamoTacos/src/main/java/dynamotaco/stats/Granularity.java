@@ -0,0 +1,35 @@
+package dynamotaco.stats;
+
+/**
+ * The tumbling windows sales rollups are kept in. Windows start at multiples of their length since
+ * the epoch, so they line up in UTC.
+ */
+public enum Granularity {
+
+    MINUTE(60_000L),
+    HOUR(3_600_000L),
+    DAY(86_400_000L);
+
+    private final long millis;
+
+    Granularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    /** The start of the window that contains {@code epochMillis}. */
+    public long windowStart(long epochMillis) {
+        return Math.floorDiv(epochMillis, millis) * millis;
+    }
+
+    public static Granularity parse(String granularity) {
+        try {
+            return valueOf(granularity.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("window must be one of MINUTE, HOUR, DAY");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dynamotaco.stats;
+
+/**
+ * Sales of one dimension and name within one window: {@code count} units and {@code revenueCents}.
+ * Written as deltas, read back as totals.
+ */
+public record Rollup(Granularity granularity, long windowStart, SalesDimension dimension, String name,
+                     long count, long revenueCents) {
+
+    public record Key(SalesDimension dimension, String name) {
+
+        /** Parses a {@link SalesDimension#sortKey(String)}. */
+        public static Key parse(String sortKey) {
+            int separator = sortKey.indexOf('#');
+            return separator < 0
+                    ? new Key(SalesDimension.valueOf(sortKey), "")
+                    : new Key(SalesDimension.valueOf(sortKey.substring(0, separator)), sortKey.substring(separator + 1));
+        }
+    }
+
+    public String sortKey() {
+        return dimension.sortKey(name);
+    }
+}
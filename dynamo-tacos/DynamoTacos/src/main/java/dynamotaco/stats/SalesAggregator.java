@@ -0,0 +1,303 @@
+package dynamotaco.stats;
+
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.StatsRepository;
+import dynamotaco.util.Futures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Sales counts and revenue per {@link SalesDimension}, kept in one-minute tumbling buckets and
+ * persisted as MINUTE, HOUR and DAY {@link Rollup}s.
+ *
+ * Recording never locks: buckets and their counters are found in ConcurrentHashMaps and bumped
+ * with LongAdders, so threads recording the same taco spread over the adder's cells instead of
+ * contending on one value. {@link #flush()} drains every bucket with {@code sumThenReset} and adds
+ * the deltas to the stored rollups, one write per window and key however many buckets fed it.
+ * Writes that fail are kept and sent again by the next flush. A stream consumer uses
+ * {@link #flushOnce} instead, which adds the rollups of each run of records at most once.
+ *
+ * Buckets are dropped a few minutes after they end, so late records of a recent minute still
+ * share its counters. A dropped bucket is drained once more on the following flush, catching any
+ * recorder that found it just before it was dropped.
+ */
+public class SalesAggregator {
+
+    private static final long BUCKET_MILLIS = Granularity.MINUTE.millis();
+    private static final long RETENTION_MILLIS = 3 * BUCKET_MILLIS;
+    private static final int MAX_PENDING = 10_000;
+
+    private final StatsRepository repository;
+    private final LongSupplier clock;
+    private final long flushIntervalMillis;
+    private final ConcurrentHashMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    // The bucket most records go to, found without boxing its start
+    private volatile Bucket latest;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private List<Bucket> dropped = List.of();
+    private volatile long lastFlush;
+    private final ConcurrentLinkedQueue<Rollup> pending = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder rollupsWritten = new LongAdder();
+    private final LongAdder rollupWriteFailures = new LongAdder();
+    private final LongAdder rollupsDiscarded = new LongAdder();
+
+    public SalesAggregator(StatsRepository repository, long flushIntervalMillis) {
+        this(repository, flushIntervalMillis, System::currentTimeMillis);
+    }
+
+    public SalesAggregator(StatsRepository repository, long flushIntervalMillis, LongSupplier clock) {
+        this.repository = repository;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.clock = clock;
+        this.lastFlush = clock.getAsLong();
+    }
+
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * An order placed at {@code atMillis}, counted under {@link SalesDimension#ORDERS} and under
+     * the status it was placed in.
+     */
+    public void recordOrder(long atMillis, OrderStatus status, long totalCents) {
+        Bucket bucket = bucket(atMillis);
+        bucket.add(SalesDimension.ORDERS, "", 1, totalCents);
+        if (status != null) {
+            bucket.add(SalesDimension.STATUS, status.name(), 1, totalCents);
+        }
+        recorded.increment();
+    }
+
+    /**
+     * An order that moved into {@code status} at {@code atMillis}.
+     */
+    public void recordStatusChange(long atMillis, OrderStatus status, long totalCents) {
+        bucket(atMillis).add(SalesDimension.STATUS, status.name(), 1, totalCents);
+        recorded.increment();
+    }
+
+    /**
+     * {@code quantity} units of a taco, topping or side item sold at {@code atMillis}.
+     */
+    public void recordLine(long atMillis, SalesDimension dimension, String name, long quantity, long revenueCents) {
+        bucket(atMillis).add(dimension, name == null ? "" : name, quantity, revenueCents);
+    }
+
+    /**
+     * Flushes when the flush interval has passed since the last flush.
+     */
+    public CompletableFuture<Void> flushIfDue() {
+        if (clock.getAsLong() - lastFlush < flushIntervalMillis) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return flush();
+    }
+
+    /**
+     * Writes everything recorded since the last flush. The returned future completes once every
+     * write has finished; it does not fail, failed writes are retried by the next flush instead.
+     */
+    public CompletableFuture<Void> flush() {
+        return write(drain());
+    }
+
+    /**
+     * Writes everything recorded since the last flush as the rollups of the stream records
+     * {@code firstSequenceNumber} to {@code lastSequenceNumber}, which are added once however often
+     * those records are delivered; see {@link StatsRepository#addOnce}. Fails with an
+     * IllegalStateException when any rollup could not be written. Failed rollups are not kept: the
+     * stream consumer fails its batch, and the next delivery finishes them through {@link #resume}.
+     */
+    public CompletableFuture<Void> flushOnce(String firstSequenceNumber, String lastSequenceNumber) {
+        List<Rollup> rollups = drain();
+        if (rollups.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return repository.addOnce(firstSequenceNumber, lastSequenceNumber, rollups).handle((added, error) -> {
+            if (error != null) {
+                rollupWriteFailures.increment();
+                throw new IllegalStateException("Sales rollups of records " + firstSequenceNumber + " to "
+                        + lastSequenceNumber + " could not all be written", Futures.unwrap(error));
+            }
+            rollupsWritten.add(rollups.size());
+            return null;
+        });
+    }
+
+    /**
+     * Finishes the rollups of an earlier delivery of the stream records that start at
+     * {@code firstSequenceNumber}, if {@link #flushOnce} stored any.
+     *
+     * @return the sequence number of the last record that delivery covered, or null when there was none
+     */
+    public CompletableFuture<String> resume(String firstSequenceNumber) {
+        return repository.findBatch(firstSequenceNumber).thenCompose(batch -> batch == null || batch.complete()
+                ? CompletableFuture.completedFuture(batch == null ? null : batch.lastSequenceNumber())
+                : repository.addRemaining(batch).thenApply(added -> batch.lastSequenceNumber()));
+    }
+
+    private CompletableFuture<Void> write(List<Rollup> writes) {
+        for (Rollup retry; (retry = pending.poll()) != null; ) {
+            writes.add(retry);
+        }
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(writes.size());
+        for (Rollup rollup : writes) {
+            results.add(write(rollup));
+        }
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new));
+    }
+
+    private List<Rollup> drain() {
+        Map<Window, Map<Rollup.Key, long[]>> windows = new HashMap<>();
+        flushLock.lock();
+        try {
+            long now = clock.getAsLong();
+            lastFlush = now;
+            List<Bucket> draining = new ArrayList<>(dropped);
+            List<Bucket> dropping = new ArrayList<>();
+            for (Bucket bucket : buckets.values()) {
+                draining.add(bucket);
+                if (bucket.start + BUCKET_MILLIS + RETENTION_MILLIS <= now) {
+                    buckets.remove(bucket.start, bucket);
+                    if (latest == bucket) {
+                        latest = null;
+                    }
+                    dropping.add(bucket);
+                }
+            }
+            dropped = dropping;
+
+            for (Bucket bucket : draining) {
+                Map<Rollup.Key, long[]> deltas = bucket.drain();
+                if (deltas.isEmpty()) {
+                    continue;
+                }
+                for (Granularity granularity : Granularity.values()) {
+                    Map<Rollup.Key, long[]> totals = windows.computeIfAbsent(
+                            new Window(granularity, granularity.windowStart(bucket.start)), w -> new HashMap<>());
+                    deltas.forEach((key, delta) -> {
+                        long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+                        total[0] += delta[0];
+                        total[1] += delta[1];
+                    });
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+
+        List<Rollup> rollups = new ArrayList<>();
+        windows.forEach((window, totals) -> totals.forEach((key, total) -> rollups.add(new Rollup(
+                window.granularity(), window.start(), key.dimension(), key.name(), total[0], total[1]))));
+        return rollups;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("recorded", recorded.sum());
+        stats.put("buckets", (long) buckets.size());
+        stats.put("rollupsWritten", rollupsWritten.sum());
+        stats.put("rollupWriteFailures", rollupWriteFailures.sum());
+        stats.put("rollupsPending", (long) pending.size());
+        stats.put("rollupsDiscarded", rollupsDiscarded.sum());
+        return stats;
+    }
+
+    private CompletableFuture<Boolean> write(Rollup rollup) {
+        CompletableFuture<Void> write;
+        try {
+            write = repository.add(rollup);
+        } catch (RuntimeException e) {
+            write = CompletableFuture.failedFuture(e);
+        }
+        return write.handle((ignored, error) -> {
+            if (error == null) {
+                rollupsWritten.increment();
+                return true;
+            }
+            rollupWriteFailures.increment();
+            // A table that stays unavailable must not grow the queue without bound
+            if (pending.size() < MAX_PENDING) {
+                pending.add(rollup);
+            } else {
+                rollupsDiscarded.increment();
+            }
+            return false;
+        });
+    }
+
+    private Bucket bucket(long atMillis) {
+        long start = Granularity.MINUTE.windowStart(atMillis);
+        Bucket bucket = latest;
+        if (bucket != null && bucket.start == start) {
+            return bucket;
+        }
+        Bucket current = bucket;
+        bucket = buckets.computeIfAbsent(start, Bucket::new);
+        if (current == null || start > current.start) {
+            latest = bucket;
+        }
+        return bucket;
+    }
+
+    private record Window(Granularity granularity, long start) {
+    }
+
+    private static final class Counter {
+        final LongAdder count = new LongAdder();
+        final LongAdder revenueCents = new LongAdder();
+    }
+
+    private static final class Bucket {
+
+        final long start;
+        // Indexed by SalesDimension ordinal
+        final List<ConcurrentHashMap<String, Counter>> counters = new ArrayList<>();
+
+        Bucket(long start) {
+            this.start = start;
+            for (int i = 0; i < SalesDimension.values().length; i++) {
+                counters.add(new ConcurrentHashMap<>());
+            }
+        }
+
+        void add(SalesDimension dimension, String name, long count, long revenueCents) {
+            ConcurrentHashMap<String, Counter> named = counters.get(dimension.ordinal());
+            // get first: computeIfAbsent locks the bin even when the counter exists
+            Counter counter = named.get(name);
+            if (counter == null) {
+                counter = named.computeIfAbsent(name, n -> new Counter());
+            }
+            counter.count.add(count);
+            counter.revenueCents.add(revenueCents);
+        }
+
+        Map<Rollup.Key, long[]> drain() {
+            Map<Rollup.Key, long[]> deltas = new HashMap<>();
+            for (SalesDimension dimension : SalesDimension.values()) {
+                counters.get(dimension.ordinal()).forEach((name, counter) -> {
+                    long count = counter.count.sumThenReset();
+                    long revenueCents = counter.revenueCents.sumThenReset();
+                    if (count != 0 || revenueCents != 0) {
+                        deltas.put(new Rollup.Key(dimension, name), new long[]{count, revenueCents});
+                    }
+                });
+            }
+            return deltas;
+        }
+    }
+}
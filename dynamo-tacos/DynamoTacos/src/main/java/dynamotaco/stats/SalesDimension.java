@@ -0,0 +1,24 @@
+package dynamotaco.stats;
+
+/**
+ * What a sales counter counts. {@link #ORDERS} has a single unnamed counter; the others have one
+ * per status or item name.
+ */
+public enum SalesDimension {
+
+    /** Orders placed and their totals. */
+    ORDERS,
+
+    /** Orders entering each status and their totals, counting the status an order is placed in. */
+    STATUS,
+
+    /** Tacos, toppings and side items sold per name and their revenue; sides count their quantity. */
+    TACO,
+    TOPPING,
+    SIDE;
+
+    /** {@code <DIMENSION>#<name>}, or just the dimension for an empty name. */
+    public String sortKey(String name) {
+        return name.isEmpty() ? name() : name() + "#" + name;
+    }
+}
@@ -0,0 +1,45 @@
+package dynamotaco.stream;
+
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.MenuRepository;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Passes the key of every changed item to {@code invalidator}, once per micro-batch even when the
+ * item changed several times in it. Changes to the {@code MENU} partition go to
+ * {@code menuInvalidator} instead, once per batch, since the menu is cached as a whole. Sales
+ * rollups are not cached, so their changes are skipped.
+ */
+public class CacheInvalidationSink implements OrderChangeSink {
+
+    private final Consumer<Map<String, AttributeValue>> invalidator;
+    private final Runnable menuInvalidator;
+
+    public CacheInvalidationSink(Consumer<Map<String, AttributeValue>> invalidator, Runnable menuInvalidator) {
+        this.invalidator = invalidator;
+        this.menuInvalidator = menuInvalidator;
+    }
+
+    @Override
+    public void accept(List<OrderChange> changes) {
+        Set<String> seen = new LinkedHashSet<>();
+        boolean menuChanged = false;
+        for (OrderChange change : changes) {
+            if (MenuRepository.MENU_PARTITION.equals(change.partitionKey())) {
+                menuChanged = true;
+            } else if (!change.partitionKey().startsWith(Keys.STATS_PREFIX)
+                    && seen.add(change.partitionKey() + "|" + change.sortKey())) {
+                invalidator.accept(change.keys());
+            }
+        }
+        if (menuChanged) {
+            menuInvalidator.run();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package dynamotaco.stream;
+
+import dynamotaco.models.Order;
+import dynamotaco.models.OrderStatus;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tells the kitchen about new orders and about orders that were completed or cancelled, so the
+ * display no longer has to poll {@code /orders/queue}. Each notification is one line of text;
+ * the default target is stdout, which Lambda ships to CloudWatch Logs.
+ */
+public class KitchenNotificationSink implements OrderChangeSink {
+
+    private final Consumer<String> notifier;
+
+    public KitchenNotificationSink() {
+        this(System.out::println);
+    }
+
+    public KitchenNotificationSink(Consumer<String> notifier) {
+        this.notifier = notifier;
+    }
+
+    @Override
+    public void accept(List<OrderChange> changes) {
+        for (OrderChange change : changes) {
+            if (change.isNewOrder() && change.after().getStatus() == OrderStatus.RECEIVED) {
+                notifier.accept(describe("NEW", change.after(), change.lineCounts()));
+            } else if (change.statusChanged()) {
+                notifier.accept(describe(change.after().getStatus().toString(), change.after(), change.lineCounts()));
+            }
+        }
+    }
+
+    // A normalized order's lines are items of their own, so the counts come from the change
+    static String describe(String event, Order order, OrderChange.LineCounts lines) {
+        String described = "KITCHEN " + event + " order " + order.getId() + " for " + order.getCustomerId();
+        return lines == null ? described : described + ": " + lines.tacos() + " tacos, " + lines.sides() + " sides";
+    }
+}
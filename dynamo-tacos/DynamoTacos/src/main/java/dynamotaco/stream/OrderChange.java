@@ -0,0 +1,62 @@
+package dynamotaco.stream;
+
+import dynamotaco.models.Order;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.stats.SalesDimension;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+/**
+ * One decoded stream record. Every changed item is delivered, so sinks that care about menu or
+ * customer items can use {@link #keys()}; for order items the images are also mapped to
+ * {@link Order}s, with {@code before} or {@code after} null when the record has no such image, and
+ * {@code lineCounts} says how many tacos and sides the order has. A normalized order's tacos,
+ * sides and toppings are items of their own and arrive as separate records with {@code line} set.
+ */
+public record OrderChange(String sequenceNumber, Type type, Map<String, AttributeValue> keys,
+                          Order before, Order after, LineCounts lineCounts, LineItem line) {
+
+    public enum Type {
+        INSERT, MODIFY, REMOVE
+    }
+
+    /**
+     * The tacos and sides of the order in the record; null for a normalized order written before
+     * its order item counted them.
+     */
+    public record LineCounts(int tacos, int sides) {
+    }
+
+    /** A taco, side or topping stored as its own item; {@code dimension} says which. */
+    public record LineItem(SalesDimension dimension, String name, double price, int quantity) {
+    }
+
+    public boolean isOrder() {
+        return before != null || after != null;
+    }
+
+    public boolean isNewOrder() {
+        return type == Type.INSERT && after != null;
+    }
+
+    public boolean isNewLineItem() {
+        return type == Type.INSERT && line != null;
+    }
+
+    public boolean statusChanged() {
+        return before != null && after != null && before.getStatus() != after.getStatus();
+    }
+
+    public OrderStatus status() {
+        return after != null ? after.getStatus() : before == null ? null : before.getStatus();
+    }
+
+    public String partitionKey() {
+        return keys.get("PK").s();
+    }
+
+    public String sortKey() {
+        return keys.get("SK").s();
+    }
+}
@@ -0,0 +1,18 @@
+package dynamotaco.stream;
+
+import java.util.List;
+
+/**
+ * Receives the decoded stream records one micro-batch at a time, in stream order. Delivery is at
+ * least once: when any sink fails, the whole micro-batch and everything after it is delivered again
+ * to every sink, so implementations must tolerate seeing a change twice.
+ */
+@FunctionalInterface
+public interface OrderChangeSink {
+
+    void accept(List<OrderChange> changes) throws Exception;
+
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
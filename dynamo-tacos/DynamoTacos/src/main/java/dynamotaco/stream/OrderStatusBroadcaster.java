@@ -0,0 +1,160 @@
+package dynamotaco.stream;
+
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.Keys;
+import dynamotaco.util.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wakes the clients waiting for an order's status to change, so they do not read DynamoDB again to
+ * find out. The status writers in this process {@link #publish} every status they set. A process
+ * that also reads the table's stream can add the broadcaster as an {@link OrderChangeSink} to hear
+ * about writes made elsewhere.
+ *
+ * Subscriptions are futures listed under the order's key; ids that clients choose may repeat
+ * across customers, so the key is the customer's as well. A publish takes the whole list out of the
+ * map and completes it, and a subscriber that gives up closes its subscription, so an order nobody
+ * waits for has no entry. An idle subscription costs about 250 bytes here plus whatever waits
+ * on it, and at most {@code maxSubscriptions} are open at a time.
+ */
+public class OrderStatusBroadcaster implements OrderChangeSink {
+
+    public static final int MAX_SUBSCRIPTIONS =
+            Config.getInt("STATUS_WAIT_MAX_SUBSCRIPTIONS", "status.wait.maxSubscriptions", 50_000);
+
+    private final Map<String, List<Subscription>> waiting = new ConcurrentHashMap<>();
+    private final int maxSubscriptions;
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final LongAdder subscribed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder woken = new LongAdder();
+
+    public OrderStatusBroadcaster() {
+        this(MAX_SUBSCRIPTIONS);
+    }
+
+    public OrderStatusBroadcaster(int maxSubscriptions) {
+        if (maxSubscriptions < 0) {
+            throw new IllegalArgumentException("maxSubscriptions must not be negative");
+        }
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    /**
+     * A subscription to the next status published for the order, or empty when
+     * {@code maxSubscriptions} are already open. Close it when done waiting.
+     */
+    public Optional<Subscription> subscribe(String email, String orderId) {
+        if (open.incrementAndGet() > maxSubscriptions) {
+            open.decrementAndGet();
+            rejected.increment();
+            return Optional.empty();
+        }
+        Subscription subscription = new Subscription(key(email, orderId));
+        waiting.compute(subscription.key, (key, subscriptions) -> {
+            List<Subscription> list = subscriptions == null ? new ArrayList<>(2) : subscriptions;
+            list.add(subscription);
+            return list;
+        });
+        subscribed.increment();
+        return Optional.of(subscription);
+    }
+
+    public void publish(String email, String orderId, OrderStatus status) {
+        publish(key(email, orderId), status);
+    }
+
+    @Override
+    public void accept(List<OrderChange> changes) {
+        for (OrderChange change : changes) {
+            if (change.statusChanged()) {
+                publish(change.partitionKey() + "|" + change.sortKey(), change.status());
+            }
+        }
+    }
+
+    public int waiting() {
+        return open.get();
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+                "subscribed", subscribed.sum(),
+                "rejected", rejected.sum(),
+                "published", published.sum(),
+                "woken", woken.sum(),
+                "waiting", (long) open.get()
+        );
+    }
+
+    private void publish(String key, OrderStatus status) {
+        published.increment();
+        List<Subscription> subscriptions = waiting.remove(key);
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.next.complete(status)) {
+                woken.increment();
+            }
+        }
+    }
+
+    private static String key(String email, String orderId) {
+        return Keys.customer(email) + "|" + Keys.order(orderId);
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final String key;
+        private final CompletableFuture<OrderStatus> next = new CompletableFuture<>();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(String key) {
+            this.key = key;
+        }
+
+        /**
+         * The status published next, or null when none is published within {@code timeout}. Parks
+         * the calling thread, which on a virtual thread holds no carrier while it waits.
+         */
+        public OrderStatus await(Duration timeout) throws InterruptedException {
+            try {
+                return next.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (ExecutionException e) {
+                // Only ever completed normally
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            open.decrementAndGet();
+            // Already gone when a publish took the list
+            waiting.computeIfPresent(key, (k, subscriptions) -> {
+                subscriptions.remove(this);
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package dynamotaco.stream;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import dynamotaco.models.Order;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.NormalizedOrders;
+import dynamotaco.repository.StatsRepository;
+import dynamotaco.stats.SalesAggregator;
+import dynamotaco.stats.SalesDimension;
+import dynamotaco.util.Config;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.TacoUtil;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Consumes the table's stream. Records are decoded in order, order images through
+ * {@link TacoUtil#mapToOrder} and the taco, side and topping items of normalized orders into
+ * {@link OrderChange.LineItem}s, and handed to every sink in micro-batches of
+ * {@code STREAM_MICRO_BATCH_SIZE}; the sinks of one micro-batch run in parallel.
+ *
+ * When a record cannot be decoded or a sink fails, processing stops and the sequence number of the
+ * first record not known to be fully delivered is reported as the batch item failure. Lambda then
+ * checkpoints everything before it and retries from there, so no record is skipped; the records of
+ * the failed micro-batch may be delivered again.
+ */
+public class OrderStreamHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
+
+    static final int MICRO_BATCH_SIZE = Config.getInt("STREAM_MICRO_BATCH_SIZE", "stream.microBatchSize", 100);
+
+    private final List<OrderChangeSink> sinks;
+    private final int microBatchSize;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public OrderStreamHandler() {
+        this(sinks(Config.get("STREAM_SINKS", "stream.sinks", "kitchen,analytics")), MICRO_BATCH_SIZE);
+    }
+
+    public OrderStreamHandler(List<OrderChangeSink> sinks, int microBatchSize) {
+        if (microBatchSize < 1) {
+            throw new IllegalArgumentException("microBatchSize must be positive");
+        }
+        this.sinks = List.copyOf(sinks);
+        this.microBatchSize = microBatchSize;
+    }
+
+    /**
+     * Builds the sinks named in a comma-separated list: {@code kitchen}, {@code analytics}. A Lambda
+     * container holds no cache that other functions read, so cache invalidation is wired where the
+     * caches live, in {@link dynamotaco.server.LocalServer#streamSinks()}.
+     * The analytics sink persists sales rollups to the table at the end of every micro-batch.
+     */
+    public static List<OrderChangeSink> sinks(String names) {
+        List<OrderChangeSink> sinks = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim()) {
+                case "" -> {
+                }
+                case "kitchen" -> sinks.add(new KitchenNotificationSink());
+                case "analytics" -> sinks.add(new SalesAnalyticsSink(new SalesAggregator(
+                        new StatsRepository(HandlerBootstrap.dynamoDbAsync(), HandlerBootstrap.TABLE_NAME), 0),
+                        true));
+                default -> throw new IllegalArgumentException("Unknown stream sink " + name);
+            }
+        }
+        return sinks;
+    }
+
+    @Override
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
+        List<DynamodbEvent.DynamodbStreamRecord> records =
+                event.getRecords() == null ? List.of() : event.getRecords();
+        List<OrderChange> batch = new ArrayList<>(Math.min(microBatchSize, records.size()));
+        int batchStart = 0;
+
+        for (int i = 0; i < records.size(); i++) {
+            OrderChange change;
+            try {
+                change = decode(records.get(i));
+            } catch (RuntimeException e) {
+                context.getLogger().log("Unable to decode stream record "
+                        + sequenceNumber(records.get(i)) + ": " + e);
+                // Deliver what decoded cleanly before it, then retry from the bad record
+                int failedAt = batch.isEmpty() || deliver(batch, context) ? i : batchStart;
+                return failure(records.get(failedAt));
+            }
+            if (batch.isEmpty()) {
+                batchStart = i;
+            }
+            batch.add(change);
+            if (batch.size() == microBatchSize) {
+                if (!deliver(batch, context)) {
+                    return failure(records.get(batchStart));
+                }
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty() && !deliver(batch, context)) {
+            return failure(records.get(batchStart));
+        }
+        return new StreamsEventResponse(List.of());
+    }
+
+    static OrderChange decode(DynamodbEvent.DynamodbStreamRecord record) {
+        StreamRecord data = record.getDynamodb();
+        Map<String, AttributeValue> keys = StreamImages.toSdk(data.getKeys());
+        AttributeValue sortKey = keys == null ? null : keys.get(Keys.SK);
+        if (sortKey == null || keys.get(Keys.PK) == null) {
+            throw new IllegalArgumentException("Stream record has no table key");
+        }
+
+        boolean order = sortKey.s().startsWith(Keys.ORDER_PREFIX);
+        boolean line = !order && NormalizedOrders.isLineItem(keys.get(Keys.PK).s(), sortKey.s());
+        Map<String, AttributeValue> oldImage = order || line ? StreamImages.toSdk(data.getOldImage()) : null;
+        Map<String, AttributeValue> newImage = order || line ? StreamImages.toSdk(data.getNewImage()) : null;
+        Map<String, AttributeValue> image = newImage != null ? newImage : oldImage;
+        OrderChange.Type type = OrderChange.Type.valueOf(record.getEventName());
+        if (line) {
+            return new OrderChange(data.getSequenceNumber(), type, keys, null, null, null,
+                    image == null ? null : lineItem(sortKey.s(), image));
+        }
+
+        Order before = oldImage == null ? null : TacoUtil.mapToOrder(oldImage);
+        Order after = newImage == null ? null : TacoUtil.mapToOrder(newImage);
+        return new OrderChange(data.getSequenceNumber(), type, keys, before, after,
+                image == null ? null : lineCounts(image, after != null ? after : before), null);
+    }
+
+    private static OrderChange.LineCounts lineCounts(Map<String, AttributeValue> image, Order order) {
+        if (NormalizedOrders.isNormalized(image)) {
+            AttributeValue tacos = image.get(NormalizedOrders.TACO_COUNT);
+            AttributeValue sides = image.get(NormalizedOrders.SIDE_COUNT);
+            return tacos == null || sides == null ? null
+                    : new OrderChange.LineCounts(Integer.parseInt(tacos.n()), Integer.parseInt(sides.n()));
+        }
+        return new OrderChange.LineCounts(
+                order.getTacos() == null ? 0 : order.getTacos().size(),
+                order.getSideItems() == null ? 0 : order.getSideItems().size());
+    }
+
+    private static OrderChange.LineItem lineItem(String sortKey, Map<String, AttributeValue> image) {
+        SalesDimension dimension = sortKey.startsWith(NormalizedOrders.TACO_PREFIX) ? SalesDimension.TACO
+                : sortKey.startsWith(NormalizedOrders.TOPPING_PREFIX) ? SalesDimension.TOPPING
+                : SalesDimension.SIDE;
+        AttributeValue quantity = image.get("Quantity");
+        return new OrderChange.LineItem(dimension, image.get("Name").s(), Double.parseDouble(image.get("Price").n()),
+                quantity == null ? 1 : Math.max(Integer.parseInt(quantity.n()), 1));
+    }
+
+    private boolean deliver(List<OrderChange> batch, Context context) {
+        if (sinks.size() == 1) {
+            return deliver(sinks.get(0), batch, context);
+        }
+        List<Future<Boolean>> deliveries = new ArrayList<>(sinks.size());
+        for (OrderChangeSink sink : sinks) {
+            deliveries.add(executor.submit(() -> deliver(sink, batch, context)));
+        }
+        boolean delivered = true;
+        for (Future<Boolean> delivery : deliveries) {
+            try {
+                delivered &= delivery.get();
+            } catch (Exception e) {
+                context.getLogger().log("Stream sink did not finish: " + e);
+                delivered = false;
+            }
+        }
+        return delivered;
+    }
+
+    private static boolean deliver(OrderChangeSink sink, List<OrderChange> batch, Context context) {
+        try {
+            sink.accept(batch);
+            return true;
+        } catch (Exception e) {
+            context.getLogger().log("Stream sink " + sink.name() + " failed on " + batch.size()
+                    + " records from " + batch.get(0).sequenceNumber() + ": " + e);
+            return false;
+        }
+    }
+
+    private static StreamsEventResponse failure(DynamodbEvent.DynamodbStreamRecord record) {
+        return new StreamsEventResponse(List.of(new StreamsEventResponse.BatchItemFailure(sequenceNumber(record))));
+    }
+
+    private static String sequenceNumber(DynamodbEvent.DynamodbStreamRecord record) {
+        return record.getDynamodb() == null ? null : record.getDynamodb().getSequenceNumber();
+    }
+}
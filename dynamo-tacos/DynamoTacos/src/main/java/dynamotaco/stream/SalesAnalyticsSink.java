@@ -0,0 +1,144 @@
+package dynamotaco.stream;
+
+import dynamotaco.models.Order;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.models.SideItem;
+import dynamotaco.models.Taco;
+import dynamotaco.models.Topping;
+import dynamotaco.stats.SalesAggregator;
+import dynamotaco.stats.SalesDimension;
+import dynamotaco.util.Futures;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running sales aggregates for this container: orders placed, revenue in cents and transitions into
+ * each status. Redelivered batches are counted again, so the figures are approximate; they are
+ * meant for dashboards, not for accounting.
+ *
+ * Given a {@link SalesAggregator}, the sink also records every new order at the order's date, the
+ * tacos, toppings and side items it was placed with, and every status change at the time it is
+ * processed. Orders in the NORMALIZED layout have their lines counted from the line-item records.
+ *
+ * In process, the aggregator flushes its rollups once its flush interval has passed. A stream sink
+ * ({@code flushEachBatch}) flushes at the end of every batch instead and throws when a rollup could
+ * not be written, so that the batch is delivered again rather than lost with the container. Its
+ * rollups are added once per run of records: a batch that starts where an earlier delivery did
+ * first finishes that delivery's rollups, then records only what came after it.
+ */
+public class SalesAnalyticsSink implements OrderChangeSink {
+
+    private final LongAdder ordersPlaced = new LongAdder();
+    private final LongAdder revenueCents = new LongAdder();
+    private final Map<OrderStatus, LongAdder> transitions = new EnumMap<>(OrderStatus.class);
+    private final SalesAggregator aggregator;
+    private final boolean flushEachBatch;
+
+    public SalesAnalyticsSink() {
+        this(null);
+    }
+
+    public SalesAnalyticsSink(SalesAggregator aggregator) {
+        this(aggregator, false);
+    }
+
+    public SalesAnalyticsSink(SalesAggregator aggregator, boolean flushEachBatch) {
+        this.aggregator = aggregator;
+        this.flushEachBatch = flushEachBatch;
+        for (OrderStatus status : OrderStatus.values()) {
+            transitions.put(status, new LongAdder());
+        }
+    }
+
+    @Override
+    public void accept(List<OrderChange> changes) {
+        if (aggregator != null && flushEachBatch) {
+            // A batch retried from its start may begin with several runs that earlier deliveries stored
+            String covered;
+            while (!changes.isEmpty()
+                    && (covered = Futures.join(aggregator.resume(changes.get(0).sequenceNumber()))) != null) {
+                int from = 0;
+                while (from < changes.size() && !after(changes.get(from).sequenceNumber(), covered)) {
+                    from++;
+                }
+                changes = changes.subList(from, changes.size());
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+        }
+        for (OrderChange change : changes) {
+            if (change.isNewOrder()) {
+                ordersPlaced.increment();
+                revenueCents.add(Math.round(change.after().getTotalPrice() * 100));
+            } else if (change.statusChanged()) {
+                transitions.get(change.after().getStatus()).increment();
+                if (change.after().getStatus() == OrderStatus.CANCELLED) {
+                    revenueCents.add(-Math.round(change.after().getTotalPrice() * 100));
+                }
+            }
+            if (aggregator != null) {
+                record(change);
+            }
+        }
+        if (aggregator != null) {
+            Futures.join(flushEachBatch
+                    ? aggregator.flushOnce(changes.get(0).sequenceNumber(), changes.get(changes.size() - 1).sequenceNumber())
+                    : aggregator.flushIfDue());
+        }
+    }
+
+    private void record(OrderChange change) {
+        Order order = change.after();
+        if (change.isNewOrder()) {
+            long at = order.getOrderDate() != null ? order.getOrderDate().getTime() : aggregator.now();
+            aggregator.recordOrder(at, order.getStatus(), cents(order.getTotalPrice()));
+            if (order.getTacos() != null) {
+                for (Taco taco : order.getTacos()) {
+                    aggregator.recordLine(at, SalesDimension.TACO, taco.getName(), 1, cents(taco.getPrice()));
+                    if (taco.getToppings() != null) {
+                        for (Topping topping : taco.getToppings()) {
+                            aggregator.recordLine(at, SalesDimension.TOPPING, topping.getName(), 1, cents(topping.getPrice()));
+                        }
+                    }
+                }
+            }
+            if (order.getSideItems() != null) {
+                for (SideItem side : order.getSideItems()) {
+                    int quantity = Math.max(side.getQuantity(), 1);
+                    aggregator.recordLine(at, SalesDimension.SIDE, side.getName(), quantity, cents(side.getPrice()) * quantity);
+                }
+            }
+        } else if (change.isNewLineItem()) {
+            // Line records carry no order date; they are written with their order, so count them now
+            OrderChange.LineItem line = change.line();
+            aggregator.recordLine(aggregator.now(), line.dimension(), line.name(), line.quantity(),
+                    cents(line.price()) * line.quantity());
+        } else if (change.statusChanged()) {
+            aggregator.recordStatusChange(aggregator.now(), order.getStatus(), cents(order.getTotalPrice()));
+        }
+    }
+
+    // Sequence numbers are decimal strings that grow within a shard
+    private static boolean after(String sequenceNumber, String covered) {
+        return sequenceNumber.length() != covered.length()
+                ? sequenceNumber.length() > covered.length()
+                : sequenceNumber.compareTo(covered) > 0;
+    }
+
+    private static long cents(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("ordersPlaced", ordersPlaced.sum());
+        stats.put("revenueCents", revenueCents.sum());
+        transitions.forEach((status, count) -> stats.put("to" + status, count.sum()));
+        return stats;
+    }
+}
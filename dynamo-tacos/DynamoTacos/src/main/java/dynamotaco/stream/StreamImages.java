@@ -0,0 +1,136 @@
+package dynamotaco.stream;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Converts between the stream record images delivered to Lambda, which use the events library's own
+ * AttributeValue, and the SDK v2 AttributeValue the rest of the code works with.
+ */
+public final class StreamImages {
+
+    private StreamImages() {
+    }
+
+    public static Map<String, AttributeValue> toSdk(
+            Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> image) {
+        if (image == null) {
+            return null;
+        }
+        Map<String, AttributeValue> item = new HashMap<>(image.size() * 2);
+        image.forEach((name, value) -> item.put(name, toSdk(value)));
+        return item;
+    }
+
+    public static AttributeValue toSdk(com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue value) {
+        if (value.getS() != null) {
+            return AttributeValue.fromS(value.getS());
+        }
+        if (value.getN() != null) {
+            return AttributeValue.fromN(value.getN());
+        }
+        if (value.getM() != null) {
+            return AttributeValue.fromM(toSdk(value.getM()));
+        }
+        if (value.getL() != null) {
+            List<AttributeValue> list = new ArrayList<>(value.getL().size());
+            value.getL().forEach(element -> list.add(toSdk(element)));
+            return AttributeValue.fromL(list);
+        }
+        if (value.getBOOL() != null) {
+            return AttributeValue.fromBool(value.getBOOL());
+        }
+        if (value.getNULL() != null) {
+            return AttributeValue.fromNul(value.getNULL());
+        }
+        if (value.getB() != null) {
+            return AttributeValue.fromB(SdkBytes.fromByteBuffer(value.getB()));
+        }
+        if (value.getSS() != null) {
+            return AttributeValue.fromSs(value.getSS());
+        }
+        if (value.getNS() != null) {
+            return AttributeValue.fromNs(value.getNS());
+        }
+        if (value.getBS() != null) {
+            return AttributeValue.fromBs(value.getBS().stream().map(SdkBytes::fromByteBuffer).toList());
+        }
+        throw new IllegalArgumentException("Empty attribute value");
+    }
+
+    /**
+     * Reads a DynamoDB stream event in the JSON form Lambda delivers it, e.g. as captured from a
+     * function's input or by {@code sam local generate-event dynamodb update}.
+     */
+    public static DynamodbEvent readEvent(InputStream in) throws IOException {
+        JsonNode root = HandlerBootstrap.mapper().readTree(in);
+        List<DynamodbEvent.DynamodbStreamRecord> records = new ArrayList<>();
+        for (JsonNode node : root.path("Records")) {
+            JsonNode dynamodb = node.path("dynamodb");
+            StreamRecord streamRecord = new StreamRecord()
+                    .withSequenceNumber(dynamodb.path("SequenceNumber").asText(null))
+                    .withKeys(readImage(dynamodb.get("Keys")))
+                    .withNewImage(readImage(dynamodb.get("NewImage")))
+                    .withOldImage(readImage(dynamodb.get("OldImage")));
+            if (dynamodb.has("SizeBytes")) {
+                streamRecord.setSizeBytes(dynamodb.get("SizeBytes").asLong());
+            }
+            DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+            record.setEventID(node.path("eventID").asText(null));
+            record.setEventName(node.path("eventName").asText(null));
+            record.setEventSource(node.path("eventSource").asText(null));
+            record.setEventSourceARN(node.path("eventSourceARN").asText(null));
+            record.setDynamodb(streamRecord);
+            records.add(record);
+        }
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(records);
+        return event;
+    }
+
+    private static Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> readImage(JsonNode image) {
+        if (image == null || !image.isObject()) {
+            return null;
+        }
+        Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> attributes = new LinkedHashMap<>();
+        image.fields().forEachRemaining(field -> attributes.put(field.getKey(), readValue(field.getValue())));
+        return attributes;
+    }
+
+    private static com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue readValue(JsonNode value) {
+        Map.Entry<String, JsonNode> typed = value.fields().next();
+        JsonNode content = typed.getValue();
+        var attribute = new com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue();
+        return switch (typed.getKey()) {
+            case "S" -> attribute.withS(content.asText());
+            case "N" -> attribute.withN(content.asText());
+            case "B" -> attribute.withB(ByteBuffer.wrap(Base64.getDecoder().decode(content.asText())));
+            case "BOOL" -> attribute.withBOOL(content.asBoolean());
+            case "NULL" -> attribute.withNULL(true);
+            case "SS" -> attribute.withSS(texts(content));
+            case "NS" -> attribute.withNS(texts(content));
+            case "L" -> {
+                List<com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> list = new ArrayList<>();
+                content.forEach(element -> list.add(readValue(element)));
+                yield attribute.withL(list);
+            }
+            case "M" -> attribute.withM(readImage(content));
+            default -> throw new IllegalArgumentException("Unsupported attribute type " + typed.getKey());
+        };
+    }
+
+    private static List<String> texts(JsonNode array) {
+        List<String> values = new ArrayList<>();
+        array.forEach(element -> values.add(element.asText()));
+        return values;
+    }
+}
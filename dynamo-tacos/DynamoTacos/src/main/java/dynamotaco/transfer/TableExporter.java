@@ -0,0 +1,121 @@
+package dynamotaco.transfer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import dynamotaco.util.DynamoJson;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports a table with a parallel Scan: one worker per segment, each paging through its segment
+ * and streaming the items into its own {@code segment-<n>-of-<total>.ndjson.gz} file, one
+ * {@code {"Item": {...}}} line per item in DynamoDB JSON, the same lines as DynamoDB's export to
+ * S3. A worker holds one Scan page at a time, so memory does not grow with the table, and the
+ * files are compressed in parallel.
+ */
+public class TableExporter {
+
+    static final String FILE_SUFFIX = ".ndjson.gz";
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+    private final int totalSegments;
+
+    private final LongAdder items = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder segmentsDone = new LongAdder();
+
+    public TableExporter(DynamoDbAsyncClient dynamoDb, String tableName, int totalSegments) {
+        if (totalSegments < 1) {
+            throw new IllegalArgumentException("totalSegments must be positive");
+        }
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.totalSegments = totalSegments;
+    }
+
+    /**
+     * Writes the table into {@code directory}, creating it if needed.
+     *
+     * @return the number of items exported
+     */
+    public long export(Path directory) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        List<Future<Void>> workers = new ArrayList<>(totalSegments);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int segment = 0; segment < totalSegments; segment++) {
+                Path file = directory.resolve(String.format("segment-%04d-of-%04d%s", segment, totalSegments, FILE_SUFFIX));
+                int scanned = segment;
+                workers.add(executor.submit(() -> {
+                    exportSegment(scanned, file);
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+        }
+        return items.sum();
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("items", items.sum());
+        stats.put("pages", pages.sum());
+        stats.put("segmentsDone", segmentsDone.sum());
+        return stats;
+    }
+
+    private void exportSegment(int segment, Path file) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), 64 * 1024);
+             JsonGenerator generator = HandlerBootstrap.mapper().getFactory().createGenerator(out)) {
+            // Root values are separated by newlines, one item per line
+            generator.setRootValueSeparator(null);
+            Map<String, AttributeValue> startKey = null;
+            do {
+                ScanResponse page = Futures.join(dynamoDb.scan(ScanRequest.builder()
+                        .tableName(tableName)
+                        .segment(segment)
+                        .totalSegments(totalSegments)
+                        .exclusiveStartKey(startKey)
+                        .build()));
+                for (Map<String, AttributeValue> item : page.items()) {
+                    generator.writeStartObject();
+                    generator.writeFieldName("Item");
+                    DynamoJson.writeItem(generator, item);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+                items.add(page.items().size());
+                pages.increment();
+                startKey = page.hasLastEvaluatedKey() && !page.lastEvaluatedKey().isEmpty() ? page.lastEvaluatedKey() : null;
+            } while (startKey != null);
+        }
+        segmentsDone.increment();
+    }
+}
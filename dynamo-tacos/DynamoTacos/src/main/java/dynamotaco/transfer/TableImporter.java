@@ -0,0 +1,284 @@
+package dynamotaco.transfer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import dynamotaco.resilience.ResilientDynamoDbClient;
+import dynamotaco.resilience.TokenBucket;
+import dynamotaco.util.BatchWriter;
+import dynamotaco.util.DynamoJson;
+import dynamotaco.util.Futures;
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads items into a table with concurrent BatchWriteItem writers. The input is an export
+ * directory of {@code .ndjson.gz} files written by {@link TableExporter}, one such file, or a
+ * batch-write-item request file such as {@code menuItems.json}.
+ *
+ * One reader per file parses items into 25-item batches and hands them to the writers through a
+ * queue of two batches per writer; readers wait while it is full, so at most a few hundred items
+ * are in memory whatever the size of the input. Writers take one token per item from a
+ * {@link TokenBucket} before each call. UnprocessedItems, and whole batches the table throttled,
+ * are sent again after an exponential backoff with full jitter, and slow the bucket down the
+ * same way throttled requests do. Items still unprocessed after {@code maxAttempts} are counted
+ * as failed rather than stopping the import.
+ *
+ * Any other failure, in a reader or a writer, stops the import: readers give up at their next
+ * batch, writers drop what is still queued, and the first failure is thrown once all have stopped.
+ */
+public class TableImporter {
+
+    // Identity marks the end of the input for one writer
+    private static final List<WriteRequest> END = Collections.unmodifiableList(new ArrayList<>());
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+    private final int writers;
+    private final TokenBucket rate;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    private final LongAdder read = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * @param itemsPerSecond the write rate to stay under, 0 for no limit
+     */
+    public TableImporter(DynamoDbAsyncClient dynamoDb, String tableName, int writers, double itemsPerSecond) {
+        this(dynamoDb, tableName, writers, itemsPerSecond, 10, 25, 2000);
+    }
+
+    public TableImporter(DynamoDbAsyncClient dynamoDb, String tableName, int writers, double itemsPerSecond,
+                         int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (writers < 1) {
+            throw new IllegalArgumentException("writers must be positive");
+        }
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.writers = writers;
+        this.rate = itemsPerSecond > 0 ? new TokenBucket(itemsPerSecond, Math.max(itemsPerSecond, BatchWriter.MAX_BATCH_SIZE)) : null;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Imports every item under {@code source}.
+     *
+     * @return the number of items written
+     */
+    public long importFrom(Path source) throws IOException, InterruptedException {
+        List<Path> files = files(source);
+        BlockingQueue<List<WriteRequest>> queue = new ArrayBlockingQueue<>(2 * writers);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> writing = new ArrayList<>(writers);
+            for (int i = 0; i < writers; i++) {
+                writing.add(executor.submit(() -> {
+                    for (List<WriteRequest> batch; (batch = queue.take()) != END; ) {
+                        // After a failure, keep taking batches so no reader stays blocked on the queue
+                        if (failure.get() == null) {
+                            try {
+                                write(batch);
+                            } catch (RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<Void>> reading = new ArrayList<>(files.size());
+            for (Path file : files) {
+                reading.add(executor.submit(() -> {
+                    try {
+                        read(file, queue);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                    return null;
+                }));
+            }
+            // Writers keep taking batches until every reader has returned, so no put can block forever
+            await(reading);
+            for (int i = 0; i < writers; i++) {
+                queue.put(END);
+            }
+            await(writing);
+        }
+        Exception failed = failure.get();
+        if (failed instanceof IOException io) {
+            throw io;
+        }
+        if (failed instanceof InterruptedException interrupted) {
+            throw interrupted;
+        }
+        if (failed instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failed != null) {
+            throw new IllegalStateException(failed);
+        }
+        return written.sum();
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("read", read.sum());
+        stats.put("written", written.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        return stats;
+    }
+
+    private void read(Path file, BlockingQueue<List<WriteRequest>> queue) throws IOException, InterruptedException {
+        List<WriteRequest> batch = new ArrayList<>(BatchWriter.MAX_BATCH_SIZE);
+        if (file.getFileName().toString().endsWith(".json")) {
+            try (InputStream in = Files.newInputStream(file)) {
+                for (Map<String, AttributeValue> item : DynamoJson.readBatchFile(in, tableName)) {
+                    batch = add(batch, item, queue);
+                }
+            }
+        } else {
+            try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 64 * 1024));
+                 MappingIterator<JsonNode> lines = HandlerBootstrap.mapper().readerFor(JsonNode.class).readValues(in)) {
+                while (lines.hasNext()) {
+                    JsonNode line = lines.next();
+                    JsonNode item = line.path("Item");
+                    if (!item.isObject()) {
+                        throw new IOException(file + " has a line without an Item");
+                    }
+                    batch = add(batch, DynamoJson.readItem(item), queue);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            put(batch, queue);
+        }
+    }
+
+    private List<WriteRequest> add(List<WriteRequest> batch, Map<String, AttributeValue> item,
+                                   BlockingQueue<List<WriteRequest>> queue) throws InterruptedException {
+        batch.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+        if (batch.size() < BatchWriter.MAX_BATCH_SIZE) {
+            return batch;
+        }
+        put(batch, queue);
+        return new ArrayList<>(BatchWriter.MAX_BATCH_SIZE);
+    }
+
+    private void put(List<WriteRequest> batch, BlockingQueue<List<WriteRequest>> queue) throws InterruptedException {
+        if (failure.get() != null) {
+            throw new CancellationException("Import stopped by " + failure.get());
+        }
+        queue.put(batch);
+    }
+
+    private void write(List<WriteRequest> batch) throws InterruptedException {
+        read.add(batch.size());
+        List<WriteRequest> remaining = batch;
+        for (int attempt = 1; ; attempt++) {
+            if (rate != null) {
+                TimeUnit.NANOSECONDS.sleep(rate.reserve(remaining.size()));
+            }
+            List<WriteRequest> unprocessed;
+            try {
+                BatchWriteItemResponse response = Futures.join(dynamoDb.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(tableName, remaining))
+                        .build()));
+                batches.increment();
+                unprocessed = response.unprocessedItems().getOrDefault(tableName, List.of());
+            } catch (RuntimeException e) {
+                if (!ResilientDynamoDbClient.isThrottling(e)) {
+                    throw e;
+                }
+                unprocessed = remaining;
+            }
+            written.add(remaining.size() - unprocessed.size());
+            if (unprocessed.isEmpty()) {
+                if (rate != null) {
+                    rate.onSuccess();
+                }
+                return;
+            }
+            if (rate != null) {
+                rate.onThrottle();
+            }
+            if (attempt == maxAttempts) {
+                failed.add(unprocessed.size());
+                return;
+            }
+            retried.add(unprocessed.size());
+            long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+            remaining = unprocessed;
+        }
+    }
+
+    private static List<Path> files(Path source) throws IOException {
+        if (!Files.isDirectory(source)) {
+            return List.of(source);
+        }
+        try (Stream<Path> listing = Files.list(source)) {
+            List<Path> files = listing
+                    .filter(file -> file.getFileName().toString().endsWith(TableExporter.FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+            if (files.isEmpty()) {
+                throw new IOException("No " + TableExporter.FILE_SUFFIX + " files in " + source);
+            }
+            return files;
+        }
+    }
+
+    private static void await(List<Future<Void>> tasks) throws IOException, InterruptedException {
+        for (Future<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = Futures.unwrap(e);
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                if (cause instanceof InterruptedException interrupted) {
+                    throw interrupted;
+                }
+                throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+            }
+        }
+    }
+}
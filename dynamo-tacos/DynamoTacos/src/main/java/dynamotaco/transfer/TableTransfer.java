@@ -0,0 +1,91 @@
+package dynamotaco.transfer;
+
+import dynamotaco.util.HandlerBootstrap;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Command line export and import of the table, for load test fixtures and disaster recovery:
+ *
+ * <pre>
+ * java -cp DynamoTacos-1.0.jar dynamotaco.transfer.TableTransfer export &lt;dir&gt; [--segments 8] [--table name]
+ * java -cp DynamoTacos-1.0.jar dynamotaco.transfer.TableTransfer import &lt;dir|file&gt; [--writers 8] [--rate items/s] [--table name]
+ * </pre>
+ *
+ * The client is the handlers' {@link HandlerBootstrap#dynamoDbAsync()}, so {@code DYNAMODB_ENDPOINT}
+ * and the region come from the same settings. Progress and items/sec are printed every five
+ * seconds and at the end; the exit code is 1 when any item could not be imported.
+ */
+public final class TableTransfer {
+
+    private TableTransfer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: TableTransfer export|import <path> [options]");
+        }
+        String command = args[0];
+        Path path = Path.of(args[1]);
+        String table = HandlerBootstrap.TABLE_NAME;
+        int segments = 8;
+        int writers = 8;
+        double rate = 0;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--table" -> table = args[++i];
+                case "--segments" -> segments = Integer.parseInt(args[++i]);
+                case "--writers" -> writers = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        DynamoDbAsyncClient dynamoDb = HandlerBootstrap.dynamoDbAsync();
+        switch (command) {
+            case "export" -> {
+                TableExporter exporter = new TableExporter(dynamoDb, table, segments);
+                run("export", "items", exporter::stats, () -> exporter.export(path));
+            }
+            case "import" -> {
+                TableImporter importer = new TableImporter(dynamoDb, table, writers, rate);
+                run("import", "written", importer::stats, () -> importer.importFrom(path));
+                if (importer.stats().get("failed") > 0) {
+                    System.exit(1);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown command " + command);
+        }
+        System.exit(0);
+    }
+
+    interface Transfer {
+        long run() throws Exception;
+    }
+
+    /**
+     * Runs a transfer, printing its stats and the rate of {@code counter} every five seconds.
+     */
+    static void run(String name, String counter, Supplier<Map<String, Long>> stats, Transfer transfer) throws Exception {
+        long started = System.nanoTime();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> print(name, counter, stats.get(), started), 5, 5, TimeUnit.SECONDS);
+        try {
+            transfer.run();
+        } finally {
+            progress.shutdownNow();
+        }
+        print(name + " done", counter, stats.get(), started);
+    }
+
+    private static void print(String name, String counter, Map<String, Long> stats, long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%s %s in %.1f s, %,.0f items/s%n", name, stats, seconds, stats.get(counter) / seconds);
+    }
+}
@@ -0,0 +1,116 @@
+package dynamotaco.util;
+
+import dynamotaco.resilience.ResilientDynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes any number of items through BatchWriteItem: 25-item chunks issued concurrently, with
+ * UnprocessedItems retried using exponential backoff and full jitter. A call that fails with a
+ * throttling, 5xx or network error is retried the same way with its whole chunk. Whatever is still
+ * unprocessed after the last attempt, or in a chunk rejected outright, is handed back to the caller
+ * instead of failing the other chunks.
+ */
+public class BatchWriter {
+
+    public static final int MAX_BATCH_SIZE = 25;
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public BatchWriter(DynamoDbAsyncClient dynamoDb, String tableName, int concurrency) {
+        this(dynamoDb, tableName, concurrency, 8, 25, 1000);
+    }
+
+    public BatchWriter(DynamoDbAsyncClient dynamoDb, String tableName, int concurrency,
+                       int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @return the write requests that could not be written; empty when everything succeeded
+     */
+    public CompletableFuture<List<WriteRequest>> writeAll(List<WriteRequest> writes) {
+        Queue<List<WriteRequest>> chunks = new ConcurrentLinkedQueue<>();
+        for (int start = 0; start < writes.size(); start += MAX_BATCH_SIZE) {
+            chunks.add(writes.subList(start, Math.min(writes.size(), start + MAX_BATCH_SIZE)));
+        }
+
+        // At most `concurrency` chunks are in flight: each lane takes the next chunk when its last one is done
+        List<WriteRequest> failed = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(concurrency, chunks.size())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = drain(chunks, failed);
+        }
+        return CompletableFuture.allOf(lanes).thenApply(done -> List.copyOf(failed));
+    }
+
+    /**
+     * Writes a single chunk of at most 25 requests, retrying whatever comes back unprocessed.
+     */
+    public CompletableFuture<List<WriteRequest>> writeChunk(List<WriteRequest> chunk) {
+        return attempt(chunk, 0);
+    }
+
+    private CompletableFuture<Void> drain(Queue<List<WriteRequest>> chunks, List<WriteRequest> failed) {
+        List<WriteRequest> chunk = chunks.poll();
+        if (chunk == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return writeChunk(chunk).thenCompose(unprocessed -> {
+            failed.addAll(unprocessed);
+            return drain(chunks, failed);
+        });
+    }
+
+    private CompletableFuture<List<WriteRequest>> attempt(List<WriteRequest> pending, int attempt) {
+        if (pending.isEmpty() || attempt >= maxAttempts) {
+            return CompletableFuture.completedFuture(pending);
+        }
+
+        CompletableFuture<Void> backoff = CompletableFuture.completedFuture(null);
+        if (attempt > 0) {
+            long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+            long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            backoff = CompletableFuture.runAsync(() -> {
+            }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+        }
+
+        return backoff
+                .thenCompose(ready -> dynamoDb.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(tableName, pending))
+                        .build()))
+                .thenCompose(response -> attempt(unprocessed(response), attempt + 1))
+                // A throttled call wrote nothing, so the whole chunk goes again; other errors fail it for good
+                .exceptionallyCompose(failure -> ResilientDynamoDbClient.isRetryable(Futures.unwrap(failure))
+                        ? attempt(pending, attempt + 1)
+                        : CompletableFuture.completedFuture(pending));
+    }
+
+    private List<WriteRequest> unprocessed(BatchWriteItemResponse response) {
+        return response.hasUnprocessedItems()
+                ? response.unprocessedItems().getOrDefault(tableName, List.of())
+                : List.of();
+    }
+}
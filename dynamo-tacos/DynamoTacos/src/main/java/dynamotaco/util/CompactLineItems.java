@@ -0,0 +1,326 @@
+package dynamotaco.util;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Stores an order's {@code Tacos} and {@code SideItems} as one binary {@code Lines} attribute
+ * instead of lists of maps, which repeat every attribute name and carry a generated id per line.
+ *
+ * Layout, version 1 (all integers are unsigned LEB128 varints):
+ * <pre>
+ * version byte
+ * dictionary: count, then per string its UTF-8 length and bytes  (names and non-numeric ids)
+ * tacos: count, then per taco
+ *     menu id ref, name ref, price in cents,
+ *     toppings header: count &lt;&lt; 1 | 1 when the toppings repeat the previous taco's (nothing follows)
+ *     per topping: name ref, price in cents
+ * sides: count, then per side: name ref, price in cents, quantity (0 when absent)
+ * </pre>
+ * A name ref is 0 for null or the dictionary index plus one. A menu id ref is 0 for null,
+ * {@code index << 1 | 1} for a dictionary string, or {@code (value * 16 + digits) << 1} for an
+ * all-digit id of up to 9 digits, which keeps leading zeros ({@code 001}).
+ *
+ * Line ids are not stored; decoding numbers the lines within the order instead. Orders whose prices
+ * are not whole cents are left nested. {@link #expand} gives back the nested shape, so readers only
+ * need to call it before looking at the lines.
+ */
+public final class CompactLineItems {
+
+    public static final String ATTRIBUTE = "Lines";
+    public static final int VERSION = 1;
+
+    private static final int MAX_NUMERIC_DIGITS = 9;
+
+    private CompactLineItems() {
+    }
+
+    /**
+     * The order item with its lines in one {@code Lines} attribute, or the item itself when it has
+     * no lines or a price that is not a whole number of cents.
+     */
+    public static Map<String, AttributeValue> compact(Map<String, AttributeValue> orderItem) {
+        AttributeValue tacos = orderItem.get("Tacos");
+        AttributeValue sides = orderItem.get("SideItems");
+        if (tacos == null && sides == null) {
+            return orderItem;
+        }
+        byte[] encoded = encode(list(tacos), list(sides));
+        if (encoded == null) {
+            return orderItem;
+        }
+        Map<String, AttributeValue> compacted = new HashMap<>(orderItem);
+        compacted.remove("Tacos");
+        compacted.remove("SideItems");
+        compacted.put(ATTRIBUTE, AttributeValue.fromB(SdkBytes.fromByteArrayUnsafe(encoded)));
+        return compacted;
+    }
+
+    /**
+     * The order item with nested {@code Tacos} and {@code SideItems}; items without a {@code Lines}
+     * attribute are returned as they are.
+     *
+     * @throws IllegalArgumentException when the lines were written by an unknown codec version
+     */
+    public static Map<String, AttributeValue> expand(Map<String, AttributeValue> orderItem) {
+        AttributeValue lines = orderItem.get(ATTRIBUTE);
+        if (lines == null || lines.b() == null) {
+            return orderItem;
+        }
+        Map<String, AttributeValue> expanded = new HashMap<>(orderItem);
+        expanded.remove(ATTRIBUTE);
+        new Decoder(lines.b().asByteArrayUnsafe()).decodeInto(expanded);
+        return expanded;
+    }
+
+    static byte[] encode(List<AttributeValue> tacos, List<AttributeValue> sides) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(16 + 8 * tacos.size());
+
+        writeVarint(body, tacos.size());
+        List<AttributeValue> previousToppings = null;
+        for (AttributeValue tacoAttr : tacos) {
+            Map<String, AttributeValue> taco = tacoAttr.m();
+            writeVarint(body, idRef(dictionary, string(taco, "MenuItemId")));
+            writeVarint(body, nameRef(dictionary, string(taco, "Name")));
+            long cents = cents(taco);
+            if (cents < 0) {
+                return null;
+            }
+            writeVarint(body, cents);
+
+            List<AttributeValue> toppings = list(taco.get("Toppings"));
+            if (previousToppings != null && !toppings.isEmpty() && sameToppings(toppings, previousToppings)) {
+                writeVarint(body, (long) toppings.size() << 1 | 1);
+            } else {
+                writeVarint(body, (long) toppings.size() << 1);
+                for (AttributeValue toppingAttr : toppings) {
+                    Map<String, AttributeValue> topping = toppingAttr.m();
+                    writeVarint(body, nameRef(dictionary, string(topping, "Name")));
+                    long toppingCents = cents(topping);
+                    if (toppingCents < 0) {
+                        return null;
+                    }
+                    writeVarint(body, toppingCents);
+                }
+            }
+            previousToppings = toppings;
+        }
+
+        writeVarint(body, sides.size());
+        for (AttributeValue sideAttr : sides) {
+            Map<String, AttributeValue> side = sideAttr.m();
+            writeVarint(body, nameRef(dictionary, string(side, "Name")));
+            long cents = cents(side);
+            if (cents < 0) {
+                return null;
+            }
+            writeVarint(body, cents);
+            AttributeValue quantity = side.get("Quantity");
+            writeVarint(body, quantity == null ? 0 : Long.parseLong(quantity.n()));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 16 * dictionary.size() + 2);
+        out.write(VERSION);
+        writeVarint(out, dictionary.size());
+        for (String entry : dictionary.keySet()) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+        out.writeBytes(body.toByteArray());
+        return out.toByteArray();
+    }
+
+    // Same names and prices; ids differ per line and are not stored anyway
+    private static boolean sameToppings(List<AttributeValue> toppings, List<AttributeValue> previous) {
+        if (toppings.size() != previous.size()) {
+            return false;
+        }
+        for (int i = 0; i < toppings.size(); i++) {
+            Map<String, AttributeValue> topping = toppings.get(i).m();
+            Map<String, AttributeValue> other = previous.get(i).m();
+            if (!Objects.equals(string(topping, "Name"), string(other, "Name")) || cents(topping) != cents(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long nameRef(Map<String, Integer> dictionary, String name) {
+        return name == null ? 0 : dictionary.computeIfAbsent(name, key -> dictionary.size()) + 1L;
+    }
+
+    private static long idRef(Map<String, Integer> dictionary, String id) {
+        if (id == null) {
+            return 0;
+        }
+        int digits = id.length();
+        if (digits > 0 && digits <= MAX_NUMERIC_DIGITS && id.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return (Long.parseLong(id) * 16 + digits) << 1;
+        }
+        return (long) dictionary.computeIfAbsent(id, key -> dictionary.size()) << 1 | 1;
+    }
+
+    // -1 when the price is missing or not a whole number of cents
+    private static long cents(Map<String, AttributeValue> line) {
+        AttributeValue price = line.get("Price");
+        if (price == null || price.n() == null) {
+            return -1;
+        }
+        double cents = Double.parseDouble(price.n()) * 100;
+        long rounded = Math.round(cents);
+        return rounded >= 0 && Math.abs(cents - rounded) < 1e-6 ? rounded : -1;
+    }
+
+    private static String string(Map<String, AttributeValue> map, String name) {
+        AttributeValue value = map.get(name);
+        return value == null ? null : value.s();
+    }
+
+    private static List<AttributeValue> list(AttributeValue value) {
+        return value == null || !value.hasL() ? List.of() : value.l();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static final class Decoder {
+
+        private final byte[] bytes;
+        private int position;
+        private String[] dictionary;
+
+        Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        void decodeInto(Map<String, AttributeValue> order) {
+            int version = bytes.length == 0 ? -1 : bytes[position++];
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported line item encoding version " + version);
+            }
+            dictionary = new String[count()];
+            for (int i = 0; i < dictionary.length; i++) {
+                int length = count();
+                if (position + length > bytes.length) {
+                    throw new IllegalArgumentException("Truncated line item encoding");
+                }
+                dictionary[i] = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+
+            int tacoCount = count();
+            List<AttributeValue> tacos = new ArrayList<>(tacoCount);
+            List<Map<String, AttributeValue>> previousToppings = List.of();
+            for (int t = 0; t < tacoCount; t++) {
+                String tacoId = Integer.toString(t + 1);
+                Map<String, AttributeValue> taco = new HashMap<>();
+                taco.put("TacoId", AttributeValue.fromS(tacoId));
+                putString(taco, "MenuItemId", id(varint()));
+                putString(taco, "Name", name(varint()));
+                taco.put("Price", price(varint()));
+
+                long header = varint();
+                int toppingCount = (int) (header >>> 1);
+                List<Map<String, AttributeValue>> toppings = new ArrayList<>(toppingCount);
+                for (int i = 0; i < toppingCount; i++) {
+                    Map<String, AttributeValue> topping = new HashMap<>();
+                    if ((header & 1) == 1) {
+                        topping.putAll(previousToppings.get(i));
+                    } else {
+                        putString(topping, "Name", name(varint()));
+                        topping.put("Price", price(varint()));
+                    }
+                    topping.put("ToppingId", AttributeValue.fromS(tacoId + "." + (i + 1)));
+                    toppings.add(topping);
+                }
+                if (toppingCount > 0) {
+                    taco.put("Toppings", AttributeValue.fromL(toppings.stream().map(AttributeValue::fromM).toList()));
+                }
+                previousToppings = toppings;
+                tacos.add(AttributeValue.fromM(taco));
+            }
+
+            int sideCount = count();
+            List<AttributeValue> sides = new ArrayList<>(sideCount);
+            for (int s = 0; s < sideCount; s++) {
+                Map<String, AttributeValue> side = new HashMap<>();
+                side.put("SideItemId", AttributeValue.fromS("S" + (s + 1)));
+                putString(side, "Name", name(varint()));
+                side.put("Price", price(varint()));
+                long quantity = varint();
+                if (quantity > 0) {
+                    side.put("Quantity", AttributeValue.fromN(Long.toString(quantity)));
+                }
+                sides.add(AttributeValue.fromM(side));
+            }
+
+            if (!tacos.isEmpty()) {
+                order.put("Tacos", AttributeValue.fromL(tacos));
+            }
+            if (!sides.isEmpty()) {
+                order.put("SideItems", AttributeValue.fromL(sides));
+            }
+        }
+
+        private String name(long ref) {
+            return ref == 0 ? null : dictionary[(int) ref - 1];
+        }
+
+        private String id(long ref) {
+            if (ref == 0) {
+                return null;
+            }
+            if ((ref & 1) == 1) {
+                return dictionary[(int) (ref >>> 1)];
+            }
+            long packed = ref >>> 1;
+            int digits = (int) (packed % 16);
+            String value = Long.toString(packed / 16);
+            return "0".repeat(Math.max(0, digits - value.length())) + value;
+        }
+
+        // Written the way CreateOrderHandler writes prices: String.valueOf(double)
+        private static AttributeValue price(long cents) {
+            return AttributeValue.fromN(String.valueOf(cents / 100.0));
+        }
+
+        // A null value comes back as the empty value CreateOrderHandler stores for it
+        private static void putString(Map<String, AttributeValue> map, String name, String value) {
+            map.put(name, AttributeValue.builder().s(value).build());
+        }
+
+        private int count() {
+            long value = varint();
+            if (value > bytes.length) {
+                throw new IllegalArgumentException("Corrupt line item encoding");
+            }
+            return (int) value;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated line item encoding");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Corrupt line item encoding");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dynamotaco.util;
+
+/**
+ * Reads deployment settings from the Lambda environment, falling back to a JVM system property
+ * so the same code can be configured from tests, benchmarks and the local server.
+ */
+public final class Config {
+
+    private Config() {
+    }
+
+    public static String get(String envName, String propertyName, String defaultValue) {
+        String value = System.getenv(envName);
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    public static long getLong(String envName, String propertyName, long defaultValue) {
+        String value = get(envName, propertyName, null);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public static int getInt(String envName, String propertyName, int defaultValue) {
+        String value = get(envName, propertyName, null);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static boolean getBoolean(String envName, String propertyName, boolean defaultValue) {
+        String value = get(envName, propertyName, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
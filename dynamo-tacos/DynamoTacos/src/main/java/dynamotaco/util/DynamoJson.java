@@ -0,0 +1,132 @@
+package dynamotaco.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes items in DynamoDB's JSON format ({@code {"PK": {"S": "MENU"}, ...}}), as used by
+ * {@code menuItems.json}, {@code aws dynamodb batch-write-item --request-items} and table exports.
+ */
+public final class DynamoJson {
+
+    private DynamoJson() {
+    }
+
+    /**
+     * Reads the put requests for {@code tableName} out of a batch-write-item request file.
+     */
+    public static List<Map<String, AttributeValue>> readBatchFile(InputStream in, String tableName) throws IOException {
+        JsonNode root = HandlerBootstrap.mapper().readTree(in);
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        for (JsonNode request : root.path(tableName)) {
+            JsonNode item = request.path("PutRequest").path("Item");
+            if (item.isObject()) {
+                items.add(readItem(item));
+            }
+        }
+        return items;
+    }
+
+    public static Map<String, AttributeValue> readItem(JsonNode item) {
+        Map<String, AttributeValue> attributes = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = item.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            attributes.put(field.getKey(), readValue(field.getValue()));
+        }
+        return attributes;
+    }
+
+    public static AttributeValue readValue(JsonNode value) {
+        Map.Entry<String, JsonNode> typed = value.fields().next();
+        JsonNode content = typed.getValue();
+        return switch (typed.getKey()) {
+            case "S" -> AttributeValue.fromS(content.asText());
+            case "N" -> AttributeValue.fromN(content.asText());
+            case "B" -> AttributeValue.fromB(SdkBytes.fromByteArray(Base64.getDecoder().decode(content.asText())));
+            case "BOOL" -> AttributeValue.fromBool(content.asBoolean());
+            case "NULL" -> AttributeValue.fromNul(true);
+            case "SS" -> AttributeValue.fromSs(texts(content));
+            case "NS" -> AttributeValue.fromNs(texts(content));
+            case "BS" -> {
+                List<SdkBytes> bytes = new ArrayList<>();
+                content.forEach(element -> bytes.add(SdkBytes.fromByteArray(Base64.getDecoder().decode(element.asText()))));
+                yield AttributeValue.fromBs(bytes);
+            }
+            case "L" -> {
+                List<AttributeValue> list = new ArrayList<>();
+                content.forEach(element -> list.add(readValue(element)));
+                yield AttributeValue.fromL(list);
+            }
+            case "M" -> AttributeValue.fromM(readItem(content));
+            default -> throw new IllegalArgumentException("Unsupported attribute type " + typed.getKey());
+        };
+    }
+
+    public static void writeItem(JsonGenerator generator, Map<String, AttributeValue> item) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            generator.writeFieldName(attribute.getKey());
+            writeValue(generator, attribute.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    public static void writeValue(JsonGenerator generator, AttributeValue value) throws IOException {
+        generator.writeStartObject();
+        switch (value.type()) {
+            case S -> generator.writeStringField("S", value.s());
+            case N -> generator.writeStringField("N", value.n());
+            case B -> generator.writeStringField("B", Base64.getEncoder().encodeToString(value.b().asByteArrayUnsafe()));
+            case BOOL -> generator.writeBooleanField("BOOL", value.bool());
+            case NUL -> generator.writeBooleanField("NULL", true);
+            case SS -> writeTexts(generator, "SS", value.ss());
+            case NS -> writeTexts(generator, "NS", value.ns());
+            case BS -> {
+                generator.writeArrayFieldStart("BS");
+                for (SdkBytes bytes : value.bs()) {
+                    generator.writeString(Base64.getEncoder().encodeToString(bytes.asByteArrayUnsafe()));
+                }
+                generator.writeEndArray();
+            }
+            case L -> {
+                generator.writeArrayFieldStart("L");
+                for (AttributeValue element : value.l()) {
+                    writeValue(generator, element);
+                }
+                generator.writeEndArray();
+            }
+            case M -> {
+                generator.writeFieldName("M");
+                writeItem(generator, value.m());
+            }
+            default -> throw new IllegalArgumentException("Unsupported attribute type " + value.type());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeTexts(JsonGenerator generator, String type, List<String> values) throws IOException {
+        generator.writeArrayFieldStart(type);
+        for (String text : values) {
+            generator.writeString(text);
+        }
+        generator.writeEndArray();
+    }
+
+    private static List<String> texts(JsonNode array) {
+        List<String> values = new ArrayList<>();
+        array.forEach(element -> values.add(element.asText()));
+        return values;
+    }
+}
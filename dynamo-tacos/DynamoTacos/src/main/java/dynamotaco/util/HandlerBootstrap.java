@@ -0,0 +1,225 @@
+package dynamotaco.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.metrics.MeteredDynamoDbClient;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.models.*;
+import dynamotaco.resilience.ResilientDynamoDbClient;
+import org.crac.Core;
+import org.crac.Resource;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.ServiceMetadata;
+import software.amazon.awssdk.regions.providers.DefaultAwsRegionProviderChain;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-container state shared by every handler: tuned DynamoDB clients, one ObjectMapper and a
+ * SnapStart (CRaC) hook that primes them before the snapshot is taken. Handlers go through the
+ * async client; the blocking one is built only if something asks for it. Unless
+ * {@code DYNAMODB_RESILIENCE} is false, the async client is wrapped in a
+ * {@link ResilientDynamoDbClient}, which then does the retrying instead of the SDK, and with
+ * metrics on in a {@link MeteredDynamoDbClient}.
+ */
+public final class HandlerBootstrap {
+
+    public static final String TABLE_NAME = Config.get("TABLE_NAME", "table.name", "TacoOrderingApp");
+    private static final int MAX_CONCURRENCY = Config.getInt("DYNAMODB_MAX_CONCURRENCY", "dynamodb.maxConcurrency", 50);
+    private static final boolean RESILIENCE = Config.getBoolean("DYNAMODB_RESILIENCE", "dynamodb.resilience", true);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Primer PRIMER = new Primer();
+
+    static {
+        Core.getGlobalContext().register(PRIMER);
+    }
+
+    private HandlerBootstrap() {
+    }
+
+    public static DynamoDbClient dynamoDb() {
+        return ClientHolder.CLIENT;
+    }
+
+    public static DynamoDbAsyncClient dynamoDbAsync() {
+        return AsyncClientHolder.CLIENT;
+    }
+
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    public static DynamoDbClient buildClient() {
+        Region region = resolveRegion();
+        return DynamoDbClient.builder()
+                .region(region)
+                .credentialsProvider(resolveCredentials())
+                .endpointOverride(resolveEndpoint(region))
+                .httpClient(UrlConnectionHttpClient.builder()
+                        .connectionTimeout(Duration.ofSeconds(2))
+                        .socketTimeout(Duration.ofSeconds(5))
+                        .build())
+                .build();
+    }
+
+    public static DynamoDbAsyncClient buildAsyncClient() {
+        Region region = resolveRegion();
+        return DynamoDbAsyncClient.builder()
+                .region(region)
+                .credentialsProvider(resolveCredentials())
+                .endpointOverride(resolveEndpoint(region))
+                .overrideConfiguration(config -> {
+                    if (RESILIENCE) {
+                        config.retryPolicy(RetryPolicy.none());
+                    }
+                })
+                .httpClient(NettyNioAsyncHttpClient.builder()
+                        .connectionTimeout(Duration.ofSeconds(2))
+                        .readTimeout(Duration.ofSeconds(5))
+                        .writeTimeout(Duration.ofSeconds(5))
+                        .maxConcurrency(MAX_CONCURRENCY)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Runs representative work through Jackson, the order mapper and the SDK marshallers so that
+     * the first real request after restore does not pay for class loading and introspection.
+     */
+    public static void prime() {
+        try {
+            for (Class<?> type : List.of(Order.class, Customer.class, MenuItem.class, UpdateOrderRequest.class)) {
+                MAPPER.readValue(MAPPER.writeValueAsString(sampleOf(type)), type);
+            }
+            MAPPER.writeValueAsString(List.of(TacoUtil.mapToOrder(sampleOrderItem())));
+        } catch (Exception e) {
+            System.err.println("Jackson priming failed: " + e.getMessage());
+        }
+
+        try {
+            dynamoDbAsync().getItem(GetItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .key(Map.of(
+                            "PK", AttributeValue.builder().s("PRIME").build(),
+                            "SK", AttributeValue.builder().s("PRIME").build()
+                    ))
+                    .build()).join();
+        } catch (Exception e) {
+            // The round trip only exists to load and JIT the request pipeline; any outcome is fine
+            System.err.println("DynamoDB priming call failed: " + e.getMessage());
+        }
+    }
+
+    private static Region resolveRegion() {
+        String region = Config.get("AWS_REGION", "aws.region", null);
+        return region != null ? Region.of(region) : new DefaultAwsRegionProviderChain().getRegion();
+    }
+
+    private static URI resolveEndpoint(Region region) {
+        String endpoint = Config.get("DYNAMODB_ENDPOINT", "dynamodb.endpoint", null);
+        return endpoint != null
+                ? URI.create(endpoint)
+                : URI.create("https://" + ServiceMetadata.of(DynamoDbClient.SERVICE_METADATA_ID).endpointFor(region));
+    }
+
+    private static AwsCredentialsProvider resolveCredentials() {
+        // Lambda always exports credentials as environment variables, so skip the provider chain walk there
+        if (System.getenv("AWS_ACCESS_KEY_ID") != null) {
+            return EnvironmentVariableCredentialsProvider.create();
+        }
+        return DefaultCredentialsProvider.create();
+    }
+
+    private static Object sampleOf(Class<?> type) {
+        if (type == Order.class) {
+            return TacoUtil.mapToOrder(sampleOrderItem());
+        }
+        if (type == Customer.class) {
+            Customer customer = new Customer();
+            customer.setEmail("prime@example.com");
+            customer.setFirstName("Prime");
+            customer.setLastName("Taco");
+            customer.setPhoneNumber("000-000-0000");
+            return customer;
+        }
+        if (type == MenuItem.class) {
+            MenuItem menuItem = new MenuItem();
+            menuItem.setId("000");
+            menuItem.setName("Prime");
+            menuItem.setPrice(1.0);
+            menuItem.setFoodItemType(FoodItemType.TACO);
+            menuItem.setDescription("Priming item");
+            return menuItem;
+        }
+        UpdateOrderRequest updateRequest = new UpdateOrderRequest();
+        updateRequest.setEmail("prime@example.com");
+        updateRequest.setOrderId("prime");
+        updateRequest.setStatus(OrderStatus.RECEIVED);
+        return updateRequest;
+    }
+
+    private static Map<String, AttributeValue> sampleOrderItem() {
+        Map<String, AttributeValue> topping = Map.of(
+                "ToppingId", AttributeValue.builder().s("prime-topping").build(),
+                "Name", AttributeValue.builder().s("Cheese").build(),
+                "Price", AttributeValue.builder().n("0.5").build());
+        Map<String, AttributeValue> taco = Map.of(
+                "TacoId", AttributeValue.builder().s("prime-taco").build(),
+                "MenuItemId", AttributeValue.builder().s("001").build(),
+                "Name", AttributeValue.builder().s("Carne Asada").build(),
+                "Price", AttributeValue.builder().n("6.0").build(),
+                "Toppings", AttributeValue.builder().l(AttributeValue.fromM(topping)).build());
+        Map<String, AttributeValue> side = Map.of(
+                "SideItemId", AttributeValue.builder().s("prime-side").build(),
+                "Name", AttributeValue.builder().s("Chips").build(),
+                "Price", AttributeValue.builder().n("2.0").build());
+        return Map.of(
+                "PK", AttributeValue.builder().s("CUSTOMER#prime@example.com").build(),
+                "SK", AttributeValue.builder().s("ORDER#prime").build(),
+                "OrderDate", AttributeValue.builder().s(OrderDates.now()).build(),
+                "TotalPrice", AttributeValue.builder().n("8.5").build(),
+                "Status", AttributeValue.builder().s(OrderStatus.RECEIVED.toString()).build(),
+                "Tacos", AttributeValue.builder().l(AttributeValue.fromM(taco)).build(),
+                "SideItems", AttributeValue.builder().l(AttributeValue.fromM(side)).build());
+    }
+
+    private static final class ClientHolder {
+        private static final DynamoDbClient CLIENT = buildClient();
+    }
+
+    private static final class AsyncClientHolder {
+        private static final DynamoDbAsyncClient CLIENT = metered(RESILIENCE
+                ? ResilientDynamoDbClient.fromConfig(buildAsyncClient())
+                : buildAsyncClient());
+
+        // Outermost, so DynamoDB time includes the retries and rate limiting a request went through
+        private static DynamoDbAsyncClient metered(DynamoDbAsyncClient client) {
+            return Metrics.enabled() ? new MeteredDynamoDbClient(client) : client;
+        }
+    }
+
+    private static final class Primer implements Resource {
+        @Override
+        public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+            prime();
+        }
+
+        @Override
+        public void afterRestore(org.crac.Context<? extends Resource> context) {
+            Metrics.markColdStart();
+        }
+    }
+}
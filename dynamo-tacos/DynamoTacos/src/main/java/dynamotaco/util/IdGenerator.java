@@ -0,0 +1,37 @@
+package dynamotaco.util;
+
+import java.util.UUID;
+
+/**
+ * Makes the ids of new orders and of their tacos, toppings and side items. {@code ID_GENERATOR}
+ * picks the implementation: {@code ULID} (the default) for time-ordered {@link UlidGenerator} ids,
+ * so {@code ORDER#<id>} sort keys sort by creation time, or {@code UUID} for random UUIDs.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    String next();
+
+    static IdGenerator configured() {
+        return Configured.INSTANCE;
+    }
+
+    static IdGenerator randomUuid() {
+        return () -> UUID.randomUUID().toString();
+    }
+
+    static IdGenerator parse(String generator) {
+        return switch (generator.trim().toUpperCase()) {
+            case "ULID" -> new UlidGenerator();
+            case "UUID" -> randomUuid();
+            default -> throw new IllegalArgumentException("Unknown id generator " + generator);
+        };
+    }
+
+    final class Configured {
+        private static final IdGenerator INSTANCE = parse(Config.get("ID_GENERATOR", "id.generator", "ULID"));
+
+        private Configured() {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package dynamotaco.util;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+/**
+ * Item sizes as DynamoDB counts them for capacity units and the 400 KB item limit, computed from
+ * the attribute values without serializing them.
+ */
+public final class ItemSizes {
+
+    private ItemSizes() {
+    }
+
+    /**
+     * Approximate DynamoDB item size in bytes: attribute names plus value sizes, as used for
+     * capacity-unit accounting.
+     */
+    public static int itemSize(Map<String, AttributeValue> item) {
+        int[] size = {0};
+        // Unlike entrySet(), forEach does not wrap every entry of the SDK's unmodifiable maps
+        item.forEach((name, value) -> size[0] += utf8Length(name) + valueSize(value));
+        return size[0];
+    }
+
+    private static int valueSize(AttributeValue value) {
+        if (value.s() != null) {
+            return utf8Length(value.s());
+        }
+        if (value.n() != null) {
+            return (value.n().length() + 1) / 2 + 1;
+        }
+        if (value.b() != null) {
+            return value.b().asByteArrayUnsafe().length;
+        }
+        if (value.bool() != null || value.nul() != null) {
+            return 1;
+        }
+        if (value.hasM()) {
+            return 3 + itemSize(value.m()) + value.m().size();
+        }
+        if (value.hasL()) {
+            int size = 3;
+            for (AttributeValue element : value.l()) {
+                size += 1 + valueSize(element);
+            }
+            return size;
+        }
+        if (value.hasSs()) {
+            return value.ss().stream().mapToInt(ItemSizes::utf8Length).sum();
+        }
+        if (value.hasNs()) {
+            return value.ns().stream().mapToInt(n -> (n.length() + 1) / 2 + 1).sum();
+        }
+        if (value.hasBs()) {
+            return value.bs().stream().mapToInt(b -> b.asByteArrayUnsafe().length).sum();
+        }
+        return 1;
+    }
+
+    // Counted rather than encoded: the metrics client sizes every item a request reads or writes
+    private static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    length += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                    length += 2;
+                    i++;
+                } else {
+                    length += 2;
+                }
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,56 @@
+package dynamotaco.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opaque pagination token wrapping a Query's LastEvaluatedKey. All of our table and index keys are
+ * strings, so the token is just the key attributes as a JSON object, base64url encoded.
+ */
+public final class KeyCursor {
+
+    private static final TypeReference<LinkedHashMap<String, String>> KEY_TYPE = new TypeReference<>() {
+    };
+
+    private KeyCursor() {
+    }
+
+    public static String encode(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+        Map<String, String> key = new LinkedHashMap<>();
+        lastEvaluatedKey.forEach((name, value) -> key.put(name, value.s()));
+        try {
+            byte[] json = HandlerBootstrap.mapper().writeValueAsBytes(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to encode cursor", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token is malformed or was not issued for {@code partitionKey}
+     */
+    public static Map<String, AttributeValue> decode(String cursor, String partitionAttribute, String partitionKey) {
+        Map<String, String> key;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII));
+            key = HandlerBootstrap.mapper().readValue(json, KEY_TYPE);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (!partitionKey.equals(key.get(partitionAttribute))) {
+            throw new IllegalArgumentException("Cursor does not belong to this query");
+        }
+
+        Map<String, AttributeValue> exclusiveStartKey = new LinkedHashMap<>();
+        key.forEach((name, value) -> exclusiveStartKey.put(name, AttributeValue.builder().s(value).build()));
+        return exclusiveStartKey;
+    }
+}
@@ -0,0 +1,57 @@
+package dynamotaco.util;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The {@code OrderDate} format: UTC with exactly three fraction digits, such as
+ * {@code 2024-10-28T12:00:00.500Z}. Being fixed width, dates compare as strings in the same order as
+ * the instants they stand for, which is how the status indexes sort and bound them.
+ */
+public final class OrderDates {
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private OrderDates() {
+    }
+
+    public static String now() {
+        return format(Instant.now());
+    }
+
+    public static String format(Instant instant) {
+        return FORMAT.format(instant);
+    }
+
+    /**
+     * The stored date an inclusive lower bound starts at: {@code value} rounded up to the
+     * millisecond, so nothing before it is included.
+     *
+     * @throws IllegalArgumentException when {@code value} is not an ISO-8601 instant
+     */
+    public static String lowerBound(String value) {
+        Instant instant = parse(value);
+        Instant millis = instant.truncatedTo(ChronoUnit.MILLIS);
+        return format(millis.equals(instant) ? millis : millis.plusMillis(1));
+    }
+
+    /** The stored date an inclusive upper bound ends at: {@code value} rounded down to the millisecond. */
+    public static String upperBound(String value) {
+        return format(parse(value).truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    /**
+     * @throws IllegalArgumentException when {@code value} is not an ISO-8601 instant, with or without an offset
+     */
+    public static Instant parse(String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Expected an ISO-8601 instant such as 2024-10-28T12:00:00Z");
+        }
+    }
+}
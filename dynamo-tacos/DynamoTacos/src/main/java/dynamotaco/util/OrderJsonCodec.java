@@ -0,0 +1,436 @@
+package dynamotaco.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import dynamotaco.models.OrderField;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the order API JSON directly from a DynamoDB item, producing the same document as
+ * {@code MAPPER.writeValueAsString(TacoUtil.mapToOrder(item))} without building the Order graph.
+ * Field names are pre-encoded and numbers are copied from their stored decimal strings.
+ */
+public final class OrderJsonCodec {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString CUSTOMER_ID = new SerializedString("customerId");
+    private static final SerializableString ORDER_DATE = new SerializedString("orderDate");
+    private static final SerializableString TOTAL_PRICE = new SerializedString("totalPrice");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString TACOS = new SerializedString("tacos");
+    private static final SerializableString SIDE_ITEMS = new SerializedString("sideItems");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString PRICE = new SerializedString("price");
+    private static final SerializableString MENU_ITEM_ID = new SerializedString("menuItemId");
+    private static final SerializableString TOPPINGS = new SerializedString("toppings");
+    private static final SerializableString QUANTITY = new SerializedString("quantity");
+
+    private static final JsonFactory FACTORY = HandlerBootstrap.mapper().getFactory();
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private OrderJsonCodec() {
+    }
+
+    public static String writeOrder(Map<String, AttributeValue> item) {
+        Buffer buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer)) {
+            writeOrder(generator, item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.asString();
+    }
+
+    public static String writeOrders(List<Map<String, AttributeValue>> items) {
+        Buffer buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer)) {
+            generator.writeStartArray();
+            for (Map<String, AttributeValue> item : items) {
+                writeOrder(generator, item);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.asString();
+    }
+
+    /**
+     * The order with only {@code fields}, in their usual order. Fields whose attributes the item does
+     * not have, as when it was read with a projection, are written as null.
+     */
+    public static String writeOrder(Map<String, AttributeValue> item, Set<OrderField> fields) {
+        if (fields.containsAll(OrderField.ALL)) {
+            return writeOrder(item);
+        }
+        Buffer buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer)) {
+            writeOrder(generator, item, fields);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.asString();
+    }
+
+    public static void writeOrder(JsonGenerator generator, Map<String, AttributeValue> item) throws IOException {
+        item = CompactLineItems.expand(item);
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeString(stripPrefix(item.get("SK").s(), "ORDER#"));
+        generator.writeFieldName(CUSTOMER_ID);
+        generator.writeString(stripPrefix(item.get("PK").s(), "CUSTOMER#"));
+        generator.writeFieldName(ORDER_DATE);
+        generator.writeNumber(epochMillis(item.get("OrderDate").s()));
+        generator.writeFieldName(TOTAL_PRICE);
+        writeDouble(generator, item.get("TotalPrice").n());
+        generator.writeFieldName(STATUS);
+        generator.writeString(item.get("Status").s());
+        generator.writeFieldName(TACOS);
+        writeTacos(generator, item.get("Tacos"));
+        generator.writeFieldName(SIDE_ITEMS);
+        writeSideItems(generator, item.get("SideItems"));
+        generator.writeEndObject();
+    }
+
+    private static void writeOrder(JsonGenerator generator, Map<String, AttributeValue> item, Set<OrderField> fields) throws IOException {
+        if (fields.contains(OrderField.TACOS) || fields.contains(OrderField.SIDE_ITEMS)) {
+            item = CompactLineItems.expand(item);
+        }
+        generator.writeStartObject();
+        if (fields.contains(OrderField.ID)) {
+            AttributeValue sk = item.get("SK");
+            generator.writeFieldName(ID);
+            writeString(generator, sk == null ? null : stripPrefix(sk.s(), "ORDER#"));
+        }
+        if (fields.contains(OrderField.CUSTOMER_ID)) {
+            AttributeValue pk = item.get("PK");
+            generator.writeFieldName(CUSTOMER_ID);
+            writeString(generator, pk == null ? null : stripPrefix(pk.s(), "CUSTOMER#"));
+        }
+        if (fields.contains(OrderField.ORDER_DATE)) {
+            AttributeValue orderDate = item.get("OrderDate");
+            generator.writeFieldName(ORDER_DATE);
+            if (orderDate == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(epochMillis(orderDate.s()));
+            }
+        }
+        if (fields.contains(OrderField.TOTAL_PRICE)) {
+            AttributeValue totalPrice = item.get("TotalPrice");
+            generator.writeFieldName(TOTAL_PRICE);
+            if (totalPrice == null) {
+                generator.writeNull();
+            } else {
+                writeDouble(generator, totalPrice.n());
+            }
+        }
+        if (fields.contains(OrderField.STATUS)) {
+            AttributeValue status = item.get("Status");
+            generator.writeFieldName(STATUS);
+            writeString(generator, status == null ? null : status.s());
+        }
+        if (fields.contains(OrderField.TACOS)) {
+            generator.writeFieldName(TACOS);
+            writeTacos(generator, item.get("Tacos"));
+        }
+        if (fields.contains(OrderField.SIDE_ITEMS)) {
+            generator.writeFieldName(SIDE_ITEMS);
+            writeSideItems(generator, item.get("SideItems"));
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeTacos(JsonGenerator generator, AttributeValue tacos) throws IOException {
+        if (tacos == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (AttributeValue tacoAttr : tacos.l()) {
+            Map<String, AttributeValue> taco = tacoAttr.m();
+            generator.writeStartObject();
+            writeBaseItem(generator, taco, "TacoId");
+            generator.writeFieldName(MENU_ITEM_ID);
+            generator.writeNull();
+            generator.writeFieldName(TOPPINGS);
+            AttributeValue toppings = taco.get("Toppings");
+            if (toppings == null) {
+                generator.writeNull();
+            } else {
+                generator.writeStartArray();
+                for (AttributeValue toppingAttr : toppings.l()) {
+                    generator.writeStartObject();
+                    writeBaseItem(generator, toppingAttr.m(), "ToppingId");
+                    generator.writeFieldName(MENU_ITEM_ID);
+                    generator.writeNull();
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeSideItems(JsonGenerator generator, AttributeValue sideItems) throws IOException {
+        if (sideItems == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (AttributeValue sideItemAttr : sideItems.l()) {
+            Map<String, AttributeValue> sideItem = sideItemAttr.m();
+            generator.writeStartObject();
+            writeBaseItem(generator, sideItem, "SideItemId");
+            generator.writeFieldName(MENU_ITEM_ID);
+            generator.writeNull();
+            generator.writeFieldName(QUANTITY);
+            AttributeValue quantity = sideItem.get("Quantity");
+            if (quantity == null) {
+                generator.writeNumber(0);
+            } else {
+                generator.writeNumber(quantity.n());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * The summary view used by {@code GET /orders?view=summary}: id, date, status and total only.
+     */
+    public static void writeSummary(JsonGenerator generator, Map<String, AttributeValue> item) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeString(stripPrefix(item.get("SK").s(), "ORDER#"));
+        generator.writeFieldName(ORDER_DATE);
+        generator.writeNumber(epochMillis(item.get("OrderDate").s()));
+        generator.writeFieldName(STATUS);
+        generator.writeString(item.get("Status").s());
+        generator.writeFieldName(TOTAL_PRICE);
+        writeDouble(generator, item.get("TotalPrice").n());
+        generator.writeEndObject();
+    }
+
+    /**
+     * The kitchen view used by {@code GET /orders/queue}: what to make and for which order, without
+     * prices. Toppings are written as a list of names, side items with their quantity.
+     */
+    public static void writeQueueEntry(JsonGenerator generator, Map<String, AttributeValue> item) throws IOException {
+        item = CompactLineItems.expand(item);
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeString(stripPrefix(item.get("SK").s(), "ORDER#"));
+        generator.writeFieldName(CUSTOMER_ID);
+        generator.writeString(stripPrefix(item.get("PK").s(), "CUSTOMER#"));
+        generator.writeFieldName(ORDER_DATE);
+        generator.writeNumber(epochMillis(item.get("OrderDate").s()));
+        generator.writeFieldName(STATUS);
+        generator.writeString(item.get("Status").s());
+
+        generator.writeFieldName(TACOS);
+        generator.writeStartArray();
+        AttributeValue tacos = item.get("Tacos");
+        if (tacos != null) {
+            for (AttributeValue tacoAttr : tacos.l()) {
+                Map<String, AttributeValue> taco = tacoAttr.m();
+                generator.writeStartObject();
+                generator.writeFieldName(NAME);
+                generator.writeString(taco.get("Name").s());
+                generator.writeFieldName(TOPPINGS);
+                generator.writeStartArray();
+                AttributeValue toppings = taco.get("Toppings");
+                if (toppings != null) {
+                    for (AttributeValue toppingAttr : toppings.l()) {
+                        generator.writeString(toppingAttr.m().get("Name").s());
+                    }
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeFieldName(SIDE_ITEMS);
+        generator.writeStartArray();
+        AttributeValue sideItems = item.get("SideItems");
+        if (sideItems != null) {
+            for (AttributeValue sideItemAttr : sideItems.l()) {
+                Map<String, AttributeValue> sideItem = sideItemAttr.m();
+                AttributeValue quantity = sideItem.get("Quantity");
+                generator.writeStartObject();
+                generator.writeFieldName(NAME);
+                generator.writeString(sideItem.get("Name").s());
+                generator.writeFieldName(QUANTITY);
+                generator.writeNumber(quantity == null ? "1" : quantity.n());
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeBaseItem(JsonGenerator generator, Map<String, AttributeValue> map, String idAttribute) throws IOException {
+        generator.writeFieldName(ID);
+        generator.writeString(map.get(idAttribute).s());
+        generator.writeFieldName(NAME);
+        generator.writeString(map.get("Name").s());
+        generator.writeFieldName(PRICE);
+        writeDouble(generator, map.get("Price").n());
+    }
+
+    /**
+     * Copies a stored number as-is when it already reads like a Java double ("6.0"), so the common
+     * case needs no parsing; anything else goes through Double to match the POJO output.
+     */
+    private static void writeDouble(JsonGenerator generator, String number) throws IOException {
+        if (isPlainDecimal(number)) {
+            generator.writeNumber(number);
+        } else {
+            generator.writeNumber(Double.parseDouble(number));
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    private static boolean isPlainDecimal(String number) {
+        int dot = number.indexOf('.');
+        int length = number.length();
+        // Must look like Double.toString output: digits, a dot, at least one digit, no trailing zero
+        // unless it is the single ".0", short enough to round-trip, and inside [1e-3, 1e7) where
+        // Double.toString does not switch to scientific notation
+        if (dot < 1 || dot > 7 || dot == length - 1 || length > 15) {
+            return false;
+        }
+        if (number.charAt(length - 1) == '0' && dot != length - 2) {
+            return false;
+        }
+        if (number.charAt(0) == '0' && (dot != 1 || (number.startsWith("0.000") && !number.equals("0.0")))) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = number.charAt(i);
+            if (i != dot && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripPrefix(String value, String prefix) {
+        return value.startsWith(prefix) ? value.substring(prefix.length()) : value.replace(prefix, "");
+    }
+
+    /**
+     * Fast path for the {@link OrderDates} format we write and the {@code ZonedDateTime.toString()}
+     * one written before it ({@code yyyy-MM-ddTHH:mm[:ss[.fraction]]Z}); anything else falls back to
+     * ZonedDateTime.
+     */
+    static long epochMillis(String timestamp) {
+        int length = timestamp.length();
+        if (length < 17 || timestamp.charAt(length - 1) != 'Z' || timestamp.charAt(4) != '-'
+                || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T' || timestamp.charAt(13) != ':') {
+            return ZonedDateTime.parse(timestamp).toInstant().toEpochMilli();
+        }
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 7);
+        int day = digits(timestamp, 8, 10);
+        int hour = digits(timestamp, 11, 13);
+        int minute = digits(timestamp, 14, 16);
+        int second = 0;
+        int millis = 0;
+        int pos = 16;
+        if (pos < length - 1 && timestamp.charAt(pos) == ':') {
+            second = digits(timestamp, pos + 1, pos + 3);
+            pos += 3;
+            if (pos < length - 1 && timestamp.charAt(pos) == '.') {
+                int end = length - 1;
+                for (int i = pos + 1; i < pos + 4; i++) {
+                    int digit = i < end ? digit(timestamp, i) : 0;
+                    if (digit < 0) {
+                        return ZonedDateTime.parse(timestamp).toInstant().toEpochMilli();
+                    }
+                    millis = millis * 10 + digit;
+                }
+            }
+        }
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+            return ZonedDateTime.parse(timestamp).toInstant().toEpochMilli();
+        }
+        long epochDay = epochDay(year, month, day);
+        return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = digit(value, i);
+            if (digit < 0) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int digit(String value, int index) {
+        char c = value.charAt(index);
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+
+    // Same algorithm as LocalDate.toEpochDay, without creating the LocalDate
+    private static long epochDay(long year, int month, int day) {
+        long total = 365 * year;
+        if (year >= 0) {
+            total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        } else {
+            total -= year / -4 - year / -100 + year / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+            if (!leap) {
+                total--;
+            }
+        }
+        return total - 719528;
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(4096);
+        }
+
+        String asString() {
+            return new String(buf, 0, count, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            // The generator closes its target; keep the buffer for the next call on this thread
+        }
+    }
+}
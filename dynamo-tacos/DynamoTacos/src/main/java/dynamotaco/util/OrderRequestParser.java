@@ -0,0 +1,221 @@
+package dynamotaco.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.pricing.PriceIndex;
+import dynamotaco.pricing.PricingEngine;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a create-order request body straight into DynamoDB attribute values, pricing every line
+ * from a {@link PriceIndex} in the same pass over the JSON. The result is the item that reading an
+ * {@link dynamotaco.models.Order}, pricing it with {@link PricingEngine#price} and passing it to
+ * {@code CreateOrderHandler.buildOrderItem} produces, without building the Order graph in between.
+ *
+ * Fields may come in any order. Like the ObjectMapper, unknown fields are rejected; the client's
+ * line names and prices, order date and total are accepted and replaced by the menu's.
+ */
+public final class OrderRequestParser {
+
+    private static final JsonFactory FACTORY = HandlerBootstrap.mapper().getFactory();
+
+    private final JsonParser parser;
+    private final PriceIndex prices;
+    private final IdGenerator ids;
+    // Lines repeat the same names and prices; attribute values are immutable, so one per distinct value
+    private final Map<String, AttributeValue> strings = new HashMap<>();
+    private final Map<Long, AttributeValue> amounts = new HashMap<>();
+
+    private OrderRequestParser(JsonParser parser, PriceIndex prices, IdGenerator ids) {
+        this.parser = parser;
+        this.prices = prices;
+        this.ids = ids;
+    }
+
+    public record ParsedOrder(String orderId, String customerId, OrderStatus status, long totalCents,
+                              List<AttributeValue> tacos, List<AttributeValue> sideItems) {
+
+        public Map<String, AttributeValue> item(String partitionKey, String sortKey) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("PK", AttributeValue.builder().s(partitionKey).build());
+            item.put("SK", AttributeValue.builder().s(sortKey).build());
+            item.put("OrderDate", AttributeValue.builder().s(OrderDates.now()).build());
+            item.put("TotalPrice", AttributeValue.builder().n(String.valueOf(PricingEngine.toDollars(totalCents))).build());
+            item.put("Status", AttributeValue.builder().s(status.toString()).build());
+            if (tacos != null && !tacos.isEmpty()) {
+                item.put("Tacos", AttributeValue.builder().l(tacos).build());
+            }
+            if (sideItems != null && !sideItems.isEmpty()) {
+                item.put("SideItems", AttributeValue.builder().l(sideItems).build());
+            }
+            return item;
+        }
+    }
+
+    public static ParsedOrder parse(String body, PriceIndex prices) throws IOException {
+        return parse(body, prices, IdGenerator.configured());
+    }
+
+    /**
+     * @param ids makes the order id, unless the body has one, and the ids of the lines
+     * @throws IOException when the body is not a valid order
+     * @throws dynamotaco.pricing.PricingException when a line is not on the menu or has an invalid quantity
+     */
+    public static ParsedOrder parse(String body, PriceIndex prices, IdGenerator ids) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            ParsedOrder order = new OrderRequestParser(parser, prices, ids).readOrder();
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the order");
+            }
+            return order;
+        }
+    }
+
+    private ParsedOrder readOrder() throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT, "an order object");
+        String id = null;
+        String customerId = null;
+        OrderStatus status = null;
+        List<AttributeValue> tacos = null;
+        List<AttributeValue> sideItems = null;
+        long tacoCents = 0;
+        long sideCents = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = text();
+                case "customerId" -> customerId = text();
+                case "status" -> status = status();
+                case "tacos" -> {
+                    tacos = parser.currentToken() == JsonToken.VALUE_NULL ? null : new ArrayList<>();
+                    tacoCents = readLines(FoodItemType.TACO, tacos);
+                }
+                case "sideItems" -> {
+                    sideItems = parser.currentToken() == JsonToken.VALUE_NULL ? null : new ArrayList<>();
+                    sideCents = readLines(FoodItemType.SIDE, sideItems);
+                }
+                case "orderDate", "totalPrice" -> parser.skipChildren();
+                default -> throw unknownField(field);
+            }
+        }
+        if (status == null) {
+            throw new JsonParseException(parser, "Missing order status");
+        }
+        return new ParsedOrder(id == null ? ids.next() : id, customerId, status,
+                tacoCents + sideCents, tacos, sideItems);
+    }
+
+    // Adds the lines of a JSON array to into and returns their total; a null array adds nothing
+    private long readLines(FoodItemType type, List<AttributeValue> into) throws IOException {
+        if (into == null) {
+            return 0;
+        }
+        expect(parser.currentToken(), JsonToken.START_ARRAY, "an array of " + type.toString().toLowerCase() + "s");
+        long cents = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            cents += readLine(type, into);
+        }
+        return cents;
+    }
+
+    private long readLine(FoodItemType type, List<AttributeValue> into) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT, "a " + type.toString().toLowerCase() + " object");
+        String menuItemId = null;
+        String name = null;
+        int quantity = 0;
+        List<AttributeValue> toppings = null;
+        long toppingCents = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "menuItemId" -> menuItemId = text();
+                case "name" -> name = text();
+                case "id", "price" -> parser.skipChildren();
+                case "toppings" -> {
+                    if (type != FoodItemType.TACO) {
+                        throw unknownField(field);
+                    }
+                    toppings = parser.currentToken() == JsonToken.VALUE_NULL ? null : new ArrayList<>();
+                    toppingCents = readLines(FoodItemType.TOPPING, toppings);
+                }
+                case "quantity" -> {
+                    if (type != FoodItemType.SIDE) {
+                        throw unknownField(field);
+                    }
+                    quantity = parser.currentToken() == JsonToken.VALUE_NULL ? 0 : parser.getValueAsInt();
+                }
+                default -> throw unknownField(field);
+            }
+        }
+
+        if (type == FoodItemType.SIDE) {
+            quantity = PricingEngine.sideQuantity(menuItemId, quantity);
+        }
+        long cents = PricingEngine.menuCents(prices, type, menuItemId);
+        AttributeValue lineName = strings.computeIfAbsent(PricingEngine.menuName(prices, type, menuItemId, name),
+                value -> AttributeValue.builder().s(value).build());
+        AttributeValue linePrice = amounts.computeIfAbsent(cents,
+                value -> AttributeValue.builder().n(String.valueOf(PricingEngine.toDollars(value))).build());
+        AttributeValue lineId = AttributeValue.builder().s(ids.next()).build();
+        // The SDK copies the map, so the smallest one to copy from will do
+        Map<String, AttributeValue> line = switch (type) {
+            case TACO -> {
+                AttributeValue lineMenuItemId = strings.computeIfAbsent(menuItemId, value -> AttributeValue.builder().s(value).build());
+                yield toppings == null
+                        ? Map.of("TacoId", lineId, "MenuItemId", lineMenuItemId, "Name", lineName, "Price", linePrice)
+                        : Map.of("TacoId", lineId, "MenuItemId", lineMenuItemId, "Name", lineName, "Price", linePrice,
+                        "Toppings", AttributeValue.builder().l(toppings).build());
+            }
+            case TOPPING -> Map.of("ToppingId", lineId, "Name", lineName, "Price", linePrice);
+            case SIDE -> Map.of("SideItemId", lineId, "Name", lineName, "Price", linePrice,
+                    "Quantity", AttributeValue.builder().n(String.valueOf(quantity)).build());
+        };
+        into.add(AttributeValue.fromM(line));
+        return cents * Math.max(quantity, 1) + toppingCents;
+    }
+
+    private String text() throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a string for " + parser.currentName());
+        }
+        return parser.getText();
+    }
+
+    private OrderStatus status() throws IOException {
+        String status = text();
+        if (status == null) {
+            return null;
+        }
+        try {
+            return OrderStatus.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(parser, "Unknown order status " + status);
+        }
+    }
+
+    private void expect(JsonToken actual, JsonToken expected, String what) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + what);
+        }
+    }
+
+    private JsonParseException unknownField(String field) {
+        return new JsonParseException(parser, "Unrecognized field \"" + field + "\"");
+    }
+}
@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 public class TacoUtil {
 
     public static Order mapToOrder(Map<String, AttributeValue> item) {
+        item = CompactLineItems.expand(item);
         Order order = new Order();
         String pk = item.get("PK").s();
         String sk = item.get("SK").s();
@@ -57,6 +58,9 @@ public class TacoUtil {
                 sideItem.setId(sideItemMap.get("SideItemId").s());
                 sideItem.setName(sideItemMap.get("Name").s());
                 sideItem.setPrice(Double.parseDouble(sideItemMap.get("Price").n()));
+                if (sideItemMap.containsKey("Quantity")) {
+                    sideItem.setQuantity(Integer.parseInt(sideItemMap.get("Quantity").n()));
+                }
                 return sideItem;
             }).collect(Collectors.toList());
             order.setSideItems(sideItems);
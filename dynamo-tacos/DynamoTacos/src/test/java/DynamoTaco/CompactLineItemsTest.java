@@ -0,0 +1,142 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.models.Order;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.models.SideItem;
+import dynamotaco.models.Taco;
+import dynamotaco.models.Topping;
+import dynamotaco.util.CompactLineItems;
+import dynamotaco.util.ItemSizes;
+import dynamotaco.util.OrderJsonCodec;
+import dynamotaco.util.TacoUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class CompactLineItemsTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String[] NAMES = {"Carne Asada", "Al Pastor", "Jalapeño", null, "Queso \"Fresco\""};
+  private static final String[] MENU_IDS = {"001", "7", "000000123", "special-1", null};
+
+  @Test
+  public void roundTripsEverythingButTheLineIds() throws Exception {
+    Random random = new Random(7);
+    for (int round = 0; round < 100; round++) {
+      Map<String, AttributeValue> nested = randomOrder(random, random.nextInt(60));
+      Map<String, AttributeValue> compact = CompactLineItems.compact(nested);
+      Map<String, AttributeValue> expanded = CompactLineItems.expand(compact);
+
+      assertEquals(withoutLineIds(nested), withoutLineIds(expanded));
+      // Readers decode transparently
+      assertEquals(MAPPER.writeValueAsString(TacoUtil.mapToOrder(expanded)), OrderJsonCodec.writeOrder(compact));
+    }
+  }
+
+  @Test
+  public void shrinksTheOrderItem() {
+    Map<String, AttributeValue> nested = randomOrder(new Random(1), 20);
+    Map<String, AttributeValue> compact = CompactLineItems.compact(nested);
+
+    int nestedSize = ItemSizes.itemSize(nested);
+    int compactSize = ItemSizes.itemSize(compact);
+    assertTrue(nestedSize + " -> " + compactSize, compactSize * 5 < nestedSize);
+  }
+
+  @Test
+  public void leavesPricesThatAreNotWholeCentsNested() {
+    Map<String, AttributeValue> nested = randomOrder(new Random(2), 3);
+    Map<String, AttributeValue> taco = new HashMap<>(nested.get("Tacos").l().get(0).m());
+    taco.put("Price", AttributeValue.fromN("6.005"));
+    Map<String, AttributeValue> item = new HashMap<>(nested);
+    item.put("Tacos", AttributeValue.fromL(List.of(AttributeValue.fromM(taco))));
+
+    assertSame(item, CompactLineItems.compact(item));
+  }
+
+  @Test
+  public void rejectsUnknownVersions() {
+    Map<String, AttributeValue> item = new HashMap<>(CompactLineItems.compact(randomOrder(new Random(3), 3)));
+    byte[] lines = item.get(CompactLineItems.ATTRIBUTE).b().asByteArray();
+    lines[0] = CompactLineItems.VERSION + 1;
+    item.put(CompactLineItems.ATTRIBUTE, AttributeValue.fromB(SdkBytes.fromByteArray(lines)));
+
+    try {
+      CompactLineItems.expand(item);
+      fail("Expected an unknown version to be rejected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Unsupported line item encoding version 2", e.getMessage());
+    }
+  }
+
+  // Built the way CreateOrderHandler builds it, with prices in whole cents
+  private static Map<String, AttributeValue> randomOrder(Random random, int lines) {
+    List<Taco> tacos = new ArrayList<>();
+    List<SideItem> sides = new ArrayList<>();
+    List<Topping> usual = List.of(topping("Cheese", 0.25), topping("Salsa", 0.5));
+    for (int i = 0; i < lines; i++) {
+      if (random.nextInt(3) == 0) {
+        SideItem side = new SideItem();
+        side.setName(NAMES[random.nextInt(NAMES.length)]);
+        side.setPrice(random.nextInt(1000) / 100.0);
+        side.setQuantity(random.nextInt(4));
+        sides.add(side);
+        continue;
+      }
+      Taco taco = new Taco();
+      taco.setMenuItemId(MENU_IDS[random.nextInt(MENU_IDS.length)]);
+      taco.setName(NAMES[random.nextInt(NAMES.length)]);
+      taco.setPrice(random.nextInt(2000) / 100.0);
+      if (random.nextBoolean()) {
+        taco.setToppings(usual);
+      } else if (random.nextBoolean()) {
+        taco.setToppings(List.of(topping(NAMES[random.nextInt(NAMES.length)], random.nextInt(300) / 100.0)));
+      }
+      tacos.add(taco);
+    }
+    Order order = new Order();
+    order.setStatus(OrderStatus.RECEIVED);
+    order.setTacos(tacos);
+    order.setSideItems(sides);
+    return CreateOrderHandler.buildOrderItem("CUSTOMER#a@b.com", "ORDER#1", order, 1_234);
+  }
+
+  private static Topping topping(String name, double price) {
+    Topping topping = new Topping();
+    topping.setName(name);
+    topping.setPrice(price);
+    return topping;
+  }
+
+  private static Map<String, AttributeValue> withoutLineIds(Map<String, AttributeValue> item) {
+    Map<String, AttributeValue> copy = new HashMap<>(item);
+    for (String list : List.of("Tacos", "SideItems")) {
+      if (copy.containsKey(list)) {
+        copy.put(list, AttributeValue.fromL(copy.get(list).l().stream()
+            .map(line -> AttributeValue.fromM(withoutLineIds(line.m())))
+            .toList()));
+      }
+    }
+    copy.remove("TacoId");
+    copy.remove("ToppingId");
+    copy.remove("SideItemId");
+    if (copy.containsKey("Toppings")) {
+      copy.put("Toppings", AttributeValue.fromL(copy.get("Toppings").l().stream()
+          .map(topping -> AttributeValue.fromM(withoutLineIds(topping.m())))
+          .toList()));
+    }
+    return copy;
+  }
+}
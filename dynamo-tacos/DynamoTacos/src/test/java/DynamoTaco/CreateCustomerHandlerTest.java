@@ -0,0 +1,80 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.CreateCustomerHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class CreateCustomerHandlerTest {
+
+  private static final String BODY =
+      "{\"email\":\"a@b.com\",\"firstName\":\"Ana\",\"lastName\":\"Bee\",\"phoneNumber\":\"555-0100\"}";
+
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+  private final CreateCustomerHandler handler = new CreateCustomerHandler(dynamoDb.async());
+
+  @Test
+  public void createsWithOneConditionalWrite() {
+    assertEquals(201, handle(Map.of()).getStatusCode().intValue());
+    assertEquals(1, dynamoDb.callCount("PutItem"));
+    assertEquals(0, dynamoDb.callCount("GetItem"));
+
+    APIGatewayProxyResponseEvent duplicate = handle(Map.of());
+    assertEquals(400, duplicate.getStatusCode().intValue());
+    assertEquals("Customer with email a@b.com already exists.", duplicate.getBody());
+    assertEquals(0, dynamoDb.callCount("GetItem"));
+    assertEquals(1, dynamoDb.itemCount());
+  }
+
+  @Test
+  public void onlyOneOfConcurrentSignupsWins() {
+    List<CompletableFuture<APIGatewayProxyResponseEvent>> signups = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      signups.add(CompletableFuture.supplyAsync(() -> handle(Map.of())));
+    }
+
+    long created = signups.stream().map(CompletableFuture::join).filter(r -> r.getStatusCode() == 201).count();
+    assertEquals(1, created);
+  }
+
+  @Test
+  public void replaysRetriesWithTheSameIdempotencyKey() {
+    APIGatewayProxyResponseEvent first = handle(Map.of("idempotency-key", "signup-1"));
+    assertEquals(201, first.getStatusCode().intValue());
+    assertEquals("false", first.getHeaders().get(CreateCustomerHandler.REPLAYED_HEADER));
+
+    APIGatewayProxyResponseEvent retry = handle(Map.of("Idempotency-Key", "signup-1"));
+    assertEquals(201, retry.getStatusCode().intValue());
+    assertEquals(first.getBody(), retry.getBody());
+    assertEquals("true", retry.getHeaders().get(CreateCustomerHandler.REPLAYED_HEADER));
+    assertEquals(1, dynamoDb.callCount("PutItem"));
+
+    assertEquals(400, handle(Map.of("Idempotency-Key", "signup-2")).getStatusCode().intValue());
+  }
+
+  @Test
+  public void replaysKeysAnsweredByAnotherContainer() {
+    assertEquals(201, handle(Map.of("Idempotency-Key", "signup-1")).getStatusCode().intValue());
+
+    CreateCustomerHandler otherContainer = new CreateCustomerHandler(dynamoDb.async());
+    APIGatewayProxyResponseEvent retry = otherContainer.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(BODY).withHeaders(Map.of("Idempotency-Key", "signup-1")),
+        new TestContext());
+
+    assertEquals(201, retry.getStatusCode().intValue());
+    assertEquals("true", retry.getHeaders().get(CreateCustomerHandler.REPLAYED_HEADER));
+    assertEquals(1, dynamoDb.callCount("GetItem"));
+    assertEquals(1, dynamoDb.itemCount());
+  }
+
+  private APIGatewayProxyResponseEvent handle(Map<String, String> headers) {
+    return handler.handleRequest(new APIGatewayProxyRequestEvent().withBody(BODY).withHeaders(headers), new TestContext());
+  }
+}
@@ -0,0 +1,151 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.CreateOrdersBatchHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.MenuItem;
+import dynamotaco.pricing.PricingEngine;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+
+public class CreateOrdersBatchHandlerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void writesEveryOrderDespiteUnprocessedItems() throws Exception {
+    InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient().withUnprocessedRate(0.3);
+    CreateOrdersBatchHandler handler = new CreateOrdersBatchHandler(dynamoDb.async(), PricingEngine.of(List.of(
+        menuItem(FoodItemType.TACO, "003", 8.0), menuItem(FoodItemType.TOPPING, "005", 0.5))));
+
+    APIGatewayProxyResponseEvent response = handler.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(orders(60)), new TestContext());
+
+    assertEquals(201, response.getStatusCode().intValue());
+    JsonNode results = MAPPER.readTree(response.getBody());
+    assertEquals(60, results.size());
+    assertEquals(60, dynamoDb.itemCount());
+    assertTrue(dynamoDb.callCount("BatchWriteItem") > 3);
+
+    Map<String, AttributeValue> stored = dynamoDb.getItem(GetItemRequest.builder()
+        .key(Map.of("PK", AttributeValue.fromS("CUSTOMER#c3@example.com"), "SK", AttributeValue.fromS("ORDER#o10")))
+        .build()).item();
+    assertEquals(8.5, Double.parseDouble(stored.get("TotalPrice").n()), 0.0);
+  }
+
+  @Test
+  public void reportsTheOrdersOfAFailedChunkAndKeepsTheRest() throws Exception {
+    InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+    DynamoDbAsyncClient table = dynamoDb.async();
+    AtomicInteger throttled = new AtomicInteger();
+    DynamoDbAsyncClient failing = new DynamoDbAsyncClient() {
+      @Override
+      public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        String first = request.requestItems().get("TacoOrderingApp").get(0).putRequest().item().get("SK").s();
+        // The first chunk is throttled once, the second rejected outright
+        if (first.equals("ORDER#o0") && throttled.getAndIncrement() == 0) {
+          return CompletableFuture.failedFuture(ProvisionedThroughputExceededException.builder().message("slow down").build());
+        }
+        if (first.equals("ORDER#o25")) {
+          return CompletableFuture.failedFuture(DynamoDbException.builder().message("invalid").statusCode(400).build());
+        }
+        return table.batchWriteItem(request);
+      }
+
+      @Override
+      public String serviceName() {
+        return "dynamodb";
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    CreateOrdersBatchHandler handler = new CreateOrdersBatchHandler(failing, PricingEngine.of(List.of(
+        menuItem(FoodItemType.TACO, "003", 8.0), menuItem(FoodItemType.TOPPING, "005", 0.5))));
+
+    APIGatewayProxyResponseEvent response = handler.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(orders(60)), new TestContext());
+
+    assertEquals(207, response.getStatusCode().intValue());
+    JsonNode results = MAPPER.readTree(response.getBody());
+    for (int i = 0; i < 60; i++) {
+      assertEquals("order " + i, i < 25 || i >= 50, results.get(i).get("created").asBoolean());
+    }
+    assertEquals(35, dynamoDb.itemCount());
+    assertEquals(2, throttled.get());
+  }
+
+  @Test
+  public void reportsInvalidAndDuplicateOrdersIndividually() throws Exception {
+    InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+    CreateOrdersBatchHandler handler = new CreateOrdersBatchHandler(dynamoDb);
+    String body = "[{\"id\":\"a\",\"customerId\":\"c@example.com\",\"status\":\"RECEIVED\"},"
+        + "{\"id\":\"a\",\"customerId\":\"c@example.com\",\"status\":\"RECEIVED\"},"
+        + "{\"id\":\"b\",\"status\":\"RECEIVED\"}]";
+
+    APIGatewayProxyResponseEvent response = handler.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(body), new TestContext());
+
+    assertEquals(207, response.getStatusCode().intValue());
+    JsonNode results = MAPPER.readTree(response.getBody());
+    assertTrue(results.get(0).get("created").asBoolean());
+    assertFalse(results.get(1).get("created").asBoolean());
+    assertFalse(results.get(2).get("created").asBoolean());
+    assertEquals(1, dynamoDb.itemCount());
+  }
+
+  @Test
+  public void rejectsOrdersWithItemsMissingFromTheMenu() throws Exception {
+    CreateOrdersBatchHandler handler = new CreateOrdersBatchHandler(new InMemoryDynamoDbClient().async(),
+        PricingEngine.of(List.of(menuItem(FoodItemType.SIDE, "007", 1.5))));
+    String body = "[{\"id\":\"a\",\"customerId\":\"c@example.com\",\"status\":\"RECEIVED\","
+        + "\"sideItems\":[{\"menuItemId\":\"007\",\"price\":0.01,\"quantity\":3}]},"
+        + "{\"id\":\"b\",\"customerId\":\"c@example.com\",\"status\":\"RECEIVED\","
+        + "\"tacos\":[{\"menuItemId\":\"999\",\"price\":0.01}]}]";
+
+    JsonNode results = MAPPER.readTree(handler.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(body), new TestContext()).getBody());
+
+    assertTrue(results.get(0).get("created").asBoolean());
+    assertFalse(results.get(1).get("created").asBoolean());
+    assertEquals("Unknown taco menuItemId 999", results.get(1).get("error").asText());
+  }
+
+  private static String orders(int count) {
+    StringBuilder body = new StringBuilder("[");
+    for (int i = 0; i < count; i++) {
+      body.append(i == 0 ? "" : ",")
+          .append("{\"id\":\"o").append(i).append("\",\"customerId\":\"c").append(i % 7)
+          .append("@example.com\",\"status\":\"RECEIVED\",\"tacos\":[{\"menuItemId\":\"003\",\"name\":\"Al Pastor\",")
+          .append("\"toppings\":[{\"menuItemId\":\"005\",\"name\":\"Cheese\"}]}]}");
+    }
+    return body.append("]").toString();
+  }
+
+  private static MenuItem menuItem(FoodItemType type, String id, double price) {
+    MenuItem item = new MenuItem();
+    item.setFoodItemType(type);
+    item.setId(id);
+    item.setPrice(price);
+    return item;
+  }
+}
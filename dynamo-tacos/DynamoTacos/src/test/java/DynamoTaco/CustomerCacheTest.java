@@ -0,0 +1,163 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.CreateCustomerHandler;
+import dynamotaco.api.GetAllOrdersHandler;
+import dynamotaco.api.GetOrderHandler;
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.Customer;
+import dynamotaco.repository.Keys;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class CustomerCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  public void expiresNegativeEntriesBeforeProfiles() {
+    CustomerCache cache = new CustomerCache(10, 300, 30, CustomerCache.Policy.TINY_LFU, now::get);
+    cache.put(customer("a@b.com"));
+    cache.putAbsent("nobody@b.com");
+
+    assertEquals("a@b.com", cache.get("a@b.com").profile().getEmail());
+    assertEquals(CustomerCache.Status.ABSENT, cache.get("nobody@b.com").status());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+    assertEquals(CustomerCache.Status.PRESENT, cache.get("a@b.com").status());
+    assertEquals(CustomerCache.Status.MISS, cache.get("nobody@b.com").status());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(300));
+    assertEquals(CustomerCache.Status.MISS, cache.get("a@b.com").status());
+    assertEquals(2L, (long) cache.stats().get("expirations"));
+    assertEquals(0.6, cache.hitRatio(), 1e-9);
+  }
+
+  @Test
+  public void lruEvictsTheLeastRecentlyUsed() {
+    CustomerCache cache = new CustomerCache(2, 300, 30, CustomerCache.Policy.LRU, now::get);
+    cache.put(customer("1"));
+    cache.put(customer("2"));
+    cache.get("1");
+    cache.put(customer("3"));
+
+    assertEquals(CustomerCache.Status.PRESENT, cache.get("1").status());
+    assertEquals(CustomerCache.Status.MISS, cache.get("2").status());
+    assertEquals(1L, (long) cache.stats().get("evictions"));
+  }
+
+  @Test
+  public void tinyLfuKeepsRegularsThroughAScan() {
+    CustomerCache cache = new CustomerCache(100, 300, 30, CustomerCache.Policy.TINY_LFU, now::get);
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.get("regular" + i).status() == CustomerCache.Status.MISS) {
+          cache.put(customer("regular" + i));
+        }
+      }
+    }
+    for (int i = 0; i < 1_000; i++) {
+      cache.putAbsent("once" + i);
+    }
+
+    for (int i = 0; i < 50; i++) {
+      assertEquals(CustomerCache.Status.PRESENT, cache.get("regular" + i).status());
+    }
+    assertEquals(100, cache.size());
+  }
+
+  @Test
+  public void orderReadsSkipTheProfileReadForUnknownCustomers() {
+    InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+    CustomerCache cache = new CustomerCache(10, 300, 30);
+    GetOrderHandler getOrder = new GetOrderHandler(dynamoDb.async(), cache);
+    GetAllOrdersHandler getAllOrders = new GetAllOrdersHandler(dynamoDb.async(), cache);
+
+    APIGatewayProxyResponseEvent first = getOrder.handleRequest(
+        query(Map.of("email", "nobody@b.com", "orderId", "1")), new TestContext());
+    assertEquals(404, first.getStatusCode().intValue());
+    assertEquals("Customer not found", first.getBody());
+    long calls = dynamoDb.callCount("GetItem") + dynamoDb.callCount("Query");
+
+    assertEquals(404, getAllOrders.handleRequest(query(Map.of("email", "nobody@b.com")), new TestContext())
+        .getStatusCode().intValue());
+    assertEquals(404, getOrder.handleRequest(
+        query(Map.of("email", "nobody@b.com", "orderId", "2")), new TestContext()).getStatusCode().intValue());
+    // One order read each, and no profile read
+    assertEquals(calls + 2, dynamoDb.callCount("GetItem") + dynamoDb.callCount("Query"));
+    assertEquals(2L, (long) cache.stats().get("negativeHits"));
+
+    // Signing up replaces the negative entry, and duplicates are answered from the cache
+    CreateCustomerHandler createCustomer = new CreateCustomerHandler(dynamoDb.async(), cache);
+    String body = "{\"email\":\"nobody@b.com\",\"firstName\":\"No\",\"lastName\":\"Body\"}";
+    assertEquals(201, createCustomer.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(body), new TestContext()).getStatusCode().intValue());
+    assertEquals(400, createCustomer.handleRequest(
+        new APIGatewayProxyRequestEvent().withBody(body), new TestContext()).getStatusCode().intValue());
+    assertEquals(1, dynamoDb.callCount("PutItem"));
+
+    APIGatewayProxyResponseEvent orders = getAllOrders.handleRequest(
+        query(Map.of("email", "nobody@b.com")), new TestContext());
+    assertEquals(200, orders.getStatusCode().intValue());
+    assertEquals("[]", orders.getBody());
+    assertEquals("Order not found", getOrder.handleRequest(
+        query(Map.of("email", "nobody@b.com", "orderId", "1")), new TestContext()).getBody());
+  }
+
+  @Test
+  public void ordersPlacedAfterANegativeEntryAreFound() {
+    InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+    CustomerCache cache = new CustomerCache(10, 300, 30);
+    GetOrderHandler getOrder = new GetOrderHandler(dynamoDb.async(), cache);
+    GetAllOrdersHandler getAllOrders = new GetAllOrdersHandler(dynamoDb.async(), cache);
+    assertEquals(404, getOrder.handleRequest(
+        query(Map.of("email", "guest@b.com", "orderId", "g1")), new TestContext()).getStatusCode().intValue());
+    assertEquals(CustomerCache.Status.ABSENT, cache.get("guest@b.com").status());
+
+    // Placed through another container, whose cache this one does not share
+    Map<String, AttributeValue> order = new HashMap<>(Keys.orderKey("guest@b.com", "g1"));
+    order.put("Status", AttributeValue.fromS("RECEIVED"));
+    order.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00.000Z"));
+    order.put("TotalPrice", AttributeValue.fromN("6.0"));
+    dynamoDb.putItem(PutItemRequest.builder().item(order).build());
+
+    APIGatewayProxyResponseEvent found = getOrder.handleRequest(
+        query(Map.of("email", "guest@b.com", "orderId", "g1", "fields", "status")), new TestContext());
+    assertEquals(200, found.getStatusCode().intValue());
+    assertEquals("{\"status\":\"RECEIVED\"}", found.getBody());
+    APIGatewayProxyResponseEvent orders = getAllOrders.handleRequest(
+        query(Map.of("email", "guest@b.com", "view", "summary")), new TestContext());
+    assertEquals(200, orders.getStatusCode().intValue());
+    assertTrue(orders.getBody().contains("\"g1\""));
+  }
+
+  @Test
+  public void zeroCapacityDisablesTheCache() {
+    CustomerCache cache = new CustomerCache(0, 300, 30);
+    cache.put(customer("a@b.com"));
+    assertSame(CustomerCache.Status.MISS, cache.get("a@b.com").status());
+    assertEquals(0, cache.size());
+  }
+
+  private static APIGatewayProxyRequestEvent query(Map<String, String> parameters) {
+    return new APIGatewayProxyRequestEvent().withQueryStringParameters(parameters);
+  }
+
+  private static Customer customer(String email) {
+    Customer customer = new Customer();
+    customer.setEmail(email);
+    customer.setFirstName("Ana");
+    return customer;
+  }
+}
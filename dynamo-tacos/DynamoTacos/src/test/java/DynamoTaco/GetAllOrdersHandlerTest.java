@@ -0,0 +1,132 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.GetAllOrdersHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+public class GetAllOrdersHandlerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final List<Map<String, AttributeValue>> orders = new ArrayList<>();
+  private final List<QueryRequest> queries = new ArrayList<>();
+
+  // Serves the customer's orders two at a time, the way DynamoDB splits pages at the 1 MB limit
+  private final DynamoDbClient dynamoDb = new DynamoDbClient() {
+    @Override
+    public QueryResponse query(QueryRequest request) {
+      queries.add(request);
+      int start = 0;
+      if (request.hasExclusiveStartKey()) {
+        String sk = request.exclusiveStartKey().get("SK").s();
+        while (!orders.get(start).get("SK").s().equals(sk)) {
+          start++;
+        }
+        start++;
+      }
+      int pageSize = request.limit() == null ? 2 : Math.min(2, request.limit());
+      int end = Math.min(orders.size(), start + pageSize);
+      QueryResponse.Builder response = QueryResponse.builder().items(orders.subList(start, end));
+      if (end < orders.size()) {
+        Map<String, AttributeValue> last = orders.get(end - 1);
+        response.lastEvaluatedKey(Map.of("PK", last.get("PK"), "SK", last.get("SK")));
+      }
+      return response.build();
+    }
+
+    @Override
+    public String serviceName() {
+      return "dynamodb";
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  private final GetAllOrdersHandler handler = new GetAllOrdersHandler(dynamoDb);
+
+  public GetAllOrdersHandlerTest() {
+    for (int i = 0; i < 5; i++) {
+      orders.add(Map.of(
+          "PK", AttributeValue.builder().s("CUSTOMER#a@b.com").build(),
+          "SK", AttributeValue.builder().s("ORDER#" + i).build(),
+          "OrderDate", AttributeValue.builder().s("2024-10-28T18:00:00Z").build(),
+          "TotalPrice", AttributeValue.builder().n("8.5").build(),
+          "Status", AttributeValue.builder().s("RECEIVED").build()));
+    }
+  }
+
+  @Test
+  public void followsEveryPageWhenNoLimitIsGiven() throws Exception {
+    APIGatewayProxyResponseEvent response = handler.handleRequest(request(Map.of("email", "a@b.com")), new TestContext());
+
+    assertEquals(200, response.getStatusCode().intValue());
+    assertEquals(5, MAPPER.readTree(response.getBody()).size());
+    assertEquals(3, queries.size());
+    assertFalse(response.getHeaders().containsKey(GetAllOrdersHandler.NEXT_CURSOR_HEADER));
+  }
+
+  @Test
+  public void walksPagesWithCursor() throws Exception {
+    List<String> ids = new ArrayList<>();
+    String cursor = null;
+    do {
+      Map<String, String> params = cursor == null
+          ? Map.of("email", "a@b.com", "limit", "2")
+          : Map.of("email", "a@b.com", "limit", "2", "cursor", cursor);
+      APIGatewayProxyResponseEvent response = handler.handleRequest(request(params), new TestContext());
+      for (JsonNode order : MAPPER.readTree(response.getBody())) {
+        ids.add(order.get("id").asText());
+      }
+      cursor = response.getHeaders().get(GetAllOrdersHandler.NEXT_CURSOR_HEADER);
+    } while (cursor != null);
+
+    assertEquals(List.of("0", "1", "2", "3", "4"), ids);
+  }
+
+  @Test
+  public void summaryViewProjectsOnlySummaryFields() throws Exception {
+    APIGatewayProxyResponseEvent response = handler.handleRequest(
+        request(Map.of("email", "a@b.com", "view", "summary", "limit", "1")), new TestContext());
+
+    JsonNode first = MAPPER.readTree(response.getBody()).get(0);
+    assertNotNull(queries.get(0).projectionExpression());
+    assertEquals("RECEIVED", first.get("status").asText());
+    assertEquals(8.5, first.get("totalPrice").asDouble(), 0.0);
+    assertNull(first.get("tacos"));
+    assertTrue(response.getHeaders().containsKey(GetAllOrdersHandler.NEXT_CURSOR_HEADER));
+  }
+
+  @Test
+  public void rejectsCursorFromAnotherCustomer() {
+    String cursor = dynamotaco.util.KeyCursor.encode(Map.of(
+        "PK", AttributeValue.builder().s("CUSTOMER#other@b.com").build(),
+        "SK", AttributeValue.builder().s("ORDER#1").build()));
+
+    APIGatewayProxyResponseEvent response = handler.handleRequest(
+        request(Map.of("email", "a@b.com", "cursor", cursor)), new TestContext());
+
+    assertEquals(400, response.getStatusCode().intValue());
+  }
+
+  private static APIGatewayProxyRequestEvent request(Map<String, String> params) {
+    return new APIGatewayProxyRequestEvent().withQueryStringParameters(params);
+  }
+}
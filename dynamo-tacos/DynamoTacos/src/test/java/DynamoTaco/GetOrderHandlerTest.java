@@ -0,0 +1,89 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.GetOrderHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.repository.Keys;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class GetOrderHandlerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final List<GetItemRequest> reads = new ArrayList<>();
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient() {
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+      reads.add(request);
+      return super.getItem(request);
+    }
+  };
+  private final GetOrderHandler handler = new GetOrderHandler(dynamoDb.async());
+
+  @Before
+  public void setUp() {
+    Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey("k@example.com", "a"));
+    item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00Z"));
+    item.put("TotalPrice", AttributeValue.fromN("8.5"));
+    item.put("Status", AttributeValue.fromS("RECEIVED"));
+    item.put("Tacos", AttributeValue.fromL(List.of(AttributeValue.fromM(Map.of(
+        "TacoId", AttributeValue.fromS("t1"),
+        "Name", AttributeValue.fromS("Carne Asada"),
+        "Price", AttributeValue.fromN("8.5"))))));
+    dynamoDb.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+  }
+
+  @Test
+  public void readsAndWritesOnlyTheRequestedFields() {
+    assertEquals("{\"status\":\"RECEIVED\"}", get("status").getBody());
+    assertEquals("PK, SK, #status", reads.get(0).projectionExpression());
+
+    assertEquals("{\"id\":\"a\",\"orderDate\":1730138400000,\"totalPrice\":8.5}",
+        get("totalPrice,orderDate,id").getBody());
+    assertEquals("PK, SK, OrderDate, TotalPrice", reads.get(1).projectionExpression());
+    assertNull(reads.get(1).expressionAttributeNames().get("#status"));
+  }
+
+  @Test
+  public void returnsTheWholeOrderWithoutOrWithBlankFields() throws Exception {
+    for (String fields : new String[]{null, " "}) {
+      JsonNode order = MAPPER.readTree(get(fields).getBody());
+      assertEquals("RECEIVED", order.get("status").asText());
+      assertEquals("Carne Asada", order.get("tacos").get(0).get("name").asText());
+    }
+    assertNull(reads.get(0).projectionExpression());
+    assertNull(reads.get(1).projectionExpression());
+  }
+
+  @Test
+  public void rejectsUnknownFieldsWithoutReading() {
+    APIGatewayProxyResponseEvent response = get("status,colour");
+    assertEquals(400, response.getStatusCode().intValue());
+    assertTrue(response.getBody().contains("colour"));
+    assertTrue(reads.isEmpty());
+  }
+
+  private APIGatewayProxyResponseEvent get(String fields) {
+    Map<String, String> query = new HashMap<>(Map.of("email", "k@example.com", "orderId", "a"));
+    if (fields != null) {
+      query.put("fields", fields);
+    }
+    return handler.handleRequest(new APIGatewayProxyRequestEvent().withQueryStringParameters(query), new TestContext());
+  }
+}
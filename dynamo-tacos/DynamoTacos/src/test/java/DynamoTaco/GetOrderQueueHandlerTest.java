@@ -0,0 +1,86 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.GetOrderQueueHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.repository.Keys;
+import dynamotaco.util.OrderDates;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class GetOrderQueueHandlerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+  private final GetOrderQueueHandler handler = new GetOrderQueueHandler(dynamoDb.async());
+
+  @Before
+  public void setUp() {
+    put("before", "2024-10-28T11:59:59.999Z");
+    put("on", "2024-10-28T12:00:00Z");
+    put("half", "2024-10-28T12:00:00.500Z");
+    put("after", "2024-10-28T12:00:01Z");
+  }
+
+  @Test
+  public void comparesBoundsWithAnOffsetInUtc() throws Exception {
+    // 13:00+01:00 is 12:00Z; as text it would sort after every order here
+    assertEquals(List.of("on", "half"), queue("2024-10-28T13:00:00+01:00", "2024-10-28T13:00:00.500+01:00"));
+    assertEquals(List.of("before"), queue(null, "2024-10-28T12:59:59.999+01:00"));
+  }
+
+  @Test
+  public void comparesFractionalSecondsByTime() throws Exception {
+    assertEquals(List.of("on", "half", "after"), queue("2024-10-28T12:00:00Z", null));
+    assertEquals(List.of("before", "on"), queue(null, "2024-10-28T12:00:00Z"));
+    // Sub-millisecond bounds round inwards to the stored precision
+    assertEquals(List.of("half"), queue("2024-10-28T12:00:00.0001Z", "2024-10-28T12:00:00.5009Z"));
+  }
+
+  @Test
+  public void rejectsBadBounds() {
+    assertEquals(400, handle("yesterday", null).getStatusCode().intValue());
+    assertEquals(400, handle("2024-10-28T12:00:01Z", "2024-10-28T13:00:00+02:00").getStatusCode().intValue());
+  }
+
+  private List<String> queue(String from, String to) throws Exception {
+    APIGatewayProxyResponseEvent response = handle(from, to);
+    assertEquals(response.getBody(), 200, response.getStatusCode().intValue());
+    List<String> ids = new ArrayList<>();
+    for (JsonNode entry : MAPPER.readTree(response.getBody())) {
+      ids.add(entry.get("id").asText());
+    }
+    return ids;
+  }
+
+  private APIGatewayProxyResponseEvent handle(String from, String to) {
+    Map<String, String> params = new HashMap<>();
+    if (from != null) {
+      params.put("from", from);
+    }
+    if (to != null) {
+      params.put("to", to);
+    }
+    return handler.handleRequest(new APIGatewayProxyRequestEvent().withQueryStringParameters(params), new TestContext());
+  }
+
+  private void put(String orderId, String orderDate) {
+    Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey("k@example.com", orderId));
+    item.put("OrderDate", AttributeValue.fromS(OrderDates.format(Instant.parse(orderDate))));
+    item.put("Status", AttributeValue.fromS("RECEIVED"));
+    dynamoDb.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+  }
+}
@@ -0,0 +1,111 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.api.GetAllOrdersHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.util.UlidGenerator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class IdGeneratorTest {
+
+  @Test
+  public void idsIncreaseAcrossThreads() throws Exception {
+    UlidGenerator generator = new UlidGenerator();
+    List<Future<List<String>>> workers = new ArrayList<>();
+    try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+      for (int w = 0; w < 4; w++) {
+        workers.add(executor.submit(() -> {
+          List<String> ids = new ArrayList<>();
+          for (int i = 0; i < 20_000; i++) {
+            ids.add(generator.next());
+          }
+          return ids;
+        }));
+      }
+    }
+
+    Set<String> all = new HashSet<>();
+    for (Future<List<String>> worker : workers) {
+      List<String> ids = worker.get();
+      for (int i = 1; i < ids.size(); i++) {
+        assertTrue(ids.get(i - 1) + " before " + ids.get(i), ids.get(i - 1).compareTo(ids.get(i)) < 0);
+      }
+      all.addAll(ids);
+    }
+    assertEquals(80_000, all.size());
+  }
+
+  @Test
+  public void sortsByTimeEvenWhenTheClockStepsBack() {
+    AtomicLong now = new AtomicLong(1_469_922_850_259L);
+    UlidGenerator generator = new UlidGenerator(now::get);
+
+    String first = generator.next();
+    now.set(1_469_922_850_000L);
+    String afterStepBack = generator.next();
+    now.set(1_469_922_851_000L);
+    String later = generator.next();
+
+    assertEquals(UlidGenerator.LENGTH, first.length());
+    assertEquals("01ARZ3NDEK", first.substring(0, 10));
+    assertEquals(1_469_922_850_259L, UlidGenerator.timestamp(first));
+    assertEquals(1_469_922_850_259L, UlidGenerator.timestamp(afterStepBack));
+    assertTrue(first.compareTo(afterStepBack) < 0);
+    assertTrue(afterStepBack.compareTo(later) < 0);
+    assertEquals(1_469_922_850_259L, UlidGenerator.timestamp("01ARZ3NDEKTSV4RRFFQ69G5FAV"));
+  }
+
+  @Test
+  public void generatorsSharingAMillisecondStartApart() {
+    // Two containers restored from one snapshot: same clock, same generator state
+    Set<String> counters = new HashSet<>();
+    Set<String> ids = new HashSet<>();
+    for (int i = 0; i < 8; i++) {
+      String id = new UlidGenerator(() -> 1_469_922_850_259L).next();
+      counters.add(id.substring(10, 14));
+      ids.add(id);
+    }
+    assertTrue(counters.size() > 1);
+    assertEquals(8, ids.size());
+  }
+
+  @Test
+  public void newestFirstReturnsTheLatestOrders() throws Exception {
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+    CreateOrderHandler create = new CreateOrderHandler(table.async(), PricingEngine.of(List.of()));
+    List<String> created = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      String body = create.handleRequest(new APIGatewayProxyRequestEvent()
+          .withBody("{\"customerId\":\"a@b.com\",\"status\":\"RECEIVED\"}"), new TestContext()).getBody();
+      created.add(body.replace("Order with ID ", "").replace(" created successfully.", ""));
+    }
+
+    APIGatewayProxyResponseEvent response = new GetAllOrdersHandler(table.async()).handleRequest(
+        new APIGatewayProxyRequestEvent().withQueryStringParameters(
+            Map.of("email", "a@b.com", "sort", "newest", "limit", "2")), new TestContext());
+
+    assertEquals(200, response.getStatusCode().intValue());
+    JsonNode orders = new ObjectMapper().readTree(response.getBody());
+    assertEquals(2, orders.size());
+    assertEquals(created.get(4), orders.get(0).get("id").asText());
+    assertEquals(created.get(3), orders.get(1).get("id").asText());
+    assertEquals(1, table.callCount("Query"));
+  }
+}
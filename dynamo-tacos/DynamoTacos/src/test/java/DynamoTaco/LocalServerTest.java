@@ -0,0 +1,120 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.server.LocalServer;
+import dynamotaco.stream.OrderChange;
+import dynamotaco.stream.OrderChangeSink;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class LocalServerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+  private final HttpClient http = HttpClient.newHttpClient();
+  private LocalServer server;
+
+  @Before
+  public void startServer() throws Exception {
+    dynamoDb.putItem(PutItemRequest.builder().item(Map.of(
+        "PK", AttributeValue.fromS("MENU"),
+        "SK", AttributeValue.fromS("TACO#001"),
+        "id", AttributeValue.fromS("001"),
+        "name", AttributeValue.fromS("Carne Asada"),
+        "price", AttributeValue.fromN("6.00"),
+        "foodItemType", AttributeValue.fromS("TACO"))).build());
+    server = LocalServer.withApiRoutes(dynamoDb.async(), 0).start();
+  }
+
+  @After
+  public void stopServer() {
+    server.close();
+  }
+
+  @Test
+  public void routesRequestsToTheHandlers() throws Exception {
+    HttpResponse<String> menu = send("GET", "/menu", null);
+    assertEquals(200, menu.statusCode());
+    assertEquals("Carne Asada", MAPPER.readTree(menu.body()).get(0).get("name").asText());
+
+    assertEquals(201, send("POST", "/customer",
+        "{\"email\":\"a@b.com\",\"firstName\":\"Ana\",\"lastName\":\"Bee\",\"phoneNumber\":\"555\"}").statusCode());
+    assertEquals(201, send("POST", "/order",
+        "{\"id\":\"o1\",\"customerId\":\"a@b.com\",\"status\":\"RECEIVED\",\"tacos\":[{\"menuItemId\":\"001\",\"name\":\"Carne Asada\",\"price\":1.0}]}").statusCode());
+
+    HttpResponse<String> order = send("GET", "/order?email=a%40b.com&orderId=o1", null);
+    assertEquals(200, order.statusCode());
+    // Priced from the menu, not from the price the client sent
+    assertEquals(6.0, MAPPER.readTree(order.body()).get("totalPrice").asDouble(), 0.0);
+
+    assertEquals(200, send("PUT", "/order", "{\"email\":\"a@b.com\",\"orderId\":\"o1\",\"status\":\"COMPLETED\"}").statusCode());
+    JsonNode orders = MAPPER.readTree(send("GET", "/orders?email=a@b.com&view=summary", null).body());
+    assertEquals(1, orders.size());
+    assertEquals("COMPLETED", orders.get(0).get("status").asText());
+  }
+
+  @Test
+  public void streamSinksRefreshTheCachesAfterWritesMadeElsewhere() throws Exception {
+    assertEquals(404, send("GET", "/orders?email=e@f.com", null).statusCode());
+    assertEquals(1, MAPPER.readTree(send("GET", "/menu", null).body()).size());
+
+    // Another process signs the customer up and adds a taco; only the stream tells this server
+    Map<String, AttributeValue> profile = Map.of("PK", AttributeValue.fromS("CUSTOMER#e@f.com"),
+        "SK", AttributeValue.fromS("PROFILE"), "Email", AttributeValue.fromS("e@f.com"));
+    Map<String, AttributeValue> taco = Map.of("PK", AttributeValue.fromS("MENU"), "SK", AttributeValue.fromS("TACO#002"),
+        "id", AttributeValue.fromS("002"), "name", AttributeValue.fromS("Al Pastor"),
+        "price", AttributeValue.fromN("7.00"), "foodItemType", AttributeValue.fromS("TACO"));
+    dynamoDb.putItem(PutItemRequest.builder().item(profile).build());
+    dynamoDb.putItem(PutItemRequest.builder().item(taco).build());
+    assertEquals(404, send("GET", "/orders?email=e@f.com", null).statusCode());
+
+    List<OrderChange> changes = List.of(
+        new OrderChange("1", OrderChange.Type.INSERT, Map.of("PK", profile.get("PK"), "SK", profile.get("SK")), null, null, null, null),
+        new OrderChange("2", OrderChange.Type.INSERT, Map.of("PK", taco.get("PK"), "SK", taco.get("SK")), null, null, null, null));
+    for (OrderChangeSink sink : server.streamSinks()) {
+      sink.accept(changes);
+    }
+    assertEquals(200, send("GET", "/orders?email=e@f.com", null).statusCode());
+    assertEquals(2, MAPPER.readTree(send("GET", "/menu", null).body()).size());
+  }
+
+  @Test
+  public void passesHeadersThroughAndRejectsUnknownRoutes() throws Exception {
+    String body = "{\"email\":\"c@d.com\",\"firstName\":\"Cy\",\"lastName\":\"Dee\",\"phoneNumber\":\"555\"}";
+    HttpRequest signup = HttpRequest.newBuilder(server.endpoint().resolve("/customer"))
+        .header("Idempotency-Key", "k1")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    assertEquals(201, http.send(signup, HttpResponse.BodyHandlers.ofString()).statusCode());
+    HttpResponse<String> retry = http.send(signup, HttpResponse.BodyHandlers.ofString());
+    assertEquals(201, retry.statusCode());
+    assertEquals("true", retry.headers().firstValue("Idempotent-Replayed").orElse(null));
+
+    assertEquals(404, send("GET", "/nowhere", null).statusCode());
+    HttpResponse<String> wrongMethod = send("DELETE", "/order", null);
+    assertEquals(405, wrongMethod.statusCode());
+    assertTrue(wrongMethod.headers().firstValue("Allow").orElse("").contains("GET"));
+  }
+
+  private HttpResponse<String> send(String method, String path, String body) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(server.endpoint() + path))
+        .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return http.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,91 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.cache.MenuCache;
+import dynamotaco.models.MenuItem;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class MenuCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger loads = new AtomicInteger();
+  private volatile String version = "1";
+
+  private final MenuCache.Loader loader = new MenuCache.Loader() {
+    @Override
+    public String version() {
+      return version;
+    }
+
+    @Override
+    public List<MenuItem> load() {
+      loads.incrementAndGet();
+      MenuItem item = new MenuItem();
+      item.setId("001");
+      item.setName("Carne Asada");
+      item.setPrice(6.0);
+      return List.of(item);
+    }
+  };
+
+  private final MenuCache cache = new MenuCache(loader, new ObjectMapper(), 60, 600, now::get);
+
+  @Test
+  public void servesFromCacheWithinTtl() {
+    assertEquals(MenuCache.Outcome.MISS, cache.lookup().outcome());
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    MenuCache.Result result = cache.lookup();
+
+    assertEquals(MenuCache.Outcome.HIT, result.outcome());
+    assertEquals(1, loads.get());
+    assertTrue(result.snapshot().json().contains("\"Carne Asada\""));
+    assertEquals(1L, (long) cache.stats().get("hits"));
+  }
+
+  @Test
+  public void skipsReloadWhenVersionUnchanged() {
+    MenuCache.Snapshot first = cache.get();
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1000));
+
+    MenuCache.Snapshot second = cache.get();
+
+    assertEquals(1, loads.get());
+    assertSame(first.json(), second.json());
+    assertEquals(1L, (long) cache.stats().get("unchangedRefreshes"));
+  }
+
+  @Test
+  public void reloadsWhenVersionChanges() {
+    cache.get();
+    version = "2";
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1000));
+
+    assertEquals("2", cache.get().version());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void servesStaleWhileRefreshingInBackground() throws Exception {
+    cache.get();
+    version = "2";
+    now.addAndGet(TimeUnit.SECONDS.toNanos(120));
+
+    MenuCache.Result stale = cache.lookup();
+    assertEquals(MenuCache.Outcome.STALE, stale.outcome());
+    assertEquals("1", stale.snapshot().version());
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!"2".equals(cache.get().version()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals("2", cache.get().version());
+  }
+}
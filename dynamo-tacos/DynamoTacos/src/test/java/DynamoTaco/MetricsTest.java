@@ -0,0 +1,115 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.GetOrderHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.metrics.Invocation;
+import dynamotaco.metrics.MeteredDynamoDbClient;
+import dynamotaco.metrics.Metrics;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class MetricsTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+  private final List<String> lines = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    Metrics.setEnabled(true);
+    Metrics.setSink(lines::add);
+    table.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(Map.of(
+        "PK", AttributeValue.fromS("CUSTOMER#a@b.com"),
+        "SK", AttributeValue.fromS("ORDER#1"),
+        "OrderDate", AttributeValue.fromS("2024-01-01T12:00:00Z"),
+        "TotalPrice", AttributeValue.fromN("6.5"),
+        "Status", AttributeValue.fromS("RECEIVED"))).build());
+  }
+
+  @After
+  public void tearDown() {
+    Metrics.setEnabled(false);
+    Metrics.setSink(System.out::println);
+    Metrics.setListener(invocation -> { });
+  }
+
+  @Test
+  public void writesOneEmbeddedMetricLinePerInvocation() throws Exception {
+    GetOrderHandler handler = new GetOrderHandler(new MeteredDynamoDbClient(table.async()));
+    Metrics.markColdStart();
+    APIGatewayProxyResponseEvent found = handler.handleRequest(request("1"), new TestContext());
+    long calls = table.callCount("GetItem") + table.callCount("Query");
+    handler.handleRequest(request("2"), new TestContext());
+
+    assertEquals(200, found.getStatusCode().intValue());
+    assertEquals(2, lines.size());
+    JsonNode first = MAPPER.readTree(lines.get(0));
+    JsonNode directive = first.get("_aws").get("CloudWatchMetrics").get(0);
+    assertEquals("DynamoTacos", directive.get("Namespace").asText());
+    assertEquals("Route", directive.get("Dimensions").get(0).get(0).asText());
+    Set<String> names = new HashSet<>();
+    directive.get("Metrics").forEach(metric -> names.add(metric.get("Name").asText()));
+    for (String name : List.of("Duration", "DynamoDbTime", "SerializeTime", "ItemBytes", "ReadCapacityUnits")) {
+      assertTrue(names.toString(), names.contains(name));
+      assertTrue(name, first.has(name));
+    }
+    assertFalse(names.contains("DeserializeTime"));
+
+    assertEquals("GetOrder", first.get("Route").asText());
+    assertEquals(200, first.get("StatusCode").asInt());
+    assertEquals(1, first.get("ColdStart").asInt());
+    assertEquals(calls, first.get("DynamoDbCalls").asLong());
+    assertTrue(first.get("ReadCapacityUnits").asDouble() >= 0.5);
+    assertEquals(1, first.get("Duration").get("Counts").get(0).asInt());
+
+    JsonNode second = MAPPER.readTree(lines.get(1));
+    assertEquals(404, second.get("StatusCode").asInt());
+    assertEquals(0, second.get("ColdStart").asInt());
+    assertFalse(second.has("ItemBytes"));
+  }
+
+  @Test
+  public void handsFinishedInvocationsToTheListener() {
+    List<Invocation> invocations = new ArrayList<>();
+    Metrics.setListener(invocations::add);
+    GetOrderHandler handler = new GetOrderHandler(new MeteredDynamoDbClient(table.async()));
+
+    handler.handleRequest(request("1"), new TestContext());
+
+    assertEquals(1, invocations.size());
+    assertEquals("GetOrder", invocations.get(0).route());
+    assertTrue(invocations.get(0).readUnits() >= 0.5);
+    assertEquals(0, invocations.get(0).writeUnits(), 0);
+  }
+
+  @Test
+  public void leavesRequestsAloneWhenDisabled() {
+    Metrics.setEnabled(false);
+    GetOrderHandler handler = new GetOrderHandler(new MeteredDynamoDbClient(table.async()));
+
+    assertEquals(200, handler.handleRequest(request("1"), new TestContext()).getStatusCode().intValue());
+    assertTrue(lines.isEmpty());
+  }
+
+  private static APIGatewayProxyRequestEvent request(String orderId) {
+    return new APIGatewayProxyRequestEvent()
+        .withQueryStringParameters(Map.of("email", "a@b.com", "orderId", orderId));
+  }
+}
@@ -0,0 +1,89 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.models.OrderField;
+import dynamotaco.util.OrderJsonCodec;
+import dynamotaco.util.TacoUtil;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class OrderJsonCodecTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void matchesPojoSerialization() throws Exception {
+    for (String date : List.of("2024-10-28T18:04:05.123456Z", "2024-02-29T00:00Z", "1999-12-31T23:59:59Z",
+        ZonedDateTime.now(ZoneOffset.UTC).toString(), "2024-10-28T18:04:05+02:00")) {
+      for (String price : List.of("6.0", "6.50", "12", "0.0001", "12345678.5", "-1.25")) {
+        Map<String, AttributeValue> item = order(date, price);
+        String expected = MAPPER.writeValueAsString(TacoUtil.mapToOrder(item));
+
+        assertEquals(date + " " + price, MAPPER.readTree(expected), MAPPER.readTree(OrderJsonCodec.writeOrder(item)));
+        assertEquals(expected, OrderJsonCodec.writeOrder(item));
+      }
+    }
+  }
+
+  @Test
+  public void writesOrdersWithoutLineItems() throws Exception {
+    Map<String, AttributeValue> item = Map.of(
+        "PK", AttributeValue.fromS("CUSTOMER#a@b.com"),
+        "SK", AttributeValue.fromS("ORDER#1"),
+        "OrderDate", AttributeValue.fromS("2024-10-28T18:04:05Z"),
+        "TotalPrice", AttributeValue.fromN("0.0"),
+        "Status", AttributeValue.fromS("CANCELLED"));
+
+    assertEquals(MAPPER.writeValueAsString(TacoUtil.mapToOrder(item)), OrderJsonCodec.writeOrders(List.of(item)).replaceAll("^\\[|\\]$", ""));
+  }
+
+  @Test
+  public void writesOnlyTheSelectedFields() throws Exception {
+    Map<String, AttributeValue> item = order("2024-10-28T18:04:05Z", "6.5");
+
+    assertEquals("{\"totalPrice\":6.5,\"status\":\"RECEIVED\"}",
+        OrderJsonCodec.writeOrder(item, EnumSet.of(OrderField.STATUS, OrderField.TOTAL_PRICE)));
+    assertEquals("{\"id\":\"42\",\"orderDate\":null}",
+        OrderJsonCodec.writeOrder(Map.of("SK", AttributeValue.fromS("ORDER#42")), EnumSet.of(OrderField.ID, OrderField.ORDER_DATE)));
+    assertEquals(OrderJsonCodec.writeOrder(item), OrderJsonCodec.writeOrder(item, OrderField.parse(null)));
+    assertEquals(MAPPER.readTree(OrderJsonCodec.writeOrder(item)).get("sideItems"),
+        MAPPER.readTree(OrderJsonCodec.writeOrder(item, OrderField.parse("sideItems"))).get("sideItems"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownFields() {
+    OrderField.parse("status,price");
+  }
+
+  private static Map<String, AttributeValue> order(String date, String price) {
+    Map<String, AttributeValue> topping = Map.of(
+        "ToppingId", AttributeValue.fromS("t1"),
+        "Name", AttributeValue.fromS("Queso \"Fresco\""),
+        "Price", AttributeValue.fromN(price));
+    Map<String, AttributeValue> taco = Map.of(
+        "TacoId", AttributeValue.fromS("taco1"),
+        "MenuItemId", AttributeValue.fromS("001"),
+        "Name", AttributeValue.fromS("Carne Asada"),
+        "Price", AttributeValue.fromN(price),
+        "Toppings", AttributeValue.fromL(List.of(AttributeValue.fromM(topping))));
+    Map<String, AttributeValue> side = Map.of(
+        "SideItemId", AttributeValue.fromS("s1"),
+        "Name", AttributeValue.fromS("Churros"),
+        "Price", AttributeValue.fromN("2.0"));
+    return Map.of(
+        "PK", AttributeValue.fromS("CUSTOMER#a@b.com"),
+        "SK", AttributeValue.fromS("ORDER#42"),
+        "OrderDate", AttributeValue.fromS(date),
+        "TotalPrice", AttributeValue.fromN(price),
+        "Status", AttributeValue.fromS("RECEIVED"),
+        "Tacos", AttributeValue.fromL(List.of(AttributeValue.fromM(taco))),
+        "SideItems", AttributeValue.fromL(List.of(AttributeValue.fromM(side))));
+  }
+}
@@ -0,0 +1,342 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.Customer;
+import dynamotaco.models.OrderField;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.CustomerRepository;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.NormalizedOrders;
+import dynamotaco.repository.OrderLayout;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+public class OrderRepositoryTest {
+
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+  private final OrderRepository orders = new OrderRepository(dynamoDb.async(), "TacoOrderingApp");
+  private final CustomerRepository customers = new CustomerRepository(dynamoDb.async(), "TacoOrderingApp");
+
+  @Test
+  public void savesAndFindsOrders() {
+    Futures.join(orders.save(order("a@b.com", "1")));
+
+    assertTrue(Futures.join(orders.find("a@b.com", "1")).isPresent());
+    assertFalse(Futures.join(orders.find("a@b.com", "2")).isPresent());
+  }
+
+  @Test
+  public void overlapsCustomerCheckAndOrderReads() {
+    Customer customer = new Customer();
+    customer.setEmail("a@b.com");
+    customer.setFirstName("Ana");
+    customer.setLastName("Bee");
+    customer.setPhoneNumber("555-0100");
+    Futures.join(customers.save(customer));
+    Futures.join(orders.save(order("a@b.com", "1")));
+
+    dynamoDb.withLatency(Duration.ofMillis(100));
+
+    long start = System.nanoTime();
+    CompletableFuture<Boolean> exists = customers.exists("a@b.com");
+    CompletableFuture<?> first = orders.find("a@b.com", "1");
+    CompletableFuture<?> missing = orders.find("a@b.com", "9");
+    CompletableFuture.allOf(exists, first, missing).join();
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertTrue(exists.join());
+    assertEquals(3, dynamoDb.callCount("GetItem"));
+    assertTrue("three 100 ms reads took " + elapsedMillis + " ms", elapsedMillis < 250);
+    assertFalse(Futures.join(customers.exists("nobody@b.com")));
+  }
+
+  @Test
+  public void pagesThroughCustomerOrders() {
+    for (int i = 0; i < 5; i++) {
+      Futures.join(orders.save(order("a@b.com", String.valueOf(i))));
+    }
+    Futures.join(orders.save(order("other@b.com", "x")));
+
+    List<String> ids = new ArrayList<>();
+    OrderRepository.Page page = Futures.join(orders.findByCustomer("a@b.com", 2, null, true));
+    while (true) {
+      page.items().forEach(item -> ids.add(item.get("SK").s()));
+      if (!page.hasMore()) {
+        break;
+      }
+      page = Futures.join(orders.findByCustomer("a@b.com", 2, page.lastEvaluatedKey(), true));
+    }
+
+    assertEquals(List.of("ORDER#0", "ORDER#1", "ORDER#2", "ORDER#3", "ORDER#4"), ids);
+    assertNull(Futures.join(orders.findByCustomer("a@b.com", 2, null, true)).items().get(0).get("Tacos"));
+  }
+
+  @Test
+  public void updatesStatusOnlyForExistingOrders() {
+    Futures.join(orders.save(order("a@b.com", "1")));
+
+    Map<String, AttributeValue> updated = Futures.join(orders.updateStatus("a@b.com", "1", OrderStatus.COMPLETED));
+    assertEquals("COMPLETED", updated.get("Status").s());
+
+    try {
+      Futures.join(orders.updateStatus("a@b.com", "2", OrderStatus.COMPLETED));
+      fail("Expected the condition to fail for a missing order");
+    } catch (ConditionalCheckFailedException expected) {
+      assertEquals(1, dynamoDb.itemCount());
+    }
+  }
+
+  @Test
+  public void keepsCompletedOrdersCompleted() {
+    Futures.join(orders.save(order("a@b.com", "1")));
+    Futures.join(orders.updateStatus("a@b.com", "1", OrderStatus.COMPLETED));
+
+    try {
+      Futures.join(orders.updateStatus("a@b.com", "1", OrderStatus.CANCELLED));
+      fail("Expected the condition to fail for a completed order");
+    } catch (ConditionalCheckFailedException expected) {
+      assertEquals(OrderStatus.COMPLETED, Futures.join(orders.currentStatus("a@b.com", "1")).orElseThrow());
+    }
+    try {
+      Futures.join(orders.updateStatus("a@b.com", "1", OrderStatus.RECEIVED));
+      fail("Expected RECEIVED to be rejected as a target");
+    } catch (IllegalArgumentException expected) {
+      assertEquals(2, dynamoDb.callCount("UpdateItem"));
+    }
+  }
+
+  @Test
+  public void savesAllThroughBatchWrites() {
+    InMemoryDynamoDbClient throttled = new InMemoryDynamoDbClient().withUnprocessedRate(0.3);
+    OrderRepository batchOrders = new OrderRepository(throttled.async(), "TacoOrderingApp", 4);
+    List<Map<String, AttributeValue>> items = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      items.add(order("c" + (i % 9) + "@b.com", String.valueOf(i)));
+    }
+
+    assertTrue(Futures.join(batchOrders.saveAll(items)).isEmpty());
+    assertEquals(120, throttled.itemCount());
+  }
+
+  @Test
+  public void pagesThroughTheQueueOldestFirst() {
+    saveQueue(orders);
+    assertEquals(List.of("ORDER#3", "ORDER#4", "ORDER#5", "ORDER#6", "ORDER#7"), queue(orders, 2));
+  }
+
+  @Test
+  public void shardedQueueMergesShardsInDateOrder() {
+    // Deployed without GSI1, as the template does when sharded
+    InMemoryDynamoDbClient shardedTable = new InMemoryDynamoDbClient().withoutIndex(OrderRepository.STATUS_INDEX);
+    OrderRepository sharded = new OrderRepository(shardedTable.async(), "TacoOrderingApp", 4, 4);
+
+    saveQueue(sharded);
+    assertEquals(List.of("ORDER#3", "ORDER#4", "ORDER#5", "ORDER#6", "ORDER#7"), queue(sharded, 2));
+    // Every shard was asked for every page instead of one hot status key
+    assertEquals(4 * 3, shardedTable.callCount("Query"));
+    assertEquals("RECEIVED#" + Math.floorMod("5".hashCode(), 4),
+        Futures.join(sharded.find("c5@b.com", "5")).orElseThrow().get(OrderRepository.STATUS_SHARD).s());
+
+    Futures.join(sharded.updateStatus("c5@b.com", "5", OrderStatus.COMPLETED));
+    assertEquals(List.of("ORDER#3", "ORDER#4", "ORDER#6", "ORDER#7"), queue(sharded, 10));
+    assertEquals(2, Futures.join(sharded.findByStatus(OrderStatus.COMPLETED, null, null, 10, null)).items().size());
+  }
+
+  @Test
+  public void shardedQueueWaitsForAShardCutShortByThePageSize() {
+    InMemoryDynamoDbClient shardedTable = new InMemoryDynamoDbClient().withoutIndex(OrderRepository.STATUS_INDEX);
+    OrderRepository sharded = new OrderRepository(shardedTable.async(), "TacoOrderingApp", 4, 2);
+    // Ids 0..9 alternate between the two shards; the even ones are large enough that their shard
+    // stops after four of them at the 1 MB page size, with order 8 still unread
+    for (int i = 0; i < 10; i++) {
+      Map<String, AttributeValue> item = order("c" + i + "@b.com", String.valueOf(i));
+      item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:0" + i + ":00Z"));
+      if (i % 2 == 0) {
+        item.put("Notes", AttributeValue.fromS("x".repeat(300 * 1024)));
+      }
+      Futures.join(sharded.save(item));
+    }
+
+    List<String> ids = new ArrayList<>();
+    OrderRepository.Page page = Futures.join(sharded.findByStatus(OrderStatus.RECEIVED, null, null, 100, null));
+    page.items().forEach(item -> ids.add(item.get("SK").s()));
+    // Order 7 and 9 come after where the cut-short shard stopped, so they wait for the next page
+    assertEquals(List.of("ORDER#0", "ORDER#1", "ORDER#2", "ORDER#3", "ORDER#4", "ORDER#5", "ORDER#6"), ids);
+    while (page.hasMore()) {
+      page = Futures.join(sharded.findByStatus(OrderStatus.RECEIVED, null, null, 100, page.lastEvaluatedKey()));
+      page.items().forEach(item -> ids.add(item.get("SK").s()));
+    }
+    assertEquals(10, ids.size());
+    assertEquals("ORDER#8", ids.get(8));
+  }
+
+  @Test
+  public void normalizedOrdersRoundTripInEitherWritePath() {
+    OrderRepository normalized = new OrderRepository(dynamoDb.async(), "TacoOrderingApp", 4, 0, OrderLayout.NORMALIZED);
+    Map<String, AttributeValue> small = cateringOrder("a@b.com", "small", 5);
+    Map<String, AttributeValue> large = cateringOrder("a@b.com", "large", 200);
+
+    Futures.join(normalized.save(small));
+    assertEquals(1, dynamoDb.callCount("TransactWriteItems"));
+    Futures.join(normalized.save(large));
+    assertEquals(1, dynamoDb.callCount("TransactWriteItems"));
+
+    assertEquals(small, Futures.join(normalized.find("a@b.com", "small")).orElseThrow());
+    assertEquals(large, Futures.join(normalized.find("a@b.com", "large")).orElseThrow());
+    // The order item itself no longer grows with the order
+    Map<String, AttributeValue> header = dynamoDb.getItem(GetItemRequest.builder()
+        .key(Keys.orderKey("a@b.com", "large")).build()).item();
+    assertNull(header.get("Tacos"));
+    assertTrue(NormalizedOrders.isNormalized(header));
+  }
+
+  @Test
+  public void normalizedLinesBelongToTheCustomersOrder() {
+    OrderRepository normalized = new OrderRepository(dynamoDb.async(), "TacoOrderingApp", 4, 0, OrderLayout.NORMALIZED);
+    Map<String, AttributeValue> mine = cateringOrder("a@b.com", "1", 6);
+    Map<String, AttributeValue> theirs = cateringOrder("c@d.com", "1", 3);
+    Map<String, AttributeValue> hashed = cateringOrder("a@b.com#1", "x", 3);
+    Futures.join(normalized.save(mine));
+    Futures.join(normalized.save(theirs));
+    Futures.join(normalized.save(hashed));
+
+    assertEquals(mine, Futures.join(normalized.find("a@b.com", "1")).orElseThrow());
+    assertEquals(theirs, Futures.join(normalized.find("c@d.com", "1")).orElseThrow());
+    assertEquals(hashed, Futures.join(normalized.find("a@b.com#1", "x")).orElseThrow());
+
+    // Posting the id again replaces the order rather than adding to it
+    Map<String, AttributeValue> shorter = cateringOrder("a@b.com", "1", 3);
+    Futures.join(normalized.save(shorter));
+    assertEquals(shorter, Futures.join(normalized.find("a@b.com", "1")).orElseThrow());
+    assertEquals(List.of(shorter),
+        Futures.join(normalized.findByCustomer("a@b.com", null, null, false)).items());
+  }
+
+  @Test
+  public void readsNestedAndNormalizedOrdersSideBySide() {
+    OrderRepository normalized = new OrderRepository(dynamoDb.async(), "TacoOrderingApp", 4, 0, OrderLayout.NORMALIZED);
+    Map<String, AttributeValue> nestedOrder = cateringOrder("a@b.com", "1", 3);
+    Map<String, AttributeValue> normalizedOrder = cateringOrder("a@b.com", "2", 3);
+    Futures.join(orders.save(nestedOrder));
+    assertTrue(Futures.join(normalized.saveAll(List.of(normalizedOrder))).isEmpty());
+
+    assertEquals(List.of(nestedOrder, normalizedOrder),
+        Futures.join(orders.findByCustomer("a@b.com", null, null, false)).items());
+    assertEquals(nestedOrder, Futures.join(normalized.find("a@b.com", "1")).orElseThrow());
+    assertEquals(normalizedOrder, Futures.join(orders.find("a@b.com", "2")).orElseThrow());
+
+    Futures.join(normalized.updateStatus("a@b.com", "2", OrderStatus.COMPLETED));
+    Map<String, AttributeValue> completed = Futures.join(normalized.find("a@b.com", "2")).orElseThrow();
+    assertEquals("COMPLETED", completed.get("Status").s());
+    assertEquals(normalizedOrder.get("Tacos"), completed.get("Tacos"));
+  }
+
+  @Test
+  public void readsOnlyTheSelectedFields() {
+    OrderRepository normalized = new OrderRepository(dynamoDb.async(), "TacoOrderingApp", 4, 0, OrderLayout.NORMALIZED);
+    Map<String, AttributeValue> order = cateringOrder("a@b.com", "1", 3);
+    Futures.join(normalized.save(order));
+    long queries = dynamoDb.callCount("Query");
+
+    Map<String, AttributeValue> polled = Futures.join(normalized.find("a@b.com", "1",
+        EnumSet.of(OrderField.STATUS, OrderField.TOTAL_PRICE))).orElseThrow();
+    assertEquals(Set.of("PK", "SK", "Status", "TotalPrice"), polled.keySet());
+    assertEquals(queries, dynamoDb.callCount("Query"));
+    assertFalse(Futures.join(normalized.find("a@b.com", "2", EnumSet.of(OrderField.STATUS))).isPresent());
+
+    Map<String, AttributeValue> tacos = Futures.join(normalized.find("a@b.com", "1", EnumSet.of(OrderField.TACOS))).orElseThrow();
+    assertEquals(order.get("Tacos"), tacos.get("Tacos"));
+    assertNull(tacos.get("TotalPrice"));
+  }
+
+  // Orders 0..9 received at 18:00..18:09, plus one completed order
+  private static void saveQueue(OrderRepository repository) {
+    for (int i = 9; i >= 0; i--) {
+      Map<String, AttributeValue> item = order("c" + i + "@b.com", String.valueOf(i));
+      item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:0" + i + ":00Z"));
+      Futures.join(repository.save(item));
+    }
+    Map<String, AttributeValue> done = order("done@b.com", "done");
+    done.put("Status", AttributeValue.fromS("COMPLETED"));
+    Futures.join(repository.save(done));
+  }
+
+  // The RECEIVED orders between 18:03 and 18:07, paged with the given limit
+  private static List<String> queue(OrderRepository repository, int limit) {
+    List<String> ids = new ArrayList<>();
+    OrderRepository.Page page = Futures.join(repository.findByStatus(OrderStatus.RECEIVED,
+        "2024-10-28T18:03:00Z", "2024-10-28T18:07:00Z", limit, null));
+    while (true) {
+      page.items().forEach(item -> {
+        assertNull(item.get("TotalPrice"));
+        ids.add(item.get("SK").s());
+      });
+      if (!page.hasMore()) {
+        break;
+      }
+      page = Futures.join(repository.findByStatus(OrderStatus.RECEIVED,
+          "2024-10-28T18:03:00Z", "2024-10-28T18:07:00Z", limit, page.lastEvaluatedKey()));
+    }
+    return ids;
+  }
+
+  private static Map<String, AttributeValue> order(String email, String orderId) {
+    Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey(email, orderId));
+    item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00Z"));
+    item.put("TotalPrice", AttributeValue.fromN("8.5"));
+    item.put("Status", AttributeValue.fromS("RECEIVED"));
+    item.put("Tacos", AttributeValue.fromL(List.of()));
+    return item;
+  }
+
+  // Two tacos with two toppings for every side item, shaped like CreateOrderHandler writes them
+  private static Map<String, AttributeValue> cateringOrder(String email, String orderId, int lines) {
+    Map<String, AttributeValue> item = order(email, orderId);
+    List<AttributeValue> tacos = new ArrayList<>();
+    List<AttributeValue> sides = new ArrayList<>();
+    for (int i = 0; i < lines; i++) {
+      if (i % 3 == 2) {
+        sides.add(AttributeValue.fromM(Map.of(
+            "SideItemId", AttributeValue.fromS(orderId + "-side-" + i),
+            "Name", AttributeValue.fromS("Chips"),
+            "Price", AttributeValue.fromN("2.0"),
+            "Quantity", AttributeValue.fromN("2"))));
+        continue;
+      }
+      List<AttributeValue> toppings = new ArrayList<>();
+      for (int t = 0; t < 2; t++) {
+        toppings.add(AttributeValue.fromM(Map.of(
+            "ToppingId", AttributeValue.fromS(orderId + "-topping-" + i + "-" + t),
+            "Name", AttributeValue.fromS(t == 0 ? "Cheese" : "Salsa"),
+            "Price", AttributeValue.fromN("0.25"))));
+      }
+      tacos.add(AttributeValue.fromM(Map.of(
+          "TacoId", AttributeValue.fromS(orderId + "-taco-" + (lines - i)),
+          "MenuItemId", AttributeValue.fromS("001"),
+          "Name", AttributeValue.fromS("Carne Asada " + i),
+          "Price", AttributeValue.fromN("6.0"),
+          "Toppings", AttributeValue.fromL(toppings))));
+    }
+    item.put("Tacos", AttributeValue.fromL(tacos));
+    item.put("SideItems", AttributeValue.fromL(sides));
+    return item;
+  }
+}
@@ -0,0 +1,104 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.MenuItem;
+import dynamotaco.models.Order;
+import dynamotaco.pricing.PriceIndex;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.pricing.PricingException;
+import dynamotaco.util.OrderRequestParser;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class OrderRequestParserTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Set<String> GENERATED = Set.of("TacoId", "ToppingId", "SideItemId", "OrderDate");
+
+  private final PricingEngine engine = PricingEngine.of(List.of(
+      menuItem(FoodItemType.TACO, "001", 6.0),
+      menuItem(FoodItemType.TACO, "003", 8.25),
+      menuItem(FoodItemType.TOPPING, "005", 0.5),
+      menuItem(FoodItemType.SIDE, "003", 2.0),
+      menuItem(FoodItemType.SIDE, "chips", 1.5)));
+
+  @Test
+  public void buildsTheSameItemAsThePojoPath() throws Exception {
+    String body = "{\"tacos\":["
+        + "{\"name\":\"Carne Asada\",\"price\":0.01,\"toppings\":[{\"menuItemId\":\"005\",\"name\":\"Queso\"}],\"menuItemId\":\"001\"},"
+        + "{\"menuItemId\":\"003\",\"name\":\"Al \\\"Pastor\\\"\",\"toppings\":[]},"
+        + "{\"menuItemId\":\"001\",\"name\":\"Plain\",\"toppings\":null}],"
+        + "\"sideItems\":[{\"menuItemId\":\"003\",\"name\":\"Rice\",\"quantity\":3},{\"menuItemId\":\"chips\",\"name\":\"Chips\"}],"
+        + "\"status\":\"RECEIVED\",\"totalPrice\":1.0,\"customerId\":\"a@b.com\",\"id\":\"42\"}";
+
+    OrderRequestParser.ParsedOrder parsed = OrderRequestParser.parse(body, engine.index());
+    Order order = MAPPER.readValue(body, Order.class);
+    long totalCents = engine.price(order);
+
+    assertEquals("42", parsed.orderId());
+    assertEquals("a@b.com", parsed.customerId());
+    assertEquals(600 + 50 + 825 + 600 + 3 * 200 + 150, parsed.totalCents());
+    assertEquals(totalCents, parsed.totalCents());
+    assertEquals(withoutGenerated(CreateOrderHandler.buildOrderItem("PK", "SK", order, totalCents)),
+        withoutGenerated(parsed.item("PK", "SK")));
+    assertFalse(parsed.item("PK", "SK").get("OrderDate").s().isEmpty());
+  }
+
+  @Test
+  public void rejectsUnknownFieldsAndLines() throws Exception {
+    PriceIndex prices = engine.index();
+    try {
+      OrderRequestParser.parse("{\"status\":\"RECEIVED\",\"coupon\":\"FREE\"}", prices);
+      fail("Expected an unknown field");
+    } catch (JsonParseException e) {
+      assertEquals("Unrecognized field \"coupon\"", e.getOriginalMessage());
+    }
+    try {
+      OrderRequestParser.parse("{\"status\":\"RECEIVED\",\"tacos\":[{\"menuItemId\":\"001\",\"toppings\":[{\"menuItemId\":\"009\"}]}]}", prices);
+      fail("Expected an unknown topping");
+    } catch (PricingException e) {
+      assertEquals("Unknown topping menuItemId 009", e.getMessage());
+    }
+    try {
+      OrderRequestParser.parse("{\"status\":\"RECEIVED\",\"sideItems\":[{\"menuItemId\":\"003\",\"quantity\":100}]}", prices);
+      fail("Expected a bad quantity");
+    } catch (PricingException e) {
+      assertEquals("Side item 003 quantity must be between 1 and 99", e.getMessage());
+    }
+  }
+
+  private static Map<String, AttributeValue> withoutGenerated(Map<String, AttributeValue> item) {
+    Map<String, AttributeValue> stripped = new HashMap<>();
+    item.forEach((name, value) -> {
+      if (GENERATED.contains(name)) {
+        return;
+      }
+      if (value.hasL()) {
+        value = AttributeValue.fromL(value.l().stream()
+            .map(element -> element.hasM() ? AttributeValue.fromM(withoutGenerated(element.m())) : element)
+            .toList());
+      }
+      stripped.put(name, value);
+    });
+    return stripped;
+  }
+
+  private static MenuItem menuItem(FoodItemType type, String id, double price) {
+    MenuItem item = new MenuItem();
+    item.setFoodItemType(type);
+    item.setId(id);
+    item.setPrice(price);
+    return item;
+  }
+}
@@ -0,0 +1,124 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import dynamotaco.stats.SalesDimension;
+import dynamotaco.stream.KitchenNotificationSink;
+import dynamotaco.stream.OrderChange;
+import dynamotaco.stream.OrderStreamHandler;
+import dynamotaco.stream.SalesAnalyticsSink;
+import dynamotaco.stream.StreamImages;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class OrderStreamHandlerTest {
+
+  @Test
+  public void decodesRecordedEventAndFansOutToSinks() throws Exception {
+    DynamodbEvent event;
+    try (InputStream in = Files.newInputStream(Path.of("../events/order_stream_event.json"))) {
+      event = StreamImages.readEvent(in);
+    }
+    List<String> notifications = new ArrayList<>();
+    SalesAnalyticsSink analytics = new SalesAnalyticsSink();
+    List<OrderChange> seen = new ArrayList<>();
+
+    StreamsEventResponse response = new OrderStreamHandler(
+        List.of(new KitchenNotificationSink(notifications::add), analytics, seen::addAll), 2)
+        .handleRequest(event, new TestContext());
+
+    assertTrue(response.getBatchItemFailures().isEmpty());
+    assertEquals(2, notifications.size());
+    assertTrue(notifications.get(1).startsWith("KITCHEN COMPLETED order 8c1f6a52"));
+    assertEquals(1L, (long) analytics.stats().get("ordersPlaced"));
+    assertEquals(850L, (long) analytics.stats().get("revenueCents"));
+    assertEquals(3, seen.size());
+    assertEquals("Carne Asada", seen.get(0).after().getTacos().get(0).getName());
+    assertFalse(seen.get(2).isOrder());
+  }
+
+  @Test
+  public void decodesNormalizedOrdersAndTheirLines() {
+    List<String> notifications = new ArrayList<>();
+    List<OrderChange> seen = new ArrayList<>();
+    OrderStreamHandler handler = new OrderStreamHandler(
+        List.of(new KitchenNotificationSink(notifications::add), seen::addAll), 100);
+
+    StreamsEventResponse response = handler.handleRequest(StreamEvents.normalizedOrderAndMenuItem(), new TestContext());
+
+    assertTrue(response.getBatchItemFailures().isEmpty());
+    assertEquals(List.of("KITCHEN NEW order n1 for k@example.com: 2 tacos, 1 sides"), notifications);
+    List<OrderChange.LineItem> lines = seen.stream().filter(OrderChange::isNewLineItem).map(OrderChange::line).toList();
+    assertEquals(List.of(
+        new OrderChange.LineItem(SalesDimension.TACO, "Al Pastor", 8.0, 1),
+        new OrderChange.LineItem(SalesDimension.TOPPING, "Cheese", 0.5, 1),
+        new OrderChange.LineItem(SalesDimension.TOPPING, "Salsa", 0.25, 1),
+        new OrderChange.LineItem(SalesDimension.TACO, "Carne Asada", 9.0, 1),
+        new OrderChange.LineItem(SalesDimension.SIDE, "Chips", 2.0, 2)), lines);
+    assertFalse(seen.get(seen.size() - 1).isOrder());
+    assertEquals(null, seen.get(seen.size() - 1).line());
+  }
+
+  @Test
+  public void reportsFirstRecordOfTheFailedMicroBatch() {
+    List<String> delivered = new ArrayList<>();
+    OrderStreamHandler handler = new OrderStreamHandler(List.of(changes -> {
+      if (changes.stream().anyMatch(change -> change.sequenceNumber().equals("6"))) {
+        throw new IllegalStateException("sink down");
+      }
+      changes.forEach(change -> delivered.add(change.sequenceNumber()));
+    }), 2);
+
+    StreamsEventResponse response = handler.handleRequest(event(8, -1), new TestContext());
+
+    // Records 5 and 6 share a micro-batch, so the checkpoint stops before 5 and 7-8 are left for the retry
+    assertEquals(List.of("1", "2", "3", "4"), delivered);
+    assertEquals(1, response.getBatchItemFailures().size());
+    assertEquals("5", response.getBatchItemFailures().get(0).getItemIdentifier());
+  }
+
+  @Test
+  public void deliversRecordsBeforeAnUndecodableOne() {
+    List<String> delivered = new ArrayList<>();
+    OrderStreamHandler handler = new OrderStreamHandler(
+        List.of(changes -> changes.forEach(change -> delivered.add(change.sequenceNumber()))), 10);
+
+    StreamsEventResponse response = handler.handleRequest(event(5, 3), new TestContext());
+
+    assertEquals(List.of("1", "2"), delivered);
+    assertEquals("3", response.getBatchItemFailures().get(0).getItemIdentifier());
+  }
+
+  // Order inserts numbered from 1; the record at position broken (1-based) has a malformed total
+  private static DynamodbEvent event(int records, int broken) {
+    List<DynamodbEvent.DynamodbStreamRecord> list = new ArrayList<>();
+    for (int i = 1; i <= records; i++) {
+      Map<String, AttributeValue> keys = Map.of(
+          "PK", new AttributeValue("CUSTOMER#a@b.com"),
+          "SK", new AttributeValue("ORDER#" + i));
+      Map<String, AttributeValue> image = new HashMap<>(keys);
+      image.put("OrderDate", new AttributeValue("2024-10-28T18:00:00Z"));
+      image.put("TotalPrice", new AttributeValue().withN(i == broken ? "not-a-number" : "8.5"));
+      image.put("Status", new AttributeValue("RECEIVED"));
+      DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+      record.setEventName("INSERT");
+      record.setDynamodb(new StreamRecord().withSequenceNumber(String.valueOf(i)).withKeys(keys).withNewImage(image));
+      list.add(record);
+    }
+    DynamodbEvent event = new DynamodbEvent();
+    event.setRecords(list);
+    return event;
+  }
+}
@@ -0,0 +1,179 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.MenuItem;
+import dynamotaco.models.Order;
+import dynamotaco.models.SideItem;
+import dynamotaco.models.Taco;
+import dynamotaco.models.Topping;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.pricing.PricingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class PricingEngineTest {
+
+  @Test
+  public void matchesTheReferenceTotalOnRandomOrders() {
+    Random random = new Random(42);
+    for (int round = 0; round < 200; round++) {
+      List<MenuItem> menu = randomMenu(random);
+      PricingEngine engine = PricingEngine.of(menu);
+      Order order = randomOrder(random, menu, 1 + random.nextInt(200));
+
+      long indexed = engine.totalCents(order);
+      long priced = engine.price(order);
+
+      // price() copied the menu prices onto the lines, so the reference sum now sees them
+      assertEquals(Math.round(clientTotal(order) * 100), indexed);
+      assertEquals(indexed, priced);
+      assertEquals(indexed, engine.totalCents(List.of(order))[0]);
+    }
+  }
+
+  @Test
+  public void keepsTheSameIdApartAcrossTypes() {
+    PricingEngine engine = PricingEngine.of(List.of(
+        menuItem(FoodItemType.TACO, "001", 6.0),
+        menuItem(FoodItemType.TOPPING, "001", 0.25),
+        menuItem(FoodItemType.SIDE, "001", 5.0),
+        menuItem(FoodItemType.SIDE, "chips", 2.5)));
+    Order order = new Order();
+    order.setTacos(List.of(taco("001", topping("001"))));
+    order.setSideItems(List.of(side("001", 2), side("chips", 0)));
+
+    assertEquals(600 + 25 + 2 * 500 + 250, engine.price(order));
+    assertEquals(1, order.getSideItems().get(1).getQuantity());
+    assertEquals(0.25, order.getTacos().get(0).getToppings().get(0).getPrice(), 0.0);
+  }
+
+  @Test
+  public void namesLinesFromTheMenu() {
+    MenuItem carneAsada = menuItem(FoodItemType.TACO, "001", 6.0);
+    carneAsada.setName("Carne Asada");
+    PricingEngine engine = PricingEngine.of(List.of(carneAsada, menuItem(FoodItemType.TOPPING, "002", 0.5)));
+    Taco taco = taco("001", topping("002"));
+    taco.setName("Free Taco");
+    taco.getToppings().get(0).setName("Salsa");
+    Order order = new Order();
+    order.setTacos(List.of(taco));
+
+    engine.price(order);
+    assertEquals("Carne Asada", taco.getName());
+    // A menu item without a name keeps the one sent
+    assertEquals("Salsa", taco.getToppings().get(0).getName());
+  }
+
+  @Test
+  public void rejectsUnknownItemsAndBadQuantities() {
+    PricingEngine engine = PricingEngine.of(List.of(
+        menuItem(FoodItemType.TACO, "001", 6.0), menuItem(FoodItemType.SIDE, "003", 3.0)));
+
+    Order unknownTopping = new Order();
+    unknownTopping.setTacos(List.of(taco("001", topping("001"))));
+    assertEquals(PricingEngine.UNPRICED, engine.totalCents(unknownTopping));
+    assertRejected(engine, unknownTopping, "Unknown topping menuItemId 001");
+
+    Order tooMany = new Order();
+    tooMany.setSideItems(List.of(side("003", PricingEngine.MAX_QUANTITY + 1)));
+    assertEquals(PricingEngine.UNPRICED, engine.totalCents(tooMany));
+    assertRejected(engine, tooMany, "Side item 003 quantity must be between 1 and 99");
+  }
+
+  private static void assertRejected(PricingEngine engine, Order order, String message) {
+    try {
+      engine.price(order);
+      fail("Expected " + message);
+    } catch (PricingException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+
+  private static List<MenuItem> randomMenu(Random random) {
+    List<MenuItem> menu = new ArrayList<>();
+    for (FoodItemType type : FoodItemType.values()) {
+      int count = 1 + random.nextInt(40);
+      for (int i = 0; i < count; i++) {
+        String id = random.nextInt(5) == 0 ? type + "-" + i : String.format("%03d", i);
+        menu.add(menuItem(type, id, random.nextInt(2000) / 100.0));
+      }
+    }
+    return menu;
+  }
+
+  private static Order randomOrder(Random random, List<MenuItem> menu, int lines) {
+    List<Taco> tacos = new ArrayList<>();
+    List<SideItem> sides = new ArrayList<>();
+    for (int i = 0; i < lines; i++) {
+      if (random.nextBoolean()) {
+        List<Topping> toppings = new ArrayList<>();
+        for (int t = random.nextInt(4); t > 0; t--) {
+          toppings.add(topping(pick(random, menu, FoodItemType.TOPPING)));
+        }
+        tacos.add(taco(pick(random, menu, FoodItemType.TACO), toppings.toArray(new Topping[0])));
+      } else {
+        // Quantity 1 keeps the per-line reference sum comparable
+        sides.add(side(pick(random, menu, FoodItemType.SIDE), random.nextBoolean() ? 0 : 1));
+      }
+    }
+    Order order = new Order();
+    order.setTacos(tacos);
+    order.setSideItems(sides);
+    return order;
+  }
+
+  private static String pick(Random random, List<MenuItem> menu, FoodItemType type) {
+    List<MenuItem> ofType = menu.stream().filter(item -> item.getFoodItemType() == type).toList();
+    return ofType.get(random.nextInt(ofType.size())).getId();
+  }
+
+  private static MenuItem menuItem(FoodItemType type, String id, double price) {
+    MenuItem item = new MenuItem();
+    item.setFoodItemType(type);
+    item.setId(id);
+    item.setPrice(price);
+    return item;
+  }
+
+  private static Taco taco(String menuItemId, Topping... toppings) {
+    Taco taco = new Taco();
+    taco.setMenuItemId(menuItemId);
+    // A client-sent price the engine must ignore
+    taco.setPrice(0.01);
+    taco.setToppings(List.of(toppings));
+    return taco;
+  }
+
+  private static Topping topping(String menuItemId) {
+    Topping topping = new Topping();
+    topping.setMenuItemId(menuItemId);
+    return topping;
+  }
+
+  private static SideItem side(String menuItemId, int quantity) {
+    SideItem side = new SideItem();
+    side.setMenuItemId(menuItemId);
+    side.setQuantity(quantity);
+    return side;
+  }
+
+  // The total of the prices on the lines, one of each side item, summed as doubles
+  private static double clientTotal(Order order) {
+    double total = 0;
+    for (Taco taco : order.getTacos() == null ? List.<Taco>of() : order.getTacos()) {
+      total += taco.getPrice();
+      for (Topping topping : taco.getToppings() == null ? List.<Topping>of() : taco.getToppings()) {
+        total += topping.getPrice();
+      }
+    }
+    for (SideItem side : order.getSideItems() == null ? List.<SideItem>of() : order.getSideItems()) {
+      total += side.getPrice();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,153 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.GetOrderHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.resilience.ResilientDynamoDbClient;
+import dynamotaco.resilience.TokenBucket;
+import dynamotaco.util.Futures;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class ResilientDynamoDbClientTest {
+
+  private static final Map<String, AttributeValue> KEY =
+      Map.of("PK", AttributeValue.fromS("CUSTOMER#a@b.com"), "SK", AttributeValue.fromS("PROFILE"));
+
+  private final InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+
+  @Test
+  public void retriesThrottledCallsUntilTheySucceed() {
+    table.withThrottleRate(0.3);
+    ResilientDynamoDbClient client = new ResilientDynamoDbClient(table.async())
+        .withMaxAttempts(20)
+        .withBackoff(Duration.ofMillis(1), Duration.ofMillis(5));
+
+    List<CompletableFuture<GetItemResponse>> reads = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      reads.add(client.getItem(GetItemRequest.builder().tableName("TacoOrderingApp").key(KEY).build()));
+    }
+    reads.forEach(Futures::join);
+
+    Map<String, Long> stats = client.stats();
+    assertTrue(stats.toString(), stats.get("retries") > 0);
+    assertEquals(stats.get("throttles"), stats.get("retries"));
+    assertEquals((long) stats.get("calls"), table.callCount("GetItem"));
+  }
+
+  @Test
+  public void returnsFailedConditionsWithoutRetrying() {
+    ResilientDynamoDbClient client = new ResilientDynamoDbClient(table.async());
+    PutItemRequest put = PutItemRequest.builder()
+        .tableName("TacoOrderingApp")
+        .item(KEY)
+        .conditionExpression("attribute_not_exists(PK)")
+        .build();
+    Futures.join(client.putItem(put));
+
+    try {
+      Futures.join(client.putItem(put));
+      fail("Expected the condition to fail");
+    } catch (ConditionalCheckFailedException e) {
+      assertEquals(2, table.callCount("PutItem"));
+    }
+  }
+
+  @Test
+  public void answersThrottledReadsWith503AfterTheLastAttempt() {
+    table.withThrottleRate(1.0);
+    ResilientDynamoDbClient client = new ResilientDynamoDbClient(table.async())
+        .withMaxAttempts(3)
+        .withBackoff(Duration.ofMillis(1), Duration.ofMillis(1));
+
+    try {
+      Futures.join(client.getItem(GetItemRequest.builder().tableName("TacoOrderingApp").key(KEY).build()));
+      fail("Expected the read to stay throttled");
+    } catch (ProvisionedThroughputExceededException e) {
+      assertEquals(3, table.callCount("GetItem"));
+    }
+
+    APIGatewayProxyResponseEvent response = new GetOrderHandler(client).handleRequest(
+        new APIGatewayProxyRequestEvent().withQueryStringParameters(Map.of("email", "a@b.com", "orderId", "1")),
+        new TestContext());
+    assertEquals(503, response.getStatusCode().intValue());
+    assertEquals("1", response.getHeaders().get("Retry-After"));
+  }
+
+  @Test
+  public void hedgesAReadSlowerThanTheUsualPercentile() {
+    AtomicInteger calls = new AtomicInteger();
+    DynamoDbAsyncClient stalling = new DynamoDbAsyncClient() {
+      @Override
+      public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        // The 201st request never answers, as if its connection had stalled
+        if (calls.incrementAndGet() == 201) {
+          return new CompletableFuture<>();
+        }
+        return CompletableFuture.completedFuture(GetItemResponse.builder().item(KEY).build());
+      }
+
+      @Override
+      public String serviceName() {
+        return "dynamodb";
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    ResilientDynamoDbClient client = new ResilientDynamoDbClient(stalling).withHedging(true);
+    GetItemRequest read = GetItemRequest.builder().tableName("TacoOrderingApp").key(KEY).build();
+    for (int i = 0; i < 200; i++) {
+      Futures.join(client.getItem(read));
+    }
+
+    assertEquals(KEY, client.getItem(read).orTimeout(5, TimeUnit.SECONDS).join().item());
+    assertEquals(1L, (long) client.stats().get("hedges"));
+
+    // Strongly consistent reads are never hedged
+    calls.set(200);
+    assertTrue(client.getItem(read.toBuilder().consistentRead(true).build())
+        .completeOnTimeout(null, 200, TimeUnit.MILLISECONDS).join() == null);
+  }
+
+  @Test
+  public void bucketMakesCallersWaitAndSlowsDownWhenThrottled() {
+    AtomicLong now = new AtomicLong();
+    TokenBucket bucket = new TokenBucket(100, 2, now::get);
+
+    assertEquals(0, bucket.reserve());
+    assertEquals(0, bucket.reserve());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), bucket.reserve());
+
+    bucket.onThrottle();
+    bucket.onThrottle();
+    assertEquals(70.0, bucket.rate(), 1e-9);
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    bucket.onThrottle();
+    assertEquals(49.0, bucket.rate(), 1e-9);
+    for (int i = 0; i < 100; i++) {
+      bucket.onSuccess();
+    }
+    assertEquals(100.0, bucket.rate(), 1e-9);
+  }
+}
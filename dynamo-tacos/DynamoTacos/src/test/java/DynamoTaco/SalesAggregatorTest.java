@@ -0,0 +1,239 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.GetStatsHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.StatsRepository;
+import dynamotaco.stats.Granularity;
+import dynamotaco.stats.Rollup;
+import dynamotaco.stats.SalesAggregator;
+import dynamotaco.stats.SalesDimension;
+import dynamotaco.stream.OrderStreamHandler;
+import dynamotaco.stream.SalesAnalyticsSink;
+import dynamotaco.stream.StreamImages;
+import dynamotaco.util.Futures;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+
+public class SalesAggregatorTest {
+
+  private static final long MIDNIGHT = Instant.parse("2024-10-28T00:00:00Z").toEpochMilli();
+
+  @Test
+  public void streamedOrdersAreServedFromRollups() throws Exception {
+    DynamodbEvent event;
+    try (InputStream in = Files.newInputStream(Path.of("../events/order_stream_event.json"))) {
+      event = StreamImages.readEvent(in);
+    }
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+    StatsRepository stats = new StatsRepository(table.async(), "TacoOrderingApp");
+    long now = Instant.parse("2024-10-28T18:06:30Z").toEpochMilli();
+    SalesAggregator aggregator = new SalesAggregator(stats, 0, () -> now);
+
+    new OrderStreamHandler(List.of(new SalesAnalyticsSink(aggregator)), 2).handleRequest(event, new TestContext());
+    Futures.join(aggregator.flush());
+
+    GetStatsHandler handler = new GetStatsHandler(stats, () -> now);
+    JsonNode hour = get(handler, Map.of("window", "HOUR"));
+    assertEquals("2024-10-28T18:00:00Z", hour.get("start").asText());
+    assertEquals(1, hour.get("orders").get("count").asLong());
+    assertEquals(8.5, hour.get("orders").get("revenue").asDouble(), 0);
+    assertEquals(1, hour.get("statuses").get("RECEIVED").get("count").asLong());
+    assertEquals(1, hour.get("statuses").get("COMPLETED").get("count").asLong());
+    assertEquals(6.0, hour.get("tacos").get("Carne Asada").get("revenue").asDouble(), 0);
+    assertEquals(1, hour.get("toppings").get("Guacamole").get("count").asLong());
+    assertEquals(1.5, hour.get("sides").get("Chips and Salsa").get("revenue").asDouble(), 0);
+
+    // The order was placed at 18:04 and completed when the stream delivered it, at 18:06
+    JsonNode lastTwoMinutes = get(handler, Map.of("last", "2"));
+    assertEquals("2024-10-28T18:05:00Z", lastTwoMinutes.get("start").asText());
+    assertEquals(0, lastTwoMinutes.get("orders").get("count").asLong());
+    assertEquals(1, lastTwoMinutes.get("statuses").get("COMPLETED").get("count").asLong());
+    JsonNode minute = get(handler, Map.of("window", "MINUTE", "start", "2024-10-28T18:04:59Z"));
+    assertEquals(1, minute.get("orders").get("count").asLong());
+
+    APIGatewayProxyResponseEvent invalid = handler.handleRequest(
+        new APIGatewayProxyRequestEvent().withQueryStringParameters(Map.of("last", "61")), new TestContext());
+    assertEquals(400, invalid.getStatusCode().intValue());
+  }
+
+  @Test
+  public void normalizedOrdersCountTheirLineItems() throws Exception {
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+    StatsRepository stats = new StatsRepository(table.async(), "TacoOrderingApp");
+    long now = Instant.parse("2024-10-28T18:00:30Z").toEpochMilli();
+    SalesAggregator aggregator = new SalesAggregator(stats, 0, () -> now);
+
+    StreamsEventResponse response = new OrderStreamHandler(List.of(new SalesAnalyticsSink(aggregator, true)), 100)
+        .handleRequest(StreamEvents.normalizedOrderAndMenuItem(), new TestContext());
+    assertTrue(response.getBatchItemFailures().isEmpty());
+
+    JsonNode hour = get(new GetStatsHandler(stats, () -> now), Map.of("window", "HOUR"));
+    assertEquals(1, hour.get("orders").get("count").asLong());
+    assertEquals(21.75, hour.get("orders").get("revenue").asDouble(), 0);
+    // The menu item shares a taco line's sort key but is not a sale
+    assertEquals(1, hour.get("tacos").get("Al Pastor").get("count").asLong());
+    assertEquals(9.0, hour.get("tacos").get("Carne Asada").get("revenue").asDouble(), 0);
+    assertEquals(0.25, hour.get("toppings").get("Salsa").get("revenue").asDouble(), 0);
+    assertEquals(2, hour.get("sides").get("Chips").get("count").asLong());
+    assertEquals(4.0, hour.get("sides").get("Chips").get("revenue").asDouble(), 0);
+  }
+
+  @Test
+  public void redeliveredStreamBatchesAreCountedOnce() throws Exception {
+    // 0: the transaction commits but its response is lost; 1: it fails before committing
+    AtomicInteger transactions = new AtomicInteger();
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient() {
+      @Override
+      public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+        int call = transactions.getAndIncrement();
+        if (call == 1) {
+          throw new IllegalStateException("throttled");
+        }
+        TransactWriteItemsResponse response = super.transactWriteItems(request);
+        if (call == 0) {
+          throw new IllegalStateException("connection reset");
+        }
+        return response;
+      }
+    };
+    StatsRepository stats = new StatsRepository(table.async(), "TacoOrderingApp");
+    long now = Instant.parse("2024-10-28T18:00:30Z").toEpochMilli();
+    SalesAggregator aggregator = new SalesAggregator(stats, 60_000, () -> now);
+    OrderStreamHandler handler = new OrderStreamHandler(List.of(new SalesAnalyticsSink(aggregator, true)), 100);
+    DynamodbEvent event = StreamEvents.normalizedOrderAndMenuItem();
+    List<DynamodbEvent.DynamodbStreamRecord> records = event.getRecords();
+
+    // The first delivery ends after the toppings; Lambda retries each batch from record 1
+    DynamodbEvent firstFour = new DynamodbEvent();
+    firstFour.setRecords(records.subList(0, 4));
+    assertEquals("1", handler.handleRequest(firstFour, new TestContext()).getBatchItemFailures().get(0).getItemIdentifier());
+    assertEquals("1", handler.handleRequest(event, new TestContext()).getBatchItemFailures().get(0).getItemIdentifier());
+    assertTrue(handler.handleRequest(event, new TestContext()).getBatchItemFailures().isEmpty());
+    // Delivered again after every rollup was written: nothing is added
+    assertTrue(handler.handleRequest(event, new TestContext()).getBatchItemFailures().isEmpty());
+    assertEquals(3, transactions.get());
+
+    JsonNode hour = get(new GetStatsHandler(stats, () -> now), Map.of("window", "HOUR"));
+    assertEquals(1, hour.get("orders").get("count").asLong());
+    assertEquals(21.75, hour.get("orders").get("revenue").asDouble(), 0);
+    assertEquals(1, hour.get("tacos").get("Al Pastor").get("count").asLong());
+    assertEquals(9.0, hour.get("tacos").get("Carne Asada").get("revenue").asDouble(), 0);
+    assertEquals(0.5, hour.get("toppings").get("Cheese").get("revenue").asDouble(), 0);
+    assertEquals(2, hour.get("sides").get("Chips").get("count").asLong());
+    assertEquals(0L, (long) aggregator.stats().get("rollupsPending"));
+  }
+
+  @Test
+  public void concurrentRecordingLosesNothing() throws Exception {
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+    StatsRepository stats = new StatsRepository(table.async(), "TacoOrderingApp");
+    AtomicLong clock = new AtomicLong(MIDNIGHT);
+    SalesAggregator aggregator = new SalesAggregator(stats, 0, clock::get);
+
+    AtomicBoolean recording = new AtomicBoolean(true);
+    List<Future<Long>> workers = new ArrayList<>();
+    try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+      for (int w = 0; w < 4; w++) {
+        workers.add(executor.submit(() -> {
+          long recorded = 0;
+          while (recording.get()) {
+            long at = clock.get() - (recorded % 3) * Granularity.MINUTE.millis();
+            aggregator.recordOrder(at, OrderStatus.RECEIVED, 250);
+            aggregator.recordLine(at, SalesDimension.TACO, "Taco " + recorded % 7, 2, 600);
+            recorded++;
+          }
+          return recorded;
+        }));
+      }
+      // Flush while recording, moving the clock so that buckets are dropped under the recorders
+      for (int i = 0; i < 8; i++) {
+        Thread.sleep(25);
+        clock.addAndGet(Granularity.MINUTE.millis());
+        Futures.join(aggregator.flush());
+      }
+      recording.set(false);
+    }
+    long recorded = 0;
+    for (Future<Long> worker : workers) {
+      recorded += worker.get();
+    }
+    Futures.join(aggregator.flush());
+    Futures.join(aggregator.flush());
+
+    long orders = 0;
+    long revenue = 0;
+    long tacos = 0;
+    for (long day = MIDNIGHT - Granularity.DAY.millis(); day <= clock.get(); day += Granularity.DAY.millis()) {
+      for (Rollup rollup : Futures.join(stats.find(Granularity.DAY, day))) {
+        if (rollup.dimension() == SalesDimension.ORDERS) {
+          orders += rollup.count();
+          revenue += rollup.revenueCents();
+        } else if (rollup.dimension() == SalesDimension.TACO) {
+          tacos += rollup.count();
+        }
+      }
+    }
+    assertTrue(recorded > 0);
+    assertEquals(recorded, orders);
+    assertEquals(recorded * 250, revenue);
+    assertEquals(recorded * 2, tacos);
+  }
+
+  @Test
+  public void failedWritesAreRetriedByTheNextFlush() {
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+    AtomicBoolean failing = new AtomicBoolean(true);
+    StatsRepository stats = new StatsRepository(table.async(), "TacoOrderingApp") {
+      @Override
+      public CompletableFuture<Void> add(Rollup delta) {
+        return failing.get() ? CompletableFuture.failedFuture(new IllegalStateException("throttled")) : super.add(delta);
+      }
+    };
+    SalesAggregator aggregator = new SalesAggregator(stats, 0, () -> MIDNIGHT);
+    aggregator.recordOrder(MIDNIGHT, OrderStatus.RECEIVED, 999);
+
+    Futures.join(aggregator.flush());
+    assertEquals(6L, (long) aggregator.stats().get("rollupsPending"));
+    assertTrue(Futures.join(stats.find(Granularity.DAY, MIDNIGHT)).isEmpty());
+
+    failing.set(false);
+    Futures.join(aggregator.flush());
+    assertEquals(0L, (long) aggregator.stats().get("rollupsPending"));
+    List<Rollup> day = Futures.join(stats.find(Granularity.DAY, MIDNIGHT));
+    assertEquals(2, day.size());
+    assertEquals(999, day.get(0).revenueCents());
+    assertEquals(6, table.callCount("UpdateItem"));
+  }
+
+  private static JsonNode get(GetStatsHandler handler, Map<String, String> query) throws Exception {
+    APIGatewayProxyResponseEvent response = handler.handleRequest(
+        new APIGatewayProxyRequestEvent().withQueryStringParameters(query), new TestContext());
+    assertEquals(200, response.getStatusCode().intValue());
+    return new ObjectMapper().readTree(response.getBody());
+  }
+}
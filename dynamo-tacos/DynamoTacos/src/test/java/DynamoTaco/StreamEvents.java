@@ -0,0 +1,74 @@
+package DynamoTaco;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.NormalizedOrders;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Stream events for a normalized order, as the table would send them.
+ */
+final class StreamEvents {
+
+  private StreamEvents() {
+  }
+
+  /**
+   * Order n1 of k@example.com: Al Pastor with Cheese and Salsa, Carne Asada, and two Chips. Its
+   * lines come first and the order item last, as the repository writes them, followed by a menu
+   * item that shares a taco line's sort key.
+   */
+  static DynamodbEvent normalizedOrderAndMenuItem() {
+    Map<String, AttributeValue> order = new HashMap<>(Keys.orderKey("k@example.com", "n1"));
+    order.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00.000Z"));
+    order.put("TotalPrice", AttributeValue.fromN("21.75"));
+    order.put("Status", AttributeValue.fromS("RECEIVED"));
+    order.put("Tacos", AttributeValue.fromL(List.of(
+        line("TacoId", "t1", "Al Pastor", "8.0", Map.of("Toppings", AttributeValue.fromL(List.of(
+            line("ToppingId", "p1", "Cheese", "0.5", Map.of()),
+            line("ToppingId", "p2", "Salsa", "0.25", Map.of()))))),
+        line("TacoId", "t2", "Carne Asada", "9.0", Map.of()))));
+    order.put("SideItems", AttributeValue.fromL(List.of(
+        line("SideItemId", "s1", "Chips", "2.0", Map.of("Quantity", AttributeValue.fromN("2"))))));
+
+    List<Map<String, AttributeValue>> items = NormalizedOrders.split(order);
+    List<Map<String, AttributeValue>> records = new ArrayList<>(items.subList(1, items.size()));
+    records.add(items.get(0));
+    records.add(Map.of("PK", AttributeValue.fromS("MENU"), "SK", AttributeValue.fromS("TACO#001"),
+        "Name", AttributeValue.fromS("Al Pastor")));
+    return inserts(records);
+  }
+
+  // One INSERT per item, numbered from 1; the items hold only strings and numbers
+  private static DynamodbEvent inserts(List<Map<String, AttributeValue>> items) {
+    List<DynamodbEvent.DynamodbStreamRecord> records = new ArrayList<>();
+    for (Map<String, AttributeValue> item : items) {
+      Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> image = new HashMap<>();
+      item.forEach((name, value) -> image.put(name, value.s() != null
+          ? new com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue(value.s())
+          : new com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue().withN(value.n())));
+      DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+      record.setEventName("INSERT");
+      record.setDynamodb(new StreamRecord().withSequenceNumber(String.valueOf(records.size() + 1))
+          .withKeys(Map.of("PK", image.get("PK"), "SK", image.get("SK"))).withNewImage(image));
+      records.add(record);
+    }
+    DynamodbEvent event = new DynamodbEvent();
+    event.setRecords(records);
+    return event;
+  }
+
+  private static AttributeValue line(String idAttribute, String id, String name, String price,
+      Map<String, AttributeValue> extra) {
+    Map<String, AttributeValue> line = new HashMap<>(extra);
+    line.put(idAttribute, AttributeValue.fromS(id));
+    line.put("Name", AttributeValue.fromS(name));
+    line.put("Price", AttributeValue.fromN(price));
+    return AttributeValue.fromM(line);
+  }
+}
@@ -0,0 +1,113 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.transfer.TableExporter;
+import dynamotaco.transfer.TableImporter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+public class TableTransferTest {
+
+  private static final String TABLE = "TacoOrderingApp";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void exportedTableImportsBackUnchanged() throws Exception {
+    InMemoryDynamoDbClient source = new InMemoryDynamoDbClient();
+    for (int i = 0; i < 3_000; i++) {
+      source.putItem(PutItemRequest.builder().tableName(TABLE).item(order(i)).build());
+    }
+    Path export = folder.newFolder("export").toPath();
+
+    TableExporter exporter = new TableExporter(source.async(), TABLE, 4);
+    assertEquals(3_000, exporter.export(export));
+    try (Stream<Path> files = Files.list(export)) {
+      assertEquals(4, files.count());
+    }
+
+    // Drop 30% of every batch so the import has to resend UnprocessedItems
+    InMemoryDynamoDbClient target = new InMemoryDynamoDbClient().withUnprocessedRate(0.3);
+    TableImporter importer = new TableImporter(target.async(), TABLE, 4, 0, 20, 1, 5);
+    assertEquals(3_000, importer.importFrom(export));
+
+    assertEquals(0L, (long) importer.stats().get("failed"));
+    assertTrue(importer.stats().get("retried") > 0);
+    assertEquals(items(source), items(target));
+  }
+
+  @Test(timeout = 30_000)
+  public void aCorruptFileStopsTheImport() throws Exception {
+    InMemoryDynamoDbClient source = new InMemoryDynamoDbClient();
+    for (int i = 0; i < 3_000; i++) {
+      source.putItem(PutItemRequest.builder().tableName(TABLE).item(order(i)).build());
+    }
+    Path export = folder.newFolder("export").toPath();
+    new TableExporter(source.async(), TABLE, 4).export(export);
+    // Sorts first, so its reader fails while the others still have most of their files to queue
+    Files.write(export.resolve("0000-corrupt.ndjson.gz"), new byte[] {0x1f, (byte) 0x8b, 8, 0, 1, 2, 3});
+
+    TableImporter importer = new TableImporter(new InMemoryDynamoDbClient().async(), TABLE, 1, 0);
+    try {
+      importer.importFrom(export);
+      fail("Expected the corrupt file to fail the import");
+    } catch (IOException e) {
+      assertTrue(importer.stats().get("written") < 3_000);
+    }
+  }
+
+  @Test
+  public void importsBatchWriteFiles() throws Exception {
+    InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+
+    long written = new TableImporter(table.async(), TABLE, 2, 100).importFrom(Path.of("../menuItems.json"));
+
+    assertTrue(written > 0);
+    assertEquals(written, table.itemCount());
+  }
+
+  private static Map<String, AttributeValue> order(int i) {
+    Map<String, AttributeValue> item = new HashMap<>();
+    item.put("PK", AttributeValue.fromS("CUSTOMER#c" + i % 300 + "@example.com"));
+    item.put("SK", AttributeValue.fromS("ORDER#" + i));
+    item.put("TotalPrice", AttributeValue.fromN("12.5"));
+    item.put("Status", AttributeValue.fromS("RECEIVED"));
+    item.put("Paid", AttributeValue.fromBool(i % 2 == 0));
+    item.put("Tags", AttributeValue.fromSs(List.of("lunch", "pickup")));
+    item.put("Lines", AttributeValue.fromB(SdkBytes.fromByteArray(new byte[] {1, 2, (byte) i})));
+    item.put("Tacos", AttributeValue.fromL(List.of(AttributeValue.fromM(Map.of(
+        "Name", AttributeValue.fromS("Carne Asada \"grande\""),
+        "Price", AttributeValue.fromN("6"),
+        "Note", AttributeValue.fromNul(true))))));
+    return item;
+  }
+
+  private static Map<String, Map<String, AttributeValue>> items(InMemoryDynamoDbClient table) {
+    Map<String, Map<String, AttributeValue>> items = new HashMap<>();
+    Map<String, AttributeValue> startKey = null;
+    do {
+      ScanResponse page = table.scan(ScanRequest.builder().tableName(TABLE).exclusiveStartKey(startKey).build());
+      page.items().forEach(item -> items.put(item.get("PK").s() + "|" + item.get("SK").s(), item));
+      startKey = page.hasLastEvaluatedKey() ? page.lastEvaluatedKey() : null;
+    } while (startKey != null);
+    return items;
+  }
+}
@@ -0,0 +1,52 @@
+package DynamoTaco;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+public class TestContext implements Context {
+
+  private static final LambdaLogger LOGGER = new LambdaLogger() {
+    @Override
+    public void log(String message) {
+    }
+
+    @Override
+    public void log(byte[] message) {
+    }
+  };
+
+  @Override
+  public String getAwsRequestId() { return "test"; }
+
+  @Override
+  public String getLogGroupName() { return "test"; }
+
+  @Override
+  public String getLogStreamName() { return "test"; }
+
+  @Override
+  public String getFunctionName() { return "test"; }
+
+  @Override
+  public String getFunctionVersion() { return "$LATEST"; }
+
+  @Override
+  public String getInvokedFunctionArn() { return "test"; }
+
+  @Override
+  public CognitoIdentity getIdentity() { return null; }
+
+  @Override
+  public ClientContext getClientContext() { return null; }
+
+  @Override
+  public int getRemainingTimeInMillis() { return 20_000; }
+
+  @Override
+  public int getMemoryLimitInMB() { return 512; }
+
+  @Override
+  public LambdaLogger getLogger() { return LOGGER; }
+}
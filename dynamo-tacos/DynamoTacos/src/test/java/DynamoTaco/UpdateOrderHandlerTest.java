@@ -0,0 +1,86 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.UpdateOrderHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.repository.Keys;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+public class UpdateOrderHandlerTest {
+
+  private final List<ReturnValue> returnValues = new ArrayList<>();
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient() {
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+      returnValues.add(request.returnValues());
+      return super.updateItem(request);
+    }
+  };
+  private final UpdateOrderHandler handler = new UpdateOrderHandler(dynamoDb.async());
+
+  @Before
+  public void setUp() {
+    put("a", "RECEIVED");
+    put("b", "RECEIVED");
+    put("c", "RECEIVED");
+    put("d", "RECEIVED");
+  }
+
+  @Test
+  public void returnsNothingUnlessFieldsAreRequested() {
+    assertEquals("\"success\"", update("a", "COMPLETED", null).getBody());
+    // A blank list names no fields, unlike on GET /order where it means all of them
+    assertEquals("\"success\"", update("b", "COMPLETED", "").getBody());
+    assertEquals(List.of(ReturnValue.NONE, ReturnValue.NONE), returnValues);
+  }
+
+  @Test
+  public void returnsOnlyTheRequestedFields() {
+    assertEquals("{\"id\":\"a\",\"status\":\"CANCELLED\"}", update("a", "CANCELLED", "id,status").getBody());
+    assertEquals("{\"orderDate\":1730138400000,\"status\":\"COMPLETED\"}",
+        update("b", "COMPLETED", "status,orderDate").getBody());
+    assertEquals("{\"id\":\"c\",\"totalPrice\":8.5}", update("c", "COMPLETED", "totalPrice, id").getBody());
+    // The key and the new status are all UPDATED_NEW returns; anything else needs the whole item
+    assertEquals(List.of(ReturnValue.UPDATED_NEW, ReturnValue.ALL_NEW, ReturnValue.ALL_NEW), returnValues);
+  }
+
+  @Test
+  public void rejectsLineItemsAndUnknownFieldsWithoutUpdating() {
+    APIGatewayProxyResponseEvent tacos = update("d", "COMPLETED", "status,tacos");
+    assertEquals(400, tacos.getStatusCode().intValue());
+    assertTrue(tacos.getBody().startsWith("An update returns only"));
+    assertEquals(400, update("d", "COMPLETED", "status,colour").getStatusCode().intValue());
+    assertTrue(returnValues.isEmpty());
+  }
+
+  private APIGatewayProxyResponseEvent update(String orderId, String status, String fields) {
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+        .withBody("{\"email\":\"k@example.com\",\"orderId\":\"" + orderId + "\",\"status\":\"" + status + "\"}");
+    if (fields != null) {
+      request.withQueryStringParameters(Map.of("fields", fields));
+    }
+    return handler.handleRequest(request, new TestContext());
+  }
+
+  private void put(String orderId, String status) {
+    Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey("k@example.com", orderId));
+    item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00Z"));
+    item.put("TotalPrice", AttributeValue.fromN("8.5"));
+    item.put("Status", AttributeValue.fromS(status));
+    dynamoDb.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+  }
+}
@@ -0,0 +1,150 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.UpdateOrderHandler;
+import dynamotaco.api.UpdateOrdersStatusHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.repository.Keys;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class UpdateOrdersStatusHandlerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+  private final UpdateOrdersStatusHandler handler = new UpdateOrdersStatusHandler(dynamoDb.async());
+
+  @Before
+  public void setUp() {
+    put("a", "RECEIVED");
+    put("b", "RECEIVED");
+    put("c", "RECEIVED");
+    put("done", "COMPLETED");
+  }
+
+  @Test
+  public void appliesAtomicUpdatesAllOrNone() throws Exception {
+    APIGatewayProxyResponseEvent rejected = handler.handleRequest(request(true,
+        update("a", "COMPLETED"), update("b", "COMPLETED"), update("done", "CANCELLED")), new TestContext());
+
+    assertEquals(409, rejected.getStatusCode().intValue());
+    JsonNode results = MAPPER.readTree(rejected.getBody());
+    assertEquals("ABORTED", results.get(0).get("outcome").asText());
+    assertEquals("ABORTED", results.get(1).get("outcome").asText());
+    assertEquals("CONFLICT", results.get(2).get("outcome").asText());
+    assertEquals("COMPLETED", results.get(2).get("status").asText());
+    assertEquals("RECEIVED", status("a"));
+
+    APIGatewayProxyResponseEvent bumped = handler.handleRequest(request(true,
+        update("a", "COMPLETED"), update("b", "COMPLETED"), update("c", "CANCELLED")), new TestContext());
+
+    assertEquals(200, bumped.getStatusCode().intValue());
+    assertEquals("COMPLETED", status("a"));
+    assertEquals("COMPLETED", status("b"));
+    assertEquals("CANCELLED", status("c"));
+    assertEquals(2, dynamoDb.callCount("TransactWriteItems"));
+    assertEquals(0, dynamoDb.callCount("UpdateItem"));
+  }
+
+  @Test
+  public void reportsEveryOrderWhenNotAtomic() throws Exception {
+    APIGatewayProxyResponseEvent response = handler.handleRequest(request(false,
+        update("a", "COMPLETED"),
+        update("done", "CANCELLED"),
+        update("missing", "COMPLETED"),
+        "{\"email\":\"k@example.com\",\"orderId\":\"b\",\"status\":\"RECEIVED\",\"expectedStatus\":\"COMPLETED\"}",
+        update("a", "CANCELLED"),
+        update("c", "COMPLETED")), new TestContext());
+
+    assertEquals(207, response.getStatusCode().intValue());
+    JsonNode results = MAPPER.readTree(response.getBody());
+    assertEquals(6, results.size());
+    assertEquals("UPDATED", results.get(0).get("outcome").asText());
+    assertEquals("COMPLETED", results.get(0).get("status").asText());
+    assertEquals("CONFLICT", results.get(1).get("outcome").asText());
+    assertEquals("COMPLETED", results.get(1).get("status").asText());
+    assertEquals("NOT_FOUND", results.get(2).get("outcome").asText());
+    assertEquals("INVALID", results.get(3).get("outcome").asText());
+    assertEquals("INVALID", results.get(4).get("outcome").asText());
+    assertEquals("UPDATED", results.get(5).get("outcome").asText());
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals(i, results.get(i).get("index").asInt());
+    }
+    assertEquals("RECEIVED", status("b"));
+    assertEquals("COMPLETED", status("c"));
+  }
+
+  @Test
+  public void rejectsAtomicRequestsWithInvalidUpdates() throws Exception {
+    APIGatewayProxyResponseEvent response = handler.handleRequest(request(true,
+        update("a", "COMPLETED"), update("b", "RECEIVED")), new TestContext());
+
+    assertEquals(400, response.getStatusCode().intValue());
+    JsonNode results = MAPPER.readTree(response.getBody());
+    assertEquals("ABORTED", results.get(0).get("outcome").asText());
+    assertEquals("INVALID", results.get(1).get("outcome").asText());
+    assertEquals(0, dynamoDb.callCount("TransactWriteItems"));
+    assertEquals("RECEIVED", status("a"));
+  }
+
+  @Test
+  public void singleUpdatesFollowTheStateMachine() {
+    UpdateOrderHandler single = new UpdateOrderHandler(dynamoDb.async());
+
+    assertEquals(409, single.handleRequest(new APIGatewayProxyRequestEvent().withBody(update("done", "RECEIVED")),
+        new TestContext()).getStatusCode().intValue());
+    assertEquals(409, single.handleRequest(new APIGatewayProxyRequestEvent().withBody(update("done", "CANCELLED")),
+        new TestContext()).getStatusCode().intValue());
+    assertEquals(404, single.handleRequest(new APIGatewayProxyRequestEvent().withBody(update("missing", "COMPLETED")),
+        new TestContext()).getStatusCode().intValue());
+    assertEquals(200, single.handleRequest(new APIGatewayProxyRequestEvent().withBody(update("a", "COMPLETED")),
+        new TestContext()).getStatusCode().intValue());
+    assertEquals("COMPLETED", status("done"));
+  }
+
+  @Test
+  public void limitsTheNumberOfUpdates() {
+    String[] updates = new String[101];
+    for (int i = 0; i < updates.length; i++) {
+      updates[i] = update("o" + i, "COMPLETED");
+    }
+
+    assertEquals(400, handler.handleRequest(request(true, updates), new TestContext()).getStatusCode().intValue());
+    APIGatewayProxyResponseEvent parallel = handler.handleRequest(request(false, updates), new TestContext());
+    assertEquals(207, parallel.getStatusCode().intValue());
+    assertTrue(parallel.getBody().contains("NOT_FOUND"));
+  }
+
+  private static APIGatewayProxyRequestEvent request(boolean atomic, String... updates) {
+    return new APIGatewayProxyRequestEvent()
+        .withBody("{\"atomic\":" + atomic + ",\"updates\":[" + String.join(",", updates) + "]}");
+  }
+
+  private static String update(String orderId, String status) {
+    return "{\"email\":\"k@example.com\",\"orderId\":\"" + orderId + "\",\"status\":\"" + status + "\"}";
+  }
+
+  private void put(String orderId, String status) {
+    Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey("k@example.com", orderId));
+    item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00Z"));
+    item.put("Status", AttributeValue.fromS(status));
+    dynamoDb.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+  }
+
+  private String status(String orderId) {
+    return dynamoDb.getItem(GetItemRequest.builder()
+        .key(Keys.orderKey("k@example.com", orderId)).build()).item().get("Status").s();
+  }
+}
@@ -0,0 +1,150 @@
+package DynamoTaco;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.UpdateOrderHandler;
+import dynamotaco.api.WaitOrderStatusHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.repository.Keys;
+import dynamotaco.stream.OrderStatusBroadcaster;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+public class WaitOrderStatusHandlerTest {
+
+  private final InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient();
+  private final OrderStatusBroadcaster broadcaster = new OrderStatusBroadcaster();
+  private final WaitOrderStatusHandler handler = new WaitOrderStatusHandler(dynamoDb.async(), broadcaster, Duration.ZERO);
+  private final UpdateOrderHandler updates = new UpdateOrderHandler(dynamoDb.async(), broadcaster);
+
+  @Before
+  public void setUp() {
+    put("a", "RECEIVED");
+    put("done", "COMPLETED");
+  }
+
+  @Test
+  public void wakesWaitersWithoutReadingAgain() throws Exception {
+    CompletableFuture<APIGatewayProxyResponseEvent> waiting = poll("a", "RECEIVED", "10");
+    awaitWaiting(1);
+    assertEquals(1, dynamoDb.callCount("GetItem"));
+
+    updates.handleRequest(new APIGatewayProxyRequestEvent().withBody(
+        "{\"email\":\"k@example.com\",\"orderId\":\"a\",\"status\":\"COMPLETED\"}"), new TestContext());
+
+    APIGatewayProxyResponseEvent response = waiting.get();
+    assertEquals(200, response.getStatusCode().intValue());
+    assertEquals("{\"id\":\"a\",\"status\":\"COMPLETED\"}", response.getBody());
+    assertEquals(1, dynamoDb.callCount("GetItem"));
+    assertEquals(0, broadcaster.waiting());
+    assertEquals(1L, (long) broadcaster.stats().get("woken"));
+  }
+
+  @Test
+  public void answersAtOnceWhenTheStatusAlreadyMoved() throws Exception {
+    assertEquals("{\"id\":\"done\",\"status\":\"COMPLETED\"}", poll("done", "RECEIVED", "10").get().getBody());
+    assertEquals("{\"id\":\"a\",\"status\":\"RECEIVED\"}", poll("a", null, null).get().getBody());
+    assertEquals(0, broadcaster.waiting());
+  }
+
+  @Test
+  public void answersWithTheSameStatusWhenTheWaitIsOver() throws Exception {
+    long start = System.nanoTime();
+    APIGatewayProxyResponseEvent response = poll("a", "RECEIVED", "1").get();
+
+    assertEquals("{\"id\":\"a\",\"status\":\"RECEIVED\"}", response.getBody());
+    assertTrue(System.nanoTime() - start >= 1_000_000_000L);
+    assertEquals(0, broadcaster.waiting());
+  }
+
+  @Test
+  public void rechecksForUpdatesMadeElsewhere() throws Exception {
+    List<Boolean> consistentReads = new CopyOnWriteArrayList<>();
+    DynamoDbAsyncClient reads = new DynamoDbAsyncClient() {
+      @Override
+      public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        consistentReads.add(Boolean.TRUE.equals(request.consistentRead()));
+        return dynamoDb.async().getItem(request);
+      }
+
+      @Override
+      public String serviceName() {
+        return "dynamodb";
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    WaitOrderStatusHandler rechecking = new WaitOrderStatusHandler(reads, broadcaster, Duration.ofMillis(50));
+    CompletableFuture<APIGatewayProxyResponseEvent> waiting = CompletableFuture.supplyAsync(
+        () -> rechecking.handleRequest(request("a", "RECEIVED", "10"), new TestContext()));
+    awaitWaiting(1);
+
+    // Another process: nothing is published here
+    put("a", "CANCELLED");
+
+    assertEquals("{\"id\":\"a\",\"status\":\"CANCELLED\"}", waiting.get().getBody());
+    // Only the read made on subscribing is consistent
+    assertTrue(consistentReads.size() > 1);
+    assertEquals(true, consistentReads.get(0));
+    assertFalse(consistentReads.subList(1, consistentReads.size()).contains(true));
+  }
+
+  @Test
+  public void rejectsBadRequestsAndTooManyWaiters() throws Exception {
+    assertEquals(404, poll("missing", "RECEIVED", "10").get().getStatusCode().intValue());
+    assertEquals(400, poll("a", "READY", "10").get().getStatusCode().intValue());
+    assertEquals(400, poll("a", "RECEIVED", "600").get().getStatusCode().intValue());
+
+    WaitOrderStatusHandler full = new WaitOrderStatusHandler(dynamoDb.async(), new OrderStatusBroadcaster(0), Duration.ZERO);
+    APIGatewayProxyResponseEvent response = full.handleRequest(request("a", "RECEIVED", "10"), new TestContext());
+    assertEquals(503, response.getStatusCode().intValue());
+    assertEquals("1", response.getHeaders().get("Retry-After"));
+  }
+
+  private CompletableFuture<APIGatewayProxyResponseEvent> poll(String orderId, String since, String wait) {
+    return CompletableFuture.supplyAsync(() -> handler.handleRequest(request(orderId, since, wait), new TestContext()));
+  }
+
+  private static APIGatewayProxyRequestEvent request(String orderId, String since, String wait) {
+    Map<String, String> params = new HashMap<>(Map.of("email", "k@example.com", "orderId", orderId));
+    if (since != null) {
+      params.put("since", since);
+    }
+    if (wait != null) {
+      params.put("wait", wait);
+    }
+    return new APIGatewayProxyRequestEvent().withQueryStringParameters(params);
+  }
+
+  // Each waiter subscribes and then reads the status once
+  private void awaitWaiting(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while ((broadcaster.waiting() < count || dynamoDb.callCount("GetItem") < count) && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+
+  private void put(String orderId, String status) {
+    Map<String, AttributeValue> item = new HashMap<>(Keys.orderKey("k@example.com", orderId));
+    item.put("OrderDate", AttributeValue.fromS("2024-10-28T18:00:00Z"));
+    item.put("Status", AttributeValue.fromS(status));
+    dynamoDb.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+  }
+}
@@ -0,0 +1,96 @@
+package dynamotaco.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file ({@code -rf json}) with a baseline: score and, when the run used
+ * {@code -prof gc}, bytes allocated per operation, for every benchmark and parameter combination
+ * in both. Changes beyond {@code report.threshold} (default 0.10) in the slower direction are
+ * marked {@code REGRESSION}, and then the exit code is 1.
+ *
+ * <pre>
+ * java -jar DynamoTacosBenchmarks/target/benchmarks.jar "HandlerBenchmark|OrderMappingBenchmark" -prof gc -rf json -rff current.json
+ * java -cp DynamoTacosBenchmarks/target/benchmarks.jar dynamotaco.bench.BaselineDiff DynamoTacosBenchmarks/baseline/handlers.json current.json
+ * </pre>
+ */
+public class BaselineDiff {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    record Result(String mode, double score, String unit, double bytesPerOp) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: BaselineDiff <baseline.json> <current.json>");
+            System.exit(2);
+        }
+        double threshold = Double.parseDouble(System.getProperty("report.threshold", "0.10"));
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %12s %12s %8s %12s %12s %8s%n",
+                "benchmark", "baseline", "current", "change", "B/op before", "B/op now", "change");
+        for (Map.Entry<String, Result> entry : new TreeMap<>(current).entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result now = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-70s %12s %12.3f %8s%n", entry.getKey(), "-", now.score(), "new");
+                continue;
+            }
+            // Higher is better for throughput, lower for every time mode
+            double change = now.score() / before.score() - 1;
+            double slower = now.mode().equals("thrpt") ? -change : change;
+            double allocationChange = before.bytesPerOp() > 0 && now.bytesPerOp() >= 0
+                    ? now.bytesPerOp() / before.bytesPerOp() - 1
+                    : Double.NaN;
+            boolean regression = slower > threshold || allocationChange > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-70s %12.3f %12.3f %+7.1f%% %12s %12s %8s%s%n", entry.getKey(),
+                    before.score(), now.score(), change * 100,
+                    bytes(before.bytesPerOp()), bytes(now.bytesPerOp()),
+                    Double.isNaN(allocationChange) ? "" : String.format("%+.1f%%", allocationChange * 100),
+                    regression ? "  REGRESSION" : "");
+        }
+        baseline.keySet().stream()
+                .filter(key -> !current.containsKey(key))
+                .forEach(key -> System.out.printf("%-70s %12.3f %12s %8s%n", key, baseline.get(key).score(), "-", "missing"));
+
+        System.out.printf("%d regression(s) beyond %.0f%%%n", regressions, threshold * 100);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, Result> read(File file) throws Exception {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText()
+                    .replaceFirst("^dynamotaco\\.bench\\.", ""));
+            JsonNode params = run.get("params");
+            if (params != null) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            JsonNode primary = run.get("primaryMetric");
+            JsonNode allocation = run.path("secondaryMetrics").path(ALLOCATION);
+            results.put(key.toString(), new Result(run.get("mode").asText(), primary.get("score").asDouble(),
+                    primary.get("scoreUnit").asText(), allocation.isMissingNode() ? -1 : allocation.get("score").asDouble()));
+        }
+        return results;
+    }
+
+    private static String bytes(double bytesPerOp) {
+        return bytesPerOp < 0 ? "-" : String.format("%.0f", bytesPerOp);
+    }
+}
@@ -0,0 +1,71 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.api.CreateOrdersBatchHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders per second when a client submits {@value #ORDERS} orders one {@code POST /order} at a
+ * time versus one {@code POST /orders/batch}. The in-memory table charges {@code latencyMillis}
+ * per DynamoDB call and leaves 5% of batch items unprocessed so the retry path is exercised.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchIngestionBenchmark {
+
+    static final int ORDERS = 100;
+
+    @Param({"0", "5"})
+    public int latencyMillis;
+
+    private CreateOrderHandler singleHandler;
+    private CreateOrdersBatchHandler batchHandler;
+    private List<APIGatewayProxyRequestEvent> singleRequests;
+    private APIGatewayProxyRequestEvent batchRequest;
+    private final BenchContext context = new BenchContext();
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient()
+                .withLatency(Duration.ofMillis(latencyMillis))
+                .withUnprocessedRate(0.05);
+        singleHandler = new CreateOrderHandler(dynamoDb.async());
+        batchHandler = new CreateOrdersBatchHandler(dynamoDb.async());
+
+        singleRequests = new ArrayList<>();
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < ORDERS; i++) {
+            singleRequests.add(new APIGatewayProxyRequestEvent().withBody(SampleData.ORDER_BODY));
+            batch.append(i == 0 ? "" : ",").append(SampleData.ORDER_BODY);
+        }
+        batchRequest = new APIGatewayProxyRequestEvent().withBody(batch.append("]").toString());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public int singlePut() {
+        int created = 0;
+        for (APIGatewayProxyRequestEvent request : singleRequests) {
+            created += singleHandler.handleRequest(request, context).getStatusCode() == 201 ? 1 : 0;
+        }
+        return created;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public APIGatewayProxyResponseEvent batchWrite() {
+        return batchHandler.handleRequest(batchRequest, context);
+    }
+}
@@ -0,0 +1,55 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+/**
+ * Lambda context for driving handlers outside the runtime; log lines are discarded.
+ */
+public class BenchContext implements Context {
+
+    private static final LambdaLogger LOGGER = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void log(byte[] message) {
+        }
+    };
+
+    @Override
+    public String getAwsRequestId() { return "bench"; }
+
+    @Override
+    public String getLogGroupName() { return "bench"; }
+
+    @Override
+    public String getLogStreamName() { return "bench"; }
+
+    @Override
+    public String getFunctionName() { return "bench"; }
+
+    @Override
+    public String getFunctionVersion() { return "$LATEST"; }
+
+    @Override
+    public String getInvokedFunctionArn() { return "bench"; }
+
+    @Override
+    public CognitoIdentity getIdentity() { return null; }
+
+    @Override
+    public ClientContext getClientContext() { return null; }
+
+    @Override
+    public int getRemainingTimeInMillis() { return 20_000; }
+
+    @Override
+    public int getMemoryLimitInMB() { return 512; }
+
+    @Override
+    public LambdaLogger getLogger() { return LOGGER; }
+}
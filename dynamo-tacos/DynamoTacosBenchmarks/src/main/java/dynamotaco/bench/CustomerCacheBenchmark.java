@@ -0,0 +1,120 @@
+package dynamotaco.bench;
+
+import dynamotaco.cache.CustomerCache;
+import dynamotaco.models.Customer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer lookups the way the order reads do them: a cache lookup, and on a miss a "profile read"
+ * that stores the profile, or a negative entry for the share of emails that have none. Emails are
+ * drawn from a Zipfian distribution over {@code population} customers, so a few regulars account
+ * for most reads. The teardown prints the hit ratio and evictions per policy, which is the number
+ * of DynamoDB reads the cache saves; the score is the cost of the cache itself under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CustomerCacheBenchmark {
+
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"LRU", "TINY_LFU"})
+    public CustomerCache.Policy policy;
+
+    @Param({"1000", "10000"})
+    public int cacheSize;
+
+    @Param({"100000"})
+    public int population;
+
+    @Param({"0.99"})
+    public double skew;
+
+    // Emails with no profile, e.g. typos and scrapers
+    @Param({"0.1"})
+    public double unknownShare;
+
+    private String[] emails;
+    private boolean[] unknown;
+    private int[] samples;
+    private CustomerCache cache;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = new Random().nextInt(SAMPLES);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        emails = new String[population];
+        unknown = new boolean[population];
+        for (int i = 0; i < population; i++) {
+            emails[i] = "customer" + i + "@example.com";
+            unknown[i] = random.nextDouble() < unknownShare;
+        }
+        samples = zipfian(random, population, skew, SAMPLES);
+        cache = new CustomerCache(cacheSize, 300, 300, policy, System::nanoTime);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%s, %d entries: hit ratio %.3f, %s%n", policy, cacheSize, cache.hitRatio(), cache.stats());
+    }
+
+    @Benchmark
+    public Object lookup(Cursor cursor) {
+        int customer = samples[cursor.next++ & (SAMPLES - 1)];
+        String email = emails[customer];
+        CustomerCache.Lookup cached = cache.get(email);
+        if (cached.status() != CustomerCache.Status.MISS) {
+            return cached;
+        }
+        if (unknown[customer]) {
+            cache.putAbsent(email);
+        } else {
+            Customer profile = new Customer();
+            profile.setEmail(email);
+            cache.put(profile);
+        }
+        return cached;
+    }
+
+    /**
+     * Ranks 0..n-1 drawn with probability proportional to 1 / (rank + 1)^skew, shuffled so the
+     * popular customers are spread over the id space.
+     */
+    static int[] zipfian(Random random, int n, double skew, int count) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        int[] customerAtRank = new int[n];
+        for (int i = 0; i < n; i++) {
+            customerAtRank[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = customerAtRank[i];
+            customerAtRank[i] = customerAtRank[j];
+            customerAtRank[j] = swap;
+        }
+
+        int[] samples = new int[count];
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            samples[i] = customerAtRank[rank < 0 ? -rank - 1 : rank];
+        }
+        return samples;
+    }
+}
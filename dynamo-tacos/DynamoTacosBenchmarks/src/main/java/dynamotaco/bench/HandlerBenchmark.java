@@ -0,0 +1,298 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.*;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.StatsRepository;
+import dynamotaco.stats.SalesAggregator;
+import dynamotaco.stats.SalesDimension;
+import dynamotaco.util.Futures;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every handler end to end, from the API Gateway event to the response, against an
+ * {@link InMemoryDynamoDbClient} with no latency, so the score is the handler's own cost: parsing,
+ * validation, pricing, mapping, the SDK request and response objects and serialization. Routes
+ * that read or write orders are run for orders of 1, 10 and 100 tacos (three toppings each, two
+ * sides); getOrderStatus polls one for {@code fields=status,totalPrice}, GET /orders reads 20 of
+ * them, POST /orders/batch writes 25 and POST /orders/status
+ * completes 25, with one UpdateItem each or in one transaction. Completed orders are put back to
+ * RECEIVED before every status update, outside the measured time. GET /stats reads an hour
+ * of rollups for a menu of 8 tacos, 10 toppings and 5 sides, as one window and as 60 minutes.
+ *
+ * Run with {@code -prof gc} for bytes allocated per request. {@code baseline/handlers.json} holds
+ * the last recorded run, see {@link BaselineDiff}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandlerBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+    private static final int ORDERS_PER_CUSTOMER = 20;
+    private static final int BATCH_SIZE = 25;
+
+    @State(Scope.Benchmark)
+    public static class Menu {
+        InMemoryDynamoDbClient table;
+        MenuHandler menu;
+        CreateCustomerHandler createCustomer;
+        APIGatewayProxyRequestEvent menuRequest;
+        int signups;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            table = new InMemoryDynamoDbClient();
+            SampleData.seedMenu(table);
+            DynamoDbAsyncClient dynamoDb = table.async();
+            menu = new MenuHandler(dynamoDb);
+            createCustomer = new CreateCustomerHandler(dynamoDb);
+            menuRequest = SampleData.requestFor("menu");
+            check(menu.handleRequest(menuRequest, CONTEXT));
+        }
+
+        // Every signup adds a profile, so start each iteration from the menu alone
+        @Setup(Level.Iteration)
+        public void clearProfiles() {
+            table.clear();
+            SampleData.seedMenu(table);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Orders {
+        @Param({"1", "10", "100"})
+        public int tacos;
+
+        CreateOrderHandler createOrder;
+        CreateOrdersBatchHandler createOrdersBatch;
+        GetOrderHandler getOrder;
+        GetAllOrdersHandler getAllOrders;
+        GetOrderQueueHandler getOrderQueue;
+
+        APIGatewayProxyRequestEvent createRequest;
+        APIGatewayProxyRequestEvent batchRequest;
+        APIGatewayProxyRequestEvent getRequest;
+        APIGatewayProxyRequestEvent pollRequest;
+        APIGatewayProxyRequestEvent getAllRequest;
+        APIGatewayProxyRequestEvent queueRequest;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+            SampleData.seedMenu(table);
+            for (int i = 0; i < ORDERS_PER_CUSTOMER; i++) {
+                Map<String, AttributeValue> order = new HashMap<>(SampleData.orderItem(tacos));
+                order.put("SK", AttributeValue.fromS(i == 0 ? "ORDER#bench-order" : "ORDER#bench-order-" + i));
+                SampleData.put(table, order);
+            }
+            DynamoDbAsyncClient dynamoDb = table.async();
+            createOrder = new CreateOrderHandler(dynamoDb);
+            createOrdersBatch = new CreateOrdersBatchHandler(dynamoDb);
+            getOrder = new GetOrderHandler(dynamoDb);
+            getAllOrders = new GetAllOrdersHandler(dynamoDb);
+            getOrderQueue = new GetOrderQueueHandler(dynamoDb);
+
+            // Fixed order ids, so every call overwrites the same orders instead of growing the table
+            createRequest = post("/order", SampleData.orderBody(EMAIL, "bench-created", tacos));
+            StringJoiner batch = new StringJoiner(",", "[", "]");
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(SampleData.orderBody("batch" + i + "@example.com", "bench-batch", tacos));
+            }
+            batchRequest = post("/orders/batch", batch.toString());
+            getRequest = SampleData.requestFor("getOrder");
+            pollRequest = new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/order")
+                    .withQueryStringParameters(Map.of("email", EMAIL, "orderId", "bench-order", "fields", "status,totalPrice"));
+            getAllRequest = SampleData.requestFor("getAllOrders");
+            queueRequest = new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/orders/queue")
+                    .withQueryStringParameters(Map.of("status", "RECEIVED", "limit", String.valueOf(ORDERS_PER_CUSTOMER)));
+
+            check(createOrder.handleRequest(createRequest, CONTEXT));
+            check(createOrdersBatch.handleRequest(batchRequest, CONTEXT));
+            check(getOrder.handleRequest(getRequest, CONTEXT));
+            check(getOrder.handleRequest(pollRequest, CONTEXT));
+            check(getAllOrders.handleRequest(getAllRequest, CONTEXT));
+            check(getOrderQueue.handleRequest(queueRequest, CONTEXT));
+        }
+
+        private static APIGatewayProxyRequestEvent post(String path, String body) {
+            return new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath(path).withBody(body);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Updates {
+        @Param({"1", "10", "100"})
+        public int tacos;
+
+        InMemoryDynamoDbClient table;
+        List<Map<String, AttributeValue>> received = new ArrayList<>();
+        UpdateOrderHandler updateOrder;
+        UpdateOrdersStatusHandler updateOrdersStatus;
+
+        APIGatewayProxyRequestEvent updateRequest;
+        APIGatewayProxyRequestEvent statusRequest;
+        APIGatewayProxyRequestEvent atomicStatusRequest;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            table = new InMemoryDynamoDbClient();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Map<String, AttributeValue> order = new HashMap<>(SampleData.orderItem(tacos));
+                order.put("SK", AttributeValue.fromS(i == 0 ? "ORDER#bench-order" : "ORDER#bench-order-" + i));
+                received.add(order);
+            }
+            DynamoDbAsyncClient dynamoDb = table.async();
+            updateOrder = new UpdateOrderHandler(dynamoDb);
+            updateOrdersStatus = new UpdateOrdersStatusHandler(dynamoDb);
+
+            updateRequest = new APIGatewayProxyRequestEvent().withHttpMethod("PUT").withPath("/order")
+                    .withBody(SampleData.UPDATE_BODY);
+            StringJoiner updates = new StringJoiner(",", "[", "]");
+            for (Map<String, AttributeValue> order : received) {
+                updates.add("{\"email\":\"" + EMAIL + "\",\"orderId\":\"" + order.get("SK").s().substring("ORDER#".length())
+                        + "\",\"status\":\"COMPLETED\",\"expectedStatus\":\"RECEIVED\"}");
+            }
+            statusRequest = new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath("/orders/status")
+                    .withBody("{\"atomic\":false,\"updates\":" + updates + "}");
+            atomicStatusRequest = new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath("/orders/status")
+                    .withBody("{\"atomic\":true,\"updates\":" + updates + "}");
+
+            receive();
+            check(updateOrder.handleRequest(updateRequest, CONTEXT));
+            receive();
+            check(updateOrdersStatus.handleRequest(statusRequest, CONTEXT));
+            receive();
+            check(updateOrdersStatus.handleRequest(atomicStatusRequest, CONTEXT));
+        }
+
+        // Completed orders cannot go back, so put them back to RECEIVED before each call, outside the measured time
+        @Setup(Level.Invocation)
+        public void receive() {
+            for (Map<String, AttributeValue> order : received) {
+                SampleData.put(table, order);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Stats {
+        GetStatsHandler getStats;
+        APIGatewayProxyRequestEvent hourRequest;
+        APIGatewayProxyRequestEvent lastHourRequest;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            long hour = Instant.parse("2024-10-28T18:00:00Z").toEpochMilli();
+            StatsRepository stats = new StatsRepository(new InMemoryDynamoDbClient().async(), "TacoOrderingApp");
+            SalesAggregator aggregator = new SalesAggregator(stats, 0, () -> hour);
+            for (int minute = 0; minute < 60; minute++) {
+                long at = hour + minute * 60_000L;
+                aggregator.recordOrder(at, OrderStatus.RECEIVED, 2_150);
+                aggregator.recordStatusChange(at, OrderStatus.COMPLETED, 2_150);
+                for (int i = 0; i < 10; i++) {
+                    aggregator.recordLine(at, SalesDimension.TACO, "Taco " + i % 8, 1, 500);
+                    aggregator.recordLine(at, SalesDimension.TOPPING, "Topping " + i, 1, 50);
+                    aggregator.recordLine(at, SalesDimension.SIDE, "Side " + i % 5, 1, 350);
+                }
+            }
+            Futures.join(aggregator.flush());
+            getStats = new GetStatsHandler(stats, () -> hour + 59 * 60_000L);
+            hourRequest = new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/stats")
+                    .withQueryStringParameters(Map.of("window", "HOUR"));
+            lastHourRequest = new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/stats")
+                    .withQueryStringParameters(Map.of("last", "60"));
+            check(getStats.handleRequest(hourRequest, CONTEXT));
+        }
+    }
+
+    private static final BenchContext CONTEXT = new BenchContext();
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent menu(Menu state) {
+        return state.menu.handleRequest(state.menuRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent createCustomer(Menu state) {
+        String email = "signup" + state.signups++ + "@example.com";
+        return state.createCustomer.handleRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST")
+                .withPath("/customer").withBody(SampleData.CUSTOMER_BODY.replace(EMAIL, email)), CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent createOrder(Orders state) {
+        return state.createOrder.handleRequest(state.createRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent createOrdersBatch(Orders state) {
+        return state.createOrdersBatch.handleRequest(state.batchRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent getOrder(Orders state) {
+        return state.getOrder.handleRequest(state.getRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent getOrderStatus(Orders state) {
+        return state.getOrder.handleRequest(state.pollRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent getAllOrders(Orders state) {
+        return state.getAllOrders.handleRequest(state.getAllRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent getOrderQueue(Orders state) {
+        return state.getOrderQueue.handleRequest(state.queueRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent updateOrder(Updates state) {
+        return state.updateOrder.handleRequest(state.updateRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent updateOrdersStatus(Updates state) {
+        return state.updateOrdersStatus.handleRequest(state.statusRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent updateOrdersStatusAtomic(Updates state) {
+        return state.updateOrdersStatus.handleRequest(state.atomicStatusRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent getStatsHour(Stats state) {
+        return state.getStats.handleRequest(state.hourRequest, CONTEXT);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent getStatsLastHour(Stats state) {
+        return state.getStats.handleRequest(state.lastHourRequest, CONTEXT);
+    }
+
+    private static void check(APIGatewayProxyResponseEvent response) {
+        if (response.getStatusCode() >= 300) {
+            throw new IllegalStateException("Setup request failed: " + response.getStatusCode() + " " + response.getBody());
+        }
+    }
+}
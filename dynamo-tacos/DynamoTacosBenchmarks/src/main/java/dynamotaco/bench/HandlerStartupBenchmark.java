@@ -0,0 +1,102 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.*;
+import dynamotaco.repository.BlockingAsyncClient;
+import dynamotaco.util.HandlerBootstrap;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-to-first-response for each handler in a fresh JVM.
+ *
+ * <ul>
+ *   <li>{@code baseline} - the handler builds its own client the way it did before the bootstrap
+ *   ({@code DynamoDbClient.create()}: default provider chains and the Apache client).</li>
+ *   <li>{@code bootstrap} - the handler is constructed through {@link HandlerBootstrap} inside the
+ *   measured call, i.e. a cold start without SnapStart.</li>
+ *   <li>{@code primed} - construction and {@link HandlerBootstrap#prime()} happen before measurement,
+ *   which is what a SnapStart restore hands to the first request.</li>
+ * </ul>
+ *
+ * DynamoDB is replaced by {@link DynamoDbHttpStub} so only client-side cost is measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class HandlerStartupBenchmark {
+
+    @Param({"menu", "createCustomer", "createOrder", "getOrder", "getAllOrders", "updateOrder"})
+    public String route;
+
+    @Param({"baseline", "bootstrap", "primed"})
+    public String mode;
+
+    private DynamoDbHttpStub stub;
+    private APIGatewayProxyRequestEvent request;
+    private RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new DynamoDbHttpStub()
+                // createOrder loads the menu to price the order
+                .respond("Query", "menu".equals(route) || "createOrder".equals(route)
+                        ? SampleData.MENU_QUERY_RESPONSE : SampleData.ORDER_QUERY_RESPONSE)
+                .respond("GetItem", "getOrder".equals(route) ? SampleData.ORDER_GET_RESPONSE : "{}");
+        System.setProperty("dynamodb.endpoint", stub.endpoint().toString());
+        System.setProperty("aws.region", "us-west-2");
+        System.setProperty("aws.accessKeyId", "bench");
+        System.setProperty("aws.secretAccessKey", "bench");
+        request = SampleData.requestFor(route);
+
+        if ("primed".equals(mode)) {
+            handler = newHandler(route, HandlerBootstrap.dynamoDbAsync());
+            HandlerBootstrap.prime();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent firstResponse() {
+        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> target = handler;
+        if (target == null) {
+            DynamoDbAsyncClient client = "baseline".equals(mode)
+                    ? BlockingAsyncClient.wrap(DynamoDbClient.builder()
+                        .endpointOverride(stub.endpoint())
+                        .httpClientBuilder(ApacheHttpClient.builder())
+                        .build())
+                    : HandlerBootstrap.dynamoDbAsync();
+            target = newHandler(route, client);
+        }
+        APIGatewayProxyResponseEvent response = target.handleRequest(request, new BenchContext());
+        if (response.getStatusCode() >= 500) {
+            throw new IllegalStateException(route + " failed: " + response.getBody());
+        }
+        return response;
+    }
+
+    static RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> newHandler(String route, DynamoDbAsyncClient client) {
+        return switch (route) {
+            case "menu" -> new MenuHandler(client);
+            case "createCustomer" -> new CreateCustomerHandler(client);
+            case "createOrder" -> new CreateOrderHandler(client);
+            case "getOrder" -> new GetOrderHandler(client);
+            case "getAllOrders" -> new GetAllOrdersHandler(client);
+            case "updateOrder" -> new UpdateOrderHandler(client);
+            default -> throw new IllegalArgumentException("Unknown route " + route);
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package dynamotaco.bench;
+
+import dynamotaco.util.IdGenerator;
+import dynamotaco.util.UlidGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id throughput of {@link UlidGenerator} against {@code UUID.randomUUID()}, from one thread and from
+ * eight threads sharing one generator, the way concurrent requests share a container's generator.
+ * Run with {@code -prof gc} for bytes allocated per id.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGenerationBenchmark {
+
+    private final IdGenerator ulid = new UlidGenerator();
+    private final IdGenerator uuid = IdGenerator.randomUuid();
+
+    @Benchmark
+    @Threads(1)
+    public String ulidOneThread() {
+        return ulid.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String ulidEightThreads() {
+        return ulid.next();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String uuidOneThread() {
+        return uuid.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String uuidEightThreads() {
+        return uuid.next();
+    }
+}
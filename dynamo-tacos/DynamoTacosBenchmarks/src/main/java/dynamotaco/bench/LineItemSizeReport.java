@@ -0,0 +1,128 @@
+package dynamotaco.bench;
+
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.models.*;
+import dynamotaco.util.CompactLineItems;
+import dynamotaco.util.ItemSizes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.*;
+
+/**
+ * Builds a synthetic corpus of orders shaped like CreateOrderHandler writes them and prints the item
+ * size and capacity units per order with nested line items and with {@link CompactLineItems}.
+ * Most orders are one to three tacos; {@code report.cateringShare} of them are catering orders of
+ * 20 to 200 tacos.
+ *
+ * <pre>
+ * java -Dreport.orders=100000 -cp DynamoTacosBenchmarks/target/benchmarks.jar dynamotaco.bench.LineItemSizeReport
+ * </pre>
+ */
+public class LineItemSizeReport {
+
+    private static final String[][] TACOS = {
+            {"001", "Carne Asada", "6.0"}, {"002", "Chicken Fajita", "6.0"},
+            {"003", "Al Pastor", "8.0"}, {"004", "Veggie", "6.0"}};
+    private static final String[] TOPPINGS = {"Cheese", "Sour Cream", "Guacamole", "Pico de Gallo", "Jalapeños"};
+    private static final String[][] SIDES = {
+            {"Chips and Guacamole", "5.0"}, {"Chips and Salsa", "3.0"}, {"Rice and Beans", "3.0"},
+            {"Churros", "2.0"}, {"Elote", "2.0"}, {"Horchata", "1.5"}, {"Jarritos", "1.5"}};
+
+    public static void main(String[] args) {
+        int orders = Integer.getInteger("report.orders", 10_000);
+        double cateringShare = Double.parseDouble(System.getProperty("report.cateringShare", "0.02"));
+        Random random = new Random(Long.getLong("report.seed", 42L));
+
+        Tally nested = new Tally("nested");
+        Tally compact = new Tally("compact");
+        for (int i = 0; i < orders; i++) {
+            int tacos = random.nextDouble() < cateringShare ? 20 + random.nextInt(181) : 1 + random.nextInt(3);
+            Order order = order(random, tacos);
+            Map<String, AttributeValue> item = CreateOrderHandler.buildOrderItem(
+                    "CUSTOMER#customer" + random.nextInt(50_000) + "@example.com",
+                    "ORDER#" + UUID.randomUUID(), order, Math.round(PricingBenchmark.clientTotal(order) * 100));
+            nested.add(ItemSizes.itemSize(item));
+            compact.add(ItemSizes.itemSize(CompactLineItems.compact(item)));
+        }
+
+        System.out.printf("%,d orders, %.1f%% catering%n", orders, cateringShare * 100);
+        System.out.printf("%-8s %10s %8s %8s %8s %12s %12s%n",
+                "layout", "mean B", "p50 B", "p99 B", "max B", "WCU/order", "RCU/order");
+        nested.print(orders);
+        compact.print(orders);
+        System.out.printf("compact saves %.1f%% of the bytes, %.1f%% of the write units and %.1f%% of the read units%n",
+                100.0 * (1 - (double) compact.bytes / nested.bytes),
+                100.0 * (1 - compact.writeUnits / nested.writeUnits),
+                100.0 * (1 - compact.readUnits / nested.readUnits));
+    }
+
+    // Tacos with up to three toppings, often the same ones as the taco before, and up to two sides
+    private static Order order(Random random, int tacoCount) {
+        List<Taco> tacos = new ArrayList<>();
+        List<Topping> previous = List.of();
+        for (int t = 0; t < tacoCount; t++) {
+            String[] menu = TACOS[random.nextInt(TACOS.length)];
+            Taco taco = new Taco();
+            taco.setMenuItemId(menu[0]);
+            taco.setName(menu[1]);
+            taco.setPrice(Double.parseDouble(menu[2]));
+            if (!previous.isEmpty() && random.nextInt(3) > 0) {
+                taco.setToppings(previous);
+            } else {
+                List<Topping> toppings = new ArrayList<>();
+                for (int n = random.nextInt(4); n > 0; n--) {
+                    Topping topping = new Topping();
+                    topping.setName(TOPPINGS[random.nextInt(TOPPINGS.length)]);
+                    topping.setPrice(0.25);
+                    toppings.add(topping);
+                }
+                taco.setToppings(toppings);
+                previous = toppings;
+            }
+            tacos.add(taco);
+        }
+        List<SideItem> sides = new ArrayList<>();
+        for (int n = random.nextInt(3) + tacoCount / 10; n > 0; n--) {
+            String[] menu = SIDES[random.nextInt(SIDES.length)];
+            SideItem side = new SideItem();
+            side.setName(menu[0]);
+            side.setPrice(Double.parseDouble(menu[1]));
+            side.setQuantity(1 + random.nextInt(2));
+            sides.add(side);
+        }
+        Order order = new Order();
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setTacos(tacos);
+        order.setSideItems(sides);
+        return order;
+    }
+
+    private static final class Tally {
+
+        private final String name;
+        private final List<Integer> sizes = new ArrayList<>();
+        private long bytes;
+        private double writeUnits;
+        private double readUnits;
+
+        Tally(String name) {
+            this.name = name;
+        }
+
+        void add(int size) {
+            sizes.add(size);
+            bytes += size;
+            writeUnits += Math.max(1, Math.ceil(size / 1024.0));
+            // Eventually consistent GetItem
+            readUnits += Math.max(1, Math.ceil(size / 4096.0)) / 2;
+        }
+
+        void print(int orders) {
+            List<Integer> sorted = new ArrayList<>(sizes);
+            Collections.sort(sorted);
+            System.out.printf("%-8s %,10.0f %,8d %,8d %,8d %12.3f %12.3f%n", name, (double) bytes / orders,
+                    sorted.get(sorted.size() / 2), sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1),
+                    sorted.get(sorted.size() - 1), writeUnits / orders, readUnits / orders);
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.CreateCustomerHandler;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.api.GetAllOrdersHandler;
+import dynamotaco.api.MenuHandler;
+import dynamotaco.api.UpdateOrderHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.metrics.Invocation;
+import dynamotaco.metrics.MeteredDynamoDbClient;
+import dynamotaco.metrics.Metrics;
+import dynamotaco.util.UlidGenerator;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator and capacity planner for the API handlers. Requests arrive at
+ * {@code load.rate} per second for {@code load.seconds}, after {@code load.warmupSeconds} of the
+ * same load that is not measured, in the mix {@code load.mix} of menu reads, signups, order
+ * creates, RECEIVED to COMPLETED status updates of the orders created before, and newest-first
+ * {@code /orders} history reads. Customers are drawn with Zipfian skew ({@code load.zipf}) from
+ * {@code load.customers} seeded customers; orders have {@code load.tacos} tacos of
+ * {@code load.toppings} toppings each and {@code load.sides} side items, except for a
+ * {@code load.cateringRate} share of catering orders of {@code load.cateringTacos} tacos.
+ *
+ * The schedule never waits for answers: request i is due at its arrival time (Poisson by default,
+ * {@code load.arrivals=uniform} for fixed spacing) and runs on its own virtual thread, and its
+ * response time is measured from when it was due, not from when it was sent, so a stall shows up
+ * in every request it delayed instead of only in the one that hit it. Response and service times
+ * go into HDR histograms per operation.
+ *
+ * Handlers run in-process over an {@link InMemoryDynamoDbClient} charging {@code load.latencyMillis}
+ * per call, through {@link MeteredDynamoDbClient}, which asks for ConsumedCapacity on every call;
+ * a {@link Metrics#setListener listener} adds it up per route and per second. The report gives
+ * RCU and WCU per operation, index writes included, the mean and peak-second totals at this rate,
+ * and the capacity to provision for the peak at {@code load.targetUtilization}, the auto scaling
+ * target. Give the JVM a fixed heap: pauses while it grows are real stalls and land in the
+ * response times.
+ *
+ * <pre>
+ * java -Xms1g -Xmx1g -cp DynamoTacosBenchmarks/target/benchmarks.jar -Dload.rate=500 -Dload.seconds=60 dynamotaco.bench.LoadGenerator
+ * </pre>
+ */
+public class LoadGenerator {
+
+    static final int ORDERS_PER_CUSTOMER = 5;
+    private static final int MAX_PENDING_UPDATES = 100_000;
+    private static final Context CONTEXT = new BenchContext();
+
+    private enum Operation {
+        MENU("menu", "Menu"),
+        SIGNUP("signup", "CreateCustomer"),
+        CREATE_ORDER("create", "CreateOrder"),
+        COMPLETE_ORDER("complete", "UpdateOrder"),
+        HISTORY("history", "GetAllOrders");
+
+        final String key;
+        final String route;
+
+        Operation(String key, String route) {
+            this.key = key;
+            this.route = route;
+        }
+
+        static Operation parse(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + key);
+        }
+    }
+
+    /** An inclusive range of counts, written {@code 2} or {@code 1-4}. */
+    private record Range(int min, int max) {
+
+        static Range parse(String value) {
+            int dash = value.indexOf('-');
+            Range range = dash < 0
+                    ? new Range(Integer.parseInt(value.trim()), Integer.parseInt(value.trim()))
+                    : new Range(Integer.parseInt(value.substring(0, dash).trim()), Integer.parseInt(value.substring(dash + 1).trim()));
+            if (range.min < 0 || range.max < range.min) {
+                throw new IllegalArgumentException("Bad range " + value);
+            }
+            return range;
+        }
+
+        int next(SplittableRandom random) {
+            return min == max ? min : random.nextInt(min, max + 1);
+        }
+    }
+
+    private static final class Capacity {
+        final LongAdder calls = new LongAdder();
+        final DoubleAdder readUnits = new DoubleAdder();
+        final DoubleAdder writeUnits = new DoubleAdder();
+    }
+
+    private final Map<Operation, Integer> mix;
+    private final String[][] seedOrders;
+    private final ZipfianGenerator customerSkew;
+    private final Range tacos;
+    private final Range toppings;
+    private final Range sides;
+    private final double cateringRate;
+    private final Range cateringTacos;
+
+    private final Map<Operation, RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>> handlers =
+            new EnumMap<>(Operation.class);
+    private final Map<Operation, Recorder> responseTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Recorder> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<String, Capacity> capacity = new HashMap<>();
+    private final Queue<String[]> received = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger receivedCount = new AtomicInteger();
+    private final AtomicLong signups = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private volatile long measureFrom = Long.MAX_VALUE;
+    private DoubleAdder[] readUnitsPerSecond = new DoubleAdder[0];
+    private DoubleAdder[] writeUnitsPerSecond = new DoubleAdder[0];
+
+    LoadGenerator(DynamoDbAsyncClient dynamoDb, Map<Operation, Integer> mix, String[][] seedOrders, double zipf,
+                  Range tacos, Range toppings, Range sides, double cateringRate, Range cateringTacos) {
+        this.mix = mix;
+        this.seedOrders = seedOrders;
+        this.customerSkew = new ZipfianGenerator(seedOrders.length, zipf);
+        this.tacos = tacos;
+        this.toppings = toppings;
+        this.sides = sides;
+        this.cateringRate = cateringRate;
+        this.cateringTacos = cateringTacos;
+        handlers.put(Operation.MENU, new MenuHandler(dynamoDb));
+        handlers.put(Operation.SIGNUP, new CreateCustomerHandler(dynamoDb));
+        handlers.put(Operation.CREATE_ORDER, new CreateOrderHandler(dynamoDb));
+        handlers.put(Operation.COMPLETE_ORDER, new UpdateOrderHandler(dynamoDb));
+        handlers.put(Operation.HISTORY, new GetAllOrdersHandler(dynamoDb));
+        for (Operation operation : Operation.values()) {
+            responseTimes.put(operation, new Recorder(3));
+            serviceTimes.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+            capacity.put(operation.route, new Capacity());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "400"));
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        int latencyMillis = Integer.getInteger("load.latencyMillis", 2);
+        int customers = Integer.getInteger("load.customers", 10_000);
+        double zipf = Double.parseDouble(System.getProperty("load.zipf", "0.99"));
+        boolean poisson = !"uniform".equals(System.getProperty("load.arrivals", "poisson"));
+        double targetUtilization = Double.parseDouble(System.getProperty("load.targetUtilization", "0.7"));
+        String mixProperty = System.getProperty("load.mix", "menu=25,signup=5,create=20,complete=15,history=35");
+        Map<Operation, Integer> mix = parseMix(mixProperty);
+
+        InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+        String[][] seedOrders = seed(table, customers);
+        table.withLatency(Duration.ofMillis(latencyMillis));
+
+        LoadGenerator generator = new LoadGenerator(new MeteredDynamoDbClient(table.async()), mix, seedOrders, zipf,
+                Range.parse(System.getProperty("load.tacos", "1-4")),
+                Range.parse(System.getProperty("load.toppings", "0-3")),
+                Range.parse(System.getProperty("load.sides", "0-2")),
+                Double.parseDouble(System.getProperty("load.cateringRate", "0.02")),
+                Range.parse(System.getProperty("load.cateringTacos", "20-50")));
+
+        Metrics.setEnabled(true);
+        Metrics.setSink(line -> {
+        });
+        Metrics.setListener(generator::record);
+
+        System.out.printf("%.0f req/s %s arrivals for %d s after %d s warmup, %d ms per DynamoDB call, "
+                        + "%,d customers (top 1%% place %.0f%% of requests), mix %s%n",
+                rate, poisson ? "Poisson" : "uniform", seconds, warmupSeconds, latencyMillis,
+                customers, 100 * generator.customerSkew.share(customers / 100), mixProperty);
+        long maxLagNanos = generator.run(rate, poisson, warmupSeconds, seconds);
+        generator.report(seconds, targetUtilization, maxLagNanos);
+        System.exit(0);
+    }
+
+    /**
+     * Issues requests on schedule until the measured period ends and waits for the last answers.
+     *
+     * @return how late the dispatcher sent its latest request, which response times already include
+     */
+    long run(double rate, boolean poisson, int warmupSeconds, int seconds) throws InterruptedException {
+        readUnitsPerSecond = adders(seconds);
+        writeUnitsPerSecond = adders(seconds);
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        double intervalNanos = 1e9 / rate;
+        SplittableRandom random = new SplittableRandom();
+        long start = System.nanoTime();
+        long measured = start + warmupSeconds * 1_000_000_000L;
+        long end = measured + seconds * 1_000_000_000L;
+        measureFrom = measured;
+        long maxLagNanos = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            double due = start;
+            while (due < end) {
+                long intended = (long) due;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (intended >= measured) {
+                    maxLagNanos = Math.max(maxLagNanos, -wait);
+                }
+                Operation operation = pick(random.nextInt(totalWeight));
+                SplittableRandom requestRandom = random.split();
+                int running = inFlight.incrementAndGet();
+                peakInFlight.accumulateAndGet(running, Math::max);
+                executor.execute(() -> {
+                    try {
+                        send(operation, intended, intended >= measured, requestRandom);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+                due += poisson ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+            }
+        }
+        return maxLagNanos;
+    }
+
+    private void send(Operation operation, long intended, boolean measured, SplittableRandom random) {
+        APIGatewayProxyRequestEvent request = request(operation, random);
+        long sent = System.nanoTime();
+        APIGatewayProxyResponseEvent response;
+        try {
+            response = handlers.get(operation).handleRequest(request, CONTEXT);
+        } catch (RuntimeException e) {
+            response = new APIGatewayProxyResponseEvent().withStatusCode(500);
+        }
+        long done = System.nanoTime();
+        int statusCode = response.getStatusCode() == null ? 500 : response.getStatusCode();
+        if (operation == Operation.CREATE_ORDER && statusCode == 201) {
+            rememberReceived(request, response.getBody());
+        }
+        if (measured) {
+            responseTimes.get(operation).recordValue(Math.max(1, (done - intended) / 1_000));
+            serviceTimes.get(operation).recordValue(Math.max(1, (done - sent) / 1_000));
+            // 409 is a seeded order that an earlier update already completed, not a failure
+            if (statusCode >= 400 && statusCode != 409) {
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private APIGatewayProxyRequestEvent request(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case MENU -> new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/menu");
+            case SIGNUP -> new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath("/customer")
+                    .withBody(SampleData.CUSTOMER_BODY.replace("bench@example.com", "signup" + signups.incrementAndGet() + "@example.com"));
+            case CREATE_ORDER -> new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath("/order")
+                    .withBody(orderBody(email(customerSkew.next(random)), random));
+            case COMPLETE_ORDER -> {
+                String[] order = received.poll();
+                if (order != null) {
+                    receivedCount.decrementAndGet();
+                } else {
+                    // Nothing created yet to complete: take one of the seeded orders instead
+                    int customer = customerSkew.next(random);
+                    order = new String[]{email(customer), seedOrders[customer][random.nextInt(ORDERS_PER_CUSTOMER)]};
+                }
+                yield new APIGatewayProxyRequestEvent().withHttpMethod("PUT").withPath("/order")
+                        .withBody("{\"email\":\"" + order[0] + "\",\"orderId\":\"" + order[1] + "\",\"status\":\"COMPLETED\"}");
+            }
+            case HISTORY -> new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/orders")
+                    .withQueryStringParameters(Map.of("email", email(customerSkew.next(random)), "limit", "10", "sort", "newest"));
+        };
+    }
+
+    private void rememberReceived(APIGatewayProxyRequestEvent request, String body) {
+        // "Order with ID <id> created successfully."
+        int from = body.indexOf("ID ") + 3;
+        int to = body.indexOf(' ', from);
+        if (from < 3 || to < 0 || receivedCount.get() >= MAX_PENDING_UPDATES) {
+            return;
+        }
+        String requestBody = request.getBody();
+        int emailFrom = requestBody.indexOf("\"customerId\":\"") + 14;
+        String email = requestBody.substring(emailFrom, requestBody.indexOf('"', emailFrom));
+        received.add(new String[]{email, body.substring(from, to)});
+        receivedCount.incrementAndGet();
+    }
+
+    /** Adds an invocation's consumed capacity to its route and to the second it finished in. */
+    void record(Invocation invocation) {
+        long now = System.nanoTime();
+        if (now < measureFrom) {
+            return;
+        }
+        Capacity route = capacity.get(invocation.route());
+        if (route == null) {
+            return;
+        }
+        double readUnits = invocation.readUnits();
+        double writeUnits = invocation.writeUnits();
+        route.calls.increment();
+        route.readUnits.add(readUnits);
+        route.writeUnits.add(writeUnits);
+        int second = (int) ((now - measureFrom) / 1_000_000_000L);
+        if (second < readUnitsPerSecond.length) {
+            readUnitsPerSecond[second].add(readUnits);
+            writeUnitsPerSecond[second].add(writeUnits);
+        }
+    }
+
+    void report(int seconds, double targetUtilization, long maxLagNanos) {
+        System.out.printf("%-10s %8s %7s %9s %9s %9s %9s %9s %8s %8s%n", "operation", "req/s", "errors",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99", "RCU/op", "WCU/op");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram response = responseTimes.get(operation).getIntervalHistogram();
+            Histogram service = serviceTimes.get(operation).getIntervalHistogram();
+            Capacity units = capacity.get(operation.route);
+            long calls = Math.max(1, units.calls.sum());
+            total += response.getTotalCount();
+            System.out.printf("%-10s %8.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f %8.2f %8.2f%n", operation.key,
+                    response.getTotalCount() / (double) seconds, errors.get(operation).sum(),
+                    millis(response, 50), millis(response, 99), millis(response, 99.9), response.getMaxValue() / 1e3,
+                    millis(service, 99), units.readUnits.sum() / calls, units.writeUnits.sum() / calls);
+        }
+        System.out.printf("%-10s %8.1f, peak %d in flight, dispatcher at most %.2f ms late%n",
+                "total", total / (double) seconds, peakInFlight.get(), maxLagNanos / 1e6);
+
+        double readTotal = 0;
+        double writeTotal = 0;
+        double readPeak = 0;
+        double writePeak = 0;
+        for (int second = 0; second < seconds; second++) {
+            readTotal += readUnitsPerSecond[second].sum();
+            writeTotal += writeUnitsPerSecond[second].sum();
+            readPeak = Math.max(readPeak, readUnitsPerSecond[second].sum());
+            writePeak = Math.max(writePeak, writeUnitsPerSecond[second].sum());
+        }
+        System.out.printf("capacity   mean %.0f RCU/s %.0f WCU/s, peak second %.0f RCU %.0f WCU, "
+                        + "provision %d RCU %d WCU at %.0f%% utilization%n",
+                readTotal / seconds, writeTotal / seconds, readPeak, writePeak,
+                (long) Math.ceil(readPeak / targetUtilization), (long) Math.ceil(writePeak / targetUtilization),
+                100 * targetUtilization);
+    }
+
+    private Operation pick(int roll) {
+        int cumulative = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            cumulative += entry.getValue();
+            if (roll < cumulative) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Roll " + roll + " past the mix");
+    }
+
+    private String orderBody(String email, SplittableRandom random) {
+        int tacoCount = random.nextDouble() < cateringRate ? cateringTacos.next(random) : Math.max(1, tacos.next(random));
+        StringBuilder body = new StringBuilder(128 + tacoCount * 160)
+                .append("{\"customerId\":\"").append(email).append("\",\"status\":\"RECEIVED\",\"tacos\":[");
+        for (int i = 0; i < tacoCount; i++) {
+            body.append(i > 0 ? "," : "").append(switch (random.nextInt(3)) {
+                case 0 -> "{\"menuItemId\":\"001\",\"name\":\"Carne Asada\",\"price\":6.0,\"toppings\":[";
+                case 1 -> "{\"menuItemId\":\"002\",\"name\":\"Chicken Fajita\",\"price\":6.0,\"toppings\":[";
+                default -> "{\"menuItemId\":\"003\",\"name\":\"Al Pastor\",\"price\":8.0,\"toppings\":[";
+            });
+            int toppingCount = toppings.next(random);
+            for (int j = 0; j < toppingCount; j++) {
+                body.append(j > 0 ? "," : "").append("{\"menuItemId\":\"005\",\"name\":\"Cheese\",\"price\":0.5}");
+            }
+            body.append("]}");
+        }
+        body.append("],\"sideItems\":[");
+        int sideCount = sides.next(random);
+        for (int i = 0; i < sideCount; i++) {
+            body.append(i > 0 ? "," : "").append(random.nextBoolean()
+                    ? "{\"menuItemId\":\"003\",\"name\":\"Chips\",\"price\":2.0,\"quantity\":1}"
+                    : "{\"menuItemId\":\"007\",\"name\":\"Horchata\",\"price\":1.5,\"quantity\":1}");
+        }
+        return body.append("]}").toString();
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                mix.put(Operation.parse(pair[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Empty mix " + value);
+        }
+        return mix;
+    }
+
+    private static DoubleAdder[] adders(int count) {
+        DoubleAdder[] adders = new DoubleAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new DoubleAdder();
+        }
+        return adders;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    private static String email(int customer) {
+        return "load" + customer + "@example.com";
+    }
+
+    /**
+     * Writes the menu and the customers with {@value #ORDERS_PER_CUSTOMER} orders each, dated a day
+     * back so newest-first history reads see the orders the load creates first.
+     *
+     * @return the seeded order ids per customer
+     */
+    private static String[][] seed(InMemoryDynamoDbClient table, int customers) {
+        SampleData.seedMenu(table);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UlidGenerator ids = new UlidGenerator(() -> System.currentTimeMillis() - 86_400_000L);
+        String[][] orderIds = new String[customers][ORDERS_PER_CUSTOMER];
+        for (int c = 0; c < customers; c++) {
+            String email = email(c);
+            SampleData.put(table, Map.of(
+                    "PK", AttributeValue.fromS("CUSTOMER#" + email), "SK", AttributeValue.fromS("PROFILE"),
+                    "Email", AttributeValue.fromS(email)));
+            for (int o = 0; o < ORDERS_PER_CUSTOMER; o++) {
+                Map<String, AttributeValue> order = new HashMap<>(SampleData.orderItem(1 + random.nextInt(3)));
+                order.put("PK", AttributeValue.fromS("CUSTOMER#" + email));
+                orderIds[c][o] = ids.next();
+                order.put("SK", AttributeValue.fromS("ORDER#" + orderIds[c][o]));
+                SampleData.put(table, order);
+            }
+        }
+        return orderIds;
+    }
+}
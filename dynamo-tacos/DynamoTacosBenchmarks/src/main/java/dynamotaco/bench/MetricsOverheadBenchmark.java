@@ -0,0 +1,72 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.GetAllOrdersHandler;
+import dynamotaco.api.GetOrderHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.metrics.MeteredDynamoDbClient;
+import dynamotaco.metrics.Metrics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the per-request metrics cost: a handler against an in-memory table with no latency, so the
+ * instrumentation is as large a share of the request as it can get. With {@code metrics} on,
+ * every call goes through {@link MeteredDynamoDbClient}, every invocation records its phases into
+ * the route's histograms and renders an EMF line, which goes to a blackhole instead of stdout.
+ * Run with {@code -prof gc} to see the extra allocation per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    @Param({"getOrder", "getAllOrders"})
+    public String route;
+
+    private RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler;
+    private APIGatewayProxyRequestEvent request;
+    private final BenchContext context = new BenchContext();
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+        for (int i = 0; i < 20; i++) {
+            Map<String, AttributeValue> item = new HashMap<>(SampleData.orderItem(3));
+            item.put("SK", AttributeValue.fromS(i == 0 ? "ORDER#bench-order" : "ORDER#bench-order-" + i));
+            table.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+        }
+
+        Metrics.setEnabled(metrics);
+        Metrics.setSink(blackhole::consume);
+        DynamoDbAsyncClient dynamoDb = metrics ? new MeteredDynamoDbClient(table.async()) : table.async();
+        handler = route.equals("getOrder") ? new GetOrderHandler(dynamoDb) : new GetAllOrdersHandler(dynamoDb);
+        request = SampleData.requestFor(route);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.setSink(System.out::println);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent handle() {
+        return handler.handleRequest(request, context);
+    }
+}
@@ -0,0 +1,106 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.NormalizedOrders;
+import dynamotaco.repository.OrderLayout;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import dynamotaco.util.ItemSizes;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creating, reading and updating the status of one order in the nested and the normalized layout,
+ * for a small order and a 200-taco catering order (three toppings per taco, two sides). The
+ * in-memory table charges 1 ms per call, so the normalized layout pays for its extra, parallel
+ * round trips on create and read, and the nested one for rewriting a large item on every update.
+ * The setup prints the item sizes each layout stores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderLayoutBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+
+    @Param({"NESTED", "NORMALIZED"})
+    public OrderLayout layout;
+
+    @Param({"2", "200"})
+    public int tacos;
+
+    private final AtomicLong ids = new AtomicLong();
+    private InMemoryDynamoDbClient table;
+    private OrderRepository orders;
+    private Map<String, AttributeValue> orderItem;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = new InMemoryDynamoDbClient().withLatency(Duration.ofMillis(1));
+        orders = new OrderRepository(table.async(), "bench", 8, 0, layout);
+        orderItem = SampleData.orderItem(tacos);
+
+        List<Map<String, AttributeValue>> items = layout == OrderLayout.NESTED
+                ? List.of(orderItem)
+                : NormalizedOrders.split(orderItem);
+        int largest = items.stream().mapToInt(ItemSizes::itemSize).max().orElse(0);
+        System.out.printf("%n%s, %d tacos: %d items, order item %d bytes, largest item %d bytes%n",
+                layout, tacos, items.size(), ItemSizes.itemSize(items.get(0)), largest);
+    }
+
+    @Setup(Level.Iteration)
+    public void seed() {
+        table.clear();
+        Futures.join(orders.save(withId("read")));
+    }
+
+    @Benchmark
+    public Object create() {
+        return Futures.join(orders.save(withId(Long.toString(ids.incrementAndGet()))));
+    }
+
+    @Benchmark
+    public Object get() {
+        return Futures.join(orders.find(EMAIL, "read")).orElseThrow();
+    }
+
+    @Benchmark
+    public Object updateStatus(Received received) {
+        return Futures.join(orders.updateStatus(EMAIL, "read", OrderStatus.COMPLETED));
+    }
+
+    /** Puts the order back to RECEIVED before each update, since a completed order cannot move again. */
+    @State(Scope.Benchmark)
+    public static class Received {
+        @Setup(Level.Invocation)
+        public void receive(OrderLayoutBenchmark benchmark) {
+            benchmark.table.updateItem(UpdateItemRequest.builder()
+                    .tableName("bench")
+                    .key(Keys.orderKey(EMAIL, "read"))
+                    .updateExpression("SET #status = :received")
+                    .expressionAttributeNames(Map.of("#status", "Status"))
+                    .expressionAttributeValues(Map.of(":received", AttributeValue.fromS(OrderStatus.RECEIVED.name())))
+                    .build());
+        }
+    }
+
+    private Map<String, AttributeValue> withId(String orderId) {
+        Map<String, AttributeValue> item = new HashMap<>(orderItem);
+        item.put("PK", AttributeValue.fromS("CUSTOMER#" + EMAIL));
+        item.put("SK", AttributeValue.fromS("ORDER#" + orderId));
+        return item;
+    }
+}
@@ -0,0 +1,109 @@
+package dynamotaco.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.api.MenuHandler;
+import dynamotaco.models.MenuItem;
+import dynamotaco.models.Order;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.TacoUtil;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mapping and serialization steps of the handlers, each on its own: request JSON to
+ * {@link Order} (Jackson), {@link Order} to DynamoDB item ({@code buildOrderItem}), item back to
+ * {@link Order} ({@code mapToOrder}) and {@link Order} to response JSON, for orders of 1, 10 and
+ * 100 tacos, plus menu items to {@link MenuItem}s and the menu JSON. {@link OrderSerializationBenchmark}
+ * compares the item to JSON paths. Run with {@code -prof gc} for bytes allocated per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderMappingBenchmark {
+
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    @State(Scope.Benchmark)
+    public static class Orders {
+        @Param({"1", "10", "100"})
+        public int tacos;
+
+        String body;
+        Order order;
+        long totalCents;
+        Map<String, AttributeValue> item;
+
+        @Setup
+        public void setUp() throws Exception {
+            body = SampleData.orderBody("bench@example.com", "bench-order", tacos);
+            order = MAPPER.readValue(body, Order.class);
+            totalCents = Math.round(PricingBenchmark.clientTotal(order) * 100);
+            item = SampleData.orderItem(tacos);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Menu {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        List<MenuItem> menu = new ArrayList<>();
+
+        // About the size of menuItems.json
+        @Setup
+        public void setUp() {
+            String[] types = {"TACO", "TOPPING", "SIDE"};
+            for (int i = 0; i < 30; i++) {
+                String type = types[i % 3];
+                items.add(Map.of(
+                        "PK", AttributeValue.fromS("MENU"), "SK", AttributeValue.fromS(type + "#" + i),
+                        "id", AttributeValue.fromS(String.format("%03d", i)),
+                        "name", AttributeValue.fromS("Menu item " + i),
+                        "price", AttributeValue.fromN(String.valueOf(1 + i % 8) + ".50"),
+                        "foodItemType", AttributeValue.fromS(type),
+                        "description", AttributeValue.fromS("A description of menu item " + i)));
+            }
+            items.forEach(item -> menu.add(MenuHandler.convertToMenuItem(item)));
+        }
+    }
+
+    @Benchmark
+    public Order parseOrderRequest(Orders state) throws Exception {
+        return MAPPER.readValue(state.body, Order.class);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> buildOrderItem(Orders state) {
+        return CreateOrderHandler.buildOrderItem("CUSTOMER#bench@example.com", "ORDER#bench-order", state.order, state.totalCents);
+    }
+
+    @Benchmark
+    public Order mapToOrder(Orders state) {
+        return TacoUtil.mapToOrder(state.item);
+    }
+
+    @Benchmark
+    public String writeOrderJson(Orders state) throws Exception {
+        return MAPPER.writeValueAsString(state.order);
+    }
+
+    @Benchmark
+    public List<MenuItem> convertMenuItems(Menu state) {
+        List<MenuItem> menu = new ArrayList<>(state.items.size());
+        for (Map<String, AttributeValue> item : state.items) {
+            menu.add(MenuHandler.convertToMenuItem(item));
+        }
+        return menu;
+    }
+
+    @Benchmark
+    public String writeMenuJson(Menu state) throws Exception {
+        return MAPPER.writeValueAsString(state.menu);
+    }
+}
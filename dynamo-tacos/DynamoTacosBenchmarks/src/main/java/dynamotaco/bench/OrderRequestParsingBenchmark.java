@@ -0,0 +1,76 @@
+package dynamotaco.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.api.CreateOrderHandler;
+import dynamotaco.models.FoodItemType;
+import dynamotaco.models.MenuItem;
+import dynamotaco.models.Order;
+import dynamotaco.pricing.PricingEngine;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.OrderRequestParser;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Create-order request body to DynamoDB item, priced from the menu: the former path (Jackson into
+ * {@link Order}, {@code toString} for the log line, {@link PricingEngine#price},
+ * {@code buildOrderItem}) against {@link OrderRequestParser}'s single pass. Orders have 10 or 200
+ * tacos with three toppings each, plus two sides. Run with {@code -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderRequestParsingBenchmark {
+
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+    private static final String PK = "CUSTOMER#bench@example.com";
+    private static final String SK = "ORDER#bench-order";
+
+    @Param({"10", "200"})
+    public int tacos;
+
+    private String body;
+    private PricingEngine pricing;
+
+    @Setup
+    public void setUp() {
+        body = SampleData.orderBody("bench@example.com", "bench-order", tacos);
+        List<MenuItem> menu = new ArrayList<>();
+        menu.add(menuItem(FoodItemType.TACO, "001", 6.0));
+        menu.add(menuItem(FoodItemType.TACO, "003", 8.0));
+        menu.add(menuItem(FoodItemType.TOPPING, "005", 0.5));
+        menu.add(menuItem(FoodItemType.SIDE, "003", 2.0));
+        menu.add(menuItem(FoodItemType.SIDE, "007", 1.5));
+        pricing = PricingEngine.of(menu);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> pojo() throws Exception {
+        Order order = MAPPER.readValue(body, Order.class);
+        String logLine = "Raw input: " + order.toString();
+        long totalCents = pricing.price(order);
+        Map<String, AttributeValue> item = CreateOrderHandler.buildOrderItem(PK, SK, order, totalCents);
+        return logLine.isEmpty() ? null : item;
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> streaming() throws Exception {
+        return OrderRequestParser.parse(body, pricing.index()).item(PK, SK);
+    }
+
+    private static MenuItem menuItem(FoodItemType type, String id, double price) {
+        MenuItem item = new MenuItem();
+        item.setFoodItemType(type);
+        item.setId(id);
+        item.setPrice(price);
+        return item;
+    }
+}
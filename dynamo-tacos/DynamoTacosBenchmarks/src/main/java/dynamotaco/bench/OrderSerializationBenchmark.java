@@ -0,0 +1,47 @@
+package dynamotaco.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dynamotaco.util.HandlerBootstrap;
+import dynamotaco.util.OrderJsonCodec;
+import dynamotaco.util.TacoUtil;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DynamoDB item to API JSON: the old {@code mapToOrder} + {@code writeValueAsString} path against
+ * {@link OrderJsonCodec}. Run with {@code -prof gc} to see bytes allocated per order
+ * ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class OrderSerializationBenchmark {
+
+    private static final ObjectMapper MAPPER = HandlerBootstrap.mapper();
+
+    @Param({"1", "10", "100"})
+    public int tacos;
+
+    private Map<String, AttributeValue> item;
+
+    @Setup
+    public void setUp() {
+        item = SampleData.orderItem(tacos);
+    }
+
+    @Benchmark
+    public String mapToOrderThenJackson() throws Exception {
+        return MAPPER.writeValueAsString(TacoUtil.mapToOrder(item));
+    }
+
+    @Benchmark
+    public String directCodec() {
+        return OrderJsonCodec.writeOrder(item);
+    }
+}
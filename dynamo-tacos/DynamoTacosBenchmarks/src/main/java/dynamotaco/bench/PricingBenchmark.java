@@ -0,0 +1,122 @@
+package dynamotaco.bench;
+
+import dynamotaco.models.*;
+import dynamotaco.pricing.PricingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Order totals: the stream-based double sum over client prices against {@link PricingEngine}'s
+ * indexed cent lookups, for one order and for a batch of 25 priced against one index. Run with
+ * {@code -prof gc}; the indexed paths should show no allocation per order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PricingBenchmark {
+
+    private static final int BATCH = 25;
+
+    @Param({"1", "10", "50", "200"})
+    public int lines;
+
+    private PricingEngine engine;
+    private Order order;
+    private List<Order> batch;
+    private long[] totals;
+
+    @Setup
+    public void setUp() {
+        List<MenuItem> menu = new ArrayList<>();
+        for (FoodItemType type : FoodItemType.values()) {
+            for (int i = 1; i <= 20; i++) {
+                MenuItem item = new MenuItem();
+                item.setFoodItemType(type);
+                item.setId(String.format("%03d", i));
+                item.setPrice(type == FoodItemType.TOPPING ? 0.25 : 2 + i % 7);
+                menu.add(item);
+            }
+        }
+        engine = PricingEngine.of(menu);
+        order = order(lines);
+        engine.price(order);
+        batch = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(order(lines));
+        }
+        totals = new long[BATCH];
+    }
+
+    @Benchmark
+    public double streamSum() {
+        return clientTotal(order);
+    }
+
+    /**
+     * The client-side total the handlers used before pricing from the menu: the prices sent with
+     * each line, one of each side item, summed as doubles.
+     */
+    static double clientTotal(Order order) {
+        return Stream.ofNullable(order.getTacos())
+                .flatMapToDouble(tacos -> tacos.stream()
+                        .mapToDouble(taco -> taco.getPrice() +
+                                Stream.ofNullable(taco.getToppings())
+                                        .flatMap(toppings -> toppings.stream())
+                                        .mapToDouble(Topping::getPrice)
+                                        .sum()))
+                .sum() +
+                Stream.ofNullable(order.getSideItems())
+                        .flatMap(sideItems -> sideItems.stream())
+                        .mapToDouble(SideItem::getPrice)
+                        .sum();
+    }
+
+    @Benchmark
+    public long indexedTotal() {
+        return engine.totalCents(order);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long[] indexedBatch() {
+        engine.totalCents(batch, totals);
+        return totals;
+    }
+
+    // Two thirds tacos with two toppings each, the rest sides
+    private static Order order(int lines) {
+        List<Taco> tacos = new ArrayList<>();
+        List<SideItem> sides = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            String id = String.format("%03d", 1 + i % 20);
+            if (i % 3 < 2) {
+                List<Topping> toppings = new ArrayList<>();
+                for (int t = 0; t < 2; t++) {
+                    Topping topping = new Topping();
+                    topping.setMenuItemId(String.format("%03d", 1 + (i + t) % 20));
+                    toppings.add(topping);
+                }
+                Taco taco = new Taco();
+                taco.setMenuItemId(id);
+                taco.setToppings(toppings);
+                tacos.add(taco);
+            } else {
+                SideItem side = new SideItem();
+                side.setMenuItemId(id);
+                side.setQuantity(1 + i % 3);
+                sides.add(side);
+            }
+        }
+        Order order = new Order();
+        order.setTacos(tacos);
+        order.setSideItems(sides);
+        return order;
+    }
+}
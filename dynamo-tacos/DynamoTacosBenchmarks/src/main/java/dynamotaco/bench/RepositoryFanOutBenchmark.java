@@ -0,0 +1,68 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.repository.CustomerRepository;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@code lookups} independent order reads plus a customer existence check, joined one
+ * after the other versus started together and joined once. The in-memory table charges 2 ms per
+ * call, so the sequential variant grows with the number of lookups and the overlapped one should not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryFanOutBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+
+    @Param({"1", "4", "16"})
+    public int lookups;
+
+    private CustomerRepository customers;
+    private OrderRepository orders;
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient().withLatency(Duration.ofMillis(2));
+        customers = new CustomerRepository(dynamoDb.async(), "bench");
+        orders = new OrderRepository(dynamoDb.async(), "bench");
+    }
+
+    @Benchmark
+    public int sequential() {
+        int found = Futures.join(customers.exists(EMAIL)) ? 1 : 0;
+        for (int i = 0; i < lookups; i++) {
+            found += Futures.join(orders.find(EMAIL, "order-" + i)).isPresent() ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int overlapped() {
+        CompletableFuture<Boolean> exists = customers.exists(EMAIL);
+        List<CompletableFuture<Optional<Map<String, AttributeValue>>>> reads = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            reads.add(orders.find(EMAIL, "order-" + i));
+        }
+        int found = Futures.join(exists) ? 1 : 0;
+        for (var read : reads) {
+            found += Futures.join(read).isPresent() ? 1 : 0;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,127 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.resilience.ResilientDynamoDbClient;
+import dynamotaco.util.Futures;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+
+/**
+ * GetItem latency through {@link ResilientDynamoDbClient} against an {@link InMemoryDynamoDbClient}
+ * that injects faults: {@code report.latencyMillis} per call, a {@code report.spikeRate} share of
+ * calls {@code report.spikeMillis} slower, and throttling above {@code report.provisionedRate}
+ * requests per second. {@code report.concurrency} virtual threads each read {@code report.reads}
+ * random customer profiles, once per client configuration. Prints errors, calls sent, throttles and
+ * p50/p99/p99.9 latency of the successful reads.
+ *
+ * <pre>
+ * java -cp DynamoTacosBenchmarks/target/benchmarks.jar -Dreport.provisionedRate=4000 dynamotaco.bench.ResilienceReport
+ * </pre>
+ */
+public class ResilienceReport {
+
+    private static final String TABLE = "TacoOrderingApp";
+    private static final int CUSTOMERS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("report.concurrency", 64);
+        int reads = Integer.getInteger("report.reads", 300);
+        double provisionedRate = Double.parseDouble(System.getProperty("report.provisionedRate", "6000"));
+
+        Map<String, UnaryOperator<ResilientDynamoDbClient>> configurations = new LinkedHashMap<>();
+        configurations.put("no retries", client -> client.withMaxAttempts(1));
+        configurations.put("retries", client -> client.withMaxAttempts(6));
+        configurations.put("retries+hedge", client -> client.withMaxAttempts(6).withHedging(true));
+        configurations.put("retries+hedge+limit", client -> client.withMaxAttempts(6).withHedging(true)
+                .withRateLimit(TABLE, provisionedRate * 0.9));
+
+        System.out.printf("%d threads x %d reads, %.0f requests/s provisioned%n", concurrency, reads, provisionedRate);
+        System.out.printf("%-20s %8s %8s %10s %9s %9s %9s %9s%n",
+                "client", "errors", "calls", "throttles", "hedges", "p50 ms", "p99 ms", "p99.9 ms");
+        for (Map.Entry<String, UnaryOperator<ResilientDynamoDbClient>> configuration : configurations.entrySet()) {
+            InMemoryDynamoDbClient table = table(provisionedRate);
+            ResilientDynamoDbClient client = configuration.getValue().apply(new ResilientDynamoDbClient(table.async())
+                    .withBackoff(Duration.ofMillis(5), Duration.ofMillis(200)));
+            run(configuration.getKey(), table, client, concurrency, reads);
+        }
+    }
+
+    private static InMemoryDynamoDbClient table(double provisionedRate) {
+        InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            table.putItem(PutItemRequest.builder().tableName(TABLE).item(Map.of(
+                    "PK", AttributeValue.fromS("CUSTOMER#customer" + i + "@example.com"),
+                    "SK", AttributeValue.fromS("PROFILE"),
+                    "FirstName", AttributeValue.fromS("Customer " + i))).build());
+        }
+        return table
+                .withLatency(Duration.ofMillis(Long.getLong("report.latencyMillis", 2L)))
+                .withLatencySpikes(Double.parseDouble(System.getProperty("report.spikeRate", "0.02")),
+                        Duration.ofMillis(Long.getLong("report.spikeMillis", 50L)))
+                .withProvisionedRate(provisionedRate);
+    }
+
+    private static void run(String name, InMemoryDynamoDbClient table, ResilientDynamoDbClient client,
+                            int concurrency, int reads) throws Exception {
+        List<Future<long[]>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                workers.add(executor.submit(() -> {
+                    long[] latencies = new long[reads];
+                    for (int r = 0; r < reads; r++) {
+                        int customer = ThreadLocalRandom.current().nextInt(CUSTOMERS);
+                        long start = System.nanoTime();
+                        try {
+                            Futures.join(client.getItem(GetItemRequest.builder()
+                                    .tableName(TABLE)
+                                    .key(Map.of(
+                                            "PK", AttributeValue.fromS("CUSTOMER#customer" + customer + "@example.com"),
+                                            "SK", AttributeValue.fromS("PROFILE")))
+                                    .build()));
+                            latencies[r] = System.nanoTime() - start;
+                        } catch (RuntimeException e) {
+                            latencies[r] = -1;
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+        }
+
+        long[] merged = new long[concurrency * reads];
+        int count = 0;
+        int errors = 0;
+        for (Future<long[]> worker : workers) {
+            for (long latency : worker.get()) {
+                if (latency < 0) {
+                    errors++;
+                } else {
+                    merged[count++] = latency;
+                }
+            }
+        }
+        long[] sorted = Arrays.copyOf(merged, count);
+        Arrays.sort(sorted);
+        Map<String, Long> stats = client.stats();
+        System.out.printf("%-20s %8d %8d %10d %9d %9.2f %9.2f %9.2f%n", name, errors, table.callCount("GetItem"),
+                stats.get("throttles"), stats.get("hedges"),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,119 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.StatsRepository;
+import dynamotaco.stats.SalesAggregator;
+import dynamotaco.stats.SalesDimension;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders recorded per second by {@link SalesAggregator}, from one thread and from eight threads
+ * sharing one aggregator the way a stream consumer's sinks share it, against the same counters kept
+ * in HashMaps behind one lock. Each order has three tacos with two toppings each and a side item,
+ * eleven counter updates in all, drawn from a small menu so threads keep hitting the same counters.
+ * The locked variant keeps no time buckets, which only flatters it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SalesAggregationBenchmark {
+
+    private static final String[] TACOS = names("Taco", 8);
+    private static final String[] TOPPINGS = names("Topping", 10);
+    private static final String[] SIDES = names("Side", 5);
+
+    private final SalesAggregator aggregator = new SalesAggregator(
+            new StatsRepository(new InMemoryDynamoDbClient().async(), "TacoOrderingApp"), Long.MAX_VALUE);
+    private final LockedAggregator locked = new LockedAggregator();
+
+    @Benchmark
+    @Threads(1)
+    public void addersOneThread() {
+        record(aggregator);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void addersEightThreads() {
+        record(aggregator);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void lockedOneThread() {
+        record(locked);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void lockedEightThreads() {
+        record(locked);
+    }
+
+    private static void record(SalesAggregator aggregator) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
+        aggregator.recordOrder(now, OrderStatus.RECEIVED, 2_150);
+        for (int taco = 0; taco < 3; taco++) {
+            aggregator.recordLine(now, SalesDimension.TACO, TACOS[random.nextInt(TACOS.length)], 1, 500);
+            aggregator.recordLine(now, SalesDimension.TOPPING, TOPPINGS[random.nextInt(TOPPINGS.length)], 1, 50);
+            aggregator.recordLine(now, SalesDimension.TOPPING, TOPPINGS[random.nextInt(TOPPINGS.length)], 1, 50);
+        }
+        aggregator.recordLine(now, SalesDimension.SIDE, SIDES[random.nextInt(SIDES.length)], 2, 350);
+    }
+
+    private static void record(LockedAggregator aggregator) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        aggregator.add(SalesDimension.ORDERS, "", 1, 2_150);
+        aggregator.add(SalesDimension.STATUS, OrderStatus.RECEIVED.name(), 1, 2_150);
+        for (int taco = 0; taco < 3; taco++) {
+            aggregator.add(SalesDimension.TACO, TACOS[random.nextInt(TACOS.length)], 1, 500);
+            aggregator.add(SalesDimension.TOPPING, TOPPINGS[random.nextInt(TOPPINGS.length)], 1, 50);
+            aggregator.add(SalesDimension.TOPPING, TOPPINGS[random.nextInt(TOPPINGS.length)], 1, 50);
+        }
+        aggregator.add(SalesDimension.SIDE, SIDES[random.nextInt(SIDES.length)], 2, 350);
+    }
+
+    private static String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = prefix + " " + i;
+        }
+        return names;
+    }
+
+    private static final class LockedAggregator {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Map<String, long[]>> counters = new ArrayList<>();
+
+        LockedAggregator() {
+            for (int i = 0; i < SalesDimension.values().length; i++) {
+                counters.add(new HashMap<>());
+            }
+        }
+
+        void add(SalesDimension dimension, String name, long count, long revenueCents) {
+            lock.lock();
+            try {
+                long[] counter = counters.get(dimension.ordinal()).computeIfAbsent(name, n -> new long[2]);
+                counter[0] += count;
+                counter[1] += revenueCents;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request bodies and DynamoDB wire responses shared by the benchmarks.
+ */
+public final class SampleData {
+
+    public static final String ORDER_ITEM_JSON = "{"
+            + "\"PK\":{\"S\":\"CUSTOMER#bench@example.com\"},"
+            + "\"SK\":{\"S\":\"ORDER#bench-order\"},"
+            + "\"OrderDate\":{\"S\":\"2024-10-28T18:00:00Z\"},"
+            + "\"TotalPrice\":{\"N\":\"8.5\"},"
+            + "\"Status\":{\"S\":\"RECEIVED\"},"
+            + "\"Tacos\":{\"L\":[{\"M\":{"
+            + "\"TacoId\":{\"S\":\"taco-1\"},\"MenuItemId\":{\"S\":\"001\"},\"Name\":{\"S\":\"Carne Asada\"},\"Price\":{\"N\":\"6.0\"},"
+            + "\"Toppings\":{\"L\":[{\"M\":{\"ToppingId\":{\"S\":\"top-1\"},\"Name\":{\"S\":\"Cheese\"},\"Price\":{\"N\":\"0.5\"}}}]}}}]},"
+            + "\"SideItems\":{\"L\":[{\"M\":{\"SideItemId\":{\"S\":\"side-1\"},\"Name\":{\"S\":\"Chips\"},\"Price\":{\"N\":\"2.0\"}}}]}"
+            + "}";
+
+    public static final String ORDER_GET_RESPONSE = "{\"Item\":" + ORDER_ITEM_JSON + "}";
+
+    public static final String ORDER_QUERY_RESPONSE = "{\"Count\":1,\"ScannedCount\":1,\"Items\":[" + ORDER_ITEM_JSON + "]}";
+
+    public static final String MENU_QUERY_RESPONSE = "{\"Count\":3,\"ScannedCount\":3,\"Items\":[{"
+            + "\"PK\":{\"S\":\"MENU\"},\"SK\":{\"S\":\"TACO#001\"},\"id\":{\"S\":\"001\"},\"name\":{\"S\":\"Carne Asada\"},"
+            + "\"price\":{\"N\":\"6.00\"},\"foodItemType\":{\"S\":\"TACO\"},\"description\":{\"S\":\"Delicious Marinated skirt steak\"}"
+            + "},{"
+            + "\"PK\":{\"S\":\"MENU\"},\"SK\":{\"S\":\"TOPPING#005\"},\"id\":{\"S\":\"005\"},\"name\":{\"S\":\"Cheese\"},"
+            + "\"price\":{\"N\":\"0.50\"},\"foodItemType\":{\"S\":\"TOPPING\"}"
+            + "},{"
+            + "\"PK\":{\"S\":\"MENU\"},\"SK\":{\"S\":\"SIDE#003\"},\"id\":{\"S\":\"003\"},\"name\":{\"S\":\"Chips\"},"
+            + "\"price\":{\"N\":\"2.00\"},\"foodItemType\":{\"S\":\"SIDE\"}"
+            + "}]}";
+
+    public static final String CUSTOMER_BODY = "{\"email\":\"bench@example.com\",\"firstName\":\"Bench\","
+            + "\"lastName\":\"Mark\",\"phoneNumber\":\"123-456-7890\"}";
+
+    public static final String ORDER_BODY = "{\"customerId\":\"bench@example.com\",\"status\":\"RECEIVED\","
+            + "\"tacos\":[{\"menuItemId\":\"001\",\"name\":\"Carne Asada\",\"price\":6.0,"
+            + "\"toppings\":[{\"menuItemId\":\"005\",\"name\":\"Cheese\",\"price\":0.5}]}],"
+            + "\"sideItems\":[{\"menuItemId\":\"003\",\"name\":\"Chips\",\"price\":2.0,\"quantity\":1}]}";
+
+    public static final String UPDATE_BODY = "{\"email\":\"bench@example.com\",\"orderId\":\"bench-order\",\"status\":\"COMPLETED\"}";
+
+    private SampleData() {
+    }
+
+    public static APIGatewayProxyRequestEvent requestFor(String route) {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        switch (route) {
+            case "menu" -> request.withHttpMethod("GET").withPath("/menu");
+            case "createCustomer" -> request.withHttpMethod("POST").withPath("/customer").withBody(CUSTOMER_BODY);
+            case "createOrder" -> request.withHttpMethod("POST").withPath("/order").withBody(ORDER_BODY);
+            case "getOrder" -> request.withHttpMethod("GET").withPath("/order")
+                    .withQueryStringParameters(Map.of("email", "bench@example.com", "orderId", "bench-order"));
+            case "getAllOrders" -> request.withHttpMethod("GET").withPath("/orders")
+                    .withQueryStringParameters(Map.of("email", "bench@example.com"));
+            case "updateOrder" -> request.withHttpMethod("PUT").withPath("/order").withBody(UPDATE_BODY);
+            default -> throw new IllegalArgumentException("Unknown route " + route);
+        }
+        return request;
+    }
+
+    /**
+     * A POST /order body for {@code customerId} with {@code tacos} tacos of three toppings each and
+     * two side items, priced like the menu {@link #seedMenu} writes. With an {@code orderId} every
+     * call overwrites the same order.
+     */
+    public static String orderBody(String customerId, String orderId, int tacos) {
+        StringBuilder body = new StringBuilder(128 + tacos * 256)
+                .append("{\"customerId\":\"").append(customerId).append("\",\"status\":\"RECEIVED\",");
+        if (orderId != null) {
+            body.append("\"id\":\"").append(orderId).append("\",");
+        }
+        body.append("\"tacos\":[");
+        for (int i = 0; i < tacos; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(i % 2 == 0
+                    ? "{\"menuItemId\":\"001\",\"name\":\"Carne Asada\",\"price\":6.0,\"toppings\":["
+                    : "{\"menuItemId\":\"003\",\"name\":\"Al Pastor\",\"price\":8.0,\"toppings\":[");
+            for (int j = 0; j < 3; j++) {
+                body.append(j > 0 ? "," : "").append("{\"menuItemId\":\"005\",\"name\":\"Cheese\",\"price\":0.5}");
+            }
+            body.append("]}");
+        }
+        return body.append("],\"sideItems\":[")
+                .append("{\"menuItemId\":\"003\",\"name\":\"Chips\",\"price\":2.0,\"quantity\":1},")
+                .append("{\"menuItemId\":\"007\",\"name\":\"Horchata\",\"price\":1.5,\"quantity\":1}]}")
+                .toString();
+    }
+
+    /** Writes the menu version and every item {@link #ORDER_BODY} and {@link #orderBody} order. */
+    public static void seedMenu(InMemoryDynamoDbClient table) {
+        put(table, Map.of(
+                "PK", AttributeValue.fromS("MENU"), "SK", AttributeValue.fromS("VERSION"),
+                "Version", AttributeValue.fromN("1")));
+        String[][] menu = {
+                {"TACO", "001", "Carne Asada", "6.00"}, {"TACO", "002", "Chicken Fajita", "6.00"},
+                {"TACO", "003", "Al Pastor", "8.00"}, {"TOPPING", "005", "Cheese", "0.50"},
+                {"SIDE", "003", "Chips", "2.00"}, {"SIDE", "007", "Horchata", "1.50"}};
+        for (String[] item : menu) {
+            put(table, Map.of(
+                    "PK", AttributeValue.fromS("MENU"), "SK", AttributeValue.fromS(item[0] + "#" + item[1]),
+                    "id", AttributeValue.fromS(item[1]), "name", AttributeValue.fromS(item[2]),
+                    "price", AttributeValue.fromN(item[3]),
+                    "foodItemType", AttributeValue.fromS(item[0])));
+        }
+    }
+
+    public static void put(InMemoryDynamoDbClient table, Map<String, AttributeValue> item) {
+        table.putItem(PutItemRequest.builder().tableName("TacoOrderingApp").item(item).build());
+    }
+
+    /**
+     * An order item shaped like CreateOrderHandler writes it, with {@code tacos} tacos of three
+     * toppings each and two side items.
+     */
+    public static Map<String, AttributeValue> orderItem(int tacos) {
+        List<AttributeValue> tacoList = new ArrayList<>();
+        for (int i = 0; i < tacos; i++) {
+            List<AttributeValue> toppings = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                toppings.add(AttributeValue.fromM(Map.of(
+                        "ToppingId", AttributeValue.fromS("3f1c9a52-7d4b-4c8e-9a1f-" + String.format("%012d", i * 3 + j)),
+                        "Name", AttributeValue.fromS(j == 0 ? "Cheese" : j == 1 ? "Guacamole" : "Pico de Gallo"),
+                        "Price", AttributeValue.fromN(j == 1 ? "1.5" : "0.5"))));
+            }
+            tacoList.add(AttributeValue.fromM(Map.of(
+                    "TacoId", AttributeValue.fromS("8b2e4f10-1c3d-4e5f-8a9b-" + String.format("%012d", i)),
+                    "MenuItemId", AttributeValue.fromS("00" + (i % 3 + 1)),
+                    "Name", AttributeValue.fromS(i % 2 == 0 ? "Carne Asada" : "Al Pastor"),
+                    "Price", AttributeValue.fromN(i % 2 == 0 ? "6.0" : "8.0"),
+                    "Toppings", AttributeValue.fromL(toppings))));
+        }
+        List<AttributeValue> sides = List.of(
+                AttributeValue.fromM(Map.of(
+                        "SideItemId", AttributeValue.fromS("side-1"),
+                        "Name", AttributeValue.fromS("Chips and Salsa"),
+                        "Price", AttributeValue.fromN("2.5"))),
+                AttributeValue.fromM(Map.of(
+                        "SideItemId", AttributeValue.fromS("side-2"),
+                        "Name", AttributeValue.fromS("Horchata"),
+                        "Price", AttributeValue.fromN("1.5"))));
+        return Map.of(
+                "PK", AttributeValue.fromS("CUSTOMER#bench@example.com"),
+                "SK", AttributeValue.fromS("ORDER#0a1b2c3d-4e5f-6789-abcd-ef0123456789"),
+                "OrderDate", AttributeValue.fromS("2024-10-28T18:04:05.123456Z"),
+                "TotalPrice", AttributeValue.fromN(String.valueOf(tacos * 9.5 + 4.0)),
+                "Status", AttributeValue.fromS("RECEIVED"),
+                "Tacos", AttributeValue.fromL(tacoList),
+                "SideItems", AttributeValue.fromL(sides));
+    }
+}
@@ -0,0 +1,198 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.server.LocalServer;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop load test of {@link LocalServer} over real HTTP: {@code load.concurrency} virtual-thread
+ * clients each send a request, wait for the answer and send the next one, for {@code load.seconds}.
+ * The table is an {@link InMemoryDynamoDbClient} charging {@code load.latencyMillis} per call, seeded
+ * with {@code load.customers} customers of {@value #ORDERS_PER_CUSTOMER} orders each. Prints
+ * requests/sec and p50/p99 latency per route.
+ *
+ * <pre>
+ * java -cp DynamoTacosBenchmarks/target/benchmarks.jar -Dload.concurrency=256 dynamotaco.bench.ServerLoadTest
+ * </pre>
+ */
+public class ServerLoadTest {
+
+    static final int ORDERS_PER_CUSTOMER = 5;
+
+    private enum Route {
+        // Weights add up to 100 and roughly follow the browse-heavy mix the web app produces
+        MENU(30), GET_ORDER(30), GET_ORDERS(15), CREATE_ORDER(15), UPDATE_ORDER(5), CREATE_CUSTOMER(5);
+
+        final int weight;
+
+        Route(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final class Recorder {
+        final long[][] latencies = new long[Route.values().length][];
+        final int[] counts = new int[Route.values().length];
+        final int[] errors = new int[Route.values().length];
+
+        Recorder() {
+            Arrays.setAll(latencies, i -> new long[1024]);
+        }
+
+        void record(Route route, long nanos, boolean ok) {
+            int i = route.ordinal();
+            if (counts[i] == latencies[i].length) {
+                latencies[i] = Arrays.copyOf(latencies[i], counts[i] * 2);
+            }
+            latencies[i][counts[i]++] = nanos;
+            if (!ok) {
+                errors[i]++;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.getInteger("load.seconds", 15);
+        int concurrency = Integer.getInteger("load.concurrency", 64);
+        int latencyMillis = Integer.getInteger("load.latencyMillis", 2);
+        int customers = Integer.getInteger("load.customers", 1000);
+
+        InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+        seed(table, customers);
+        table.withLatency(Duration.ofMillis(latencyMillis));
+
+        try (LocalServer server = LocalServer.withApiRoutes(table.async(), 0).start();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+            URI endpoint = server.endpoint();
+
+            // Warm the JIT and the menu cache before measuring
+            runLoad(http, endpoint, clients, concurrency, customers, System.nanoTime() + 3_000_000_000L);
+
+            long start = System.nanoTime();
+            List<Recorder> recorders = runLoad(http, endpoint, clients, concurrency, customers, start + seconds * 1_000_000_000L);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d clients, %d s, %d ms per DynamoDB call, %d customers%n",
+                    concurrency, seconds, latencyMillis, customers);
+            System.out.printf("%-16s %10s %8s %10s %10s%n", "route", "req/s", "errors", "p50 ms", "p99 ms");
+            long total = 0;
+            for (Route route : Route.values()) {
+                int i = route.ordinal();
+                int count = recorders.stream().mapToInt(r -> r.counts[i]).sum();
+                int errors = recorders.stream().mapToInt(r -> r.errors[i]).sum();
+                long[] merged = new long[count];
+                int offset = 0;
+                for (Recorder recorder : recorders) {
+                    System.arraycopy(recorder.latencies[i], 0, merged, offset, recorder.counts[i]);
+                    offset += recorder.counts[i];
+                }
+                Arrays.sort(merged);
+                total += count;
+                System.out.printf("%-16s %10.0f %8d %10.2f %10.2f%n", route, count / elapsedSeconds, errors,
+                        percentile(merged, 0.50), percentile(merged, 0.99));
+            }
+            System.out.printf("%-16s %10.0f%n", "TOTAL", total / elapsedSeconds);
+        }
+    }
+
+    private static List<Recorder> runLoad(HttpClient http, URI endpoint, ExecutorService clients,
+                                          int concurrency, int customers, long deadline) throws Exception {
+        List<Future<Recorder>> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            workers.add(clients.submit(() -> {
+                Recorder recorder = new Recorder();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Route route = pick(random.nextInt(100));
+                    HttpRequest request = requestFor(route, endpoint, random.nextInt(customers), random);
+                    long sent = System.nanoTime();
+                    HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                    recorder.record(route, System.nanoTime() - sent, response.statusCode() < 500);
+                }
+                return recorder;
+            }));
+        }
+        List<Recorder> recorders = new ArrayList<>();
+        for (Future<Recorder> worker : workers) {
+            recorders.add(worker.get());
+        }
+        return recorders;
+    }
+
+    private static Route pick(int roll) {
+        int cumulative = 0;
+        for (Route route : Route.values()) {
+            cumulative += route.weight;
+            if (roll < cumulative) {
+                return route;
+            }
+        }
+        return Route.MENU;
+    }
+
+    private static HttpRequest requestFor(Route route, URI endpoint, int customer, ThreadLocalRandom random) {
+        String email = "load" + customer + "@example.com";
+        String orderId = "seed-" + customer + "-" + random.nextInt(ORDERS_PER_CUSTOMER);
+        return switch (route) {
+            case MENU -> get(endpoint, "/menu");
+            case GET_ORDER -> get(endpoint, "/order?email=" + email + "&orderId=" + orderId);
+            case GET_ORDERS -> get(endpoint, "/orders?email=" + email + "&limit=10");
+            case CREATE_ORDER -> send(endpoint, "POST", "/order", SampleData.ORDER_BODY.replace("bench@example.com", email));
+            case UPDATE_ORDER -> send(endpoint, "PUT", "/order",
+                    "{\"email\":\"" + email + "\",\"orderId\":\"" + orderId + "\",\"status\":\"COMPLETED\"}");
+            // Mostly new signups, with the occasional duplicate answered by the conditional write
+            case CREATE_CUSTOMER -> send(endpoint, "POST", "/customer",
+                    SampleData.CUSTOMER_BODY.replace("bench@example.com", "signup" + random.nextInt(1_000_000) + "@example.com"));
+        };
+    }
+
+    private static HttpRequest get(URI endpoint, String path) {
+        return HttpRequest.newBuilder(endpoint.resolve(path)).GET().build();
+    }
+
+    private static HttpRequest send(URI endpoint, String method, String path, String body) {
+        return HttpRequest.newBuilder(endpoint.resolve(path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static void seed(InMemoryDynamoDbClient table, int customers) {
+        SampleData.seedMenu(table);
+        for (int c = 0; c < customers; c++) {
+            String email = "load" + c + "@example.com";
+            SampleData.put(table, Map.of(
+                    "PK", AttributeValue.fromS("CUSTOMER#" + email), "SK", AttributeValue.fromS("PROFILE"),
+                    "Email", AttributeValue.fromS(email)));
+            for (int o = 0; o < ORDERS_PER_CUSTOMER; o++) {
+                Map<String, AttributeValue> order = new HashMap<>(SampleData.orderItem(1 + o % 3));
+                order.put("PK", AttributeValue.fromS("CUSTOMER#" + email));
+                order.put("SK", AttributeValue.fromS("ORDER#seed-" + c + "-" + o));
+                SampleData.put(table, order);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.models.OrderStatus;
+import dynamotaco.repository.Keys;
+import dynamotaco.repository.OrderRepository;
+import dynamotaco.util.Futures;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of moving {@code orders} RECEIVED orders to COMPLETED: one conditional UpdateItem after
+ * the other the way the kitchen bumps tickets through PUT /order, the same updates sixteen at a
+ * time, and all of them in one TransactWriteItems call. The in-memory table charges 2 ms per call
+ * and the orders are put back to RECEIVED, without latency, before every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatusTransitionBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+    private static final Duration LATENCY = Duration.ofMillis(2);
+
+    @Param({"10", "50", "100"})
+    public int orders;
+
+    private InMemoryDynamoDbClient dynamoDb;
+    private OrderRepository repository;
+    private List<OrderRepository.Transition> transitions;
+
+    @Setup
+    public void setUp() {
+        dynamoDb = new InMemoryDynamoDbClient();
+        repository = new OrderRepository(dynamoDb.async(), "TacoOrderingApp", 16);
+        transitions = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            transitions.add(new OrderRepository.Transition(EMAIL, "order-" + i, OrderStatus.RECEIVED, OrderStatus.COMPLETED));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void receive() {
+        dynamoDb.withLatency(Duration.ZERO);
+        for (int i = 0; i < orders; i++) {
+            Map<String, AttributeValue> item = new HashMap<>(SampleData.orderItem(2));
+            item.putAll(Keys.orderKey(EMAIL, "order-" + i));
+            SampleData.put(dynamoDb, item);
+        }
+        dynamoDb.withLatency(LATENCY);
+    }
+
+    @Benchmark
+    public int oneByOne() {
+        int updated = 0;
+        for (OrderRepository.Transition transition : transitions) {
+            Futures.join(repository.updateStatus(transition, ReturnValue.NONE));
+            updated++;
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public List<OrderRepository.TransitionResult> parallel() {
+        return Futures.join(repository.transitionEach(transitions));
+    }
+
+    @Benchmark
+    public List<OrderRepository.TransitionResult> atomic() {
+        return Futures.join(repository.transitionAtomically(transitions));
+    }
+}
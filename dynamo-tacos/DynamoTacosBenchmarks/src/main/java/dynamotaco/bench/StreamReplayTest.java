@@ -0,0 +1,148 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import dynamotaco.stream.CacheInvalidationSink;
+import dynamotaco.stream.KitchenNotificationSink;
+import dynamotaco.stream.OrderChangeSink;
+import dynamotaco.stream.OrderStreamHandler;
+import dynamotaco.stream.SalesAnalyticsSink;
+import dynamotaco.stream.StreamImages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Replays recorded DynamoDB stream events through {@link OrderStreamHandler} as fast as it takes
+ * them and prints records/sec. The recorded records are cycled into batches of
+ * {@code replay.batchSize} (Lambda's BatchSize) with fresh sequence numbers; {@code replay.shards}
+ * handlers run side by side, like one concurrent invocation per stream shard. All three sinks are
+ * attached, with the kitchen and cache sinks writing nowhere so stdout does not dominate.
+ *
+ * <pre>
+ * java -cp DynamoTacosBenchmarks/target/benchmarks.jar -Dreplay.batchSize=500 dynamotaco.bench.StreamReplayTest events/order_stream_event.json
+ * </pre>
+ */
+public class StreamReplayTest {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.getInteger("replay.seconds", 10);
+        int batchSize = Integer.getInteger("replay.batchSize", 100);
+        int shards = Integer.getInteger("replay.shards", 1);
+        int microBatchSize = Integer.getInteger("replay.microBatchSize", 100);
+
+        List<DynamodbEvent.DynamodbStreamRecord> recorded = new ArrayList<>();
+        for (String arg : args.length == 0 ? new String[]{"events"} : args) {
+            for (Path file : files(Path.of(arg))) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    recorded.addAll(StreamImages.readEvent(in).getRecords());
+                }
+            }
+        }
+        if (recorded.isEmpty()) {
+            throw new IllegalArgumentException("No stream records found in " + Arrays.toString(args));
+        }
+        List<DynamodbEvent> events = batches(recorded, batchSize);
+
+        SalesAnalyticsSink analytics = new SalesAnalyticsSink();
+        LongAdder notifications = new LongAdder();
+        LongAdder invalidations = new LongAdder();
+        List<OrderChangeSink> sinks = List.of(
+                new KitchenNotificationSink(line -> notifications.increment()),
+                analytics,
+                new CacheInvalidationSink(key -> invalidations.increment(), invalidations::increment));
+        OrderStreamHandler handler = new OrderStreamHandler(sinks, microBatchSize);
+
+        try (ExecutorService workers = Executors.newFixedThreadPool(shards)) {
+            // Warm the JIT before measuring
+            replay(handler, events, workers, shards, System.nanoTime() + 3_000_000_000L);
+
+            long start = System.nanoTime();
+            long records = replay(handler, events, workers, shards, start + seconds * 1_000_000_000L);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d recorded records, batches of %d, micro-batches of %d, %d shards, %d s%n",
+                    recorded.size(), batchSize, microBatchSize, shards, seconds);
+            System.out.printf("%,.0f records/sec (%,d records)%n", records / elapsedSeconds, records);
+            System.out.printf("sinks: %d kitchen notifications, %d invalidations, analytics %s%n",
+                    notifications.sum(), invalidations.sum(), analytics.stats());
+        }
+    }
+
+    private static long replay(OrderStreamHandler handler, List<DynamodbEvent> events, ExecutorService workers,
+                               int shards, long deadline) throws Exception {
+        List<Future<Long>> results = new ArrayList<>();
+        for (int s = 0; s < shards; s++) {
+            int offset = s;
+            results.add(workers.submit(() -> {
+                BenchContext context = new BenchContext();
+                long records = 0;
+                for (int i = offset; System.nanoTime() < deadline; i++) {
+                    DynamodbEvent event = events.get(i % events.size());
+                    StreamsEventResponse response = handler.handleRequest(event, context);
+                    if (!response.getBatchItemFailures().isEmpty()) {
+                        throw new IllegalStateException("Replay failed at " + response.getBatchItemFailures());
+                    }
+                    records += event.getRecords().size();
+                }
+                return records;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        return total;
+    }
+
+    private static List<DynamodbEvent> batches(List<DynamodbEvent.DynamodbStreamRecord> recorded, int batchSize) {
+        // Enough batches that every recorded record lands in each position at least once
+        int count = Math.max(1, recorded.size());
+        List<DynamodbEvent> events = new ArrayList<>(count);
+        long sequence = 0;
+        for (int b = 0; b < count; b++) {
+            List<DynamodbEvent.DynamodbStreamRecord> records = new ArrayList<>(batchSize);
+            for (int r = 0; r < batchSize; r++) {
+                DynamodbEvent.DynamodbStreamRecord source = recorded.get((int) (sequence % recorded.size()));
+                DynamodbEvent.DynamodbStreamRecord copy = new DynamodbEvent.DynamodbStreamRecord();
+                copy.setEventName(source.getEventName());
+                copy.setEventID(Long.toString(sequence));
+                copy.setDynamodb(source.getDynamodb().clone().withSequenceNumber(Long.toString(++sequence)));
+                records.add(copy);
+            }
+            DynamodbEvent event = new DynamodbEvent();
+            event.setRecords(records);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static List<Path> files(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> listing = Files.list(path)) {
+            // Only stream recordings: API Gateway sample events have no Records array
+            return listing.filter(file -> file.toString().endsWith(".json"))
+                    .filter(StreamReplayTest::hasRecords)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static boolean hasRecords(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return !StreamImages.readEvent(in).getRecords().isEmpty();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package dynamotaco.bench;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import dynamotaco.api.UpdateOrderHandler;
+import dynamotaco.api.WaitOrderStatusHandler;
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.server.LocalServer;
+import dynamotaco.stream.OrderStatusBroadcaster;
+import org.HdrHistogram.Histogram;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds {@code subs.count} clients waiting on GET /order/status for orders still RECEIVED, prints
+ * the heap and platform threads they take while idle, then completes every order with PUT /order
+ * from {@code subs.updaters} writers and prints how long each waiter took to hear about it, measured
+ * from the start of its update. Fails unless every waiter answers COMPLETED and no GetItem is made
+ * after the one each waiter reads when it subscribes.
+ *
+ * {@code subs.mode=handler} (the default) calls the handlers directly from a virtual thread per
+ * waiter. {@code subs.mode=http} goes through {@link LocalServer} with a socket per waiter, opened
+ * {@code subs.wave} at a time to stay inside the listen backlog; both ends of every connection are
+ * in this JVM, so the open-file limit caps it at half the file descriptors, and the heap figure
+ * counts client and server. Most of that is the JDK server's buffers for each connection.
+ *
+ * <pre>
+ * java -Xmx1g -Dsubs.count=50000 -cp DynamoTacosBenchmarks/target/benchmarks.jar dynamotaco.bench.SubscriptionLoadTest
+ * java -Xmx1g -Dsubs.mode=http -Dsubs.count=8000 -cp DynamoTacosBenchmarks/target/benchmarks.jar dynamotaco.bench.SubscriptionLoadTest
+ * </pre>
+ */
+public class SubscriptionLoadTest {
+
+    private static final String EMAIL = "waiter%d@example.com";
+
+    public static void main(String[] args) throws Exception {
+        String mode = System.getProperty("subs.mode", "handler");
+        int count = Integer.getInteger("subs.count", 50_000);
+        int updaters = Integer.getInteger("subs.updaters", 4);
+        int wave = Integer.getInteger("subs.wave", 1000);
+
+        InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> order = new HashMap<>(SampleData.orderItem(1));
+            order.put("PK", AttributeValue.fromS("CUSTOMER#" + email(i)));
+            order.put("SK", AttributeValue.fromS("ORDER#" + orderId(i)));
+            order.put("Status", AttributeValue.fromS("RECEIVED"));
+            SampleData.put(table, order);
+        }
+
+        long[] updated = new long[count];
+        long[] woke = new long[count];
+        AtomicInteger failures = new AtomicInteger();
+
+        try (ExecutorService waiters = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService writers = Executors.newFixedThreadPool(updaters)) {
+            Waiter waiter;
+            Writer writer;
+            LocalServer server = null;
+            if (mode.equals("http")) {
+                server = LocalServer.withApiRoutes(table.async(), 0).start();
+                URI endpoint = server.endpoint();
+                HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                waiter = i -> waitOverHttp(endpoint, i);
+                writer = i -> http.send(HttpRequest.newBuilder(endpoint.resolve("/order"))
+                                .header("Content-Type", "application/json")
+                                .method("PUT", HttpRequest.BodyPublishers.ofString(updateBody(i)))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString()).statusCode();
+            } else {
+                OrderStatusBroadcaster broadcaster = new OrderStatusBroadcaster(count);
+                WaitOrderStatusHandler statuses = new WaitOrderStatusHandler(table.async(), broadcaster, Duration.ZERO);
+                UpdateOrderHandler updates = new UpdateOrderHandler(table.async(), broadcaster);
+                waiter = i -> {
+                    APIGatewayProxyResponseEvent response = statuses.handleRequest(new APIGatewayProxyRequestEvent()
+                            .withQueryStringParameters(Map.of("email", email(i), "orderId", orderId(i),
+                                    "since", "RECEIVED")), new BenchContext());
+                    return response.getStatusCode() + " " + response.getBody();
+                };
+                writer = i -> updates.handleRequest(new APIGatewayProxyRequestEvent().withBody(updateBody(i)),
+                        new BenchContext()).getStatusCode();
+            }
+
+            long heapBefore = usedHeap();
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+            long opening = System.nanoTime();
+            Future<?>[] waiting = new Future<?>[count];
+            for (int start = 0; start < count; start += wave) {
+                int end = Math.min(count, start + wave);
+                for (int i = start; i < end; i++) {
+                    int order = i;
+                    waiting[i] = waiters.submit(() -> {
+                        String answer = waiter.await(order);
+                        woke[order] = System.nanoTime();
+                        if (!answer.equals("200 {\"id\":\"" + orderId(order) + "\",\"status\":\"COMPLETED\"}")) {
+                            failures.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+                // Each waiter subscribes, then reads the status once
+                while (table.callCount("GetItem") < end) {
+                    Thread.sleep(10);
+                }
+            }
+            double openSeconds = (System.nanoTime() - opening) / 1e9;
+            long perSubscription = (usedHeap() - heapBefore) / count;
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            System.out.printf("%s mode: %,d waiters open in %.1f s, %,d bytes of heap each, %d platform threads (%d before)%n",
+                    mode, count, openSeconds, perSubscription, threads, threadsBefore);
+
+            long reads = table.callCount("GetItem");
+            long completing = System.nanoTime();
+            Future<?>[] writes = new Future<?>[updaters];
+            for (int w = 0; w < updaters; w++) {
+                int first = w;
+                writes[w] = writers.submit(() -> {
+                    for (int i = first; i < count; i += updaters) {
+                        updated[i] = System.nanoTime();
+                        if (writer.update(i) != 200) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+            double updateSeconds = (System.nanoTime() - completing) / 1e9;
+            for (Future<?> wait : waiting) {
+                wait.get();
+            }
+            double drainSeconds = (System.nanoTime() - completing) / 1e9;
+            long rereads = table.callCount("GetItem") - reads;
+            if (server != null) {
+                server.close();
+            }
+
+            Histogram wakeMicros = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+            for (int i = 0; i < count; i++) {
+                wakeMicros.recordValue(Math.max(1, (woke[i] - updated[i]) / 1_000));
+            }
+            System.out.printf("%,d updates in %.2f s (%,.0f/s), all waiters answered %.2f s after the first%n",
+                    count, updateSeconds, count / updateSeconds, drainSeconds);
+            System.out.printf("update to answer: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    wakeMicros.getValueAtPercentile(50) / 1e3, wakeMicros.getValueAtPercentile(99) / 1e3,
+                    wakeMicros.getMaxValue() / 1e3);
+            System.out.printf("GetItem calls: %,d while subscribing, %d while waking%n", reads, rereads);
+
+            if (failures.get() > 0 || rereads > 0) {
+                throw new IllegalStateException(failures.get() + " wrong answers, " + rereads + " reads while waking");
+            }
+        }
+    }
+
+    private interface Waiter {
+        String await(int order) throws Exception;
+    }
+
+    private interface Writer {
+        int update(int order) throws Exception;
+    }
+
+    // A plain socket rather than HttpClient, which would multiplex its own selector over the connections
+    private static String waitOverHttp(URI endpoint, int order) throws Exception {
+        try (Socket socket = new Socket(endpoint.getHost(), endpoint.getPort())) {
+            socket.setSoTimeout(60_000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /order/status?email=" + email(order) + "&orderId=" + orderId(order) + "&since=RECEIVED HTTP/1.1\r\n"
+                    + "Host: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            // readAllBytes would hold a 16 KB buffer for the whole wait
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream received = new ByteArrayOutputStream(512);
+            byte[] buffer = new byte[512];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                received.write(buffer, 0, read);
+            }
+            String response = received.toString(StandardCharsets.UTF_8);
+            String status = response.substring(response.indexOf(' ') + 1, response.indexOf(' ') + 4);
+            return status + " " + response.substring(response.indexOf("\r\n\r\n") + 4);
+        }
+    }
+
+    private static String updateBody(int order) {
+        return "{\"email\":\"" + email(order) + "\",\"orderId\":\"" + orderId(order) + "\",\"status\":\"COMPLETED\"}";
+    }
+
+    private static String email(int order) {
+        return String.format(EMAIL, order % 1000);
+    }
+
+    private static String orderId(int order) {
+        return "wait-" + order;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
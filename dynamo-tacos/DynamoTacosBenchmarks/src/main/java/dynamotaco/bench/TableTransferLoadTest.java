@@ -0,0 +1,105 @@
+package dynamotaco.bench;
+
+import dynamotaco.local.InMemoryDynamoDbClient;
+import dynamotaco.transfer.TableExporter;
+import dynamotaco.transfer.TableImporter;
+import dynamotaco.util.UlidGenerator;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Exports {@code transfer.orders} synthetic orders (one million by default) from an
+ * {@link InMemoryDynamoDbClient} with {@link TableExporter}, empties the table and imports them
+ * back with {@link TableImporter}, printing items/sec, the export size and the heap in use for
+ * each direction. Orders are compact-layout headers of about 200 bytes spread over 100,000
+ * customers; the JVM needs about 3 GB of heap for the million of them held in the table.
+ *
+ * <pre>
+ * java -Xmx3g -Dtransfer.orders=1000000 -cp DynamoTacosBenchmarks/target/benchmarks.jar dynamotaco.bench.TableTransferLoadTest
+ * </pre>
+ */
+public class TableTransferLoadTest {
+
+    private static final String TABLE = "TacoOrderingApp";
+
+    public static void main(String[] args) throws Exception {
+        int orders = Integer.getInteger("transfer.orders", 1_000_000);
+        int segments = Integer.getInteger("transfer.segments", 8);
+        int writers = Integer.getInteger("transfer.writers", 8);
+        double unprocessedRate = Double.parseDouble(System.getProperty("transfer.unprocessedRate", "0.05"));
+
+        InMemoryDynamoDbClient table = new InMemoryDynamoDbClient();
+        UlidGenerator ids = new UlidGenerator();
+        for (int i = 0; i < orders; i++) {
+            table.putItem(PutItemRequest.builder().tableName(TABLE).item(order(i, ids.next())).build());
+        }
+        System.out.printf("%,d orders in the table, %,d MB heap in use%n", table.itemCount(), usedMegabytes());
+
+        Path directory = Files.createTempDirectory("taco-export");
+        TableExporter exporter = new TableExporter(table.async(), TABLE, segments);
+        long started = System.nanoTime();
+        long exported = exporter.export(directory);
+        report("export", exported, started, exporter.stats());
+        System.out.printf("%,d KB in %d files%n", size(directory) / 1024, segments);
+
+        table.clear();
+        table.withUnprocessedRate(unprocessedRate);
+        TableImporter importer = new TableImporter(table.async(), TABLE, writers, 0);
+        started = System.nanoTime();
+        long imported = importer.importFrom(directory);
+        report("import", imported, started, importer.stats());
+
+        if (imported != orders || table.itemCount() != orders) {
+            throw new IllegalStateException("Imported " + imported + " of " + orders + ", table has " + table.itemCount());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static Map<String, AttributeValue> order(int i, String orderId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("PK", AttributeValue.fromS("CUSTOMER#customer" + i % 100_000 + "@example.com"));
+        item.put("SK", AttributeValue.fromS("ORDER#" + orderId));
+        item.put("OrderDate", AttributeValue.fromS("2024-10-28T12:00:00Z"));
+        item.put("TotalPrice", AttributeValue.fromN(Integer.toString(5 + random.nextInt(40))));
+        item.put("Status", AttributeValue.fromS(random.nextBoolean() ? "RECEIVED" : "COMPLETED"));
+        byte[] lines = new byte[48];
+        random.nextBytes(lines);
+        item.put("Lines", AttributeValue.fromB(SdkBytes.fromByteArrayUnsafe(lines)));
+        return item;
+    }
+
+    private static void report(String name, long items, long started, Map<String, Long> stats) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%s: %,d items in %.1f s, %,.0f items/s, %,d MB heap in use, %s%n",
+                name, items, seconds, items / seconds, usedMegabytes(), stats);
+    }
+
+    private static long usedMegabytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+    }
+
+    private static long size(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            long bytes = 0;
+            for (Path file : files.toList()) {
+                bytes += Files.size(file);
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package dynamotaco.bench;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks ranks {@code 0..n-1} with probability proportional to {@code 1 / (rank + 1)^exponent}, so
+ * with the usual exponent of 0.99 a few customers place most of the orders the way regulars do.
+ * The cumulative distribution is computed once and each draw is a binary search over it.
+ */
+public final class ZipfianGenerator {
+
+    private final double[] cumulative;
+
+    public ZipfianGenerator(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int next(RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    /** The share of draws that land on the {@code top} most popular ranks. */
+    public double share(int top) {
+        return top <= 0 ? 0 : cumulative[Math.min(top, cumulative.length) - 1];
+    }
+}